@@ -45,6 +45,7 @@ import android.security.KeyChain;
 import android.security.KeyChain.KeyChainConnection;
 import android.util.ArraySet;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -62,6 +63,8 @@ import android.widget.Switch;
 import android.widget.TabHost;
 import android.widget.TextView;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.internal.annotations.GuardedBy;
 import com.android.internal.app.UnlaunchableAppActivity;
 import com.android.internal.widget.LockPatternUtils;
@@ -70,9 +73,16 @@ import com.android.settings.core.InstrumentedFragment;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.IntConsumer;
 
 public class TrustedCredentialsSettings extends InstrumentedFragment
@@ -90,6 +100,17 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
     private static final String SAVED_CONFIRMING_CREDENTIAL_USER = "ConfirmingCredentialUser";
     private static final String USER_ACTION = "com.android.settings.TRUSTED_CREDENTIALS_USER";
     private static final int REQUEST_CONFIRM_CREDENTIALS = 1;
+    private static final int ALIAS_PAGE_SIZE = 32;
+    private static final int MAX_CERT_LOADER_THREADS = 4;
+
+    // Enough for the system CA store of a couple of profiles, plus their user certificates.
+    @VisibleForTesting
+    static final int MAX_CACHED_CERTS = 512;
+
+    /** Parsed certificates keyed by user and alias, kept for the lifetime of the process. */
+    private static final LruCache<String, CertMetadata> sCertMetadataCache =
+            new LruCache<>(MAX_CACHED_CERTS);
+    private static ExecutorService sCertLoaderExecutor;
 
     @Override
     public int getMetricsCategory() {
@@ -735,16 +756,25 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                                 continue;
                             }
                             IKeyChainService service = keyChainConnection.getService();
-                            List<CertHolder> certHolders = new ArrayList<CertHolder>(max);
                             final int aliasMax = aliases.size();
-                            for (int j = 0; j < aliasMax; ++j) {
-                                String alias = aliases.get(j);
-                                byte[] encodedCertificate = service.getEncodedCaCertificate(alias,
-                                        true);
-                                X509Certificate cert = KeyChain.toCertificate(encodedCertificate);
-                                certHolders.add(new CertHolder(service, mAdapter,
-                                        mTab, alias, cert, profileId));
-                                publishProgress(++progress, max);
+                            List<CertHolder> certHolders = new ArrayList<CertHolder>(aliasMax);
+                            // Certificates are fetched and parsed in pages fanned out across the
+                            // loader pool, so progress is reported once per page instead of once
+                            // per certificate.
+                            for (int start = 0; start < aliasMax; start += ALIAS_PAGE_SIZE) {
+                                if (isCancelled()) {
+                                    return new SparseArray<List<CertHolder>>();
+                                }
+                                final int end = Math.min(start + ALIAS_PAGE_SIZE, aliasMax);
+                                final List<String> page = aliases.subList(start, end);
+                                final List<CertMetadata> metadata = loadCertMetadata(service,
+                                        profileId, page, getCertLoaderExecutor());
+                                for (int j = 0; j < page.size(); ++j) {
+                                    certHolders.add(new CertHolder(service, mAdapter, mTab,
+                                            page.get(j), metadata.get(j), profileId));
+                                }
+                                progress += end - start;
+                                publishProgress(progress, max);
                             }
                             Collections.sort(certHolders);
                             certHoldersByProfile.put(profileId, certHolders);
@@ -759,6 +789,7 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                     return new SparseArray<List<CertHolder>>();
                 }
             }
+
             @Override protected void onProgressUpdate(Integer... progressAndMax) {
                 int progress = progressAndMax[0];
                 int max = progressAndMax[1];
@@ -822,32 +853,122 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
         }
     }
 
-    /* package */ static class CertHolder implements Comparable<CertHolder> {
-        public int mProfileId;
-        private final IKeyChainService mService;
-        private final GroupAdapter mAdapter;
-        private final Tab mTab;
-        private final String mAlias;
-        private final X509Certificate mX509Cert;
+    private static synchronized ExecutorService getCertLoaderExecutor() {
+        if (sCertLoaderExecutor == null) {
+            final int threads = Math.max(1, Math.min(MAX_CERT_LOADER_THREADS,
+                    Runtime.getRuntime().availableProcessors()));
+            sCertLoaderExecutor = Executors.newFixedThreadPool(threads);
+        }
+        return sCertLoaderExecutor;
+    }
+
+    /**
+     * Fetches and parses the certificates of {@code aliases} on {@code executor}, returning their
+     * metadata in the order of {@code aliases}.
+     *
+     * <p>The binder proxy of {@code service} can be called from several threads at once. The
+     * connection behind it is only closed under {@code mKeyChainConnectionByProfileId}, which the
+     * loader holds while this runs, so this never returns before every fetch it started is done:
+     * on failure the fetches that did not start yet are skipped and the others are waited for.
+     */
+    @VisibleForTesting
+    static List<CertMetadata> loadCertMetadata(IKeyChainService service, int profileId,
+            List<String> aliases, ExecutorService executor)
+            throws RemoteException, InterruptedException {
+        final int n = aliases.size();
+        final AtomicBoolean abandoned = new AtomicBoolean();
+        final List<Future<CertMetadata>> futures = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            final String alias = aliases.get(i);
+            futures.add(executor.submit(() -> {
+                if (abandoned.get()) {
+                    return null;
+                }
+                return getCertMetadata(profileId, alias,
+                        service.getEncodedCaCertificate(alias, true));
+            }));
+        }
+        final List<CertMetadata> metadata = new ArrayList<>(n);
+        try {
+            for (Future<CertMetadata> future : futures) {
+                metadata.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            abandoned.set(true);
+            awaitUninterruptibly(futures);
+        }
+        return metadata;
+    }
+
+    private static void awaitUninterruptibly(List<? extends Future<?>> futures) {
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the parsed metadata for {@code alias} of {@code userId}, reusing the cached entry
+     * when the encoded certificate has not changed since it was last parsed.
+     */
+    @VisibleForTesting
+    static CertMetadata getCertMetadata(int userId, String alias, byte[] encodedCertificate) {
+        final String key = userId + "/" + alias;
+        final CertMetadata cached = sCertMetadataCache.get(key);
+        if (cached != null && cached.matches(encodedCertificate)) {
+            return cached;
+        }
+        final CertMetadata metadata = new CertMetadata(encodedCertificate,
+                KeyChain.toCertificate(encodedCertificate));
+        sCertMetadataCache.put(key, metadata);
+        return metadata;
+    }
+
+    @VisibleForTesting
+    static void clearCertMetadataCache() {
+        sCertMetadataCache.evictAll();
+    }
 
+    /**
+     * Parsed, immutable view of a CA certificate. Building it is the expensive part of loading
+     * the list, so instances are shared across profiles and screen visits.
+     */
+    @VisibleForTesting
+    static class CertMetadata {
+        private final int mEncodedHash;
+        private final byte[] mEncoded;
+        @VisibleForTesting
+        final X509Certificate mX509Cert;
         private final SslCertificate mSslCert;
         private final String mSubjectPrimary;
         private final String mSubjectSecondary;
-        private boolean mDeleted;
 
-        private CertHolder(IKeyChainService service,
-                           GroupAdapter adapter,
-                           Tab tab,
-                           String alias,
-                           X509Certificate x509Cert,
-                           int profileId) {
-            mProfileId = profileId;
-            mService = service;
-            mAdapter = adapter;
-            mTab = tab;
-            mAlias = alias;
+        @VisibleForTesting
+        CertMetadata(byte[] encoded, X509Certificate x509Cert) {
+            mEncoded = encoded;
+            mEncodedHash = Arrays.hashCode(encoded);
             mX509Cert = x509Cert;
-
             mSslCert = new SslCertificate(x509Cert);
 
             String cn = mSslCert.getIssuedTo().getCName();
@@ -873,6 +994,42 @@ public class TrustedCredentialsSettings extends InstrumentedFragment
                     mSubjectSecondary = "";
                 }
             }
+        }
+
+        private boolean matches(byte[] encoded) {
+            return encoded != null && mEncodedHash == Arrays.hashCode(encoded)
+                    && Arrays.equals(mEncoded, encoded);
+        }
+    }
+
+    /* package */ static class CertHolder implements Comparable<CertHolder> {
+        public int mProfileId;
+        private final IKeyChainService mService;
+        private final GroupAdapter mAdapter;
+        private final Tab mTab;
+        private final String mAlias;
+        private final X509Certificate mX509Cert;
+
+        private final SslCertificate mSslCert;
+        private final String mSubjectPrimary;
+        private final String mSubjectSecondary;
+        private boolean mDeleted;
+
+        private CertHolder(IKeyChainService service,
+                           GroupAdapter adapter,
+                           Tab tab,
+                           String alias,
+                           CertMetadata metadata,
+                           int profileId) {
+            mProfileId = profileId;
+            mService = service;
+            mAdapter = adapter;
+            mTab = tab;
+            mAlias = alias;
+            mX509Cert = metadata.mX509Cert;
+            mSslCert = metadata.mSslCert;
+            mSubjectPrimary = metadata.mSubjectPrimary;
+            mSubjectSecondary = metadata.mSubjectSecondary;
             try {
                 mDeleted = mTab.deleted(mService, mAlias);
             } catch (RemoteException e) {
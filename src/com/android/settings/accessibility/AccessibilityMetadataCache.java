@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accessibility;
+
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.accessibilityservice.AccessibilityShortcutInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.graphics.drawable.Drawable;
+import android.util.ArrayMap;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.applications.InterestingConfigChanges;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the labels, icons and descriptions of installed accessibility services
+ * and shortcut activities.
+ *
+ * <p>Entries are keyed by component and tagged with the version code of the owning package, so
+ * only the services of an updated package are loaded again. The whole cache is dropped when the
+ * locale, the theme or the display density changes, since labels and icons depend on them.
+ */
+class AccessibilityMetadataCache {
+
+    private static final AccessibilityMetadataCache sInstance = new AccessibilityMetadataCache();
+
+    private final Map<ComponentName, Entry> mServiceEntries = new ArrayMap<>();
+    private final Map<ComponentName, Entry> mShortcutEntries = new ArrayMap<>();
+    private final InterestingConfigChanges mInterestingConfigChanges =
+            new InterestingConfigChanges();
+
+    static AccessibilityMetadataCache getInstance() {
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AccessibilityMetadataCache() {
+    }
+
+    /** Returns the metadata of an accessibility service, loading it if needed. */
+    synchronized Entry getServiceEntry(Context context, AccessibilityServiceInfo info) {
+        checkConfiguration(context);
+        final ResolveInfo resolveInfo = info.getResolveInfo();
+        final ComponentName componentName = new ComponentName(
+                resolveInfo.serviceInfo.packageName, resolveInfo.serviceInfo.name);
+        final long versionCode = getVersionCode(resolveInfo.serviceInfo.applicationInfo);
+        Entry entry = mServiceEntries.get(componentName);
+        if (entry == null || entry.mVersionCode != versionCode) {
+            final PackageManager pm = context.getPackageManager();
+            entry = new Entry(versionCode,
+                    resolveInfo.loadLabel(pm),
+                    resolveInfo.serviceInfo.loadLabel(pm),
+                    resolveInfo.getIconResource() != 0 ? resolveInfo.loadIcon(pm) : null,
+                    null /* summary */,
+                    null /* description */,
+                    info.loadHtmlDescription(pm));
+            mServiceEntries.put(componentName, entry);
+        }
+        return entry;
+    }
+
+    /** Returns the metadata of an accessibility shortcut activity, loading it if needed. */
+    synchronized Entry getShortcutEntry(Context context, AccessibilityShortcutInfo info) {
+        checkConfiguration(context);
+        final ActivityInfo activityInfo = info.getActivityInfo();
+        final ComponentName componentName = info.getComponentName();
+        final long versionCode = getVersionCode(activityInfo.applicationInfo);
+        Entry entry = mShortcutEntries.get(componentName);
+        if (entry == null || entry.mVersionCode != versionCode) {
+            final PackageManager pm = context.getPackageManager();
+            final CharSequence label = activityInfo.loadLabel(pm);
+            entry = new Entry(versionCode,
+                    label,
+                    label,
+                    activityInfo.getIconResource() != 0 ? activityInfo.loadIcon(pm) : null,
+                    info.loadSummary(pm),
+                    info.loadDescription(pm),
+                    info.loadHtmlDescription(pm));
+            mShortcutEntries.put(componentName, entry);
+        }
+        return entry;
+    }
+
+    /** Drops the entries of every component in {@code packageName}. */
+    synchronized void invalidatePackage(String packageName) {
+        removePackage(mServiceEntries, packageName);
+        removePackage(mShortcutEntries, packageName);
+    }
+
+    private void checkConfiguration(Context context) {
+        if (mInterestingConfigChanges.applyNewConfig(context.getResources())) {
+            mServiceEntries.clear();
+            mShortcutEntries.clear();
+        }
+    }
+
+    private static void removePackage(Map<ComponentName, Entry> entries, String packageName) {
+        final Iterator<ComponentName> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getPackageName().equals(packageName)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long getVersionCode(@Nullable ApplicationInfo applicationInfo) {
+        return applicationInfo != null ? applicationInfo.longVersionCode : -1;
+    }
+
+    /** Metadata of one accessibility service or shortcut activity. */
+    static class Entry {
+        private final long mVersionCode;
+        final CharSequence mTitle;
+        // The component's own label, ignoring any label on the resolved intent filter.
+        final CharSequence mComponentLabel;
+        @Nullable
+        private final Drawable mIcon;
+        @Nullable
+        final String mSummary;
+        @Nullable
+        final String mDescription;
+        @Nullable
+        final String mHtmlDescription;
+
+        private Entry(long versionCode, CharSequence title, CharSequence componentLabel,
+                @Nullable Drawable icon, @Nullable String summary, @Nullable String description,
+                @Nullable String htmlDescription) {
+            mVersionCode = versionCode;
+            mTitle = title;
+            mComponentLabel = componentLabel;
+            mIcon = icon;
+            mSummary = summary;
+            mDescription = description;
+            mHtmlDescription = htmlDescription;
+        }
+
+        /**
+         * Returns a new instance of the component's icon, or null if the component does not
+         * declare one.
+         */
+        @Nullable
+        Drawable newIcon(Context context) {
+            if (mIcon == null) {
+                return null;
+            }
+            final Drawable.ConstantState state = mIcon.getConstantState();
+            return state != null ? state.newDrawable(context.getResources()) : mIcon;
+        }
+    }
+}
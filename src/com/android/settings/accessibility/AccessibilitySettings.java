@@ -24,10 +24,7 @@ import android.app.admin.DevicePolicyManager;
 import android.app.settings.SettingsEnums;
 import android.content.ComponentName;
 import android.content.Context;
-import android.content.pm.ActivityInfo;
-import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.content.pm.ServiceInfo;
 import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
@@ -37,6 +34,7 @@ import android.os.UserHandle;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.view.accessibility.AccessibilityManager;
 
 import androidx.annotation.VisibleForTesting;
@@ -122,25 +120,26 @@ public class AccessibilitySettings extends DashboardFragment {
     private final PackageMonitor mSettingsPackageMonitor = new PackageMonitor() {
         @Override
         public void onPackageAdded(String packageName, int uid) {
-            sendUpdate();
+            sendUpdate(packageName);
         }
 
         @Override
         public void onPackageAppeared(String packageName, int reason) {
-            sendUpdate();
+            sendUpdate(packageName);
         }
 
         @Override
         public void onPackageDisappeared(String packageName, int reason) {
-            sendUpdate();
+            sendUpdate(packageName);
         }
 
         @Override
         public void onPackageRemoved(String packageName, int uid) {
-            sendUpdate();
+            sendUpdate(packageName);
         }
 
-        private void sendUpdate() {
+        private void sendUpdate(String packageName) {
+            AccessibilityMetadataCache.getInstance().invalidatePackage(packageName);
             mHandler.postDelayed(mUpdateRunnable, DELAY_UPDATE_SERVICES_MILLIS);
         }
     };
@@ -339,12 +338,11 @@ public class AccessibilitySettings extends DashboardFragment {
         // Since services category is auto generated we have to do a pass
         // to generate it since services can come and go and then based on
         // the global accessibility state to decided whether it is enabled.
-        final ArrayList<Preference> servicePreferences =
-                new ArrayList<>(mServicePreferenceToPreferenceCategoryMap.keySet());
-        for (int i = 0; i < servicePreferences.size(); i++) {
-            Preference service = servicePreferences.get(i);
-            PreferenceCategory category = mServicePreferenceToPreferenceCategoryMap.get(service);
-            category.removePreference(service);
+        // Services that are still installed keep their preference, which is updated in place so
+        // that a settings change only rebinds summaries instead of rebuilding the categories.
+        final Map<String, RestrictedPreference> previousPreferences = new ArrayMap<>();
+        for (Preference service : mServicePreferenceToPreferenceCategoryMap.keySet()) {
+            previousPreferences.put(service.getKey(), (RestrictedPreference) service);
         }
 
         initializePreBundledServicesMapFromArray(CATEGORY_SCREEN_READER,
@@ -373,9 +371,21 @@ public class AccessibilitySettings extends DashboardFragment {
             if (mPreBundledServiceComponentToCategoryMap.containsKey(componentName)) {
                 prefCategory = mPreBundledServiceComponentToCategoryMap.get(componentName);
             }
+            final RestrictedPreference previous = previousPreferences.remove(preference.getKey());
+            if (previous != null
+                    && mServicePreferenceToPreferenceCategoryMap.get(previous) == prefCategory
+                    && updatePreferenceInPlace(previous, preference)) {
+                continue;
+            }
+            if (previous != null) {
+                removeServicePreference(previous);
+            }
             prefCategory.addPreference(preference);
             mServicePreferenceToPreferenceCategoryMap.put(preference, prefCategory);
         }
+        for (RestrictedPreference previous : previousPreferences.values()) {
+            removeServicePreference(previous);
+        }
 
         // Update the order of all the category according to the order defined in xml file.
         updateCategoryOrderFromArray(CATEGORY_SCREEN_READER,
@@ -400,6 +410,31 @@ public class AccessibilitySettings extends DashboardFragment {
         updatePreferenceCategoryVisibility(CATEGORY_SCREEN_READER);
     }
 
+    private void removeServicePreference(Preference preference) {
+        mServicePreferenceToPreferenceCategoryMap.remove(preference).removePreference(preference);
+    }
+
+    /**
+     * Copies the state of {@code preference} onto {@code previous}, which stays in place. Returns
+     * false if it can't be copied, in which case {@code previous} is to be replaced instead.
+     */
+    private static boolean updatePreferenceInPlace(RestrictedPreference previous,
+            RestrictedPreference preference) {
+        // The admin of a disabled preference can't be read back, so those are replaced.
+        if (previous.isDisabledByAdmin() || preference.isDisabledByAdmin()) {
+            return false;
+        }
+        previous.setTitle(preference.getTitle());
+        previous.setSummary(preference.getSummary());
+        previous.setIcon(preference.getIcon());
+        previous.setFragment(preference.getFragment());
+        previous.setEnabled(preference.isEnabled());
+        previous.setOrder(preference.getOrder());
+        previous.getExtras().clear();
+        previous.getExtras().putAll(preference.getExtras());
+        return true;
+    }
+
     private List<RestrictedPreference> getInstalledAccessibilityList(Context context) {
         final AccessibilityManager a11yManager = AccessibilityManager.getInstance(context);
         final RestrictedPreferenceHelper preferenceHelper = new RestrictedPreferenceHelper(context);
@@ -412,8 +447,16 @@ public class AccessibilitySettings extends DashboardFragment {
         // (getInstalledAccessibilityServiceList).
         final List<AccessibilityServiceInfo> installedServiceList = new ArrayList<>(
                 a11yManager.getInstalledAccessibilityServiceList());
-        installedServiceList.removeIf(
-                target -> containsTargetNameInList(installedShortcutList, target));
+        final AccessibilityMetadataCache metadataCache = AccessibilityMetadataCache.getInstance();
+        final Set<String> shortcutNames = new ArraySet<>(installedShortcutList.size());
+        for (int i = 0, count = installedShortcutList.size(); i < count; ++i) {
+            final AccessibilityShortcutInfo shortcutInfo = installedShortcutList.get(i);
+            shortcutNames.add(getTargetName(shortcutInfo.getActivityInfo().packageName,
+                    metadataCache.getShortcutEntry(context, shortcutInfo).mComponentLabel));
+        }
+        installedServiceList.removeIf(target -> shortcutNames.contains(getTargetName(
+                target.getResolveInfo().serviceInfo.packageName,
+                metadataCache.getServiceEntry(context, target).mComponentLabel)));
 
         final List<RestrictedPreference> activityList =
                 preferenceHelper.createAccessibilityActivityPreferenceList(installedShortcutList);
@@ -428,22 +471,9 @@ public class AccessibilitySettings extends DashboardFragment {
         return preferenceList;
     }
 
-    private boolean containsTargetNameInList(List<AccessibilityShortcutInfo> shortcutInfos,
-            AccessibilityServiceInfo targetServiceInfo) {
-        final ServiceInfo serviceInfo = targetServiceInfo.getResolveInfo().serviceInfo;
-        final String servicePackageName = serviceInfo.packageName;
-        final CharSequence serviceLabel = serviceInfo.loadLabel(getPackageManager());
-
-        for (int i = 0, count = shortcutInfos.size(); i < count; ++i) {
-            final ActivityInfo activityInfo = shortcutInfos.get(i).getActivityInfo();
-            final String activityPackageName = activityInfo.packageName;
-            final CharSequence activityLabel = activityInfo.loadLabel(getPackageManager());
-            if (servicePackageName.equals(activityPackageName)
-                    && serviceLabel.equals(activityLabel)) {
-                return true;
-            }
-        }
-        return false;
+    /** Returns the name used to match a service with a shortcut activity of the same app. */
+    private static String getTargetName(String packageName, CharSequence label) {
+        return packageName + "/" + label;
     }
 
     private void initializePreBundledServicesMapFromArray(String categoryKey, int key) {
@@ -513,12 +543,12 @@ public class AccessibilitySettings extends DashboardFragment {
     static class RestrictedPreferenceHelper {
         private final Context mContext;
         private final DevicePolicyManager mDpm;
-        private final PackageManager mPm;
+        private final AccessibilityMetadataCache mMetadataCache;
 
         RestrictedPreferenceHelper(Context context) {
             mContext = context;
             mDpm = context.getSystemService(DevicePolicyManager.class);
-            mPm = context.getPackageManager();
+            mMetadataCache = AccessibilityMetadataCache.getInstance();
         }
 
         /**
@@ -547,15 +577,17 @@ public class AccessibilitySettings extends DashboardFragment {
                 final String packageName = resolveInfo.serviceInfo.packageName;
                 final ComponentName componentName = new ComponentName(packageName,
                         resolveInfo.serviceInfo.name);
+                final AccessibilityMetadataCache.Entry metadata =
+                        mMetadataCache.getServiceEntry(mContext, info);
 
                 final String key = componentName.flattenToString();
-                final CharSequence title = resolveInfo.loadLabel(mPm);
+                final CharSequence title = metadata.mTitle;
                 final boolean serviceEnabled = enabledServices.contains(componentName);
                 final CharSequence summary = getServiceSummary(mContext, info, serviceEnabled);
                 final String fragment = getAccessibilityServiceFragmentTypeName(info);
 
-                Drawable icon = resolveInfo.loadIcon(mPm);
-                if (resolveInfo.getIconResource() == 0) {
+                Drawable icon = metadata.newIcon(mContext);
+                if (icon == null) {
                     icon = ContextCompat.getDrawable(mContext,
                             R.drawable.ic_accessibility_generic);
                 }
@@ -573,7 +605,7 @@ public class AccessibilitySettings extends DashboardFragment {
                 final int imageRes = info.getAnimatedImageRes();
                 final CharSequence description = getServiceDescription(mContext, info,
                         serviceEnabled);
-                final String htmlDescription = info.loadHtmlDescription(mPm);
+                final String htmlDescription = metadata.mHtmlDescription;
                 final String settingsClassName = info.getSettingsActivityName();
 
                 putBasicExtras(preference, prefKey, title, description, imageRes, htmlDescription,
@@ -607,17 +639,18 @@ public class AccessibilitySettings extends DashboardFragment {
 
             for (int i = 0; i < installedShortcutsSize; ++i) {
                 final AccessibilityShortcutInfo info = installedShortcuts.get(i);
-                final ActivityInfo activityInfo = info.getActivityInfo();
                 final ComponentName componentName = info.getComponentName();
+                final AccessibilityMetadataCache.Entry metadata =
+                        mMetadataCache.getShortcutEntry(mContext, info);
 
                 final String key = componentName.flattenToString();
-                final CharSequence title = activityInfo.loadLabel(mPm);
-                final String summary = info.loadSummary(mPm);
+                final CharSequence title = metadata.mTitle;
+                final String summary = metadata.mSummary;
                 final String fragment =
                         LaunchAccessibilityActivityPreferenceFragment.class.getName();
 
-                Drawable icon = activityInfo.loadIcon(mPm);
-                if (activityInfo.getIconResource() == 0) {
+                Drawable icon = metadata.newIcon(mContext);
+                if (icon == null) {
                     icon = ContextCompat.getDrawable(mContext, R.drawable.ic_accessibility_generic);
                 }
 
@@ -634,9 +667,9 @@ public class AccessibilitySettings extends DashboardFragment {
                         serviceEnabled);
 
                 final String prefKey = preference.getKey();
-                final String description = info.loadDescription(mPm);
+                final String description = metadata.mDescription;
                 final int imageRes = info.getAnimatedImageRes();
-                final String htmlDescription = info.loadHtmlDescription(mPm);
+                final String htmlDescription = metadata.mHtmlDescription;
                 final String settingsClassName = info.getSettingsActivityName();
 
                 putBasicExtras(preference, prefKey, title, description, imageRes, htmlDescription,
@@ -17,39 +17,29 @@ package com.android.settings.applications;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.content.pm.UserInfo;
 import android.os.AsyncTask;
-import android.os.UserHandle;
 import android.os.UserManager;
 
-import java.util.List;
-
 public abstract class AppCounter extends AsyncTask<Void, Void, Integer> {
 
     protected final PackageManager mPm;
     protected final UserManager mUm;
+    private final InstalledAppsSnapshot mInstalledApps;
 
     public AppCounter(Context context, PackageManager packageManager) {
+        this(context, packageManager, new InstalledAppsSnapshot(packageManager));
+    }
+
+    public AppCounter(Context context, PackageManager packageManager,
+            InstalledAppsSnapshot installedApps) {
         mPm = packageManager;
         mUm = (UserManager) context.getSystemService(Context.USER_SERVICE);
+        mInstalledApps = installedApps;
     }
 
     @Override
     protected Integer doInBackground(Void... params) {
-        int count = 0;
-        for (UserInfo user : mUm.getProfiles(UserHandle.myUserId())) {
-            final List<ApplicationInfo> list =
-                    mPm.getInstalledApplicationsAsUser(PackageManager.GET_DISABLED_COMPONENTS
-                            | PackageManager.GET_DISABLED_UNTIL_USED_COMPONENTS
-                            | (user.isAdmin() ? PackageManager.MATCH_ANY_USER : 0),
-                            user.id);
-            for (ApplicationInfo info : list) {
-                if (includeInCount(info)) {
-                    count++;
-                }
-            }
-        }
-        return count;
+        return mInstalledApps.filter(mUm, this::includeInCount).size();
     }
 
     @Override
@@ -18,12 +18,9 @@ package com.android.settings.applications;
 
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.content.pm.UserInfo;
 import android.os.AsyncTask;
-import android.os.UserHandle;
 import android.os.UserManager;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -35,28 +32,22 @@ import java.util.List;
 public abstract class AppLister extends AsyncTask<Void, Void, List<UserAppInfo>> {
     protected final PackageManager mPm;
     protected final UserManager mUm;
+    private final InstalledAppsSnapshot mInstalledApps;
 
     public AppLister(PackageManager packageManager, UserManager userManager) {
+        this(packageManager, userManager, new InstalledAppsSnapshot(packageManager));
+    }
+
+    public AppLister(PackageManager packageManager, UserManager userManager,
+            InstalledAppsSnapshot installedApps) {
         mPm = packageManager;
         mUm = userManager;
+        mInstalledApps = installedApps;
     }
 
     @Override
     protected List<UserAppInfo> doInBackground(Void... params) {
-        final List<UserAppInfo> result = new ArrayList<>();
-        for (UserInfo user : mUm.getProfiles(UserHandle.myUserId())) {
-            final List<ApplicationInfo> list =
-                    mPm.getInstalledApplicationsAsUser(PackageManager.GET_DISABLED_COMPONENTS
-                            | PackageManager.GET_DISABLED_UNTIL_USED_COMPONENTS
-                            | (user.isAdmin() ? PackageManager.MATCH_ANY_USER : 0),
-                            user.id);
-            for (ApplicationInfo info : list) {
-                if (includeInCount(info)) {
-                    result.add(new UserAppInfo(user, info));
-                }
-            }
-        }
-        return result;
+        return mInstalledApps.filter(mUm, this::includeInCount);
     }
 
     @Override
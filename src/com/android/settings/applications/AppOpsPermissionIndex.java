@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.applications;
+
+import android.app.AppGlobals;
+import android.app.AppOpsManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.IPackageManager;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.util.ArrayUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Process-wide index of the package and app-op state read by the special app access bridges.
+ *
+ * <p>Each piece of state is loaded in bulk the first time a bridge asks for it and is then
+ * shared by every {@link AppStateAppOpsBridge}, so switching between special access screens does
+ * not query PackageManager again for every package. A package broadcast or a permission change
+ * marks the affected packages, which are then read again one by one and patched into the bulk
+ * lists the next time they are needed, and an app-op mode callback only drops the op sets that
+ * contain the changed op.
+ */
+public class AppOpsPermissionIndex {
+
+    private static final String TAG = "AppOpsPermissionIndex";
+
+    private static AppOpsPermissionIndex sInstance;
+
+    private final IPackageManager mIPackageManager;
+    private final AppOpsManager mAppOpsManager;
+
+    // Permission -> packages requesting it.
+    @GuardedBy("this")
+    private final ArrayMap<String, Set<String>> mRequestingPackages = new ArrayMap<>();
+    // User id -> package name -> whether the package is available for that user.
+    @GuardedBy("this")
+    private final SparseArray<ArrayMap<String, Boolean>> mAvailablePackages = new SparseArray<>();
+    // User id -> permission set -> packages holding any of those permissions.
+    @GuardedBy("this")
+    private final SparseArray<ArrayMap<String, List<PackageInfo>>> mHoldingPackages =
+            new SparseArray<>();
+    @GuardedBy("this")
+    private final ArrayMap<String, String[]> mPermissionSets = new ArrayMap<>();
+    // Op code set -> packages with a mode set for any of those ops.
+    @GuardedBy("this")
+    private final ArrayMap<String, List<AppOpsManager.PackageOps>> mPackageOps = new ArrayMap<>();
+    @GuardedBy("this")
+    private final ArrayMap<String, int[]> mOpSets = new ArrayMap<>();
+    // User id, or USER_ALL, -> packages that changed since the lists above were read.
+    @GuardedBy("this")
+    private final SparseArray<ArraySet<String>> mChangedPackages = new SparseArray<>();
+    // Uids whose permissions were granted or revoked since the lists above were read.
+    @GuardedBy("this")
+    private final ArraySet<Integer> mChangedUids = new ArraySet<>();
+    // Op code -> the listener watching its mode, one per op so that each can be told apart.
+    @GuardedBy("this")
+    private final SparseArray<AppOpsManager.OnOpChangedListener> mOpChangedListeners =
+            new SparseArray<>();
+
+    private final boolean mWatchChanges;
+
+    private final PackageManager.OnPermissionsChangedListener mPermissionsChangedListener =
+            uid -> invalidateUid(uid);
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                invalidatePackage(data.getSchemeSpecificPart(), getSendingUserId());
+            }
+        }
+    };
+
+    /**
+     * Returns the shared index, registering for package, permission and app-op changes on first
+     * use.
+     */
+    public static synchronized AppOpsPermissionIndex getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new AppOpsPermissionIndex(AppGlobals.getPackageManager(),
+                    appContext.getSystemService(AppOpsManager.class), true /* watchChanges */);
+            final IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addDataScheme("package");
+            appContext.registerReceiverAsUser(sInstance.mPackageReceiver, UserHandle.ALL, filter,
+                    null /* broadcastPermission */, null /* scheduler */);
+            // Runtime grants and revokes don't send a package broadcast.
+            appContext.getPackageManager().addOnPermissionsChangeListener(
+                    sInstance.mPermissionsChangedListener);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Creates an index that is not shared and does not listen for changes. Callers are expected
+     * to drop it together with the state they loaded through it.
+     */
+    AppOpsPermissionIndex(IPackageManager packageManager, AppOpsManager appOpsManager) {
+        this(packageManager, appOpsManager, false /* watchChanges */);
+    }
+
+    private AppOpsPermissionIndex(IPackageManager packageManager, AppOpsManager appOpsManager,
+            boolean watchChanges) {
+        mIPackageManager = packageManager;
+        mAppOpsManager = appOpsManager;
+        mWatchChanges = watchChanges;
+    }
+
+    /** Returns the packages requesting {@code permission}, as an unmodifiable set. */
+    public synchronized Set<String> getAppOpPermissionPackages(String permission)
+            throws RemoteException {
+        applyChanges();
+        Set<String> packages = mRequestingPackages.get(permission);
+        if (packages == null) {
+            final String[] pkgs = mIPackageManager.getAppOpPermissionPackages(permission);
+            packages = pkgs != null
+                    ? Collections.unmodifiableSet(new ArraySet<>(Arrays.asList(pkgs)))
+                    : Collections.emptySet();
+            mRequestingPackages.put(permission, packages);
+        }
+        return packages;
+    }
+
+    /** Returns whether {@code packageName} is available for {@code userId}. */
+    public synchronized boolean isPackageAvailable(String packageName, int userId)
+            throws RemoteException {
+        ArrayMap<String, Boolean> availableForUser = mAvailablePackages.get(userId);
+        if (availableForUser == null) {
+            availableForUser = new ArrayMap<>();
+            mAvailablePackages.put(userId, availableForUser);
+        }
+        Boolean available = availableForUser.get(packageName);
+        if (available == null) {
+            available = mIPackageManager.isPackageAvailable(packageName, userId);
+            availableForUser.put(packageName, available);
+        }
+        return available;
+    }
+
+    /** Returns the packages of {@code userId} holding any of {@code permissions}. */
+    @SuppressWarnings("unchecked")
+    public synchronized List<PackageInfo> getPackagesHoldingPermissions(String[] permissions,
+            int userId) throws RemoteException {
+        applyChanges();
+        ArrayMap<String, List<PackageInfo>> holdingForUser = mHoldingPackages.get(userId);
+        if (holdingForUser == null) {
+            holdingForUser = new ArrayMap<>();
+            mHoldingPackages.put(userId, holdingForUser);
+        }
+        final String key = Arrays.toString(permissions);
+        List<PackageInfo> packageInfos = holdingForUser.get(key);
+        if (packageInfos == null) {
+            packageInfos = mIPackageManager.getPackagesHoldingPermissions(permissions, 0,
+                    userId).getList();
+            if (packageInfos == null) {
+                packageInfos = Collections.emptyList();
+            }
+            holdingForUser.put(key, packageInfos);
+            mPermissionSets.put(key, permissions.clone());
+        }
+        return packageInfos;
+    }
+
+    /** Returns the packages that have a mode set for any of {@code ops}. */
+    public synchronized List<AppOpsManager.PackageOps> getPackagesForOps(int[] ops) {
+        try {
+            applyChanges();
+        } catch (RemoteException e) {
+            // The lists were dropped, and the modes are read again below.
+            Log.w(TAG, "PackageManager is dead, can't read changed packages", e);
+        }
+        final String key = Arrays.toString(ops);
+        List<AppOpsManager.PackageOps> packageOps = mPackageOps.get(key);
+        if (packageOps == null) {
+            packageOps = mAppOpsManager.getPackagesForOps(ops);
+            if (packageOps == null) {
+                packageOps = Collections.emptyList();
+            }
+            mPackageOps.put(key, packageOps);
+            mOpSets.put(key, ops.clone());
+            watchOps(ops);
+        }
+        return packageOps;
+    }
+
+    /** Marks {@code packageName} as changed for every user. */
+    public void invalidatePackage(String packageName) {
+        invalidatePackage(packageName, UserHandle.USER_ALL);
+    }
+
+    /**
+     * Marks {@code packageName} as changed for {@code userId}. Its availability is dropped right
+     * away, the bulk lists are patched with it the next time they are read.
+     */
+    public synchronized void invalidatePackage(String packageName, int userId) {
+        for (int i = 0; i < mAvailablePackages.size(); i++) {
+            if (userId == UserHandle.USER_ALL || mAvailablePackages.keyAt(i) == userId) {
+                mAvailablePackages.valueAt(i).remove(packageName);
+            }
+        }
+        ArraySet<String> changedForUser = mChangedPackages.get(userId);
+        if (changedForUser == null) {
+            changedForUser = new ArraySet<>();
+            mChangedPackages.put(userId, changedForUser);
+        }
+        changedForUser.add(packageName);
+    }
+
+    /** Marks the packages of {@code uid} as having had their permissions changed. */
+    public synchronized void invalidateUid(int uid) {
+        mChangedUids.add(uid);
+    }
+
+    /** Drops the cached modes of every op set containing one of {@code ops}. */
+    public synchronized void invalidateAppOps(int[] ops) {
+        for (int op : ops) {
+            invalidateAppOp(op);
+        }
+    }
+
+    private synchronized void invalidateAppOp(int op) {
+        for (int i = mPackageOps.size() - 1; i >= 0; i--) {
+            if (ArrayUtils.contains(mOpSets.get(mPackageOps.keyAt(i)), op)) {
+                mPackageOps.removeAt(i);
+            }
+        }
+    }
+
+    /** Patches the packages marked as changed into the bulk lists. */
+    @GuardedBy("this")
+    private void applyChanges() throws RemoteException {
+        if (mChangedUids.isEmpty() && mChangedPackages.size() == 0) {
+            return;
+        }
+        try {
+            for (int i = 0; i < mChangedUids.size(); i++) {
+                final int uid = mChangedUids.valueAt(i);
+                final String[] packageNames = mIPackageManager.getPackagesForUid(uid);
+                if (packageNames == null) {
+                    continue;
+                }
+                for (String packageName : packageNames) {
+                    invalidatePackage(packageName, UserHandle.getUserId(uid));
+                }
+            }
+            for (int i = 0; i < mChangedPackages.size(); i++) {
+                final int userId = mChangedPackages.keyAt(i);
+                for (String packageName : mChangedPackages.valueAt(i)) {
+                    updateRequestingPackages(packageName, userId);
+                    updateHoldingPackages(packageName, userId);
+                    updatePackageOps(packageName, userId);
+                }
+            }
+        } catch (RemoteException e) {
+            // Don't keep lists that are only partly up to date.
+            mRequestingPackages.clear();
+            mHoldingPackages.clear();
+            mPackageOps.clear();
+            throw e;
+        } finally {
+            mChangedUids.clear();
+            mChangedPackages.clear();
+        }
+    }
+
+    @GuardedBy("this")
+    private void updateRequestingPackages(String packageName, int userId)
+            throws RemoteException {
+        if (mRequestingPackages.isEmpty()) {
+            return;
+        }
+        // The requesting packages are those installed for any user.
+        final PackageInfo info = mIPackageManager.getPackageInfo(packageName,
+                PackageManager.GET_PERMISSIONS | PackageManager.MATCH_ANY_USER,
+                userId == UserHandle.USER_ALL ? UserHandle.USER_SYSTEM : userId);
+        final String[] requestedPermissions = info != null ? info.requestedPermissions : null;
+        for (int i = 0; i < mRequestingPackages.size(); i++) {
+            final Set<String> packages = new ArraySet<>(mRequestingPackages.valueAt(i));
+            if (ArrayUtils.contains(requestedPermissions, mRequestingPackages.keyAt(i))) {
+                packages.add(packageName);
+            } else {
+                packages.remove(packageName);
+            }
+            mRequestingPackages.setValueAt(i, Collections.unmodifiableSet(packages));
+        }
+    }
+
+    @GuardedBy("this")
+    private void updateHoldingPackages(String packageName, int userId) throws RemoteException {
+        for (int i = 0; i < mHoldingPackages.size(); i++) {
+            final int holdingUserId = mHoldingPackages.keyAt(i);
+            if (userId != UserHandle.USER_ALL && holdingUserId != userId) {
+                continue;
+            }
+            final ArrayMap<String, List<PackageInfo>> holdingForUser = mHoldingPackages.valueAt(i);
+            if (holdingForUser.isEmpty()) {
+                continue;
+            }
+            final PackageInfo info = mIPackageManager.getPackageInfo(packageName, 0,
+                    holdingUserId);
+            for (int j = 0; j < holdingForUser.size(); j++) {
+                final List<PackageInfo> packageInfos =
+                        new ArrayList<>(holdingForUser.valueAt(j));
+                packageInfos.removeIf(packageInfo -> packageName.equals(packageInfo.packageName));
+                if (info != null && holdsAnyPermission(packageName,
+                        mPermissionSets.get(holdingForUser.keyAt(j)), holdingUserId)) {
+                    packageInfos.add(info);
+                }
+                holdingForUser.setValueAt(j, packageInfos);
+            }
+        }
+    }
+
+    private boolean holdsAnyPermission(String packageName, String[] permissions, int userId)
+            throws RemoteException {
+        for (String permission : permissions) {
+            if (mIPackageManager.checkPermission(permission, packageName, userId)
+                    == PackageManager.PERMISSION_GRANTED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @GuardedBy("this")
+    private void updatePackageOps(String packageName, int userId) throws RemoteException {
+        if (mPackageOps.isEmpty()) {
+            return;
+        }
+        if (userId == UserHandle.USER_ALL) {
+            // The uids of the package are not known, the lists are reloaded with one call each.
+            mPackageOps.clear();
+            return;
+        }
+        final int uid = mIPackageManager.getPackageUid(packageName, 0 /* flags */, userId);
+        for (int i = 0; i < mPackageOps.size(); i++) {
+            final List<AppOpsManager.PackageOps> packageOps =
+                    new ArrayList<>(mPackageOps.valueAt(i));
+            packageOps.removeIf(ops -> packageName.equals(ops.getPackageName())
+                    && UserHandle.getUserId(ops.getUid()) == userId);
+            if (uid >= 0) {
+                final List<AppOpsManager.PackageOps> ops = mAppOpsManager.getOpsForPackage(uid,
+                        packageName, mOpSets.get(mPackageOps.keyAt(i)));
+                if (ops != null) {
+                    packageOps.addAll(ops);
+                }
+            }
+            mPackageOps.setValueAt(i, packageOps);
+        }
+    }
+
+    @GuardedBy("this")
+    private void watchOps(int[] ops) {
+        if (!mWatchChanges) {
+            return;
+        }
+        for (int op : ops) {
+            if (mOpChangedListeners.get(op) == null) {
+                final AppOpsManager.OnOpChangedListener listener =
+                        (opStr, packageName) -> invalidateAppOp(op);
+                mOpChangedListeners.put(op, listener);
+                mAppOpsManager.startWatchingMode(op, null /* packageName */, listener);
+            }
+        }
+    }
+}
@@ -49,6 +49,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
     private static final String TAG = "AppStateAppOpsBridge";
 
     private final IPackageManager mIPackageManager;
+    private final AppOpsPermissionIndex mPermissionIndex;
     private final UserManager mUserManager;
     private final List<UserHandle> mProfiles;
     private final AppOpsManager mAppOpsManager;
@@ -65,7 +66,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
     AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int[] appOpsOpCodes, String[] permissions) {
         this(context, appState, callback, appOpsOpCodes, permissions,
-                AppGlobals.getPackageManager());
+                AppGlobals.getPackageManager(), AppOpsPermissionIndex.getInstance(context));
     }
 
     @VisibleForTesting
@@ -77,9 +78,18 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
 
     AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int[] appOpsOpCodes, String[] permissions, IPackageManager packageManager) {
+        this(context, appState, callback, appOpsOpCodes, permissions, packageManager,
+                new AppOpsPermissionIndex(packageManager,
+                        (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE)));
+    }
+
+    private AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
+            int[] appOpsOpCodes, String[] permissions, IPackageManager packageManager,
+            AppOpsPermissionIndex permissionIndex) {
         super(appState, callback);
         mContext = context;
         mIPackageManager = packageManager;
+        mPermissionIndex = permissionIndex;
         mUserManager = UserManager.get(context);
         mProfiles = mUserManager.getUserProfiles();
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
@@ -132,7 +142,9 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                     }
                 }
             }
-            // Check app op state.
+            // Check app op state. This is an explicit refresh of a single package, so only that
+            // package is patched into the shared lists the next time they are read.
+            mPermissionIndex.invalidatePackage(pkg, permissionState.userHandle.getIdentifier());
             List<PackageOps> ops = mAppOpsManager.getOpsForPackage(uid, pkg, mAppOpsOpCodes);
             if (ops != null && ops.size() > 0 && ops.get(0).getOps().size() > 0) {
                 permissionState.appOpMode = ops.get(0).getOps().get(0).getMode();
@@ -174,10 +186,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         try {
             Set<String> packagesSet = new HashSet<>();
             for (String permission : mPermissions) {
-                String[] pkgs = mIPackageManager.getAppOpPermissionPackages(permission);
-                if (pkgs != null) {
-                    packagesSet.addAll(Arrays.asList(pkgs));
-                }
+                packagesSet.addAll(mPermissionIndex.getAppOpPermissionPackages(permission));
             }
 
             if (packagesSet.isEmpty()) {
@@ -193,7 +202,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 final int profileId = profile.getIdentifier();
                 entries.put(profileId, entriesForProfile);
                 for (final String packageName : packagesSet) {
-                    final boolean isAvailable = mIPackageManager.isPackageAvailable(packageName,
+                    final boolean isAvailable = mPermissionIndex.isPackageAvailable(packageName,
                             profileId);
                     if (!shouldIgnorePackage(packageName) && isAvailable) {
                         final PermissionState newEntry = new PermissionState(packageName, profile);
@@ -227,11 +236,9 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 if (entriesForProfile == null) {
                     continue;
                 }
-                @SuppressWarnings("unchecked") final List<PackageInfo> packageInfos =
-                        mIPackageManager
-                                .getPackagesHoldingPermissions(mPermissions, 0,
-                                        profileId).getList();
-                final int packageInfoCount = packageInfos != null ? packageInfos.size() : 0;
+                final List<PackageInfo> packageInfos =
+                        mPermissionIndex.getPackagesHoldingPermissions(mPermissions, profileId);
+                final int packageInfoCount = packageInfos.size();
                 for (int i = 0; i < packageInfoCount; i++) {
                     final PackageInfo packageInfo = packageInfos.get(i);
                     final PermissionState pe = entriesForProfile.get(packageInfo.packageName);
@@ -258,9 +265,9 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         }
 
         // Find out which packages have been granted permission from AppOps.
-        final List<AppOpsManager.PackageOps> packageOps = mAppOpsManager.getPackagesForOps(
+        final List<AppOpsManager.PackageOps> packageOps = mPermissionIndex.getPackagesForOps(
                 mAppOpsOpCodes);
-        final int packageOpsCount = packageOps != null ? packageOps.size() : 0;
+        final int packageOpsCount = packageOps.size();
         for (int i = 0; i < packageOpsCount; i++) {
             final AppOpsManager.PackageOps packageOp = packageOps.get(i);
             final int userId = UserHandle.getUserId(packageOp.getUid());
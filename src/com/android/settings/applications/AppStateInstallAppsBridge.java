@@ -24,7 +24,6 @@ import android.content.pm.PackageManager;
 import android.os.RemoteException;
 import android.util.Log;
 
-import com.android.internal.util.ArrayUtils;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.AppFilter;
@@ -42,12 +41,14 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
 
     private final IPackageManager mIpm;
     private final AppOpsManager mAppOpsManager;
+    private final AppOpsPermissionIndex mPermissionIndex;
 
     public AppStateInstallAppsBridge(Context context, ApplicationsState appState,
             Callback callback) {
         super(appState, callback);
         mIpm = AppGlobals.getPackageManager();
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+        mPermissionIndex = AppOpsPermissionIndex.getInstance(context);
     }
 
     @Override
@@ -57,7 +58,7 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
 
     @Override
     protected void loadAllExtraInfo() {
-        // TODO: consider making this a batch operation with a single binder call
+        // TODO: consider making the app op lookup a batch operation with a single binder call
         final List<AppEntry> allApps = mAppSession.getAllApps();
         for (int i = 0; i < allApps.size(); i++) {
             AppEntry currentEntry = allApps.get(i);
@@ -67,8 +68,7 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
 
     private boolean hasRequestedAppOpPermission(String permission, String packageName) {
         try {
-            String[] packages = mIpm.getAppOpPermissionPackages(permission);
-            return ArrayUtils.contains(packages, packageName);
+            return mPermissionIndex.getAppOpPermissionPackages(permission).contains(packageName);
         } catch (RemoteException exc) {
             Log.e(TAG, "PackageManager dead. Cannot get permission info");
             return false;
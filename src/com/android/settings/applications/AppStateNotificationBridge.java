@@ -16,13 +16,9 @@
 package com.android.settings.applications;
 
 import android.app.usage.IUsageStatsManager;
-import android.app.usage.UsageEvents;
 import android.content.Context;
-import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
-import android.text.format.DateUtils;
-import android.util.ArrayMap;
 import android.util.Log;
 import android.util.Slog;
 import android.view.View;
@@ -30,6 +26,8 @@ import android.view.ViewGroup;
 import android.widget.CompoundButton;
 import android.widget.Switch;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.notification.NotificationBackend;
@@ -41,7 +39,6 @@ import com.android.settingslib.utils.StringUtil;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Connects the info provided by ApplicationsState and UsageStatsManager.
@@ -55,15 +52,26 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     private IUsageStatsManager mUsageStatsManager;
     protected List<Integer> mUserIds;
     private NotificationBackend mBackend;
-    private static final int DAYS_TO_CHECK = 7;
+    private final NotificationStatsIndex mStatsIndex;
+    private static final int DAYS_TO_CHECK = NotificationStatsIndex.DAYS_TO_CHECK;
 
     public AppStateNotificationBridge(Context context, ApplicationsState appState,
             Callback callback, IUsageStatsManager usageStatsManager,
             UserManager userManager, NotificationBackend backend) {
+        this(context, appState, callback, usageStatsManager, userManager, backend,
+                NotificationStatsIndex.getInstance(context));
+    }
+
+    @VisibleForTesting
+    AppStateNotificationBridge(Context context, ApplicationsState appState,
+            Callback callback, IUsageStatsManager usageStatsManager,
+            UserManager userManager, NotificationBackend backend,
+            NotificationStatsIndex statsIndex) {
         super(appState, callback);
         mContext = context;
         mUsageStatsManager = usageStatsManager;
         mBackend = backend;
+        mStatsIndex = statsIndex;
         mUserIds = new ArrayList<>();
         mUserIds.add(mContext.getUserId());
         int workUserId = Utils.getManagedProfileId(userManager, mContext.getUserId());
@@ -82,10 +90,13 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
             return;
         }
 
-        final Map<String, NotificationsSentState> map = getAggregatedUsageEvents();
+        final long now = System.currentTimeMillis();
+        for (int userId : mUserIds) {
+            mStatsIndex.update(mUsageStatsManager, userId, mContext.getPackageName(), now);
+        }
         for (AppEntry entry : apps) {
-            NotificationsSentState stats =
-                    map.get(getKey(UserHandle.getUserId(entry.info.uid), entry.info.packageName));
+            NotificationsSentState stats = mStatsIndex.getSentState(
+                    UserHandle.getUserId(entry.info.uid), entry.info.packageName, now);
             if (stats == null) {
                 stats = new NotificationsSentState();
             }
@@ -97,8 +108,12 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
 
     @Override
     protected void updateExtraInfo(AppEntry entry, String pkg, int uid) {
-        NotificationsSentState stats = getAggregatedUsageEvents(
-                UserHandle.getUserId(entry.info.uid), entry.info.packageName);
+        final int userId = UserHandle.getUserId(entry.info.uid);
+        final long now = System.currentTimeMillis();
+        // Only reads the usage events logged since the last update.
+        mStatsIndex.update(mUsageStatsManager, userId, mContext.getPackageName(), now);
+        NotificationsSentState stats =
+                mStatsIndex.getSentState(userId, entry.info.packageName, now);
         calculateAvgSentCounts(stats);
         addBlockStatus(entry, stats);
         entry.extraInfo = stats;
@@ -141,75 +156,6 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
     }
 
-    protected Map<String, NotificationsSentState> getAggregatedUsageEvents() {
-        ArrayMap<String, NotificationsSentState> aggregatedStats = new ArrayMap<>();
-
-        long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
-        for (int userId : mUserIds) {
-            UsageEvents events = null;
-            try {
-                events = mUsageStatsManager.queryEventsForUser(
-                        startTime, now, userId, mContext.getPackageName());
-            } catch (RemoteException e) {
-                e.printStackTrace();
-            }
-            if (events != null) {
-                UsageEvents.Event event = new UsageEvents.Event();
-                while (events.hasNextEvent()) {
-                    events.getNextEvent(event);
-                    NotificationsSentState stats =
-                            aggregatedStats.get(getKey(userId, event.getPackageName()));
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                        aggregatedStats.put(getKey(userId, event.getPackageName()), stats);
-                    }
-
-                    if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                        if (event.getTimeStamp() > stats.lastSent) {
-                            stats.lastSent = event.getTimeStamp();
-                        }
-                        stats.sentCount++;
-                    }
-
-                }
-            }
-        }
-        return aggregatedStats;
-    }
-
-    protected NotificationsSentState getAggregatedUsageEvents(int userId, String pkg) {
-        NotificationsSentState stats = null;
-
-        long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
-        UsageEvents events = null;
-        try {
-            events = mUsageStatsManager.queryEventsForPackageForUser(
-                    startTime, now, userId, pkg, mContext.getPackageName());
-        } catch (RemoteException e) {
-            e.printStackTrace();
-        }
-        if (events != null) {
-            UsageEvents.Event event = new UsageEvents.Event();
-            while (events.hasNextEvent()) {
-                events.getNextEvent(event);
-
-                if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                    }
-                    if (event.getTimeStamp() > stats.lastSent) {
-                        stats.lastSent = event.getTimeStamp();
-                    }
-                    stats.sentCount++;
-                }
-
-            }
-        }
-        return stats;
-    }
-
     private static NotificationsSentState getNotificationsSentState(AppEntry entry) {
         if (entry == null || entry.extraInfo == null) {
             return null;
@@ -220,10 +166,6 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         return null;
     }
 
-    protected static String getKey(int userId, String pkg) {
-        return userId + "|" + pkg;
-    }
-
     public CompoundButton.OnCheckedChangeListener getSwitchOnCheckedListener(final AppEntry entry) {
         if (entry == null) {
             return null;
@@ -36,7 +36,14 @@ public abstract class AppWithAdminGrantedPermissionsCounter extends AppCounter {
     public AppWithAdminGrantedPermissionsCounter(Context context, String[] permissions,
             PackageManager packageManager, IPackageManager packageManagerService,
             DevicePolicyManager devicePolicyManager) {
-        super(context, packageManager);
+        this(context, permissions, packageManager, packageManagerService, devicePolicyManager,
+                new InstalledAppsSnapshot(packageManager));
+    }
+
+    public AppWithAdminGrantedPermissionsCounter(Context context, String[] permissions,
+            PackageManager packageManager, IPackageManager packageManagerService,
+            DevicePolicyManager devicePolicyManager, InstalledAppsSnapshot installedApps) {
+        super(context, packageManager, installedApps);
         mPermissions = permissions;
         mPackageManagerService = packageManagerService;
         mDevicePolicyManager = devicePolicyManager;
@@ -34,7 +34,15 @@ public abstract class AppWithAdminGrantedPermissionsLister extends AppLister {
     public AppWithAdminGrantedPermissionsLister(String[] permissions,
             PackageManager packageManager, IPackageManager packageManagerService,
             DevicePolicyManager devicePolicyManager, UserManager userManager) {
-        super(packageManager, userManager);
+        this(permissions, packageManager, packageManagerService, devicePolicyManager, userManager,
+                new InstalledAppsSnapshot(packageManager));
+    }
+
+    public AppWithAdminGrantedPermissionsLister(String[] permissions,
+            PackageManager packageManager, IPackageManager packageManagerService,
+            DevicePolicyManager devicePolicyManager, UserManager userManager,
+            InstalledAppsSnapshot installedApps) {
+        super(packageManager, userManager, installedApps);
         mPermissions = permissions;
         mPackageManagerService = packageManagerService;
         mDevicePolicyManager = devicePolicyManager;
@@ -22,6 +22,7 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.ComponentInfo;
 import android.content.pm.IPackageManager;
 import android.content.pm.PackageManager;
@@ -34,26 +35,40 @@ import android.os.UserManager;
 import android.service.euicc.EuiccService;
 import android.telecom.DefaultDialerManager;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.internal.annotations.GuardedBy;
 import com.android.internal.telephony.SmsApplication;
 import com.android.settings.R;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class ApplicationFeatureProviderImpl implements ApplicationFeatureProvider {
     private static final String TAG = "AppFeatureProviderImpl";
 
+    private static final String FILTER_POLICY_INSTALLED = "policy_installed";
+    private static final String FILTER_ADMIN_GRANTED_PERMISSIONS = "admin_granted_permissions:";
+
     protected final Context mContext;
     private final PackageManager mPm;
     private final IPackageManager mPms;
     private final DevicePolicyManager mDpm;
     private final UserManager mUm;
+    private final InstalledAppsSnapshot mInstalledApps;
+    // Filters of every count and list asked for so far. They are evaluated together, so that the
+    // enterprise privacy page scans the installed apps once for all of its counts.
+    @GuardedBy("mFilters")
+    private final Map<String, Predicate<ApplicationInfo>> mFilters = new ArrayMap<>();
     /** Flags to use when querying PackageManager for Euicc component implementations. */
     private static final int EUICC_QUERY_FLAGS =
             PackageManager.MATCH_SYSTEM_ONLY | PackageManager.MATCH_DEBUG_TRIAGED_MISSING
@@ -66,12 +81,15 @@ public class ApplicationFeatureProviderImpl implements ApplicationFeatureProvide
         mPms = pms;
         mDpm = dpm;
         mUm = UserManager.get(mContext);
+        mInstalledApps = new InstalledAppsSnapshot(mContext, mPm);
     }
 
     @Override
     public void calculateNumberOfPolicyInstalledApps(boolean async, NumberOfAppsCallback callback) {
+        final String filterKey = addPolicyInstalledFilter();
         final CurrentUserAndManagedProfilePolicyInstalledAppCounter counter =
-                new CurrentUserAndManagedProfilePolicyInstalledAppCounter(mContext, mPm, callback);
+                new CurrentUserAndManagedProfilePolicyInstalledAppCounter(mContext, mPm,
+                        mInstalledApps, () -> filterInstalledApps(filterKey), callback);
         if (async) {
             counter.execute();
         } else {
@@ -81,17 +99,21 @@ public class ApplicationFeatureProviderImpl implements ApplicationFeatureProvide
 
     @Override
     public void listPolicyInstalledApps(ListOfAppsCallback callback) {
+        final String filterKey = addPolicyInstalledFilter();
         final CurrentUserPolicyInstalledAppLister lister =
-                new CurrentUserPolicyInstalledAppLister(mPm, mUm, callback);
+                new CurrentUserPolicyInstalledAppLister(mPm, mUm, mInstalledApps,
+                        () -> filterInstalledApps(filterKey), callback);
         lister.execute();
     }
 
     @Override
     public void calculateNumberOfAppsWithAdminGrantedPermissions(String[] permissions,
             boolean async, NumberOfAppsCallback callback) {
+        final String filterKey = addAdminGrantedPermissionsFilter(permissions);
         final CurrentUserAndManagedProfileAppWithAdminGrantedPermissionsCounter counter =
                 new CurrentUserAndManagedProfileAppWithAdminGrantedPermissionsCounter(mContext,
-                        permissions, mPm, mPms, mDpm, callback);
+                        permissions, mPm, mPms, mDpm, mInstalledApps,
+                        () -> filterInstalledApps(filterKey), callback);
         if (async) {
             counter.execute();
         } else {
@@ -102,12 +124,43 @@ public class ApplicationFeatureProviderImpl implements ApplicationFeatureProvide
     @Override
     public void listAppsWithAdminGrantedPermissions(String[] permissions,
             ListOfAppsCallback callback) {
+        final String filterKey = addAdminGrantedPermissionsFilter(permissions);
         final CurrentUserAppWithAdminGrantedPermissionsLister lister =
                 new CurrentUserAppWithAdminGrantedPermissionsLister(permissions, mPm, mPms, mDpm,
-                        mUm, callback);
+                        mUm, mInstalledApps, () -> filterInstalledApps(filterKey), callback);
         lister.execute();
     }
 
+    private String addPolicyInstalledFilter() {
+        synchronized (mFilters) {
+            mFilters.putIfAbsent(FILTER_POLICY_INSTALLED, info -> InstalledAppCounter
+                    .includeInCount(PackageManager.INSTALL_REASON_POLICY, mPm, info));
+        }
+        return FILTER_POLICY_INSTALLED;
+    }
+
+    private String addAdminGrantedPermissionsFilter(String[] permissions) {
+        final String key = FILTER_ADMIN_GRANTED_PERMISSIONS + Arrays.toString(permissions);
+        final String[] filterPermissions = permissions.clone();
+        synchronized (mFilters) {
+            mFilters.putIfAbsent(key, info -> AppWithAdminGrantedPermissionsCounter
+                    .includeInCount(filterPermissions, mDpm, mPm, mPms, info));
+        }
+        return key;
+    }
+
+    /**
+     * Returns the installed apps matching the filter with {@code key}. Every other filter whose
+     * result is not known yet is evaluated in the same pass.
+     */
+    private List<UserAppInfo> filterInstalledApps(String key) {
+        final Map<String, Predicate<ApplicationInfo>> filters;
+        synchronized (mFilters) {
+            filters = new ArrayMap<>(mFilters);
+        }
+        return mInstalledApps.filter(mUm, filters).get(key);
+    }
+
     @Override
     public List<UserAppInfo> findPersistentPreferredActivities(int userId, Intent[] intents) {
         final List<UserAppInfo> preferredActivities = new ArrayList<>();
@@ -188,14 +241,22 @@ public class ApplicationFeatureProviderImpl implements ApplicationFeatureProvide
 
     private static class CurrentUserAndManagedProfilePolicyInstalledAppCounter
             extends InstalledAppCounter {
+        private final Supplier<List<UserAppInfo>> mApps;
         private NumberOfAppsCallback mCallback;
 
         CurrentUserAndManagedProfilePolicyInstalledAppCounter(Context context,
-                PackageManager packageManager, NumberOfAppsCallback callback) {
-            super(context, PackageManager.INSTALL_REASON_POLICY, packageManager);
+                PackageManager packageManager, InstalledAppsSnapshot installedApps,
+                Supplier<List<UserAppInfo>> apps, NumberOfAppsCallback callback) {
+            super(context, PackageManager.INSTALL_REASON_POLICY, packageManager, installedApps);
+            mApps = apps;
             mCallback = callback;
         }
 
+        @Override
+        protected Integer doInBackground(Void... params) {
+            return mApps.get().size();
+        }
+
         @Override
         protected void onCountComplete(int num) {
             mCallback.onNumberOfAppsResult(num);
@@ -204,16 +265,25 @@ public class ApplicationFeatureProviderImpl implements ApplicationFeatureProvide
 
     private static class CurrentUserAndManagedProfileAppWithAdminGrantedPermissionsCounter
             extends AppWithAdminGrantedPermissionsCounter {
+        private final Supplier<List<UserAppInfo>> mApps;
         private NumberOfAppsCallback mCallback;
 
         CurrentUserAndManagedProfileAppWithAdminGrantedPermissionsCounter(Context context,
                 String[] permissions, PackageManager packageManager,
                 IPackageManager packageManagerService,
-                DevicePolicyManager devicePolicyManager, NumberOfAppsCallback callback) {
-            super(context, permissions, packageManager, packageManagerService, devicePolicyManager);
+                DevicePolicyManager devicePolicyManager, InstalledAppsSnapshot installedApps,
+                Supplier<List<UserAppInfo>> apps, NumberOfAppsCallback callback) {
+            super(context, permissions, packageManager, packageManagerService, devicePolicyManager,
+                    installedApps);
+            mApps = apps;
             mCallback = callback;
         }
 
+        @Override
+        protected Integer doInBackground(Void... params) {
+            return mApps.get().size();
+        }
+
         @Override
         protected void onCountComplete(int num) {
             mCallback.onNumberOfAppsResult(num);
@@ -221,14 +291,22 @@ public class ApplicationFeatureProviderImpl implements ApplicationFeatureProvide
     }
 
     private static class CurrentUserPolicyInstalledAppLister extends InstalledAppLister {
+        private final Supplier<List<UserAppInfo>> mApps;
         private ListOfAppsCallback mCallback;
 
         CurrentUserPolicyInstalledAppLister(PackageManager packageManager,
-                UserManager userManager, ListOfAppsCallback callback) {
-            super(packageManager, userManager);
+                UserManager userManager, InstalledAppsSnapshot installedApps,
+                Supplier<List<UserAppInfo>> apps, ListOfAppsCallback callback) {
+            super(packageManager, userManager, installedApps);
+            mApps = apps;
             mCallback = callback;
         }
 
+        @Override
+        protected List<UserAppInfo> doInBackground(Void... params) {
+            return mApps.get();
+        }
+
         @Override
         protected void onAppListBuilt(List<UserAppInfo> list) {
             mCallback.onListOfAppsResult(list);
@@ -237,17 +315,25 @@ public class ApplicationFeatureProviderImpl implements ApplicationFeatureProvide
 
     private static class CurrentUserAppWithAdminGrantedPermissionsLister extends
             AppWithAdminGrantedPermissionsLister {
+        private final Supplier<List<UserAppInfo>> mApps;
         private ListOfAppsCallback mCallback;
 
         CurrentUserAppWithAdminGrantedPermissionsLister(String[] permissions,
                 PackageManager packageManager, IPackageManager packageManagerService,
                 DevicePolicyManager devicePolicyManager, UserManager userManager,
+                InstalledAppsSnapshot installedApps, Supplier<List<UserAppInfo>> apps,
                 ListOfAppsCallback callback) {
             super(permissions, packageManager, packageManagerService, devicePolicyManager,
-                    userManager);
+                    userManager, installedApps);
+            mApps = apps;
             mCallback = callback;
         }
 
+        @Override
+        protected List<UserAppInfo> doInBackground(Void... params) {
+            return mApps.get();
+        }
+
         @Override
         protected void onAppListBuilt(List<UserAppInfo> list) {
             mCallback.onListOfAppsResult(list);
@@ -34,7 +34,12 @@ public abstract class InstalledAppCounter extends AppCounter {
 
     public InstalledAppCounter(Context context, int installReason,
             PackageManager packageManager) {
-        super(context, packageManager);
+        this(context, installReason, packageManager, new InstalledAppsSnapshot(packageManager));
+    }
+
+    public InstalledAppCounter(Context context, int installReason,
+            PackageManager packageManager, InstalledAppsSnapshot installedApps) {
+        super(context, packageManager, installedApps);
         mInstallReason = installReason;
     }
 
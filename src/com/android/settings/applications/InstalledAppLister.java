@@ -26,6 +26,11 @@ public abstract class InstalledAppLister extends AppLister {
         super(packageManager, userManager);
     }
 
+    public InstalledAppLister(PackageManager packageManager, UserManager userManager,
+            InstalledAppsSnapshot installedApps) {
+        super(packageManager, userManager, installedApps);
+    }
+
     @Override
     protected boolean includeInCount(ApplicationInfo info) {
         return InstalledAppCounter.includeInCount(PackageManager.INSTALL_REASON_POLICY, mPm, info);
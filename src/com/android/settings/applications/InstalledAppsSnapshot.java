@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.ArrayMap;
+import android.util.SparseArray;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.internal.annotations.GuardedBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Snapshot of the applications installed in the current user and its profiles, shared by the
+ * {@link AppCounter}s and {@link AppLister}s that scan them.
+ *
+ * <p>The application list of each profile is loaded once and kept until a package is added,
+ * removed or changed. Filtering it is split into slices that are evaluated in parallel, since the
+ * predicates usually make one or more binder calls per application. Several keyed filters can be
+ * evaluated in the same pass, and their results are kept until the snapshot is invalidated, which
+ * also happens when permissions change.
+ */
+public class InstalledAppsSnapshot {
+
+    private static final int SLICE_SIZE = 32;
+    private static final int MAX_FILTER_THREADS = 4;
+
+    private static ExecutorService sFilterExecutor;
+
+    private final PackageManager mPm;
+
+    // User id -> applications installed for that user.
+    @GuardedBy("this")
+    private final SparseArray<List<ApplicationInfo>> mInstalledApps = new SparseArray<>();
+    // Filter key -> applications matching that filter.
+    @GuardedBy("this")
+    private final Map<String, List<UserAppInfo>> mResults = new ArrayMap<>();
+    @GuardedBy("this")
+    private int mVersion;
+
+    private final PackageManager.OnPermissionsChangedListener mPermissionsChangedListener =
+            uid -> invalidateResults();
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    };
+
+    /**
+     * Creates a snapshot that is not invalidated by package changes. Callers are expected to drop
+     * it together with the results they computed from it.
+     */
+    public InstalledAppsSnapshot(PackageManager packageManager) {
+        mPm = packageManager;
+    }
+
+    /**
+     * Creates a snapshot that is reloaded whenever a package or a profile changes, and whose
+     * filter results are also dropped when permissions change.
+     */
+    public InstalledAppsSnapshot(Context context, PackageManager packageManager) {
+        this(packageManager);
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        context.registerReceiverAsUser(mPackageReceiver, UserHandle.ALL, filter,
+                null /* broadcastPermission */, null /* scheduler */);
+        final IntentFilter profileFilter = new IntentFilter();
+        profileFilter.addAction(Intent.ACTION_MANAGED_PROFILE_ADDED);
+        profileFilter.addAction(Intent.ACTION_MANAGED_PROFILE_REMOVED);
+        context.registerReceiver(mPackageReceiver, profileFilter);
+        // Admin grants and revokes don't send a package broadcast.
+        packageManager.addOnPermissionsChangeListener(mPermissionsChangedListener);
+    }
+
+    /** Returns the applications installed for {@code user}, loading them if needed. */
+    @WorkerThread
+    public synchronized List<ApplicationInfo> getInstalledApplications(UserInfo user) {
+        List<ApplicationInfo> apps = mInstalledApps.get(user.id);
+        if (apps == null) {
+            apps = Collections.unmodifiableList(
+                    mPm.getInstalledApplicationsAsUser(PackageManager.GET_DISABLED_COMPONENTS
+                            | PackageManager.GET_DISABLED_UNTIL_USED_COMPONENTS
+                            | (user.isAdmin() ? PackageManager.MATCH_ANY_USER : 0),
+                            user.id));
+            mInstalledApps.put(user.id, apps);
+        }
+        return apps;
+    }
+
+    /**
+     * Returns the applications of the current user and its profiles that match {@code filter},
+     * in the order they were installed in each profile.
+     */
+    @WorkerThread
+    public List<UserAppInfo> filter(UserManager userManager, Predicate<ApplicationInfo> filter) {
+        return filterAll(userManager, Collections.singletonList(filter)).get(0);
+    }
+
+    /**
+     * Returns, for each of {@code filters}, the applications of the current user and its profiles
+     * that match it. The filters whose result is not known yet are all evaluated in a single pass
+     * over the applications, and their results are kept until {@link #invalidate()}.
+     */
+    @WorkerThread
+    public Map<String, List<UserAppInfo>> filter(UserManager userManager,
+            Map<String, Predicate<ApplicationInfo>> filters) {
+        final Map<String, List<UserAppInfo>> results = new ArrayMap<>(filters.size());
+        final List<String> keys = new ArrayList<>();
+        final List<Predicate<ApplicationInfo>> missingFilters = new ArrayList<>();
+        final int version;
+        synchronized (this) {
+            for (Map.Entry<String, Predicate<ApplicationInfo>> filter : filters.entrySet()) {
+                final List<UserAppInfo> result = mResults.get(filter.getKey());
+                if (result != null) {
+                    results.put(filter.getKey(), result);
+                } else {
+                    keys.add(filter.getKey());
+                    missingFilters.add(filter.getValue());
+                }
+            }
+            version = mVersion;
+        }
+        if (keys.isEmpty()) {
+            return results;
+        }
+        final List<List<UserAppInfo>> missingResults = filterAll(userManager, missingFilters);
+        synchronized (this) {
+            for (int i = 0; i < keys.size(); i++) {
+                final List<UserAppInfo> result =
+                        Collections.unmodifiableList(missingResults.get(i));
+                results.put(keys.get(i), result);
+                // Don't keep results computed while the applications or permissions changed.
+                if (version == mVersion) {
+                    mResults.put(keys.get(i), result);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns, for each of {@code filters} in order, the applications of the current user and its
+     * profiles that match it, evaluating all filters in a single pass.
+     */
+    private List<List<UserAppInfo>> filterAll(UserManager userManager,
+            List<Predicate<ApplicationInfo>> filters) {
+        final List<Future<List<List<UserAppInfo>>>> slices = new ArrayList<>();
+        for (UserInfo user : userManager.getProfiles(UserHandle.myUserId())) {
+            final List<ApplicationInfo> apps = getInstalledApplications(user);
+            if (apps.size() <= SLICE_SIZE) {
+                // Not worth a thread hop.
+                slices.add(CompletableFuture.completedFuture(filterSlice(user, apps, filters)));
+                continue;
+            }
+            for (int start = 0; start < apps.size(); start += SLICE_SIZE) {
+                final List<ApplicationInfo> slice =
+                        apps.subList(start, Math.min(start + SLICE_SIZE, apps.size()));
+                slices.add(getFilterExecutor().submit(() -> filterSlice(user, slice, filters)));
+            }
+        }
+        final List<List<UserAppInfo>> result = new ArrayList<>(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+            result.add(new ArrayList<>());
+        }
+        try {
+            for (Future<List<List<UserAppInfo>>> slice : slices) {
+                final List<List<UserAppInfo>> sliceResult = slice.get();
+                for (int i = 0; i < filters.size(); i++) {
+                    result.get(i).addAll(sliceResult.get(i));
+                }
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<List<List<UserAppInfo>>> slice : slices) {
+                slice.cancel(true /* mayInterruptIfRunning */);
+            }
+            for (List<UserAppInfo> filterResult : result) {
+                filterResult.clear();
+            }
+            // Don't let the partial results be kept.
+            invalidateResults();
+        }
+        return result;
+    }
+
+    /** Drops the application lists of every user and the filter results. */
+    public synchronized void invalidate() {
+        mInstalledApps.clear();
+        invalidateResults();
+    }
+
+    /** Drops the filter results, keeping the application lists. */
+    private synchronized void invalidateResults() {
+        mVersion++;
+        mResults.clear();
+    }
+
+    private static List<List<UserAppInfo>> filterSlice(UserInfo user, List<ApplicationInfo> apps,
+            List<Predicate<ApplicationInfo>> filters) {
+        final List<List<UserAppInfo>> result = new ArrayList<>(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+            result.add(new ArrayList<>());
+        }
+        for (ApplicationInfo info : apps) {
+            for (int i = 0; i < filters.size(); i++) {
+                if (filters.get(i).test(info)) {
+                    result.get(i).add(new UserAppInfo(user, info));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static synchronized ExecutorService getFilterExecutor() {
+        if (sFilterExecutor == null) {
+            sFilterExecutor = Executors.newFixedThreadPool(MAX_FILTER_THREADS);
+        }
+        return sFilterExecutor;
+    }
+}
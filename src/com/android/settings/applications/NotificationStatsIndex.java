@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.usage.IUsageStatsManager;
+import android.app.usage.UsageEvents;
+import android.content.Context;
+import android.os.RemoteException;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Number of notifications each app sent per hour over the last week, kept up to date from the
+ * usage events logged since the previous update.
+ *
+ * <p>The first update of a user reads a week of usage events, later ones only read the events
+ * logged since the last update, so the notification app list doesn't walk a week of events every
+ * time it is opened. The index is saved to a file, which keeps the updates incremental after
+ * Settings restarts.
+ *
+ * <p>Counts are kept per hour, so a week of notifications covers the current hour and the week of
+ * hours before it, which is at most an hour longer than the exact week the usage events were once
+ * queried for.
+ */
+class NotificationStatsIndex {
+
+    private static final String TAG = "NotificationStatsIndex";
+
+    @VisibleForTesting
+    static final String FILE_NAME = "notification_stats_index";
+    /** Bumped whenever the file layout changes. */
+    private static final int FORMAT_VERSION = 2;
+    @VisibleForTesting
+    static final int DAYS_TO_CHECK = 7;
+    private static final long WINDOW_MS = DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK;
+    // One slot per hour of the window, plus one for the current, partial hour.
+    private static final int HOUR_SLOTS = DAYS_TO_CHECK * 24 + 1;
+    /** Updates closer together than this reuse the previous one. */
+    @VisibleForTesting
+    static final long MIN_UPDATE_INTERVAL_MS = 5 * DateUtils.SECOND_IN_MILLIS;
+
+    private static NotificationStatsIndex sInstance;
+
+    private final File mFile;
+    private final SparseArray<UserStats> mUsers = new SparseArray<>();
+    private boolean mLoaded;
+
+    static synchronized NotificationStatsIndex getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NotificationStatsIndex(
+                    new File(context.getApplicationContext().getCacheDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NotificationStatsIndex(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Adds the notifications logged for {@code userId} since the last update, reading a whole
+     * week of usage events if the user was never indexed or the index is out of date.
+     */
+    synchronized void update(IUsageStatsManager usageStatsManager, int userId,
+            String callingPackage, long now) {
+        loadIfNeeded();
+        UserStats user = mUsers.get(userId);
+        if (user != null && now >= user.mCheckpoint
+                && now - user.mCheckpoint < MIN_UPDATE_INTERVAL_MS) {
+            return;
+        }
+        if (user == null || now < user.mCheckpoint || now - user.mCheckpoint > WINDOW_MS) {
+            // Never indexed, or the clock changed or the index is too old to be extended.
+            user = new UserStats();
+            user.mCheckpoint = now - WINDOW_MS;
+            mUsers.put(userId, user);
+        }
+
+        UsageEvents events = null;
+        try {
+            events = usageStatsManager.queryEventsForUser(
+                    user.mCheckpoint, now, userId, callingPackage);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Error querying usage events", e);
+            return;
+        }
+        if (events != null) {
+            final UsageEvents.Event event = new UsageEvents.Event();
+            while (events.hasNextEvent()) {
+                events.getNextEvent(event);
+                if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
+                    user.getOrCreatePackage(event.getPackageName())
+                            .addNotification(event.getTimeStamp());
+                }
+            }
+        }
+        // Usage events are queried up to an exclusive end time, start there next time.
+        user.mCheckpoint = now;
+        user.prune(now);
+        write();
+    }
+
+    /**
+     * Returns the notifications {@code pkg} sent in the week before {@code now}, or null if it
+     * sent none.
+     */
+    @Nullable
+    synchronized NotificationsSentState getSentState(int userId, String pkg, long now) {
+        loadIfNeeded();
+        final UserStats user = mUsers.get(userId);
+        final PackageStats stats = user != null ? user.mPackages.get(pkg) : null;
+        if (stats == null) {
+            return null;
+        }
+        final int sentCount = stats.getSentCount(now);
+        if (sentCount == 0) {
+            return null;
+        }
+        final NotificationsSentState state = new NotificationsSentState();
+        state.sentCount = sentCount;
+        state.lastSent = stats.mLastSent;
+        return state;
+    }
+
+    private static int getHour(long time) {
+        return (int) (time / DateUtils.HOUR_IN_MILLIS);
+    }
+
+    private void loadIfNeeded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            final SparseArray<UserStats> users = new SparseArray<>();
+            final int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                final int userId = in.readInt();
+                final UserStats user = new UserStats();
+                user.mCheckpoint = in.readLong();
+                final int packageCount = in.readInt();
+                for (int j = 0; j < packageCount; j++) {
+                    final PackageStats stats = user.getOrCreatePackage(in.readUTF());
+                    stats.mLastSent = in.readLong();
+                    final int slotCount = in.readInt();
+                    for (int k = 0; k < slotCount; k++) {
+                        final int slot = in.readInt();
+                        if (slot < 0 || slot >= HOUR_SLOTS) {
+                            throw new IOException("Invalid slot " + slot);
+                        }
+                        stats.mHours[slot] = in.readInt();
+                        stats.mCounts[slot] = in.readInt();
+                    }
+                }
+                users.put(userId, user);
+            }
+            for (int i = 0; i < users.size(); i++) {
+                mUsers.put(users.keyAt(i), users.valueAt(i));
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing indexed yet.
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read notification stats index", e);
+        }
+    }
+
+    private void write() {
+        final File tmpFile = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(mUsers.size());
+            for (int i = 0; i < mUsers.size(); i++) {
+                final UserStats user = mUsers.valueAt(i);
+                out.writeInt(mUsers.keyAt(i));
+                out.writeLong(user.mCheckpoint);
+                out.writeInt(user.mPackages.size());
+                for (Map.Entry<String, PackageStats> entry : user.mPackages.entrySet()) {
+                    final PackageStats stats = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(stats.mLastSent);
+                    // Most hours have no notification, only write the others.
+                    out.writeInt(stats.getUsedSlotCount());
+                    for (int slot = 0; slot < HOUR_SLOTS; slot++) {
+                        if (stats.mCounts[slot] > 0) {
+                            out.writeInt(slot);
+                            out.writeInt(stats.mHours[slot]);
+                            out.writeInt(stats.mCounts[slot]);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write notification stats index", e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(mFile)) {
+            Log.w(TAG, "Failed to replace notification stats index");
+            tmpFile.delete();
+        }
+    }
+
+    private static class UserStats {
+        // Usage events before this time are already counted.
+        private long mCheckpoint;
+        private final ArrayMap<String, PackageStats> mPackages = new ArrayMap<>();
+
+        PackageStats getOrCreatePackage(String pkg) {
+            PackageStats stats = mPackages.get(pkg);
+            if (stats == null) {
+                stats = new PackageStats();
+                mPackages.put(pkg, stats);
+            }
+            return stats;
+        }
+
+        /** Drops the apps that sent no notification in the last week. */
+        void prune(long now) {
+            final Iterator<PackageStats> iterator = mPackages.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getSentCount(now) == 0) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static class PackageStats {
+        private long mLastSent;
+        // Ring of hourly counts, indexed by hour modulo HOUR_SLOTS. Each slot remembers its hour
+        // so that counts of an hour that left the window are never added up.
+        private final int[] mHours = new int[HOUR_SLOTS];
+        private final int[] mCounts = new int[HOUR_SLOTS];
+
+        void addNotification(long time) {
+            final int hour = getHour(time);
+            final int slot = hour % HOUR_SLOTS;
+            if (mHours[slot] != hour) {
+                mHours[slot] = hour;
+                mCounts[slot] = 0;
+            }
+            mCounts[slot]++;
+            mLastSent = Math.max(mLastSent, time);
+        }
+
+        int getSentCount(long now) {
+            final int firstHour = getHour(now - WINDOW_MS);
+            int sentCount = 0;
+            for (int slot = 0; slot < HOUR_SLOTS; slot++) {
+                if (mHours[slot] >= firstHour) {
+                    sentCount += mCounts[slot];
+                }
+            }
+            return sentCount;
+        }
+
+        int getUsedSlotCount() {
+            int usedSlotCount = 0;
+            for (int slot = 0; slot < HOUR_SLOTS; slot++) {
+                if (mCounts[slot] > 0) {
+                    usedSlotCount++;
+                }
+            }
+            return usedSlotCount;
+        }
+    }
+}
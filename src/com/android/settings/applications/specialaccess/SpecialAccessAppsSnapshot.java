@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.specialaccess;
+
+import static android.content.pm.PackageManager.GET_ACTIVITIES;
+
+import android.app.ApplicationPackageManager;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.ArrayMap;
+import android.util.IconDrawableFactory;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Process-wide snapshot of the packages installed for each user, with the labels and icons of the
+ * apps that the special app access screens show.
+ *
+ * <p>The packages of a user are read once, with their activities, and then kept up to date from
+ * package broadcasts: a package that is added, changed or removed is read again on its own, the
+ * next time the packages of its user are needed, rather than the whole user being scanned again.
+ * This lets the special app access screens share one scan, so moving from one to another doesn't
+ * walk PackageManager each time.
+ *
+ * <p>Labels and icons are resolved on demand, in the background, and kept in a bounded LRU cache
+ * that is cleared for a package whenever it changes.
+ */
+public class SpecialAccessAppsSnapshot {
+
+    private static final int PACKAGE_FLAGS = GET_ACTIVITIES;
+    private static final int MAX_CACHED_APPS = 200;
+
+    private static SpecialAccessAppsSnapshot sInstance;
+
+    private final Context mContext;
+    private final PackageManager mPm;
+    private final IconDrawableFactory mIconDrawableFactory;
+
+    @GuardedBy("this")
+    private final SparseArray<List<PackageInfo>> mPackages = new SparseArray<>();
+    // User id -> packages that changed since they were read, with the change that was seen last.
+    @GuardedBy("this")
+    private final SparseArray<ArrayMap<String, Integer>> mChangedPackages = new SparseArray<>();
+    @GuardedBy("this")
+    private int mChangeCount;
+    // Bumped whenever everything is dropped, so that a scan that raced with it is not kept.
+    @GuardedBy("this")
+    private int mVersion;
+    private final LruCache<String, AppEntry> mAppEntries = new LruCache<>(MAX_CACHED_APPS);
+    private final LruCache<String, ComponentEntry> mComponentEntries =
+            new LruCache<>(MAX_CACHED_APPS);
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            final String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName == null) {
+                return;
+            }
+            final int userId = getSendingUserId();
+            if (userId == UserHandle.USER_ALL) {
+                invalidate();
+                return;
+            }
+            onPackageChanged(packageName, userId);
+        }
+    };
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_LOCALE_CHANGED.equals(intent.getAction())) {
+                // Only the labels depend on the locale.
+                mAppEntries.evictAll();
+                mComponentEntries.evictAll();
+                return;
+            }
+            invalidate();
+        }
+    };
+
+    /** Returns the snapshot for the package manager of {@code context}. */
+    public static synchronized SpecialAccessAppsSnapshot getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final PackageManager packageManager = appContext.getPackageManager();
+        if (sInstance == null || sInstance.mPm != packageManager) {
+            sInstance = new SpecialAccessAppsSnapshot(appContext, packageManager);
+            sInstance.startMonitoring();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the snapshot if {@code packageManager} is the platform package manager, whose
+     * results the snapshot shares, or null for an overridden one.
+     */
+    @Nullable
+    public static SpecialAccessAppsSnapshot getInstanceFor(Context context,
+            PackageManager packageManager) {
+        if (packageManager == null
+                || packageManager.getClass() != ApplicationPackageManager.class) {
+            return null;
+        }
+        return getInstance(context);
+    }
+
+    @VisibleForTesting
+    SpecialAccessAppsSnapshot(Context context, PackageManager packageManager) {
+        mContext = context;
+        mPm = packageManager;
+        mIconDrawableFactory = IconDrawableFactory.newInstance(context);
+    }
+
+    /**
+     * Reads the packages of the current user and its profiles in the background, unless they are
+     * already known.
+     */
+    public void prefetch() {
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final UserManager userManager = mContext.getSystemService(UserManager.class);
+            for (UserInfo user : userManager.getProfiles(UserHandle.myUserId())) {
+                getInstalledPackages(user.id);
+            }
+        });
+    }
+
+    /**
+     * Returns the packages installed for {@code userId}, with their activities, reading them if
+     * they are not known yet.
+     */
+    @WorkerThread
+    public List<PackageInfo> getInstalledPackages(int userId) {
+        List<PackageInfo> packages;
+        final int version;
+        synchronized (this) {
+            packages = mPackages.get(userId);
+            version = mVersion;
+            if (packages != null && getChangedPackages(userId).isEmpty()) {
+                return packages;
+            }
+        }
+        if (packages == null) {
+            // Read outside of the lock, so package broadcasts never wait on the scan. Packages
+            // that change meanwhile stay marked, and are read again below.
+            packages = Collections.unmodifiableList(
+                    new ArrayList<>(mPm.getInstalledPackagesAsUser(PACKAGE_FLAGS, userId)));
+            synchronized (this) {
+                if (version != mVersion) {
+                    return packages;
+                }
+                mPackages.put(userId, packages);
+            }
+        }
+        return applyChangedPackages(userId, packages, version);
+    }
+
+    /**
+     * Returns the label, title and badged icon of {@code info} for {@code userId}, resolving them
+     * if they are not cached.
+     */
+    @WorkerThread
+    public AppEntry getAppEntry(ApplicationInfo info, int userId) {
+        final String key = getKey(info.packageName, userId);
+        AppEntry entry = mAppEntries.get(key);
+        if (entry == null) {
+            final CharSequence label = info.loadLabel(mPm);
+            entry = new AppEntry(info, userId, label,
+                    mPm.getUserBadgedLabel(label, UserHandle.of(userId)),
+                    mIconDrawableFactory.getBadgedIcon(info, userId));
+            mAppEntries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the label and badged icon of {@code component} for {@code userId}, resolving them
+     * with the given loaders if they are not cached.
+     */
+    public ComponentEntry getComponentEntry(ComponentName component, int userId,
+            Function<PackageManager, CharSequence> labelLoader,
+            Function<PackageManager, Drawable> iconLoader) {
+        final String key = getKey(component.getPackageName(), userId) + "/"
+                + component.getClassName();
+        ComponentEntry entry = mComponentEntries.get(key);
+        if (entry == null) {
+            entry = new ComponentEntry(labelLoader.apply(mPm),
+                    mPm.getUserBadgedIcon(iconLoader.apply(mPm), UserHandle.of(userId)));
+            mComponentEntries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /** Drops everything, so that it is read again when next needed. */
+    public void invalidate() {
+        synchronized (this) {
+            mVersion++;
+            mPackages.clear();
+            mChangedPackages.clear();
+        }
+        mAppEntries.evictAll();
+        mComponentEntries.evictAll();
+    }
+
+    /**
+     * Marks {@code packageName} as added, changed or removed for {@code userId}. Only that package
+     * is read again, the next time the packages of the user are needed.
+     */
+    @VisibleForTesting
+    void onPackageChanged(String packageName, int userId) {
+        final String key = getKey(packageName, userId);
+        mAppEntries.remove(key);
+        for (String componentKey : mComponentEntries.snapshot().keySet()) {
+            if (componentKey.startsWith(key + "/")) {
+                mComponentEntries.remove(componentKey);
+            }
+        }
+        synchronized (this) {
+            getChangedPackages(userId).put(packageName, ++mChangeCount);
+        }
+    }
+
+    private List<PackageInfo> applyChangedPackages(int userId, List<PackageInfo> packages,
+            int version) {
+        final ArrayMap<String, Integer> changes;
+        synchronized (this) {
+            changes = new ArrayMap<>(getChangedPackages(userId));
+        }
+        if (changes.isEmpty()) {
+            return packages;
+        }
+        final ArrayMap<String, PackageInfo> changedInfos = new ArrayMap<>(changes.size());
+        for (String packageName : changes.keySet()) {
+            try {
+                changedInfos.put(packageName,
+                        mPm.getPackageInfoAsUser(packageName, PACKAGE_FLAGS, userId));
+            } catch (PackageManager.NameNotFoundException e) {
+                // Removed.
+                changedInfos.put(packageName, null);
+            }
+        }
+
+        final List<PackageInfo> updatedPackages = new ArrayList<>(packages.size() + 1);
+        for (PackageInfo info : packages) {
+            if (!changedInfos.containsKey(info.packageName)) {
+                updatedPackages.add(info);
+            }
+        }
+        for (PackageInfo info : changedInfos.values()) {
+            if (info != null) {
+                updatedPackages.add(info);
+            }
+        }
+        final List<PackageInfo> result = Collections.unmodifiableList(updatedPackages);
+        synchronized (this) {
+            if (version != mVersion || mPackages.get(userId) != packages) {
+                // Dropped or updated by someone else meanwhile.
+                return result;
+            }
+            mPackages.put(userId, result);
+            // Keep the packages that changed again while they were read, for the next time.
+            final ArrayMap<String, Integer> pendingChanges = getChangedPackages(userId);
+            for (int i = 0; i < changes.size(); i++) {
+                final String packageName = changes.keyAt(i);
+                if (changes.valueAt(i).equals(pendingChanges.get(packageName))) {
+                    pendingChanges.remove(packageName);
+                }
+            }
+        }
+        return result;
+    }
+
+    @GuardedBy("this")
+    private ArrayMap<String, Integer> getChangedPackages(int userId) {
+        ArrayMap<String, Integer> changes = mChangedPackages.get(userId);
+        if (changes == null) {
+            changes = new ArrayMap<>();
+            mChangedPackages.put(userId, changes);
+        }
+        return changes;
+    }
+
+    private static String getKey(String packageName, int userId) {
+        return userId + "/" + packageName;
+    }
+
+    private void startMonitoring() {
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addDataScheme("package");
+        mContext.registerReceiverAsUser(mPackageReceiver, UserHandle.ALL, packageFilter,
+                null /* broadcastPermission */, null /* scheduler */);
+
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_EXTERNAL_APPLICATIONS_AVAILABLE);
+        filter.addAction(Intent.ACTION_EXTERNAL_APPLICATIONS_UNAVAILABLE);
+        filter.addAction(Intent.ACTION_USER_REMOVED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        mContext.registerReceiverAsUser(mReceiver, UserHandle.ALL, filter,
+                null /* broadcastPermission */, null /* scheduler */);
+    }
+
+    /** An app of one user, as shown in the special app access lists. */
+    public static class AppEntry {
+        public final ApplicationInfo info;
+        public final int userId;
+        public final CharSequence label;
+        /** The label, badged for apps of a work profile. */
+        public final CharSequence title;
+        public final Drawable icon;
+
+        AppEntry(ApplicationInfo info, int userId, CharSequence label, CharSequence title,
+                Drawable icon) {
+            this.info = info;
+            this.userId = userId;
+            this.label = label;
+            this.title = title;
+            this.icon = icon;
+        }
+    }
+
+    /** A component of an app of one user, such as a device admin receiver. */
+    public static class ComponentEntry {
+        public final CharSequence label;
+        /** The icon, badged for components of a work profile. */
+        public final Drawable icon;
+
+        ComponentEntry(CharSequence label, Drawable icon) {
+            this.label = label;
+            this.icon = icon;
+        }
+    }
+}
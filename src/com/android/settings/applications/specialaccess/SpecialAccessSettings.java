@@ -17,6 +17,7 @@
 package com.android.settings.applications.specialaccess;
 
 import android.app.settings.SettingsEnums;
+import android.content.Context;
 
 import com.android.settings.R;
 import com.android.settings.dashboard.DashboardFragment;
@@ -28,6 +29,13 @@ public class SpecialAccessSettings extends DashboardFragment {
 
     private static final String TAG = "SpecialAccessSettings";
 
+    @Override
+    public void onAttach(Context context) {
+        super.onAttach(context);
+        // Most of the screens this leads to list installed apps, read them ahead.
+        SpecialAccessAppsSnapshot.getInstance(context).prefetch();
+    }
+
     @Override
     protected String getLogTag() {
         return TAG;
@@ -26,6 +26,9 @@ import android.graphics.drawable.Drawable;
 import android.os.UserHandle;
 import android.util.Log;
 
+import com.android.settings.applications.specialaccess.SpecialAccessAppsSnapshot;
+import com.android.settings.applications.specialaccess.SpecialAccessAppsSnapshot.ComponentEntry;
+
 class DeviceAdminListItem implements Comparable<DeviceAdminListItem> {
 
     private static final String TAG = "DeviceAdminListItem";
@@ -44,13 +47,22 @@ class DeviceAdminListItem implements Comparable<DeviceAdminListItem> {
         mKey = mUserHandle.getIdentifier() + "@" + mInfo.getComponent().flattenToString();
         mDPM = (DevicePolicyManager) context.getSystemService(Context.DEVICE_POLICY_SERVICE);
         final PackageManager pm = context.getPackageManager();
-        mName = mInfo.loadLabel(pm);
+        final SpecialAccessAppsSnapshot appsSnapshot =
+                SpecialAccessAppsSnapshot.getInstanceFor(context, pm);
+        if (appsSnapshot != null) {
+            final ComponentEntry entry = appsSnapshot.getComponentEntry(mInfo.getComponent(),
+                    mUserHandle.getIdentifier(), mInfo::loadLabel, mInfo::loadIcon);
+            mName = entry.label;
+            mIcon = entry.icon;
+        } else {
+            mName = mInfo.loadLabel(pm);
+            mIcon = pm.getUserBadgedIcon(mInfo.loadIcon(pm), mUserHandle);
+        }
         try {
             mDescription = mInfo.loadDescription(pm);
         } catch (Resources.NotFoundException exception) {
             Log.w(TAG, "Setting description to null because can't find resource: " + mKey);
         }
-        mIcon = pm.getUserBadgedIcon(mInfo.loadIcon(pm), mUserHandle);
     }
 
     @Override
@@ -28,9 +28,7 @@ import android.content.pm.UserInfo;
 import android.os.Bundle;
 import android.os.UserHandle;
 import android.os.UserManager;
-import android.util.IconDrawableFactory;
 import android.util.Pair;
-import android.view.View;
 
 import androidx.preference.Preference;
 import androidx.preference.Preference.OnPreferenceClickListener;
@@ -38,9 +36,12 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.applications.AppInfoBase;
+import com.android.settings.applications.specialaccess.SpecialAccessAppsSnapshot;
+import com.android.settings.applications.specialaccess.SpecialAccessAppsSnapshot.AppEntry;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.widget.EmptyTextSettings;
 import com.android.settingslib.search.SearchIndexable;
+import com.android.settingslib.utils.ThreadUtils;
 import com.android.settingslib.widget.AppPreference;
 
 import java.util.ArrayList;
@@ -52,7 +53,9 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
     private PackageManager mPackageManager;
     private UserManager mUserManager;
     private CrossProfileApps mCrossProfileApps;
-    private IconDrawableFactory mIconDrawableFactory;
+    private SpecialAccessAppsSnapshot mAppsSnapshot;
+    // Bumped on every load, so that only the latest one is shown.
+    private int mLoadGeneration;
 
     @Override
     public void onCreate(Bundle icicle) {
@@ -61,30 +64,52 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
         mContext = getContext();
         mPackageManager = mContext.getPackageManager();
         mUserManager = mContext.getSystemService(UserManager.class);
-        mIconDrawableFactory = IconDrawableFactory.newInstance(mContext);
         mCrossProfileApps = mContext.getSystemService(CrossProfileApps.class);
+        mAppsSnapshot = SpecialAccessAppsSnapshot.getInstance(mContext);
     }
 
     @Override
     public void onResume() {
         super.onResume();
 
+        // Collect the apps with their labels and icons off the main thread.
+        final int generation = ++mLoadGeneration;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final ArrayList<Pair<ApplicationInfo, UserHandle>> crossProfileApps =
+                    collectConfigurableApps(mPackageManager, mUserManager, mCrossProfileApps,
+                            mAppsSnapshot);
+            final List<AppEntry> entries = new ArrayList<>(crossProfileApps.size());
+            for (Pair<ApplicationInfo, UserHandle> appData : crossProfileApps) {
+                entries.add(mAppsSnapshot.getAppEntry(appData.first,
+                        appData.second.getIdentifier()));
+            }
+            ThreadUtils.postOnMainThread(() -> {
+                if (generation == mLoadGeneration) {
+                    showConfigurableApps(entries);
+                }
+            });
+        });
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Drop a load that is still running.
+        mLoadGeneration++;
+    }
+
+    private void showConfigurableApps(List<AppEntry> entries) {
         final PreferenceScreen screen = getPreferenceScreen();
         screen.removeAll();
 
-        final ArrayList<Pair<ApplicationInfo, UserHandle>> crossProfileApps =
-                collectConfigurableApps(mPackageManager, mUserManager, mCrossProfileApps);
-
         final Context prefContext = getPrefContext();
-        for (final Pair<ApplicationInfo, UserHandle> appData : crossProfileApps) {
-            final ApplicationInfo appInfo = appData.first;
-            final UserHandle user = appData.second;
+        for (final AppEntry entry : entries) {
+            final ApplicationInfo appInfo = entry.info;
             final String packageName = appInfo.packageName;
-            final CharSequence label = appInfo.loadLabel(mPackageManager);
 
             final Preference pref = new AppPreference(prefContext);
-            pref.setIcon(mIconDrawableFactory.getBadgedIcon(appInfo, user.getIdentifier()));
-            pref.setTitle(mPackageManager.getUserBadgedLabel(label, user));
+            pref.setIcon(entry.icon);
+            pref.setTitle(entry.title);
             pref.setSummary(InteractAcrossProfilesDetails.getPreferenceSummary(
                     prefContext, packageName));
             pref.setOnPreferenceClickListener(new OnPreferenceClickListener() {
@@ -102,11 +127,7 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
             });
             screen.addPreference(pref);
         }
-    }
-
-    @Override
-    public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
-        super.onViewCreated(view, savedInstanceState);
+        // Only set once the apps are loaded, so that it doesn't show meanwhile.
         setEmptyText(R.string.interact_across_profiles_empty_text);
     }
 
@@ -127,6 +148,17 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
     static ArrayList<Pair<ApplicationInfo, UserHandle>> collectConfigurableApps(
             PackageManager packageManager, UserManager userManager,
             CrossProfileApps crossProfileApps) {
+        return collectConfigurableApps(packageManager, userManager, crossProfileApps,
+                null /* appsSnapshot */);
+    }
+
+    /**
+     * Same as {@link #collectConfigurableApps(PackageManager, UserManager, CrossProfileApps)},
+     * reading the installed packages from {@code appsSnapshot} if not null.
+     */
+    static ArrayList<Pair<ApplicationInfo, UserHandle>> collectConfigurableApps(
+            PackageManager packageManager, UserManager userManager,
+            CrossProfileApps crossProfileApps, @Nullable SpecialAccessAppsSnapshot appsSnapshot) {
         final UserHandle workProfile = getWorkProfile(userManager);
         if (workProfile == null) {
             return new ArrayList<>();
@@ -138,7 +170,7 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
 
         final ArrayList<Pair<ApplicationInfo, UserHandle>> apps = new ArrayList<>();
         for (PackageInfo packageInfo : getAllInstalledPackages(
-                packageManager, personalProfile, workProfile)) {
+                packageManager, appsSnapshot, personalProfile, workProfile)) {
             if (crossProfileApps.canUserAttemptToConfigureInteractAcrossProfiles(
                     packageInfo.packageName)) {
                 apps.add(new Pair<>(packageInfo.applicationInfo, personalProfile));
@@ -148,11 +180,12 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
     }
 
     private static List<PackageInfo> getAllInstalledPackages(
-            PackageManager packageManager, UserHandle personalProfile, UserHandle workProfile) {
-        List<PackageInfo> personalPackages = packageManager.getInstalledPackagesAsUser(
-                GET_ACTIVITIES, personalProfile.getIdentifier());
-        List<PackageInfo> workPackages = packageManager.getInstalledPackagesAsUser(
-                GET_ACTIVITIES, workProfile.getIdentifier());
+            PackageManager packageManager, @Nullable SpecialAccessAppsSnapshot appsSnapshot,
+            UserHandle personalProfile, UserHandle workProfile) {
+        List<PackageInfo> personalPackages = getInstalledPackages(
+                packageManager, appsSnapshot, personalProfile);
+        List<PackageInfo> workPackages = getInstalledPackages(
+                packageManager, appsSnapshot, workProfile);
         List<PackageInfo> allPackages = new ArrayList<>(personalPackages);
         for (PackageInfo workPackage : workPackages) {
             if (allPackages.stream().noneMatch(
@@ -163,6 +196,14 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
         return allPackages;
     }
 
+    private static List<PackageInfo> getInstalledPackages(
+            PackageManager packageManager, @Nullable SpecialAccessAppsSnapshot appsSnapshot,
+            UserHandle user) {
+        return appsSnapshot != null
+                ? appsSnapshot.getInstalledPackages(user.getIdentifier())
+                : packageManager.getInstalledPackagesAsUser(GET_ACTIVITIES, user.getIdentifier());
+    }
+
     /**
      * @return the number of applications that can interact across profiles.
      */
@@ -178,7 +219,8 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
             return 0;
         }
         final ArrayList<Pair<ApplicationInfo, UserHandle>> apps =
-                collectConfigurableApps(packageManager, userManager, crossProfileApps);
+                collectConfigurableApps(packageManager, userManager, crossProfileApps,
+                        SpecialAccessAppsSnapshot.getInstanceFor(context, packageManager));
         apps.removeIf(
                 app -> !InteractAcrossProfilesDetails.isInteractAcrossProfilesEnabled(
                         context, app.first.packageName)
@@ -28,9 +28,7 @@ import android.content.pm.UserInfo;
 import android.os.Bundle;
 import android.os.UserHandle;
 import android.os.UserManager;
-import android.util.IconDrawableFactory;
 import android.util.Pair;
-import android.view.View;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
@@ -39,9 +37,12 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.applications.AppInfoBase;
+import com.android.settings.applications.specialaccess.SpecialAccessAppsSnapshot;
+import com.android.settings.applications.specialaccess.SpecialAccessAppsSnapshot.AppEntry;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.widget.EmptyTextSettings;
 import com.android.settingslib.search.SearchIndexable;
+import com.android.settingslib.utils.ThreadUtils;
 import com.android.settingslib.widget.AppPreference;
 
 import java.text.Collator;
@@ -68,16 +69,23 @@ public class PictureInPictureSettings extends EmptyTextSettings {
 
         private final Collator mCollator = Collator.getInstance();
         private final PackageManager mPm;
+        private final SpecialAccessAppsSnapshot mAppsSnapshot;
 
         public AppComparator(PackageManager pm) {
+            this(pm, null /* appsSnapshot */);
+        }
+
+        /** Compares the labels cached by {@code appsSnapshot}, if not null. */
+        AppComparator(PackageManager pm, @Nullable SpecialAccessAppsSnapshot appsSnapshot) {
             mPm = pm;
+            mAppsSnapshot = appsSnapshot;
         }
 
         public final int compare(Pair<ApplicationInfo, Integer> a,
                 Pair<ApplicationInfo, Integer> b) {
-            CharSequence sa = a.first.loadLabel(mPm);
+            CharSequence sa = getLabel(a);
             if (sa == null) sa = a.first.name;
-            CharSequence sb = b.first.loadLabel(mPm);
+            CharSequence sb = getLabel(b);
             if (sb == null) sb = b.first.name;
             int nameCmp = mCollator.compare(sa.toString(), sb.toString());
             if (nameCmp != 0) {
@@ -86,12 +94,20 @@ public class PictureInPictureSettings extends EmptyTextSettings {
                 return a.second - b.second;
             }
         }
+
+        private CharSequence getLabel(Pair<ApplicationInfo, Integer> app) {
+            return mAppsSnapshot != null
+                    ? mAppsSnapshot.getAppEntry(app.first, app.second).label
+                    : app.first.loadLabel(mPm);
+        }
     }
 
     private Context mContext;
     private PackageManager mPackageManager;
     private UserManager mUserManager;
-    private IconDrawableFactory mIconDrawableFactory;
+    private SpecialAccessAppsSnapshot mAppsSnapshot;
+    // Bumped on every load, so that only the latest one is shown.
+    private int mLoadGeneration;
 
     /**
      * @return true if the package has any activities that declare that they support
@@ -133,35 +149,54 @@ public class PictureInPictureSettings extends EmptyTextSettings {
         mContext = getActivity();
         mPackageManager = mContext.getPackageManager();
         mUserManager = (UserManager) mContext.getSystemService(Context.USER_SERVICE);
-        mIconDrawableFactory = IconDrawableFactory.newInstance(mContext);
+        mAppsSnapshot = SpecialAccessAppsSnapshot.getInstance(mContext);
     }
 
     @Override
     public void onResume() {
         super.onResume();
 
+        // Fetch the set of applications for each profile which have at least one activity that
+        // declare that they support picture-in-picture, with their labels and icons, off the main
+        // thread.
+        final int generation = ++mLoadGeneration;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final ArrayList<Pair<ApplicationInfo, Integer>> pipApps =
+                    collectPipApps(UserHandle.myUserId());
+            Collections.sort(pipApps, new AppComparator(mPackageManager, mAppsSnapshot));
+            final List<AppEntry> entries = new ArrayList<>(pipApps.size());
+            for (Pair<ApplicationInfo, Integer> appData : pipApps) {
+                entries.add(mAppsSnapshot.getAppEntry(appData.first, appData.second));
+            }
+            ThreadUtils.postOnMainThread(() -> {
+                if (generation == mLoadGeneration) {
+                    showPipApps(entries);
+                }
+            });
+        });
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Drop a load that is still running.
+        mLoadGeneration++;
+    }
+
+    private void showPipApps(List<AppEntry> entries) {
         // Clear the prefs
         final PreferenceScreen screen = getPreferenceScreen();
         screen.removeAll();
 
-        // Fetch the set of applications for each profile which have at least one activity that
-        // declare that they support picture-in-picture
-        final ArrayList<Pair<ApplicationInfo, Integer>> pipApps =
-                collectPipApps(UserHandle.myUserId());
-        Collections.sort(pipApps, new AppComparator(mPackageManager));
-
         // Rebuild the list of prefs
         final Context prefContext = getPrefContext();
-        for (final Pair<ApplicationInfo, Integer> appData : pipApps) {
-            final ApplicationInfo appInfo = appData.first;
-            final int userId = appData.second;
-            final UserHandle user = UserHandle.of(userId);
+        for (final AppEntry entry : entries) {
+            final ApplicationInfo appInfo = entry.info;
             final String packageName = appInfo.packageName;
-            final CharSequence label = appInfo.loadLabel(mPackageManager);
 
             final Preference pref = new AppPreference(prefContext);
-            pref.setIcon(mIconDrawableFactory.getBadgedIcon(appInfo, userId));
-            pref.setTitle(mPackageManager.getUserBadgedLabel(label, user));
+            pref.setIcon(entry.icon);
+            pref.setTitle(entry.title);
             pref.setSummary(PictureInPictureDetails.getPreferenceSummary(prefContext,
                     appInfo.uid, packageName));
             pref.setOnPreferenceClickListener(new OnPreferenceClickListener() {
@@ -175,11 +210,7 @@ public class PictureInPictureSettings extends EmptyTextSettings {
             });
             screen.addPreference(pref);
         }
-    }
-
-    @Override
-    public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
-        super.onViewCreated(view, savedInstanceState);
+        // Only set once the apps are loaded, so that it doesn't show meanwhile.
         setEmptyText(R.string.picture_in_picture_empty_text);
     }
 
@@ -205,8 +236,9 @@ public class PictureInPictureSettings extends EmptyTextSettings {
         }
 
         for (int id : userIds) {
-            final List<PackageInfo> installedPackages = mPackageManager.getInstalledPackagesAsUser(
-                    GET_ACTIVITIES, id);
+            final List<PackageInfo> installedPackages = mAppsSnapshot != null
+                    ? mAppsSnapshot.getInstalledPackages(id)
+                    : mPackageManager.getInstalledPackagesAsUser(GET_ACTIVITIES, id);
             for (PackageInfo packageInfo : installedPackages) {
                 if (checkPackageHasPictureInPictureActivities(packageInfo.packageName,
                         packageInfo.activities)) {
@@ -27,9 +27,11 @@ import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
@@ -45,6 +47,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Abstract class to consolidate utility between preference controllers and act as an interface
@@ -119,6 +122,11 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      */
     public static final int DISABLED_DEPENDENT_SETTING = 5;
 
+    // Constructors resolved by createInstance(), by controller class name. A null value records
+    // that the class has no such constructor.
+    private static final Map<String, Constructor<?>> sContextConstructors = new ArrayMap<>();
+    private static final Map<String, Constructor<?>> sKeyedConstructors = new ArrayMap<>();
+
     protected final String mPreferenceKey;
     protected UiBlockListener mUiBlockListener;
     private boolean mIsForWork;
@@ -134,9 +142,8 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     public static BasePreferenceController createInstance(Context context,
             String controllerName, String key) {
         try {
-            final Class<?> clazz = Class.forName(controllerName);
             final Constructor<?> preferenceConstructor =
-                    clazz.getConstructor(Context.class, String.class);
+                    getConstructor(controllerName, true /* withKey */);
             final Object[] params = new Object[]{context, key};
             return (BasePreferenceController) preferenceConstructor.newInstance(params);
         } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException |
@@ -153,8 +160,8 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      */
     public static BasePreferenceController createInstance(Context context, String controllerName) {
         try {
-            final Class<?> clazz = Class.forName(controllerName);
-            final Constructor<?> preferenceConstructor = clazz.getConstructor(Context.class);
+            final Constructor<?> preferenceConstructor =
+                    getConstructor(controllerName, false /* withKey */);
             final Object[] params = new Object[]{context};
             return (BasePreferenceController) preferenceConstructor.newInstance(params);
         } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException |
@@ -177,9 +184,8 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     public static BasePreferenceController createInstance(Context context, String controllerName,
             String key, boolean isWorkProfile) {
         try {
-            final Class<?> clazz = Class.forName(controllerName);
             final Constructor<?> preferenceConstructor =
-                    clazz.getConstructor(Context.class, String.class);
+                    getConstructor(controllerName, true /* withKey */);
             final Object[] params = new Object[]{context, key};
             final BasePreferenceController controller =
                     (BasePreferenceController) preferenceConstructor.newInstance(params);
@@ -192,6 +198,62 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
         }
     }
 
+    /**
+     * Returns whether the controller has a constructor taking a {@link Context} and, if
+     * {@code withKey}, a preference key, without throwing when it does not.
+     */
+    static boolean hasConstructor(String controllerName, boolean withKey) {
+        try {
+            getConstructor(controllerName, withKey);
+            return true;
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolves a controller constructor by reflection once per process, as every page opening
+     * instantiates its xml controllers again.
+     */
+    private static Constructor<?> getConstructor(String controllerName, boolean withKey)
+            throws ClassNotFoundException, NoSuchMethodException {
+        final Map<String, Constructor<?>> constructors =
+                withKey ? sKeyedConstructors : sContextConstructors;
+        synchronized (constructors) {
+            if (constructors.containsKey(controllerName)) {
+                final Constructor<?> constructor = constructors.get(controllerName);
+                if (constructor == null) {
+                    throw new NoSuchMethodException(controllerName);
+                }
+                return constructor;
+            }
+        }
+        Constructor<?> constructor = null;
+        try {
+            final Class<?> clazz = Class.forName(controllerName);
+            constructor = withKey
+                    ? clazz.getConstructor(Context.class, String.class)
+                    : clazz.getConstructor(Context.class);
+            return constructor;
+        } finally {
+            // Also remember failures, so that a missing constructor is not looked up again.
+            synchronized (constructors) {
+                constructors.put(controllerName, constructor);
+            }
+        }
+    }
+
+    /** Drops the constructors resolved so far, so that they are looked up again. */
+    @VisibleForTesting
+    public static void clearConstructorCache() {
+        synchronized (sContextConstructors) {
+            sContextConstructors.clear();
+        }
+        synchronized (sKeyedConstructors) {
+            sKeyedConstructors.clear();
+        }
+    }
+
     public BasePreferenceController(Context context, String preferenceKey) {
         super(context);
         mPreferenceKey = preferenceKey;
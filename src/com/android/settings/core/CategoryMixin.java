@@ -25,21 +25,18 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.net.Uri;
 import android.os.AsyncTask;
-import android.text.TextUtils;
 import android.util.ArraySet;
-import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.android.settings.dashboard.CategoryManager;
-import com.android.settingslib.drawer.Tile;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -75,7 +72,7 @@ public class CategoryMixin implements LifecycleObserver {
         filter.addDataScheme(DATA_SCHEME_PKG);
         mContext.registerReceiver(mPackageReceiver, filter);
 
-        updateCategories();
+        updateCategories(false /* forceReload */);
     }
 
     /**
@@ -101,10 +98,10 @@ public class CategoryMixin implements LifecycleObserver {
     }
 
     /**
-     * Updates dashboard categories.
+     * Reloads all dashboard categories and refreshes every listener.
      */
     public void updateCategories() {
-        updateCategories(false /* fromBroadcast */);
+        updateCategories(true /* forceReload */);
     }
 
     void addToDenylist(ComponentName component) {
@@ -120,13 +117,13 @@ public class CategoryMixin implements LifecycleObserver {
         mCategoryListeners.forEach(listener -> listener.onCategoriesChanged(categories));
     }
 
-    private void updateCategories(boolean fromBroadcast) {
+    private void updateCategories(boolean forceReload) {
         // Only allow at most 2 tasks existing at the same time since when the first one is
         // executing, there may be new data from the second update request.
         // Ignore the third update request because the second task is still waiting for the first
         // task to complete in a serial thread, which will get the latest data.
         if (mCategoriesUpdateTaskCount < 2) {
-            new CategoriesUpdateTask().execute(fromBroadcast);
+            new CategoriesUpdateTask().execute(forceReload);
         }
     }
 
@@ -152,7 +149,6 @@ public class CategoryMixin implements LifecycleObserver {
     private class CategoriesUpdateTask extends AsyncTask<Boolean, Void, Set<String>> {
 
         private final CategoryManager mCategoryManager;
-        private Map<ComponentName, Tile> mPreviousTileMap;
 
         CategoriesUpdateTask() {
             mCategoriesUpdateTaskCount++;
@@ -161,10 +157,21 @@ public class CategoryMixin implements LifecycleObserver {
 
         @Override
         protected Set<String> doInBackground(Boolean... params) {
-            mPreviousTileMap = mCategoryManager.getTileByComponentMap();
-            mCategoryManager.reloadAllCategories(mContext);
-            mCategoryManager.updateCategoryFromDenylist(sTileDenylist);
-            return getChangedCategories(params[0]);
+            final Set<String> categories;
+            if (params[0]) {
+                mCategoryManager.reloadAllCategories(mContext);
+                categories = null;
+            } else {
+                // Only resolve the tiles of the packages that changed since the last load.
+                categories = mCategoryManager.reloadChangedCategories(mContext);
+            }
+            // Tiles may have been denylisted since the last load even if no package changed.
+            final Set<String> denylistedCategories =
+                    mCategoryManager.updateCategoryFromDenylist(sTileDenylist);
+            if (categories != null) {
+                categories.addAll(denylistedCategories);
+            }
+            return categories;
         }
 
         @Override
@@ -174,52 +181,18 @@ public class CategoryMixin implements LifecycleObserver {
             }
             mCategoriesUpdateTaskCount--;
         }
-
-        // Return the changed categories that have to be refreshed, or null to force refreshing all.
-        private Set<String> getChangedCategories(boolean fromBroadcast) {
-            if (!fromBroadcast) {
-                // Always refresh for non-broadcast case.
-                return null;
-            }
-
-            final Set<String> changedCategories = new ArraySet<>();
-            final Map<ComponentName, Tile> currentTileMap =
-                    mCategoryManager.getTileByComponentMap();
-            currentTileMap.forEach((component, currentTile) -> {
-                final Tile previousTile = mPreviousTileMap.get(component);
-                // Check if the tile is newly added.
-                if (previousTile == null) {
-                    Log.i(TAG, "Tile added: " + component.flattenToShortString());
-                    changedCategories.add(currentTile.getCategory());
-                    return;
-                }
-
-                // Check if the title or summary has changed.
-                if (!TextUtils.equals(currentTile.getTitle(mContext),
-                        previousTile.getTitle(mContext))
-                        || !TextUtils.equals(currentTile.getSummary(mContext),
-                        previousTile.getSummary(mContext))) {
-                    Log.i(TAG, "Tile changed: " + component.flattenToShortString());
-                    changedCategories.add(currentTile.getCategory());
-                }
-            });
-
-            // Check if any previous tile is removed.
-            final Set<ComponentName> removal = new ArraySet(mPreviousTileMap.keySet());
-            removal.removeAll(currentTileMap.keySet());
-            removal.forEach(component -> {
-                Log.i(TAG, "Tile removed: " + component.flattenToShortString());
-                changedCategories.add(mPreviousTileMap.get(component).getCategory());
-            });
-
-            return changedCategories;
-        }
     }
 
     private class PackageReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
-            updateCategories(true /* fromBroadcast */);
+            final Uri data = intent.getData();
+            if (data == null) {
+                updateCategories(true /* forceReload */);
+                return;
+            }
+            CategoryManager.get(mContext).markPackageChanged(data.getSchemeSpecificPart());
+            updateCategories(false /* forceReload */);
         }
     }
 }
@@ -23,17 +23,25 @@ import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
 import android.annotation.NonNull;
 import android.annotation.XmlRes;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
+import android.util.LruCache;
+import android.util.Pair;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
 import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.core.lifecycle.LifecycleObserver;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -44,6 +52,11 @@ import java.util.TreeSet;
 public class PreferenceControllerListHelper {
 
     private static final String TAG = "PrefCtrlListHelper";
+    private static final int MAX_CACHED_XMLS = 32;
+
+    // Controller metadata of the xmls pages were recently opened with, by xml and configuration.
+    private static final LruCache<Pair<Integer, Configuration>, List<Bundle>> sMetadataCache =
+            new LruCache<>(MAX_CACHED_XMLS);
 
     /**
      * Instantiates a list of controller based on xml definition.
@@ -51,45 +64,120 @@ public class PreferenceControllerListHelper {
     @NonNull
     public static List<BasePreferenceController> getPreferenceControllersFromXml(Context context,
             @XmlRes int xmlResId) {
+        return getPreferenceControllersFromXml(context, xmlResId, null /* deferredMetadata */);
+    }
+
+    /**
+     * Instantiates a list of controller based on xml definition. If {@code deferredMetadata} is
+     * not null, the controllers that {@link #canCreateLater(Bundle) can be created later} are not
+     * instantiated, and their metadata is added to {@code deferredMetadata} instead.
+     */
+    @NonNull
+    public static List<BasePreferenceController> getPreferenceControllersFromXml(Context context,
+            @XmlRes int xmlResId, @Nullable List<Bundle> deferredMetadata) {
         final List<BasePreferenceController> controllers = new ArrayList<>();
-        List<Bundle> preferenceMetadata;
-        try {
-            preferenceMetadata = PreferenceXmlParserUtils.extractMetadata(context, xmlResId,
-                    MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
-                            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN  | MetadataFlag.FLAG_FOR_WORK);
-        } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "Failed to parse preference xml for getting controllers", e);
+        final List<Bundle> preferenceMetadata = getControllerMetadata(context, xmlResId);
+        if (preferenceMetadata == null) {
             return controllers;
         }
 
         for (Bundle metadata : preferenceMetadata) {
-            final String controllerName = metadata.getString(METADATA_CONTROLLER);
-            if (TextUtils.isEmpty(controllerName)) {
+            if (TextUtils.isEmpty(metadata.getString(METADATA_CONTROLLER))) {
+                continue;
+            }
+            if (deferredMetadata != null && canCreateLater(metadata)) {
+                deferredMetadata.add(metadata);
                 continue;
             }
-            BasePreferenceController controller;
+            final BasePreferenceController controller = createController(context, metadata);
+            if (controller != null) {
+                controllers.add(controller);
+            }
+        }
+        return controllers;
+    }
+
+    /**
+     * Instantiates the controller declared by the xml {@code metadata} of a preference, or
+     * returns null if it cannot be instantiated.
+     */
+    @Nullable
+    public static BasePreferenceController createController(Context context, Bundle metadata) {
+        final String controllerName = metadata.getString(METADATA_CONTROLLER);
+        if (BasePreferenceController.hasConstructor(controllerName, false /* withKey */)) {
             try {
-                controller = BasePreferenceController.createInstance(context, controllerName);
+                return BasePreferenceController.createInstance(context, controllerName);
             } catch (IllegalStateException e) {
-                Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
-                final String key = metadata.getString(METADATA_KEY);
-                final boolean isWorkProfile = metadata.getBoolean(METADATA_FOR_WORK, false);
-                if (TextUtils.isEmpty(key)) {
-                    Log.w(TAG, "Controller requires key but it's not defined in xml: "
-                            + controllerName);
-                    continue;
-                }
-                try {
-                    controller = BasePreferenceController.createInstance(context, controllerName,
-                            key, isWorkProfile);
-                } catch (IllegalStateException e2) {
-                    Log.w(TAG, "Cannot instantiate controller from reflection: " + controllerName);
-                    continue;
-                }
+                Log.d(TAG, "Could not instantiate Context-only controller for pref: "
+                        + controllerName);
             }
-            controllers.add(controller);
+        } else {
+            Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
         }
-        return controllers;
+        final String key = metadata.getString(METADATA_KEY);
+        final boolean isWorkProfile = metadata.getBoolean(METADATA_FOR_WORK, false);
+        if (TextUtils.isEmpty(key)) {
+            Log.w(TAG, "Controller requires key but it's not defined in xml: " + controllerName);
+            return null;
+        }
+        try {
+            return BasePreferenceController.createInstance(context, controllerName, key,
+                    isWorkProfile);
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Cannot instantiate controller from reflection: " + controllerName);
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the controller declared by the xml {@code metadata} of a preference only
+     * needs to exist once its preference is shown: it has a key, doesn't observe the lifecycle of
+     * the page and doesn't block the page from being shown.
+     */
+    public static boolean canCreateLater(Bundle metadata) {
+        if (TextUtils.isEmpty(metadata.getString(METADATA_KEY))) {
+            return false;
+        }
+        final Class<?> clazz;
+        try {
+            clazz = Class.forName(metadata.getString(METADATA_CONTROLLER));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+        return !LifecycleObserver.class.isAssignableFrom(clazz)
+                && !BasePreferenceController.UiBlocker.class.isAssignableFrom(clazz);
+    }
+
+    /**
+     * Returns the controller metadata of an xml, parsing it only the first time it is requested
+     * in a given configuration. Returns null if the xml cannot be parsed.
+     */
+    @Nullable
+    private static List<Bundle> getControllerMetadata(Context context, @XmlRes int xmlResId) {
+        final Pair<Integer, Configuration> cacheKey = Pair.create(xmlResId,
+                new Configuration(context.getResources().getConfiguration()));
+        final List<Bundle> cachedMetadata = sMetadataCache.get(cacheKey);
+        if (cachedMetadata != null) {
+            return cachedMetadata;
+        }
+        final List<Bundle> preferenceMetadata;
+        try {
+            preferenceMetadata = PreferenceXmlParserUtils.extractMetadata(context, xmlResId,
+                    MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+                            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN  | MetadataFlag.FLAG_FOR_WORK);
+        } catch (IOException | XmlPullParserException e) {
+            Log.e(TAG, "Failed to parse preference xml for getting controllers", e);
+            return null;
+        }
+        final List<Bundle> metadata = Collections.unmodifiableList(preferenceMetadata);
+        sMetadataCache.put(cacheKey, metadata);
+        return metadata;
+    }
+
+    /** Drops the cached controller metadata of all xmls. */
+    @VisibleForTesting
+    public static void clearMetadataCache() {
+        sMetadataCache.evictAll();
     }
 
     /**
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import android.os.SystemClock;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of latency histograms and counters for the hot paths of Settings, such as
+ * preference controller updates, the first frame of dashboard pages, slice binding and loaders.
+ *
+ * <p>Recording never takes a lock, so it is safe to call from the main thread and from loader
+ * threads alike. The registry is dumped by {@link com.android.settings.SettingsDumpService}.
+ */
+public class PerformanceMetrics {
+
+    /** Time spent in {@code AbstractPreferenceController#isAvailable()}, by controller. */
+    public static final String CATEGORY_CONTROLLER_IS_AVAILABLE = "controller_is_available";
+    /** Time spent in {@code AbstractPreferenceController#updateState()}, by controller. */
+    public static final String CATEGORY_CONTROLLER_UPDATE_STATE = "controller_update_state";
+    /** Time spent creating the preference controllers of a dashboard page, by page. */
+    public static final String CATEGORY_CONTROLLER_CREATION = "controller_creation";
+    /** Time from the creation of a dashboard page to its first frame, by page. */
+    public static final String CATEGORY_FRAGMENT_FIRST_FRAME = "fragment_first_frame";
+    /** Time spent binding a slice, by slice authority and path. */
+    public static final String CATEGORY_SLICE_BIND = "slice_bind";
+    /** Time spent in {@code loadInBackground()}, by loader. */
+    public static final String CATEGORY_LOADER = "loader";
+    /** Time spent in {@code SearchIndexProvider#getNonIndexableKeys()}, by indexed class. */
+    public static final String CATEGORY_NON_INDEXABLE_KEYS = "non_indexable_keys";
+
+    /** Number of controller updates slower than the slow update threshold. */
+    public static final String COUNTER_SLOW_CONTROLLER_UPDATES = "slow_controller_updates";
+
+    // Upper bounds, in milliseconds, of every bucket but the last one, which holds the rest.
+    @VisibleForTesting
+    static final long[] BUCKET_UPPER_BOUNDS_MS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024};
+    // Names are usually class names, but keep a misbehaving caller from growing the map forever.
+    // The cap is per category, so that one noisy category can't crowd out the others.
+    @VisibleForTesting
+    static final int MAX_HISTOGRAMS_PER_CATEGORY = 2048;
+    @VisibleForTesting
+    static final String OVERFLOW_NAME = "other";
+
+    private static final String SEPARATOR = "/";
+
+    private static final PerformanceMetrics sInstance = new PerformanceMetrics();
+
+    // "category/name" -> histogram.
+    private final Map<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+    // Category -> number of named histograms in it.
+    private final Map<String, AtomicInteger> mHistogramCounts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> mCounters = new ConcurrentHashMap<>();
+
+    public static PerformanceMetrics getInstance() {
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PerformanceMetrics() {
+    }
+
+    /** Records an operation of {@code category} named {@code name} that took {@code latencyMs}. */
+    public void recordLatency(String category, String name, long latencyMs) {
+        getHistogram(category, name).record(latencyMs);
+    }
+
+    /**
+     * Records an operation of {@code category} named {@code name} that started at
+     * {@code startElapsedRealtimeMs}, as returned by {@link SystemClock#elapsedRealtime()}.
+     */
+    public void recordSince(String category, String name, long startElapsedRealtimeMs) {
+        recordLatency(category, name, SystemClock.elapsedRealtime() - startElapsedRealtimeMs);
+    }
+
+    /** Increments the counter {@code name} by one. */
+    public void incrementCounter(String name) {
+        mCounters.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+    /** Drops every recorded value. */
+    public void reset() {
+        mHistograms.clear();
+        mHistogramCounts.clear();
+        mCounters.clear();
+    }
+
+    /**
+     * Returns the recorded values as
+     * {@code {"bucket_upper_bounds_ms": [...], "counters": {name: count},
+     * "<category>": {name: histogram}}}, sorted by name.
+     */
+    public JSONObject toJson() throws JSONException {
+        final JSONObject json = new JSONObject();
+        json.put("bucket_upper_bounds_ms", new JSONArray(BUCKET_UPPER_BOUNDS_MS));
+        final JSONObject counters = new JSONObject();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(mCounters).entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().sum());
+        }
+        json.put("counters", counters);
+
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(mHistograms).entrySet()) {
+            final String key = entry.getKey();
+            final int separator = key.indexOf(SEPARATOR);
+            final String category = key.substring(0, separator);
+            JSONObject histograms = json.optJSONObject(category);
+            if (histograms == null) {
+                histograms = new JSONObject();
+                json.put(category, histograms);
+            }
+            histograms.put(key.substring(separator + 1), entry.getValue().toJson());
+        }
+        return json;
+    }
+
+    private Histogram getHistogram(String category, String name) {
+        final String key = category + SEPARATOR + name;
+        final Histogram histogram = mHistograms.get(key);
+        if (histogram != null) {
+            return histogram;
+        }
+        final AtomicInteger count =
+                mHistogramCounts.computeIfAbsent(category, k -> new AtomicInteger());
+        if (count.get() >= MAX_HISTOGRAMS_PER_CATEGORY) {
+            return mHistograms.computeIfAbsent(category + SEPARATOR + OVERFLOW_NAME,
+                    k -> new Histogram());
+        }
+        return mHistograms.computeIfAbsent(key, k -> {
+            count.incrementAndGet();
+            return new Histogram();
+        });
+    }
+
+    /** Latency histogram with fixed, exponentially growing buckets. */
+    @VisibleForTesting
+    static class Histogram {
+        private final AtomicLongArray mBuckets =
+                new AtomicLongArray(BUCKET_UPPER_BOUNDS_MS.length + 1);
+        private final LongAdder mCount = new LongAdder();
+        private final LongAdder mSumMs = new LongAdder();
+        private final AtomicLong mMaxMs = new AtomicLong();
+
+        void record(long latencyMs) {
+            final long value = Math.max(0, latencyMs);
+            mBuckets.incrementAndGet(getBucket(value));
+            mCount.increment();
+            mSumMs.add(value);
+            mMaxMs.accumulateAndGet(value, Math::max);
+        }
+
+        JSONObject toJson() throws JSONException {
+            final JSONArray buckets = new JSONArray();
+            for (int i = 0; i < mBuckets.length(); i++) {
+                buckets.put(mBuckets.get(i));
+            }
+            final long count = mCount.sum();
+            return new JSONObject()
+                    .put("count", count)
+                    .put("mean_ms", count == 0 ? 0 : mSumMs.sum() / count)
+                    .put("max_ms", mMaxMs.get())
+                    .put("buckets", buckets);
+        }
+
+        @VisibleForTesting
+        static int getBucket(long latencyMs) {
+            for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+                if (latencyMs <= BUCKET_UPPER_BOUNDS_MS[i]) {
+                    return i;
+                }
+            }
+            return BUCKET_UPPER_BOUNDS_MS.length;
+        }
+    }
+}
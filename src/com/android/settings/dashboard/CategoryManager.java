@@ -15,8 +15,14 @@
  */
 package com.android.settings.dashboard;
 
+import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
@@ -37,6 +43,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class CategoryManager {
 
@@ -52,11 +60,56 @@ public class CategoryManager {
     // Tile cache (key: category key, value: category)
     private final Map<String, DashboardCategory> mCategoryByKeyMap;
 
-    private List<DashboardCategory> mCategories;
+    // Packages added, removed or changed since the categories were last loaded. This and
+    // mUsersChanged are not guarded by the CategoryManager lock, so that the receivers, which run
+    // on the main thread, never wait for a load in progress.
+    private final Set<String> mChangedPackages = ConcurrentHashMap.newKeySet();
+
+    // Whether profiles or users came or went since the categories were last loaded, in which case
+    // the tiles of any package may have changed.
+    private final AtomicBoolean mUsersChanged = new AtomicBoolean();
+
+    // Volatile so that isLoaded() doesn't have to wait for a load in progress.
+    private volatile List<DashboardCategory> mCategories;
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                markPackageChanged(data.getSchemeSpecificPart());
+            }
+        }
+    };
+
+    private final BroadcastReceiver mUserReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            markUsersChanged();
+        }
+    };
 
     public static CategoryManager get(Context context) {
         if (sInstance == null) {
             sInstance = new CategoryManager(context);
+            // Settings pages only listen for package changes while resumed, so keep track of the
+            // changes that happen in the background as well. Tiles are injected by the packages of
+            // every profile, so listen to all users.
+            final Context appContext = context.getApplicationContext();
+            final IntentFilter filter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+            filter.addDataScheme("package");
+            appContext.registerReceiverAsUser(sInstance.mPackageReceiver, UserHandle.ALL, filter,
+                    null /* broadcastPermission */, null /* scheduler */);
+
+            final IntentFilter userFilter = new IntentFilter(Intent.ACTION_USER_ADDED);
+            userFilter.addAction(Intent.ACTION_USER_REMOVED);
+            userFilter.addAction(Intent.ACTION_MANAGED_PROFILE_AVAILABLE);
+            userFilter.addAction(Intent.ACTION_MANAGED_PROFILE_UNAVAILABLE);
+            appContext.registerReceiverAsUser(sInstance.mUserReceiver, UserHandle.ALL, userFilter,
+                    null /* broadcastPermission */, null /* scheduler */);
         }
         return sInstance;
     }
@@ -74,6 +127,14 @@ public class CategoryManager {
         return mCategoryByKeyMap.get(categoryKey);
     }
 
+    /**
+     * Returns whether the categories are loaded, so that reading them won't scan for tiles. This
+     * never waits for a load in progress.
+     */
+    public boolean isLoaded() {
+        return mCategories != null;
+    }
+
     public synchronized List<DashboardCategory> getCategories(Context context) {
         tryInitCategories(context);
         return mCategories;
@@ -86,14 +147,94 @@ public class CategoryManager {
         tryInitCategories(context, forceClearCache);
     }
 
+    /**
+     * Marks the tiles of {@code packageName} as stale, so they are resolved again by the next
+     * {@link #reloadChangedCategories(Context)}.
+     */
+    public void markPackageChanged(String packageName) {
+        mChangedPackages.add(packageName);
+    }
+
+    /**
+     * Marks every tile as stale after a profile or user was added, removed, turned on or turned
+     * off, so the next {@link #reloadChangedCategories(Context)} reloads all categories.
+     */
+    public void markUsersChanged() {
+        mUsersChanged.set(true);
+    }
+
+    /**
+     * Reloads the categories only if a package changed, a profile or user changed or an
+     * interesting configuration change happened since they were last loaded.
+     *
+     * @return the keys of the categories whose tiles were added, removed or changed, or null if
+     *         all categories have to be refreshed.
+     */
+    public synchronized Set<String> reloadChangedCategories(Context context) {
+        final boolean configChanged = mInterestingConfigChanges.applyNewConfig(
+                context.getResources());
+        if (mCategories == null || configChanged || mUsersChanged.get()) {
+            mCategories = null;
+            tryInitCategories(context, configChanged);
+            return null;
+        }
+        if (mChangedPackages.isEmpty()) {
+            return new ArraySet<>();
+        }
+
+        final Map<ComponentName, Tile> previousTiles =
+                getTilesOfPackages(new ArraySet<>(mChangedPackages));
+        mCategories = null;
+        // This includes the packages that changed since previousTiles was read, whose tiles are
+        // then reported as added.
+        final Set<String> reloadedPackages = tryInitCategories(context);
+        return getChangedCategories(context, previousTiles, getTilesOfPackages(reloadedPackages));
+    }
+
+    /**
+     * Returns the keys of the categories of the tiles that were added, removed or changed between
+     * {@code previousTiles} and {@code currentTiles}.
+     */
+    @VisibleForTesting
+    static Set<String> getChangedCategories(Context context,
+            Map<ComponentName, Tile> previousTiles, Map<ComponentName, Tile> currentTiles) {
+        final Set<String> changedCategories = new ArraySet<>();
+        final Map<ComponentName, Tile> removedTiles = new ArrayMap<>(previousTiles);
+        currentTiles.forEach((component, currentTile) -> {
+            final Tile previousTile = removedTiles.remove(component);
+            if (previousTile == null) {
+                Log.i(TAG, "Tile added: " + component.flattenToShortString());
+                changedCategories.add(currentTile.getCategory());
+            } else if (!TextUtils.equals(currentTile.getCategory(), previousTile.getCategory())) {
+                Log.i(TAG, "Tile moved: " + component.flattenToShortString());
+                changedCategories.add(previousTile.getCategory());
+                changedCategories.add(currentTile.getCategory());
+            } else if (currentTile.getOrder() != previousTile.getOrder()
+                    || !TextUtils.equals(currentTile.getTitle(context),
+                    previousTile.getTitle(context))
+                    || !TextUtils.equals(currentTile.getSummary(context),
+                    previousTile.getSummary(context))) {
+                Log.i(TAG, "Tile changed: " + component.flattenToShortString());
+                changedCategories.add(currentTile.getCategory());
+            }
+        });
+        removedTiles.forEach((component, previousTile) -> {
+            Log.i(TAG, "Tile removed: " + component.flattenToShortString());
+            changedCategories.add(previousTile.getCategory());
+        });
+        return changedCategories;
+    }
+
     /**
      * Update category from deny list
      * @param tileDenylist
+     * @return the keys of the categories that had tiles removed
      */
-    public synchronized void updateCategoryFromDenylist(Set<ComponentName> tileDenylist) {
+    public synchronized Set<String> updateCategoryFromDenylist(Set<ComponentName> tileDenylist) {
+        final Set<String> changedCategories = new ArraySet<>();
         if (mCategories == null) {
             Log.w(TAG, "Category is null, skipping denylist update");
-            return;
+            return changedCategories;
         }
         for (int i = 0; i < mCategories.size(); i++) {
             DashboardCategory category = mCategories.get(i);
@@ -101,9 +242,11 @@ public class CategoryManager {
                 Tile tile = category.getTile(j);
                 if (tileDenylist.contains(tile.getIntent().getComponent())) {
                     category.removeTile(j--);
+                    changedCategories.add(category.key);
                 }
             }
         }
+        return changedCategories;
     }
 
     /** Return the current tile map */
@@ -122,6 +265,12 @@ public class CategoryManager {
         return result;
     }
 
+    private Map<ComponentName, Tile> getTilesOfPackages(Set<String> packageNames) {
+        final Map<ComponentName, Tile> result = getTileByComponentMap();
+        result.keySet().removeIf(component -> !packageNames.contains(component.getPackageName()));
+        return result;
+    }
+
     private void logTiles(Context context) {
         if (DEBUG) {
             getTileByComponentMap().forEach((component, tile) -> {
@@ -131,17 +280,31 @@ public class CategoryManager {
         }
     }
 
-    private synchronized void tryInitCategories(Context context) {
+    private synchronized Set<String> tryInitCategories(Context context) {
         // Keep cached tiles by default. The cache is only invalidated when InterestingConfigChange
-        // happens.
-        tryInitCategories(context, false /* forceClearCache */);
+        // happens, or for the packages that changed.
+        return tryInitCategories(context, false /* forceClearCache */);
     }
 
-    private synchronized void tryInitCategories(Context context, boolean forceClearCache) {
+    /**
+     * Loads the categories if needed.
+     *
+     * @return the packages marked as changed whose tiles were resolved again.
+     */
+    private synchronized Set<String> tryInitCategories(Context context, boolean forceClearCache) {
+        final Set<String> changedPackages = new ArraySet<>();
         if (mCategories == null) {
             final boolean firstLoading = mCategoryByKeyMap.isEmpty();
+            // Changes marked from now on stay marked for the next reload, as the scan below may
+            // have missed them.
+            mUsersChanged.set(false);
+            changedPackages.addAll(mChangedPackages);
+            mChangedPackages.removeAll(changedPackages);
             if (forceClearCache) {
                 mTileByComponentCache.clear();
+            } else {
+                // Drop the cached tiles of the changed packages so their metadata is read again.
+                mTileByComponentCache.keySet().removeIf(key -> changedPackages.contains(key.first));
             }
             mCategoryByKeyMap.clear();
             mCategories = TileUtils.getCategories(context, mTileByComponentCache);
@@ -155,6 +318,7 @@ public class CategoryManager {
                 logTiles(context);
             }
         }
+        return changedPackages;
     }
 
     @VisibleForTesting
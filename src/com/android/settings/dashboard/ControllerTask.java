@@ -24,6 +24,7 @@ import android.util.Log;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
+import com.android.settings.core.instrumentation.PerformanceMetrics;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
@@ -51,7 +52,13 @@ public class ControllerTask implements Runnable {
 
     @Override
     public void run() {
-        if (!mController.isAvailable()) {
+        final PerformanceMetrics performanceMetrics = PerformanceMetrics.getInstance();
+        final String controllerName = mController.getClass().getName();
+        final long availableStart = SystemClock.elapsedRealtime();
+        final boolean available = mController.isAvailable();
+        performanceMetrics.recordSince(PerformanceMetrics.CATEGORY_CONTROLLER_IS_AVAILABLE,
+                controllerName, availableStart);
+        if (!available) {
             return;
         }
 
@@ -72,7 +79,11 @@ public class ControllerTask implements Runnable {
             final long t = SystemClock.elapsedRealtime();
             mController.updateState(preference);
             final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
+            performanceMetrics.recordLatency(PerformanceMetrics.CATEGORY_CONTROLLER_UPDATE_STATE,
+                    controllerName, elapsedTime);
             if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
+                performanceMetrics.incrementCounter(
+                        PerformanceMetrics.COUNTER_SLOW_CONTROLLER_UPDATES);
                 Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
                         + mController.getClass().getSimpleName());
                 if (mMetricsFeature != null) {
@@ -15,14 +15,21 @@
  */
 package com.android.settings.dashboard;
 
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+
 import android.app.Activity;
 import android.app.settings.SettingsEnums;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.VisibleForTesting;
@@ -38,7 +45,9 @@ import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
 import com.android.settings.core.PreferenceControllerListHelper;
+import com.android.settings.core.instrumentation.PerformanceMetrics;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.widget.HighlightablePreferenceGroupAdapter;
 import com.android.settings.widget.PrimarySwitchPreference;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.lifecycle.Lifecycle;
@@ -52,11 +61,14 @@ import com.android.settingslib.utils.ThreadUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -73,15 +85,25 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             new ArrayMap<>();
     private final List<DynamicDataObserver> mRegisteredObservers = new ArrayList<>();
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
+    // Xml metadata of the controllers not created yet, as their preferences are collapsed behind
+    // the expand button. Only used if shouldCreateCollapsedControllersLazily().
+    private final List<Bundle> mPendingControllerMetadata = new ArrayList<>();
     @VisibleForTesting
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
     private boolean mListeningToCategoryChange;
     private List<String> mSuppressInjectedTileKeys;
+    // When the page started being created, including its controllers.
+    private long mCreateTime;
+    // Whether the first frame of the page was already recorded. Views created again, such as when
+    // coming back from the back stack, didn't wait for the page to be created.
+    private boolean mFirstFrameRecorded;
 
     @Override
     public void onAttach(Context context) {
+        mCreateTime = SystemClock.elapsedRealtime();
+        mFirstFrameRecorded = false;
         super.onAttach(context);
         mSuppressInjectedTileKeys = Arrays.asList(context.getResources().getStringArray(
                 R.array.config_suppress_injected_tile_keys));
@@ -91,12 +113,22 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         final List<AbstractPreferenceController> controllersFromCode =
                 createPreferenceControllers(context);
         // Load preference controllers from xml definition
+        mPendingControllerMetadata.clear();
         final List<BasePreferenceController> controllersFromXml = PreferenceControllerListHelper
-                .getPreferenceControllersFromXml(context, getPreferenceScreenResId());
+                .getPreferenceControllersFromXml(context, getPreferenceScreenResId(),
+                        shouldCreateCollapsedControllersLazily()
+                                ? mPendingControllerMetadata : null);
         // Filter xml-based controllers in case a similar controller is created from code already.
         final List<BasePreferenceController> uniqueControllerFromXml =
                 PreferenceControllerListHelper.filterControllers(
                         controllersFromXml, controllersFromCode);
+        if (controllersFromCode != null) {
+            for (AbstractPreferenceController controller : controllersFromCode) {
+                final String key = controller.getPreferenceKey();
+                mPendingControllerMetadata.removeIf(
+                        metadata -> TextUtils.equals(key, metadata.getString(METADATA_KEY)));
+            }
+        }
 
         // Add unique controllers to list.
         if (controllersFromCode != null) {
@@ -126,6 +158,9 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         for (AbstractPreferenceController controller : mControllers) {
             addPreferenceController(controller);
         }
+        PerformanceMetrics.getInstance().recordSince(
+                PerformanceMetrics.CATEGORY_CONTROLLER_CREATION, getClass().getName(),
+                mCreateTime);
     }
 
     @VisibleForTesting
@@ -158,6 +193,26 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         }
     }
 
+    @Override
+    public void onViewCreated(View view, Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        if (mFirstFrameRecorded) {
+            return;
+        }
+        mFirstFrameRecorded = true;
+        final ViewTreeObserver observer = view.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                PerformanceMetrics.getInstance().recordSince(
+                        PerformanceMetrics.CATEGORY_FRAGMENT_FIRST_FRAME, getClass().getName(),
+                        mCreateTime);
+                return true;
+            }
+        });
+    }
+
     @Override
     public void onCategoriesChanged(Set<String> categories) {
         final String categoryKey = getCategoryKey();
@@ -192,10 +247,13 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onStart() {
         super.onStart();
-        final DashboardCategory category =
-                mDashboardFeatureProvider.getTilesForCategory(getCategoryKey());
-        if (category == null) {
-            return;
+        // Tiles loaded in the background may not be known yet, don't wait for them.
+        if (!shouldLoadDashboardTilesInBackground()) {
+            final DashboardCategory category =
+                    mDashboardFeatureProvider.getTilesForCategory(getCategoryKey());
+            if (category == null) {
+                return;
+            }
         }
         final Activity activity = getActivity();
         if (activity instanceof CategoryHandler) {
@@ -258,6 +316,23 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         mMetricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
                 SettingsEnums.ACTION_SETTINGS_ADVANCED_BUTTON_EXPAND,
                 getMetricsCategory(), null, 0);
+        final PreferenceScreen screen = getPreferenceScreen();
+        for (AbstractPreferenceController controller : createPendingControllers(metadata -> true)) {
+            final Preference preference = screen.findPreference(controller.getPreferenceKey());
+            if (preference != null && controller.isAvailable()) {
+                controller.updateState(preference);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the xml controllers of the preferences collapsed behind the expand
+     * button should only be created once they are expanded, or once {@link #use(Class)} asks for
+     * them. Only the controllers that don't observe the lifecycle of the page are deferred, and
+     * {@link #getPreferenceControllers()} creates all of them.
+     */
+    protected boolean shouldCreateCollapsedControllersLazily() {
+        return false;
     }
 
     protected boolean shouldForceRoundedIcon() {
@@ -266,6 +341,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     protected <T extends AbstractPreferenceController> T use(Class<T> clazz) {
         List<AbstractPreferenceController> controllerList = mPreferenceControllers.get(clazz);
+        if (controllerList == null && !mPendingControllerMetadata.isEmpty()) {
+            createPendingControllers(metadata ->
+                    clazz.getName().equals(metadata.getString(METADATA_CONTROLLER)));
+            controllerList = mPreferenceControllers.get(clazz);
+        }
         if (controllerList != null) {
             if (controllerList.size() > 1) {
                 Log.w(TAG, "Multiple controllers of Class " + clazz.getSimpleName()
@@ -328,6 +408,97 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         final PreferenceScreen screen = getPreferenceScreen();
         screen.setOnExpandButtonClickListener(this);
         displayResourceTilesToScreen(screen);
+        if (!mPendingControllerMetadata.isEmpty()) {
+            // The host sets the expanded count once it is created, apply it already so that the
+            // controllers of the collapsed preferences are not created.
+            HighlightablePreferenceGroupAdapter.adjustInitialExpandedChildCount(this /* host */);
+            createExpandedControllers();
+        }
+    }
+
+    /**
+     * Creates the pending controllers of the preferences that are not collapsed behind the expand
+     * button. The children of the screen are walked in display order, and the controllers of each
+     * child are displayed before checking whether it is visible, as only visible children count
+     * towards the initially expanded ones.
+     */
+    private void createExpandedControllers() {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (mPendingControllerMetadata.isEmpty() || screen == null) {
+            return;
+        }
+        final int expandedCount = screen.getInitialExpandedChildrenCount();
+        final List<Preference> children = new ArrayList<>();
+        for (int i = 0; i < screen.getPreferenceCount(); i++) {
+            children.add(screen.getPreference(i));
+        }
+        Collections.sort(children);
+        int visibleCount = 0;
+        for (Preference child : children) {
+            if (visibleCount >= expandedCount) {
+                // The remaining children are collapsed.
+                return;
+            }
+            final Set<String> keys = new ArraySet<>();
+            collectPreferenceKeys(child, keys);
+            createPendingControllers(
+                    metadata -> keys.contains(metadata.getString(METADATA_KEY)));
+            if (child.isVisible()) {
+                visibleCount++;
+            }
+        }
+        // Also create the controllers whose preferences are not on the screen.
+        createPendingControllers(metadata -> true);
+    }
+
+    private static void collectPreferenceKeys(Preference preference, Set<String> keys) {
+        keys.add(preference.getKey());
+        if (preference instanceof PreferenceGroup) {
+            final PreferenceGroup group = (PreferenceGroup) preference;
+            for (int i = 0; i < group.getPreferenceCount(); i++) {
+                collectPreferenceKeys(group.getPreference(i), keys);
+            }
+        }
+    }
+
+    /**
+     * Creates the pending controllers whose metadata matches {@code filter} and adds them to the
+     * page, displaying them if the screen was already created.
+     */
+    private List<AbstractPreferenceController> createPendingControllers(Predicate<Bundle> filter) {
+        final List<AbstractPreferenceController> controllers = new ArrayList<>();
+        if (mPendingControllerMetadata.isEmpty()) {
+            return controllers;
+        }
+        final List<Bundle> metadataList = new ArrayList<>();
+        final Iterator<Bundle> iterator = mPendingControllerMetadata.iterator();
+        while (iterator.hasNext()) {
+            final Bundle metadata = iterator.next();
+            if (filter.test(metadata)) {
+                metadataList.add(metadata);
+                iterator.remove();
+            }
+        }
+        final PreferenceScreen screen = getPreferenceScreen();
+        for (Bundle metadata : metadataList) {
+            final BasePreferenceController controller =
+                    PreferenceControllerListHelper.createController(getContext(), metadata);
+            if (controller == null) {
+                continue;
+            }
+            controller.setMetricsCategory(getMetricsCategory());
+            mControllers.add(controller);
+            addPreferenceController(controller);
+            controllers.add(controller);
+            if (screen != null) {
+                controller.displayPreference(screen);
+                final Preference preference = screen.findPreference(controller.getPreferenceKey());
+                if (preference != null) {
+                    preference.getExtras().putInt(CATEGORY, getMetricsCategory());
+                }
+            }
+        }
+        return controllers;
     }
 
     /**
@@ -351,6 +522,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      * Get current PreferenceController(s)
      */
     protected Collection<List<AbstractPreferenceController>> getPreferenceControllers() {
+        createPendingControllers(metadata -> true);
         return mPreferenceControllers.values();
     }
 
@@ -358,12 +530,21 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      * Update state of each preference managed by PreferenceController.
      */
     protected void updatePreferenceStates() {
+        // The host may have expanded the screen since it was displayed.
+        createExpandedControllers();
         final PreferenceScreen screen = getPreferenceScreen();
+        final PerformanceMetrics performanceMetrics = PerformanceMetrics.getInstance();
         Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
-                if (!controller.isAvailable()) {
+                final String controllerName = controller.getClass().getName();
+                final long availableStart = SystemClock.elapsedRealtime();
+                final boolean available = controller.isAvailable();
+                performanceMetrics.recordSince(
+                        PerformanceMetrics.CATEGORY_CONTROLLER_IS_AVAILABLE, controllerName,
+                        availableStart);
+                if (!available) {
                     continue;
                 }
 
@@ -380,7 +561,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                             key, controller.getClass().getSimpleName()));
                     continue;
                 }
+                final long updateStart = SystemClock.elapsedRealtime();
                 controller.updateState(preference);
+                performanceMetrics.recordSince(
+                        PerformanceMetrics.CATEGORY_CONTROLLER_UPDATE_STATE, controllerName,
+                        updateStart);
             }
         }
     }
@@ -430,7 +615,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         // Add resource based tiles.
         displayResourceTiles();
 
-        refreshDashboardTiles(tag);
+        if (shouldLoadDashboardTilesInBackground()) {
+            loadDashboardTilesInBackground(tag);
+        } else {
+            refreshDashboardTiles(tag);
+        }
 
         final Activity activity = getActivity();
         if (activity != null) {
@@ -462,6 +651,42 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         }
     }
 
+    /**
+     * Returns the preference keys of the dashboard tiles shown on this page.
+     */
+    protected Set<String> getDashboardTileKeys() {
+        return new ArraySet<>(mDashboardTilePrefKeys.keySet());
+    }
+
+    /**
+     * @return {@code true} if the dashboard tiles should be loaded in the background rather than
+     * when the page is created, in which case the page first shows without them.
+     */
+    protected boolean shouldLoadDashboardTilesInBackground() {
+        return false;
+    }
+
+    /**
+     * Called on the main thread once the dashboard tiles loaded in the background are shown.
+     */
+    protected void onDashboardTilesLoaded() {
+    }
+
+    private void loadDashboardTilesInBackground(final String tag) {
+        final String categoryKey = getCategoryKey();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            // Scans for tiles, unless they are already loaded.
+            mDashboardFeatureProvider.getTilesForCategory(categoryKey);
+            ThreadUtils.postOnMainThread(() -> {
+                if (!isAdded() || getPreferenceScreen() == null) {
+                    return;
+                }
+                refreshDashboardTiles(tag);
+                onDashboardTilesLoaded();
+            });
+        });
+    }
+
     /**
      * Refresh preference items backed by DashboardCategory.
      */
@@ -64,6 +64,8 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
     static final String ARG_NETWORK_TEMPLATE = "network_template";
     static final String ARG_NETWORK_CYCLES = "network_cycles";
     static final String ARG_SELECTED_CYCLE = "selected_cycle";
+    // Total usage of the app in the selected cycle, as already computed by the app list.
+    static final String ARG_SELECTED_CYCLE_USAGE = "selected_cycle_usage";
 
     private static final String KEY_TOTAL_USAGE = "total_usage";
     private static final String KEY_FOREGROUND_USAGE = "foreground_usage";
@@ -104,6 +106,8 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
     private Context mContext;
     private ArrayList<Long> mCycles;
     private long mSelectedCycle;
+    private long mSelectedCycleUsage;
+    private AppDataUsageCycleCache.Key mUsageCacheKey;
 
     @Override
     public void onCreate(Bundle icicle) {
@@ -118,6 +122,7 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
         mCycles = (args != null) ? (ArrayList) args.getSerializable(ARG_NETWORK_CYCLES)
             : null;
         mSelectedCycle = (args != null) ? args.getLong(ARG_SELECTED_CYCLE) : 0L;
+        mSelectedCycleUsage = (args != null) ? args.getLong(ARG_SELECTED_CYCLE_USAGE, -1L) : -1L;
 
         if (mTemplate == null) {
             mTemplate = DataUsageUtils.getDefaultTemplate(mContext,
@@ -140,6 +145,7 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
             }
         }
 
+        mUsageCacheKey = new AppDataUsageCycleCache.Key(mTemplate, getUsageUids(), mCycles);
         mTotalUsage = findPreference(KEY_TOTAL_USAGE);
         mForegroundUsage = findPreference(KEY_FOREGROUND_USAGE);
         mBackgroundUsage = findPreference(KEY_BACKGROUND_USAGE);
@@ -219,6 +225,9 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
         if (mDataSaverBackend != null) {
             mDataSaverBackend.addListener(this);
         }
+        if (mUsageData == null) {
+            bindCachedData();
+        }
         LoaderManager.getInstance(this).restartLoader(LOADER_APP_USAGE_DATA, null /* args */,
                 mUidDataCallbacks);
         updatePrefs();
@@ -303,6 +312,55 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
         }
     }
 
+    private int[] getUsageUids() {
+        if (mAppItem.category == AppItem.CATEGORY_USER) {
+            final int[] uids = new int[mAppItem.uids.size()];
+            for (int i = 0; i < uids.length; i++) {
+                uids[i] = mAppItem.uids.keyAt(i);
+            }
+            return uids;
+        }
+        return new int[] {mAppItem.key};
+    }
+
+    /**
+     * Shows the usage last loaded for this app, or the total handed over by the app list, until
+     * the usage is loaded again.
+     */
+    @VisibleForTesting
+    void bindCachedData() {
+        final List<NetworkCycleDataForUid> cachedData = mUsageCacheKey != null
+                ? AppDataUsageCycleCache.getInstance(mContext).get(mUsageCacheKey)
+                : null;
+        if (cachedData != null) {
+            bindUsageData(cachedData);
+        } else if (mSelectedCycleUsage >= 0) {
+            mTotalUsage.setSummary(DataUsageUtils.formatDataUsage(mContext, mSelectedCycleUsage));
+        }
+    }
+
+    private void bindUsageData(List<NetworkCycleDataForUid> data) {
+        mUsageData = data;
+        mCycleAdapter.updateCycleList(data);
+        if (mSelectedCycle > 0L) {
+            final int numCycles = data.size();
+            int position = 0;
+            for (int i = 0; i < numCycles; i++) {
+                final NetworkCycleDataForUid cycleData = data.get(i);
+                if (cycleData.getEndTime() == mSelectedCycle) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position > 0) {
+                mCycle.setSelection(position);
+            }
+            bindData(position);
+        } else {
+            bindData(0 /* position */);
+        }
+    }
+
     @VisibleForTesting
     void bindData(int position) {
         final long backgroundBytes, foregroundBytes;
@@ -394,12 +452,8 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
                     = NetworkCycleDataForUidLoader.builder(mContext);
                 builder.setRetrieveDetail(true)
                     .setNetworkTemplate(mTemplate);
-                if (mAppItem.category == AppItem.CATEGORY_USER) {
-                    for (int i = 0; i < mAppItem.uids.size(); i++) {
-                        builder.addUid(mAppItem.uids.keyAt(i));
-                    }
-                } else {
-                    builder.addUid(mAppItem.key);
+                for (int uid : getUsageUids()) {
+                    builder.addUid(uid);
                 }
                 if (mCycles != null) {
                     builder.setCycles(mCycles);
@@ -410,25 +464,10 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
             @Override
             public void onLoadFinished(Loader<List<NetworkCycleDataForUid>> loader,
                     List<NetworkCycleDataForUid> data) {
-                mUsageData = data;
-                mCycleAdapter.updateCycleList(data);
-                if (mSelectedCycle > 0L) {
-                    final int numCycles = data.size();
-                    int position = 0;
-                    for (int i = 0; i < numCycles; i++) {
-                        final NetworkCycleDataForUid cycleData = data.get(i);
-                        if (cycleData.getEndTime() == mSelectedCycle) {
-                            position = i;
-                            break;
-                        }
-                    }
-                    if (position > 0) {
-                        mCycle.setSelection(position);
-                    }
-                    bindData(position);
-                } else {
-                    bindData(0 /* position */);
+                if (mUsageCacheKey != null) {
+                    AppDataUsageCycleCache.getInstance(mContext).put(mUsageCacheKey, data);
                 }
+                bindUsageData(data);
             }
 
             @Override
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.net.NetworkTemplate;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.net.NetworkCycleDataForUid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Process-wide cache of the per-cycle data usage of the apps opened in {@link AppDataUsage}, so
+ * that returning to an app shows its usage right away while it is reloaded.
+ *
+ * <p>Entries are dropped when the system reports memory pressure.
+ */
+public class AppDataUsageCycleCache implements ComponentCallbacks2 {
+
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 16;
+
+    private static AppDataUsageCycleCache sInstance;
+
+    private final LruCache<Key, List<NetworkCycleDataForUid>> mUsageData =
+            new LruCache<>(MAX_ENTRIES);
+
+    /** Returns the shared cache, registering for memory pressure callbacks on first use. */
+    public static synchronized AppDataUsageCycleCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AppDataUsageCycleCache();
+            context.getApplicationContext().registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppDataUsageCycleCache() {
+    }
+
+    /** Returns the last usage loaded for {@code key}, or null if it is not cached. */
+    @Nullable
+    public List<NetworkCycleDataForUid> get(Key key) {
+        return mUsageData.get(key);
+    }
+
+    /** Caches the usage loaded for {@code key}. */
+    public void put(Key key, List<NetworkCycleDataForUid> usageData) {
+        mUsageData.put(key, new ArrayList<>(usageData));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mUsageData.evictAll();
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            mUsageData.trimToSize(MAX_ENTRIES / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        mUsageData.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /** The network, uids and cycles the usage of an app was loaded for. */
+    public static final class Key {
+        private final NetworkTemplate mTemplate;
+        private final int[] mUids;
+        @Nullable
+        private final List<Long> mCycles;
+
+        public Key(NetworkTemplate template, int[] uids, @Nullable List<Long> cycles) {
+            mTemplate = template;
+            mUids = uids.clone();
+            Arrays.sort(mUids);
+            mCycles = cycles != null ? new ArrayList<>(cycles) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return Objects.equals(mTemplate, other.mTemplate)
+                    && Arrays.equals(mUids, other.mUids)
+                    && Objects.equals(mCycles, other.mCycles);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mTemplate, Arrays.hashCode(mUids), mCycles);
+        }
+    }
+}
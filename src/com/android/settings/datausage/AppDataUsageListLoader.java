@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+import static android.net.TrafficStats.UID_REMOVED;
+import static android.net.TrafficStats.UID_TETHERING;
+
+import android.app.ActivityManager;
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStats.Bucket;
+import android.app.usage.NetworkStatsManager;
+import android.content.Context;
+import android.net.NetworkPolicyManager;
+import android.net.NetworkTemplate;
+import android.os.Process;
+import android.os.RemoteException;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+import com.android.settingslib.utils.AsyncLoaderCompat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the data usage of a network template over a time range, collapsed into the
+ * {@link AppItem}s listed by {@link DataUsageList} and sorted in list order.
+ *
+ * <p>The usage buckets are first folded into one total per uid, so the users and profiles the
+ * uids belong to are resolved once per uid instead of once per bucket.
+ */
+public class AppDataUsageListLoader extends AsyncLoaderCompat<List<AppItem>> {
+
+    private static final String TAG = "AppDataUsageListLoader";
+
+    private final NetworkStatsManager mNetworkStatsManager;
+    private final NetworkPolicyManager mPolicyManager;
+    private final UserManager mUserManager;
+    private final NetworkTemplate mTemplate;
+    private final long mStart;
+    private final long mEnd;
+
+    public AppDataUsageListLoader(Context context, NetworkTemplate template, long start,
+            long end) {
+        this(context, context.getSystemService(NetworkStatsManager.class),
+                NetworkPolicyManager.from(context), context.getSystemService(UserManager.class),
+                template, start, end);
+    }
+
+    @VisibleForTesting
+    AppDataUsageListLoader(Context context, NetworkStatsManager networkStatsManager,
+            NetworkPolicyManager policyManager, UserManager userManager,
+            NetworkTemplate template, long start, long end) {
+        super(context);
+        mNetworkStatsManager = networkStatsManager;
+        mPolicyManager = policyManager;
+        mUserManager = userManager;
+        mTemplate = template;
+        mStart = start;
+        mEnd = end;
+    }
+
+    @Override
+    public List<AppItem> loadInBackground() {
+        final NetworkStats stats;
+        try {
+            stats = mNetworkStatsManager.querySummary(mTemplate, mStart, mEnd);
+        } catch (RemoteException e) {
+            Log.e(TAG, "Exception querying network detail.", e);
+            return Collections.emptyList();
+        }
+        if (stats == null) {
+            return Collections.emptyList();
+        }
+        final SparseLongArray usageByUid = new SparseLongArray();
+        try {
+            final Bucket bucket = new Bucket();
+            while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
+                final int uid = bucket.getUid();
+                usageByUid.put(uid,
+                        usageByUid.get(uid) + bucket.getRxBytes() + bucket.getTxBytes());
+            }
+        } finally {
+            stats.close();
+        }
+        return buildAppItems(usageByUid,
+                mPolicyManager.getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND));
+    }
+
+    @Override
+    protected void onDiscardResult(List<AppItem> result) {
+    }
+
+    /**
+     * Collapses the usage of each uid into the items shown in the list, and marks the items of
+     * {@code restrictedUids} as restricted.
+     */
+    @VisibleForTesting
+    List<AppItem> buildAppItems(SparseLongArray usageByUid, int[] restrictedUids) {
+        final int currentUserId = ActivityManager.getCurrentUser();
+        final SparseBooleanArray profiles = new SparseBooleanArray();
+        for (UserHandle profile : mUserManager.getUserProfiles()) {
+            profiles.put(profile.getIdentifier(), true);
+        }
+        // User id -> whether that user still exists, for users outside of the profile group.
+        final SparseBooleanArray otherUsers = new SparseBooleanArray();
+        final ArrayList<AppItem> items = new ArrayList<>();
+        final SparseArray<AppItem> knownItems = new SparseArray<>();
+
+        for (int i = 0; i < usageByUid.size(); i++) {
+            // Decide how to collapse items together
+            final int uid = usageByUid.keyAt(i);
+            final long bytes = usageByUid.valueAt(i);
+            final int collapseKey;
+            final int category;
+            final int userId = UserHandle.getUserId(uid);
+            if (UserHandle.isApp(uid)) {
+                if (profiles.get(userId)) {
+                    if (userId != currentUserId) {
+                        // Add to a managed user item.
+                        final int managedKey = UidDetailProvider.buildKeyForUser(userId);
+                        accumulate(managedKey, knownItems, uid, bytes, AppItem.CATEGORY_USER,
+                                items);
+                    }
+                    // Add to app item.
+                    collapseKey = uid;
+                    category = AppItem.CATEGORY_APP;
+                } else {
+                    int index = otherUsers.indexOfKey(userId);
+                    if (index < 0) {
+                        otherUsers.put(userId, mUserManager.getUserInfo(userId) != null);
+                        index = otherUsers.indexOfKey(userId);
+                    }
+                    if (!otherUsers.valueAt(index)) {
+                        // If it is a removed user add it to the removed users' key
+                        collapseKey = UID_REMOVED;
+                        category = AppItem.CATEGORY_APP;
+                    } else {
+                        // Add to other user item.
+                        collapseKey = UidDetailProvider.buildKeyForUser(userId);
+                        category = AppItem.CATEGORY_USER;
+                    }
+                }
+            } else if (uid == UID_REMOVED || uid == UID_TETHERING
+                    || uid == Process.OTA_UPDATE_UID) {
+                collapseKey = uid;
+                category = AppItem.CATEGORY_APP;
+            } else {
+                collapseKey = Process.SYSTEM_UID;
+                category = AppItem.CATEGORY_APP;
+            }
+            accumulate(collapseKey, knownItems, uid, bytes, category, items);
+        }
+
+        for (int uid : restrictedUids) {
+            // Only splice in restricted state for current user or managed users
+            if (!profiles.get(UserHandle.getUserId(uid))) {
+                continue;
+            }
+
+            AppItem item = knownItems.get(uid);
+            if (item == null) {
+                item = new AppItem(uid);
+                item.total = -1;
+                items.add(item);
+                knownItems.put(item.key, item);
+            }
+            item.restricted = true;
+        }
+
+        Collections.sort(items);
+        return items;
+    }
+
+    /**
+     * Accumulates the data usage of a uid into the item mapped by the collapse key, creating the
+     * item if needed.
+     */
+    private static void accumulate(int collapseKey, SparseArray<AppItem> knownItems, int uid,
+            long bytes, int itemCategory, List<AppItem> items) {
+        AppItem item = knownItems.get(collapseKey);
+        if (item == null) {
+            item = new AppItem(collapseKey);
+            item.category = itemCategory;
+            items.add(item);
+            knownItems.put(item.key, item);
+        }
+        item.addUid(uid);
+        item.total += bytes;
+    }
+}
@@ -30,8 +30,8 @@ import java.text.NumberFormat;
 
 public class AppDataUsagePreference extends AppPreference {
 
-    private final AppItem mItem;
-    private final int mPercent;
+    private AppItem mItem;
+    private int mPercent;
     private UidDetail mDetail;
 
     public AppDataUsagePreference(Context context, AppItem item, int percent,
@@ -39,12 +39,7 @@ public class AppDataUsagePreference extends AppPreference {
         super(context);
         mItem = item;
         mPercent = percent;
-
-        if (item.restricted && item.total <= 0) {
-            setSummary(com.android.settings.R.string.data_usage_app_restricted);
-        } else {
-            setSummary(DataUsageUtils.formatDataUsage(context, item.total));
-        }
+        updateSummary();
         mDetail = provider.getUidDetail(item.key, false /* blocking */);
         if (mDetail != null) {
             setAppInfo();
@@ -85,4 +80,23 @@ public class AppDataUsagePreference extends AppPreference {
     public AppItem getItem() {
         return mItem;
     }
+
+    /**
+     * Shows the usage of {@code item}, which must have the same key as the current item, so the
+     * preference can be kept when the usage is reloaded.
+     */
+    public void setItem(AppItem item, int percent) {
+        mItem = item;
+        mPercent = percent;
+        updateSummary();
+        notifyChanged();
+    }
+
+    private void updateSummary() {
+        if (mItem.restricted && mItem.total <= 0) {
+            setSummary(com.android.settings.R.string.data_usage_app_restricted);
+        } else {
+            setSummary(DataUsageUtils.formatDataUsage(getContext(), mItem.total));
+        }
+    }
 }
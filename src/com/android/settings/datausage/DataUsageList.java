@@ -14,28 +14,18 @@
 
 package com.android.settings.datausage;
 
-import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
 import static android.net.NetworkStatsHistory.FIELD_RX_BYTES;
 import static android.net.NetworkStatsHistory.FIELD_TX_BYTES;
-import static android.net.TrafficStats.UID_REMOVED;
-import static android.net.TrafficStats.UID_TETHERING;
 
 import android.app.Activity;
-import android.app.ActivityManager;
 import android.app.settings.SettingsEnums;
-import android.app.usage.NetworkStats;
-import android.app.usage.NetworkStats.Bucket;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.UserInfo;
 import android.graphics.Color;
 import android.net.ConnectivityManager;
 import android.net.NetworkPolicy;
 import android.net.NetworkTemplate;
 import android.os.Bundle;
-import android.os.Process;
-import android.os.UserHandle;
-import android.os.UserManager;
 import android.provider.Settings;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
@@ -65,11 +55,9 @@ import com.android.settings.widget.LoadingViewController;
 import com.android.settingslib.AppItem;
 import com.android.settingslib.net.NetworkCycleChartData;
 import com.android.settingslib.net.NetworkCycleChartDataLoader;
-import com.android.settingslib.net.NetworkStatsSummaryLoader;
 import com.android.settingslib.net.UidDetailProvider;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -352,100 +340,50 @@ public class DataUsageList extends DataUsageBaseFragment
     }
 
     /**
-     * Bind the given {@link NetworkStats}, or {@code null} to clear list.
+     * Bind the given sorted {@link AppItem}s, or {@code null} to clear list. The preferences of
+     * apps that are still listed are kept and updated.
      */
-    private void bindStats(NetworkStats stats, int[] restrictedUids) {
-        mApps.removeAll();
-        if (stats == null) {
+    @VisibleForTesting
+    void bindStats(List<AppItem> items) {
+        if (items == null) {
+            mApps.removeAll();
             if (LOGD) {
                 Log.d(TAG, "No network stats data. App list cleared.");
             }
             return;
         }
 
-        final ArrayList<AppItem> items = new ArrayList<>();
-        long largest = 0;
-
-        final int currentUserId = ActivityManager.getCurrentUser();
-        final UserManager userManager = UserManager.get(getContext());
-        final List<UserHandle> profiles = userManager.getUserProfiles();
-        final SparseArray<AppItem> knownItems = new SparseArray<AppItem>();
-
-        final Bucket bucket = new Bucket();
-        while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
-            // Decide how to collapse items together
-            final int uid = bucket.getUid();
-            final int collapseKey;
-            final int category;
-            final int userId = UserHandle.getUserId(uid);
-            if (UserHandle.isApp(uid)) {
-                if (profiles.contains(new UserHandle(userId))) {
-                    if (userId != currentUserId) {
-                        // Add to a managed user item.
-                        final int managedKey = UidDetailProvider.buildKeyForUser(userId);
-                        largest = accumulate(managedKey, knownItems, bucket,
-                            AppItem.CATEGORY_USER, items, largest);
-                    }
-                    // Add to app item.
-                    collapseKey = uid;
-                    category = AppItem.CATEGORY_APP;
-                } else {
-                    // If it is a removed user add it to the removed users' key
-                    final UserInfo info = userManager.getUserInfo(userId);
-                    if (info == null) {
-                        collapseKey = UID_REMOVED;
-                        category = AppItem.CATEGORY_APP;
-                    } else {
-                        // Add to other user item.
-                        collapseKey = UidDetailProvider.buildKeyForUser(userId);
-                        category = AppItem.CATEGORY_USER;
-                    }
-                }
-            } else if (uid == UID_REMOVED || uid == UID_TETHERING
-                    || uid == Process.OTA_UPDATE_UID) {
-                collapseKey = uid;
-                category = AppItem.CATEGORY_APP;
-            } else {
-                collapseKey = android.os.Process.SYSTEM_UID;
-                category = AppItem.CATEGORY_APP;
-            }
-            largest = accumulate(collapseKey, knownItems, bucket, category, items, largest);
+        final SparseArray<AppDataUsagePreference> oldPreferences = new SparseArray<>();
+        for (int i = 0; i < mApps.getPreferenceCount(); i++) {
+            final AppDataUsagePreference preference =
+                    (AppDataUsagePreference) mApps.getPreference(i);
+            oldPreferences.put(preference.getItem().key, preference);
         }
-        stats.close();
-
-        final int restrictedUidsMax = restrictedUids.length;
-        for (int i = 0; i < restrictedUidsMax; ++i) {
-            final int uid = restrictedUids[i];
-            // Only splice in restricted state for current user or managed users
-            if (!profiles.contains(new UserHandle(UserHandle.getUserId(uid)))) {
-                continue;
-            }
 
-            AppItem item = knownItems.get(uid);
-            if (item == null) {
-                item = new AppItem(uid);
-                item.total = -1;
-                items.add(item);
-                knownItems.put(item.key, item);
-            }
-            item.restricted = true;
+        long largest = 0;
+        for (AppItem item : items) {
+            largest = Math.max(largest, item.total);
         }
-
-        Collections.sort(items);
         for (int i = 0; i < items.size(); i++) {
-            final int percentTotal = largest != 0 ? (int) (items.get(i).total * 100 / largest) : 0;
-            final AppDataUsagePreference preference = new AppDataUsagePreference(getContext(),
-                    items.get(i), percentTotal, mUidDetailProvider);
-            preference.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
-                @Override
-                public boolean onPreferenceClick(Preference preference) {
-                    AppDataUsagePreference pref = (AppDataUsagePreference) preference;
-                    AppItem item = pref.getItem();
-                    startAppDataUsage(item);
+            final AppItem item = items.get(i);
+            final int percentTotal = largest != 0 ? (int) (item.total * 100 / largest) : 0;
+            AppDataUsagePreference preference = oldPreferences.get(item.key);
+            if (preference != null) {
+                oldPreferences.remove(item.key);
+                preference.setItem(item, percentTotal);
+            } else {
+                preference = new AppDataUsagePreference(getContext(), item, percentTotal,
+                        mUidDetailProvider);
+                preference.setOnPreferenceClickListener(pref -> {
+                    startAppDataUsage(((AppDataUsagePreference) pref).getItem());
                     return true;
-                }
-            });
-            mApps.addPreference(preference);
+                });
+                mApps.addPreference(preference);
+            }
+            preference.setOrder(i);
+        }
+        for (int i = 0; i < oldPreferences.size(); i++) {
+            mApps.removePreference(oldPreferences.valueAt(i));
         }
     }
 
@@ -466,6 +404,9 @@ public class DataUsageList extends DataUsageBaseFragment
         args.putSerializable(AppDataUsage.ARG_NETWORK_CYCLES, mCycles);
         args.putLong(AppDataUsage.ARG_SELECTED_CYCLE,
             mCycleData.get(mCycleSpinner.getSelectedItemPosition()).getEndTime());
+        if (item.total >= 0) {
+            args.putLong(AppDataUsage.ARG_SELECTED_CYCLE_USAGE, item.total);
+        }
 
         new SubSettingLauncher(getContext())
                 .setDestination(AppDataUsage.class.getName())
@@ -475,30 +416,6 @@ public class DataUsageList extends DataUsageBaseFragment
                 .launch();
     }
 
-    /**
-     * Accumulate data usage of a network stats entry for the item mapped by the collapse key.
-     * Creates the item if needed.
-     *
-     * @param collapseKey  the collapse key used to map the item.
-     * @param knownItems   collection of known (already existing) items.
-     * @param bucket       the network stats bucket to extract data usage from.
-     * @param itemCategory the item is categorized on the list view by this category. Must be
-     */
-    private static long accumulate(int collapseKey, final SparseArray<AppItem> knownItems,
-            Bucket bucket, int itemCategory, ArrayList<AppItem> items, long largest) {
-        final int uid = bucket.getUid();
-        AppItem item = knownItems.get(collapseKey);
-        if (item == null) {
-            item = new AppItem(collapseKey);
-            item.category = itemCategory;
-            items.add(item);
-            knownItems.put(item.key, item);
-        }
-        item.addUid(uid);
-        item.total += bucket.getRxBytes() + bucket.getTxBytes();
-        return Math.max(largest, item.total);
-    }
-
     private OnItemSelectedListener mCycleListener = new OnItemSelectedListener() {
         @Override
         public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
@@ -549,28 +466,23 @@ public class DataUsageList extends DataUsageBaseFragment
         }
     };
 
-    private final LoaderCallbacks<NetworkStats> mNetworkStatsDetailCallbacks =
-            new LoaderCallbacks<NetworkStats>() {
+    private final LoaderCallbacks<List<AppItem>> mNetworkStatsDetailCallbacks =
+            new LoaderCallbacks<List<AppItem>>() {
         @Override
-        public Loader<NetworkStats> onCreateLoader(int id, Bundle args) {
-            return new NetworkStatsSummaryLoader.Builder(getContext())
-                    .setStartTime(mChart.getInspectStart())
-                    .setEndTime(mChart.getInspectEnd())
-                    .setNetworkTemplate(mTemplate)
-                    .build();
+        public Loader<List<AppItem>> onCreateLoader(int id, Bundle args) {
+            return new AppDataUsageListLoader(getContext(), mTemplate,
+                    mChart.getInspectStart(), mChart.getInspectEnd());
         }
 
         @Override
-        public void onLoadFinished(Loader<NetworkStats> loader, NetworkStats data) {
-            final int[] restrictedUids = services.mPolicyManager.getUidsWithPolicy(
-                    POLICY_REJECT_METERED_BACKGROUND);
-            bindStats(data, restrictedUids);
+        public void onLoadFinished(Loader<List<AppItem>> loader, List<AppItem> data) {
+            bindStats(data);
             updateEmptyVisible();
         }
 
         @Override
-        public void onLoaderReset(Loader<NetworkStats> loader) {
-            bindStats(null, new int[0]);
+        public void onLoaderReset(Loader<List<AppItem>> loader) {
+            bindStats(null);
             updateEmptyVisible();
         }
 
@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.PersistableBundle;
+import android.os.SystemClock;
+import android.telephony.CarrierConfigManager;
+import android.telephony.ServiceState;
+import android.telephony.SignalStrength;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+import android.text.format.DateUtils;
+import android.util.SparseArray;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.DeviceInfoUtils;
+import com.android.settingslib.utils.ThreadUtils;
+
+/**
+ * Process-wide holder of the SIM status and IMEI information of each slot, as shown by About
+ * phone and its SIM status and IMEI dialogs.
+ *
+ * <p>About phone prefetches the states in the background when it is created, so that opening a
+ * dialog doesn't query telephony on the main thread. A state is dropped whenever the
+ * subscriptions or the carrier config change. Service state, signal strength and network types
+ * change all the time, so they are only kept for {@link #MAX_VOLATILE_STATE_AGE_MS} as a
+ * starting point: the SIM status dialog keeps them up to date from its telephony callbacks.
+ */
+public class DeviceInfoSnapshot {
+
+    /** Service state, signal strength and network types are not handed out after this. */
+    @VisibleForTesting
+    static final long MAX_VOLATILE_STATE_AGE_MS = 5 * DateUtils.SECOND_IN_MILLIS;
+
+    private static DeviceInfoSnapshot sInstance;
+
+    private final Context mContext;
+    private final TelephonyManager mTelephonyManager;
+    private final Object mLock = new Object();
+
+    @GuardedBy("mLock")
+    private int mVersion;
+    @GuardedBy("mLock")
+    private final SparseArray<SimSlotState> mSimSlotStates = new SparseArray<>();
+    @GuardedBy("mLock")
+    private final SparseArray<ImeiState> mImeiStates = new SparseArray<>();
+
+    private final SubscriptionManager.OnSubscriptionsChangedListener mSubscriptionsListener =
+            new SubscriptionManager.OnSubscriptionsChangedListener() {
+                @Override
+                public void onSubscriptionsChanged() {
+                    invalidate();
+                }
+            };
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (!isInitialStickyBroadcast()) {
+                invalidate();
+            }
+        }
+    };
+
+    /** Returns the snapshot for the telephony manager of {@code context}. */
+    public static synchronized DeviceInfoSnapshot getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final TelephonyManager manager = appContext.getSystemService(TelephonyManager.class);
+        if (sInstance == null || sInstance.mTelephonyManager != manager) {
+            sInstance = new DeviceInfoSnapshot(appContext, manager);
+            sInstance.startMonitoring();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the snapshot if {@code manager} is a plain {@link TelephonyManager}, whose results
+     * the snapshot shares, or null for a missing or overridden manager.
+     */
+    @Nullable
+    public static DeviceInfoSnapshot getInstanceFor(Context context, TelephonyManager manager) {
+        if (manager == null || manager.getClass() != TelephonyManager.class) {
+            return null;
+        }
+        return getInstance(context);
+    }
+
+    @VisibleForTesting
+    DeviceInfoSnapshot(Context context, TelephonyManager telephonyManager) {
+        mContext = context;
+        mTelephonyManager = telephonyManager;
+    }
+
+    /** Reads the state of every SIM slot in the background, unless it is already known. */
+    public void prefetch() {
+        if (mTelephonyManager == null) {
+            return;
+        }
+        ThreadUtils.postOnBackgroundThread(() -> {
+            for (int slotIndex = 0; slotIndex < mTelephonyManager.getPhoneCount(); slotIndex++) {
+                getSimSlotState(slotIndex);
+                getImeiState(slotIndex);
+            }
+        });
+    }
+
+    /** Returns the state of a SIM slot, reading it if it is not known yet. */
+    public SimSlotState getSimSlotState(int slotIndex) {
+        final int version;
+        synchronized (mLock) {
+            final SimSlotState cachedState = getCachedSimSlotStateLocked(slotIndex);
+            if (cachedState != null) {
+                return cachedState;
+            }
+            version = mVersion;
+        }
+        // Read outside of the lock, so invalidation from the main thread never waits on binder.
+        final SimSlotState state = SimSlotState.load(mContext, slotIndex);
+        synchronized (mLock) {
+            // Don't keep a state that was read while the subscriptions changed.
+            if (version == mVersion) {
+                mSimSlotStates.put(slotIndex, state);
+            }
+        }
+        return state;
+    }
+
+    /** Returns the state of a SIM slot if it is already known, without reading it. */
+    @Nullable
+    public SimSlotState getCachedSimSlotState(int slotIndex) {
+        synchronized (mLock) {
+            return getCachedSimSlotStateLocked(slotIndex);
+        }
+    }
+
+    @GuardedBy("mLock")
+    @Nullable
+    private SimSlotState getCachedSimSlotStateLocked(int slotIndex) {
+        final SimSlotState state = mSimSlotStates.get(slotIndex);
+        if (state == null || !state.hasVolatileState || SystemClock.elapsedRealtime()
+                - state.loadTimeMillis < MAX_VOLATILE_STATE_AGE_MS) {
+            return state;
+        }
+        // Keep the subscription and carrier config, let the caller listen for the rest.
+        final SimSlotState stableState = state.withoutVolatileState();
+        mSimSlotStates.put(slotIndex, stableState);
+        return stableState;
+    }
+
+    /** Returns the IMEI information of a SIM slot, reading it if it is not known yet. */
+    public ImeiState getImeiState(int slotIndex) {
+        final int version;
+        synchronized (mLock) {
+            final ImeiState cachedState = mImeiStates.get(slotIndex);
+            if (cachedState != null) {
+                return cachedState;
+            }
+            version = mVersion;
+        }
+        final ImeiState state = ImeiState.load(mContext, slotIndex);
+        synchronized (mLock) {
+            if (version == mVersion) {
+                mImeiStates.put(slotIndex, state);
+            }
+        }
+        return state;
+    }
+
+    /** Returns the IMEI information of a SIM slot if it is already known, without reading it. */
+    @Nullable
+    public ImeiState getCachedImeiState(int slotIndex) {
+        synchronized (mLock) {
+            return mImeiStates.get(slotIndex);
+        }
+    }
+
+    /** Drops the state of all slots, so that it is read again when next needed. */
+    public void invalidate() {
+        synchronized (mLock) {
+            mVersion++;
+            mSimSlotStates.clear();
+            mImeiStates.clear();
+        }
+    }
+
+    private void startMonitoring() {
+        final SubscriptionManager subscriptionManager =
+                mContext.getSystemService(SubscriptionManager.class);
+        if (mTelephonyManager == null || subscriptionManager == null) {
+            return;
+        }
+        subscriptionManager.addOnSubscriptionsChangedListener(mContext.getMainExecutor(),
+                mSubscriptionsListener);
+        mContext.registerReceiver(mReceiver,
+                new IntentFilter(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED));
+    }
+
+    /** SIM status of one slot, as read at one point in time. */
+    public static class SimSlotState {
+        public final int slotIndex;
+        /** {@link SystemClock#elapsedRealtime()} when the state was read. */
+        public final long loadTimeMillis;
+        /**
+         * False once the service state, signal strength and network types are too old to show,
+         * in which case they are null and unknown.
+         */
+        public final boolean hasVolatileState;
+        /** Null if the slot has no active subscription, in which case nothing else is read. */
+        @Nullable
+        public final SubscriptionInfo subscriptionInfo;
+        public final int phoneType;
+        @Nullable
+        public final ServiceState serviceState;
+        @Nullable
+        public final SignalStrength signalStrength;
+        public final int dataNetworkType;
+        public final int voiceNetworkType;
+        public final boolean showSignalStrength;
+        public final boolean show4GForLte;
+        public final boolean showIccid;
+        public final boolean showImsRegistrationState;
+        /** Null unless {@link #showIccid}. */
+        @Nullable
+        public final String iccid;
+        @Nullable
+        public final String phoneNumber;
+
+        private SimSlotState(int slotIndex, @Nullable SubscriptionInfo subscriptionInfo,
+                @Nullable TelephonyManager telephonyManager,
+                @Nullable PersistableBundle carrierConfig, @Nullable String phoneNumber) {
+            this.slotIndex = slotIndex;
+            this.subscriptionInfo = subscriptionInfo;
+            this.phoneNumber = phoneNumber;
+            loadTimeMillis = SystemClock.elapsedRealtime();
+            hasVolatileState = telephonyManager != null;
+            if (telephonyManager == null) {
+                phoneType = TelephonyManager.PHONE_TYPE_NONE;
+                serviceState = null;
+                signalStrength = null;
+                dataNetworkType = TelephonyManager.NETWORK_TYPE_UNKNOWN;
+                voiceNetworkType = TelephonyManager.NETWORK_TYPE_UNKNOWN;
+                showSignalStrength = true;
+                show4GForLte = false;
+                showIccid = false;
+                showImsRegistrationState = false;
+                iccid = null;
+                return;
+            }
+            phoneType = telephonyManager.getPhoneType();
+            // getServiceState() may return null when the subscription is inactive
+            // or when there was an error communicating with the phone process.
+            serviceState = telephonyManager.getServiceState();
+            signalStrength = telephonyManager.getSignalStrength();
+            dataNetworkType = telephonyManager.getDataNetworkType();
+            voiceNetworkType = telephonyManager.getVoiceNetworkType();
+            // Signal strength is shown by default, the others are not.
+            showSignalStrength = carrierConfig == null || carrierConfig.getBoolean(
+                    CarrierConfigManager.KEY_SHOW_SIGNAL_STRENGTH_IN_SIM_STATUS_BOOL);
+            show4GForLte = carrierConfig != null && carrierConfig.getBoolean(
+                    CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL);
+            showIccid = carrierConfig != null && carrierConfig.getBoolean(
+                    CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL);
+            showImsRegistrationState = carrierConfig != null && carrierConfig.getBoolean(
+                    CarrierConfigManager.KEY_SHOW_IMS_REGISTRATION_STATUS_BOOL);
+            iccid = showIccid ? telephonyManager.getSimSerialNumber() : null;
+        }
+
+        private SimSlotState(SimSlotState state) {
+            slotIndex = state.slotIndex;
+            loadTimeMillis = state.loadTimeMillis;
+            hasVolatileState = false;
+            subscriptionInfo = state.subscriptionInfo;
+            phoneType = state.phoneType;
+            serviceState = null;
+            signalStrength = null;
+            dataNetworkType = TelephonyManager.NETWORK_TYPE_UNKNOWN;
+            voiceNetworkType = TelephonyManager.NETWORK_TYPE_UNKNOWN;
+            showSignalStrength = state.showSignalStrength;
+            show4GForLte = state.show4GForLte;
+            showIccid = state.showIccid;
+            showImsRegistrationState = state.showImsRegistrationState;
+            iccid = state.iccid;
+            phoneNumber = state.phoneNumber;
+        }
+
+        /** Returns a copy of this state without service state, signal strength or network types. */
+        private SimSlotState withoutVolatileState() {
+            return new SimSlotState(this);
+        }
+
+        /**
+         * Reads the state of a SIM slot from the telephony services of {@code context}. This
+         * makes several binder calls.
+         */
+        public static SimSlotState load(Context context, int slotIndex) {
+            final SubscriptionInfo subscriptionInfo = SubscriptionManager.from(context)
+                    .getActiveSubscriptionInfoForSimSlotIndex(slotIndex);
+            if (subscriptionInfo == null) {
+                return new SimSlotState(slotIndex, null /* subscriptionInfo */,
+                        null /* telephonyManager */, null /* carrierConfig */,
+                        null /* phoneNumber */);
+            }
+            final int subId = subscriptionInfo.getSubscriptionId();
+            final TelephonyManager telephonyManager = context.getSystemService(
+                    TelephonyManager.class).createForSubscriptionId(subId);
+            final PersistableBundle carrierConfig = context.getSystemService(
+                    CarrierConfigManager.class).getConfigForSubId(subId);
+            return new SimSlotState(slotIndex, subscriptionInfo, telephonyManager, carrierConfig,
+                    DeviceInfoUtils.getBidiFormattedPhoneNumber(context, subscriptionInfo));
+        }
+    }
+
+    /** IMEI and MEID information of one slot, as shown by the IMEI preferences and dialog. */
+    public static class ImeiState {
+        public final int slotIndex;
+        @Nullable
+        public final SubscriptionInfo subscriptionInfo;
+        public final int phoneType;
+        @Nullable
+        public final String imei;
+        @Nullable
+        public final String imeiSv;
+        // The CDMA fields are only read for CDMA phones. MIN and PRL version come from the SIM,
+        // so they are empty if the slot has no active subscription.
+        @Nullable
+        public final String meid;
+        @Nullable
+        public final String cdmaMin;
+        @Nullable
+        public final String cdmaPrlVersion;
+        public final boolean cdmaLteEnabled;
+        public final boolean simPresent;
+
+        private ImeiState(int slotIndex, @Nullable SubscriptionInfo subscriptionInfo,
+                TelephonyManager defaultTelephonyManager) {
+            this.slotIndex = slotIndex;
+            this.subscriptionInfo = subscriptionInfo;
+            final TelephonyManager telephonyManager = subscriptionInfo != null
+                    ? defaultTelephonyManager.createForSubscriptionId(
+                            subscriptionInfo.getSubscriptionId())
+                    : defaultTelephonyManager;
+            phoneType = telephonyManager.getPhoneType();
+            imei = telephonyManager.getImei(slotIndex);
+            imeiSv = telephonyManager.getDeviceSoftwareVersion(slotIndex);
+            if (phoneType != TelephonyManager.PHONE_TYPE_CDMA) {
+                meid = null;
+                cdmaMin = null;
+                cdmaPrlVersion = null;
+                cdmaLteEnabled = false;
+                simPresent = false;
+                return;
+            }
+            meid = telephonyManager.getMeid(slotIndex);
+            if (subscriptionInfo != null) {
+                cdmaMin = telephonyManager.getCdmaMin(subscriptionInfo.getSubscriptionId());
+                cdmaPrlVersion = telephonyManager.getCdmaPrlVersion();
+                cdmaLteEnabled = telephonyManager.isLteCdmaEvdoGsmWcdmaEnabled();
+                simPresent = true;
+            } else {
+                cdmaMin = "";
+                cdmaPrlVersion = "";
+                cdmaLteEnabled = false;
+                final int simState = telephonyManager.getSimState(slotIndex);
+                simPresent = simState != TelephonyManager.SIM_STATE_ABSENT
+                        && simState != TelephonyManager.SIM_STATE_UNKNOWN;
+            }
+        }
+
+        /**
+         * Reads the IMEI information of a SIM slot from the telephony services of
+         * {@code context}. This makes several binder calls.
+         */
+        public static ImeiState load(Context context, int slotIndex) {
+            final SubscriptionInfo subscriptionInfo = SubscriptionManager.from(context)
+                    .getActiveSubscriptionInfoForSimSlotIndex(slotIndex);
+            return new ImeiState(slotIndex, subscriptionInfo,
+                    context.getSystemService(TelephonyManager.class));
+        }
+    }
+}
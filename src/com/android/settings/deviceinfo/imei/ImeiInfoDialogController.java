@@ -29,9 +29,12 @@ import android.text.style.TtsSpan;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot.ImeiState;
 
 public class ImeiInfoDialogController {
 
@@ -70,14 +73,26 @@ public class ImeiInfoDialogController {
     private final TelephonyManager mTelephonyManager;
     private final SubscriptionInfo mSubscriptionInfo;
     private final int mSlotId;
+    // Prefetched by About phone, null if the dialog has to query telephony itself.
+    @Nullable
+    private final ImeiState mImeiState;
 
     public ImeiInfoDialogController(@NonNull ImeiInfoDialogFragment dialog, int slotId) {
         mDialog = dialog;
         mSlotId = slotId;
         final Context context = dialog.getContext();
+        TelephonyManager tm = context.getSystemService(TelephonyManager.class);
+        final DeviceInfoSnapshot snapshot = DeviceInfoSnapshot.getInstanceFor(context, tm);
+        // Only valid slots are prefetched.
+        mImeiState = snapshot != null ? snapshot.getCachedImeiState(slotId) : null;
+        if (mImeiState != null) {
+            mSubscriptionInfo = mImeiState.subscriptionInfo;
+            mTelephonyManager = mSubscriptionInfo != null
+                    ? tm.createForSubscriptionId(mSubscriptionInfo.getSubscriptionId()) : tm;
+            return;
+        }
         mSubscriptionInfo = context.getSystemService(SubscriptionManager.class)
                 .getActiveSubscriptionInfoForSimSlotIndex(slotId);
-        TelephonyManager tm = context.getSystemService(TelephonyManager.class);
         if (mSubscriptionInfo != null) {
             mTelephonyManager = context.getSystemService(TelephonyManager.class)
                     .createForSubscriptionId(mSubscriptionInfo.getSubscriptionId());
@@ -96,7 +111,7 @@ public class ImeiInfoDialogController {
             Log.w(TAG, "TelephonyManager for this slot is null. Invalid slot? id=" + mSlotId);
             return;
         }
-        if (mTelephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA) {
+        if (getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA) {
             updateDialogForCdmaPhone();
         } else {
             updateDialogForGsmPhone();
@@ -107,9 +122,7 @@ public class ImeiInfoDialogController {
         final Resources res = mDialog.getContext().getResources();
         mDialog.setText(ID_MEID_NUMBER_VALUE, getMeid());
         // MIN needs to read from SIM. So if no SIM, we should not show MIN on UI
-        mDialog.setText(ID_MIN_NUMBER_VALUE, mSubscriptionInfo != null
-                ? mTelephonyManager.getCdmaMin(mSubscriptionInfo.getSubscriptionId())
-                : "");
+        mDialog.setText(ID_MIN_NUMBER_VALUE, getCdmaMin());
 
         if (res.getBoolean(R.bool.config_msid_enable)) {
             mDialog.setText(ID_MIN_NUMBER_LABEL,
@@ -121,10 +134,8 @@ public class ImeiInfoDialogController {
         if ((mSubscriptionInfo != null && isCdmaLteEnabled()) ||
                     (mSubscriptionInfo == null && isSimPresent(mSlotId))) {
             // Show IMEI for LTE device
-            mDialog.setText(ID_IMEI_VALUE,
-                    getTextAsDigits(mTelephonyManager.getImei(mSlotId)));
-            mDialog.setText(ID_IMEI_SV_VALUE,
-                    getTextAsDigits(mTelephonyManager.getDeviceSoftwareVersion(mSlotId)));
+            mDialog.setText(ID_IMEI_VALUE, getTextAsDigits(getImei()));
+            mDialog.setText(ID_IMEI_SV_VALUE, getTextAsDigits(getImeiSv()));
         } else {
             // device is not GSM/UMTS, do not display GSM/UMTS features
             mDialog.removeViewFromScreen(ID_GSM_SETTINGS);
@@ -132,25 +143,53 @@ public class ImeiInfoDialogController {
     }
 
     private void updateDialogForGsmPhone() {
-        mDialog.setText(ID_IMEI_VALUE, getTextAsDigits(mTelephonyManager.getImei(mSlotId)));
-        mDialog.setText(ID_IMEI_SV_VALUE,
-                getTextAsDigits(mTelephonyManager.getDeviceSoftwareVersion(mSlotId)));
+        mDialog.setText(ID_IMEI_VALUE, getTextAsDigits(getImei()));
+        mDialog.setText(ID_IMEI_SV_VALUE, getTextAsDigits(getImeiSv()));
         // device is not CDMA, do not display CDMA features
         mDialog.removeViewFromScreen(ID_CDMA_SETTINGS);
     }
 
+    private int getPhoneType() {
+        return mImeiState != null ? mImeiState.phoneType : mTelephonyManager.getPhoneType();
+    }
+
+    private String getImei() {
+        return mImeiState != null ? mImeiState.imei : mTelephonyManager.getImei(mSlotId);
+    }
+
+    private String getImeiSv() {
+        return mImeiState != null ? mImeiState.imeiSv
+                : mTelephonyManager.getDeviceSoftwareVersion(mSlotId);
+    }
+
+    private String getCdmaMin() {
+        if (mImeiState != null) {
+            return mImeiState.cdmaMin;
+        }
+        // MIN needs to read from SIM. So if no SIM, return empty
+        return mSubscriptionInfo != null
+                ? mTelephonyManager.getCdmaMin(mSubscriptionInfo.getSubscriptionId()) : "";
+    }
+
     @VisibleForTesting
     String getCdmaPrlVersion() {
+        if (mImeiState != null) {
+            return mImeiState.cdmaPrlVersion;
+        }
         // PRL needs to read from SIM. So if no SIM, return empty
         return mSubscriptionInfo != null ? mTelephonyManager.getCdmaPrlVersion() : "";
     }
 
     @VisibleForTesting
     boolean isCdmaLteEnabled() {
-        return mTelephonyManager.isLteCdmaEvdoGsmWcdmaEnabled();
+        return mImeiState != null ? mImeiState.cdmaLteEnabled
+                : mTelephonyManager.isLteCdmaEvdoGsmWcdmaEnabled();
     }
 
     boolean isSimPresent(int slotId) {
+        if (mImeiState != null) {
+            return mImeiState.simPresent;
+        }
         final int simState = mTelephonyManager.getSimState(slotId);
         if ((simState != TelephonyManager.SIM_STATE_ABSENT) &&
                 (simState != TelephonyManager.SIM_STATE_UNKNOWN)) {
@@ -161,7 +200,7 @@ public class ImeiInfoDialogController {
 
     @VisibleForTesting
     String getMeid() {
-        return mTelephonyManager.getMeid(mSlotId);
+        return mImeiState != null ? mImeiState.meid : mTelephonyManager.getMeid(mSlotId);
     }
 
     @VisibleForTesting
@@ -24,6 +24,7 @@ import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.fragment.app.Fragment;
 import androidx.preference.Preference;
@@ -32,6 +33,8 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot.ImeiState;
 import com.android.settings.slices.Sliceable;
 import com.android.settingslib.Utils;
 
@@ -102,6 +105,10 @@ public class ImeiInfoPreferenceController extends BasePreferenceController {
     private CharSequence getSummary(int simSlot) {
         final int phoneType = getPhoneType(simSlot);
         if (mContext.getResources().getBoolean(R.bool.configShowDeviceSensitiveInfo)) {
+            final ImeiState imeiState = getCachedImeiState(simSlot);
+            if (imeiState != null) {
+                return phoneType == PHONE_TYPE_CDMA ? imeiState.meid : imeiState.imei;
+            }
             return phoneType == PHONE_TYPE_CDMA ? mTelephonyManager.getMeid(simSlot)
                     : mTelephonyManager.getImei(simSlot);
         }
@@ -157,12 +164,27 @@ public class ImeiInfoPreferenceController extends BasePreferenceController {
     }
 
     private int getPhoneType(int slotIndex) {
+        final ImeiState imeiState = getCachedImeiState(slotIndex);
+        if (imeiState != null) {
+            return imeiState.phoneType;
+        }
         SubscriptionInfo subInfo = SubscriptionManager.from(mContext)
             .getActiveSubscriptionInfoForSimSlotIndex(slotIndex);
         return mTelephonyManager.getCurrentPhoneType(subInfo != null ? subInfo.getSubscriptionId()
                 : SubscriptionManager.DEFAULT_SUBSCRIPTION_ID);
     }
 
+    /**
+     * Returns the IMEI information prefetched by About phone, or null if it is not known yet and
+     * telephony has to be queried directly.
+     */
+    @Nullable
+    private ImeiState getCachedImeiState(int slotIndex) {
+        final DeviceInfoSnapshot snapshot =
+                DeviceInfoSnapshot.getInstanceFor(mContext, mTelephonyManager);
+        return snapshot != null ? snapshot.getCachedImeiState(slotIndex) : null;
+    }
+
     @VisibleForTesting
     Preference createNewPreference(Context context) {
         return new Preference(context);
@@ -29,11 +29,9 @@ import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.res.Resources;
 import android.os.IBinder;
-import android.os.PersistableBundle;
 import android.os.RemoteException;
 import android.telephony.AccessNetworkConstants;
 import android.telephony.Annotation;
-import android.telephony.CarrierConfigManager;
 import android.telephony.CellBroadcastIntents;
 import android.telephony.CellBroadcastService;
 import android.telephony.CellSignalStrength;
@@ -60,7 +58,8 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.android.settings.R;
-import com.android.settingslib.DeviceInfoUtils;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot.SimSlotState;
 import com.android.settingslib.Utils;
 import com.android.settingslib.core.lifecycle.Lifecycle;
 import com.android.settingslib.utils.ThreadUtils;
@@ -118,40 +117,29 @@ public class SimStatusDialogController implements LifecycleObserver {
             new OnSubscriptionsChangedListener() {
                 @Override
                 public void onSubscriptionsChanged() {
-                    final int prevSubId = (mSubscriptionInfo != null)
-                            ? mSubscriptionInfo.getSubscriptionId()
-                            : SubscriptionManager.INVALID_SUBSCRIPTION_ID;
-
-                    mSubscriptionInfo = getPhoneSubscriptionInfo(mSlotIndex);
-
-                    final int nextSubId = (mSubscriptionInfo != null)
-                            ? mSubscriptionInfo.getSubscriptionId()
-                            : SubscriptionManager.INVALID_SUBSCRIPTION_ID;
-
-                    if (prevSubId != nextSubId) {
-                        if (SubscriptionManager.isValidSubscriptionId(prevSubId)) {
-                            unregisterImsRegistrationCallback(prevSubId);
-                        }
-                        if (SubscriptionManager.isValidSubscriptionId(nextSubId)) {
-                            mTelephonyManager =
-                                    mTelephonyManager.createForSubscriptionId(nextSubId);
-                            registerImsRegistrationCallback(nextSubId);
-                        }
-                    }
-                    updateSubscriptionStatus();
+                    // Read the new state off the main thread, the dialog may be opening.
+                    ThreadUtils.postOnBackgroundThread(() -> {
+                        final SimSlotState simSlotState = SimSlotState.load(mContext, mSlotIndex);
+                        ThreadUtils.postOnMainThread(() -> onSimSlotStateChanged(simSlotState));
+                    });
                 }
             };
 
+    private SimSlotState mSimSlotState;
     private SubscriptionInfo mSubscriptionInfo;
     private TelephonyDisplayInfo mTelephonyDisplayInfo;
     private ServiceState mPreviousServiceState;
+    // Latest values, first from the SIM slot state then from the telephony callbacks.
+    private ServiceState mServiceState;
+    private SignalStrength mSignalStrength;
+    private int mDataNetworkType;
+    private int mVoiceNetworkType;
 
     private final int mSlotIndex;
     private TelephonyManager mTelephonyManager;
 
     private final SimStatusDialogFragment mDialog;
     private final SubscriptionManager mSubscriptionManager;
-    private final CarrierConfigManager mCarrierConfigManager;
     private final EuiccManager mEuiccManager;
     private final Resources mRes;
     private final Context mContext;
@@ -214,10 +202,8 @@ public class SimStatusDialogController implements LifecycleObserver {
         mDialog = dialog;
         mContext = dialog.getContext();
         mSlotIndex = slotId;
-        mSubscriptionInfo = getPhoneSubscriptionInfo(slotId);
 
         mTelephonyManager = mContext.getSystemService(TelephonyManager.class);
-        mCarrierConfigManager = mContext.getSystemService(CarrierConfigManager.class);
         mEuiccManager = mContext.getSystemService(EuiccManager.class);
         mSubscriptionManager = mContext.getSystemService(SubscriptionManager.class);
 
@@ -231,6 +217,7 @@ public class SimStatusDialogController implements LifecycleObserver {
     public void initialize() {
         requestForUpdateEid();
 
+        setSimSlotState(getSimSlotState());
         if (mSubscriptionInfo == null) {
             return;
         }
@@ -241,17 +228,58 @@ public class SimStatusDialogController implements LifecycleObserver {
         updateSubscriptionStatus();
     }
 
+    /**
+     * Returns the state of the SIM slot, which About phone has usually prefetched, so that
+     * opening the dialog doesn't query telephony on the main thread.
+     */
+    private SimSlotState getSimSlotState() {
+        final DeviceInfoSnapshot snapshot =
+                DeviceInfoSnapshot.getInstanceFor(mContext, mTelephonyManager);
+        return snapshot != null ? snapshot.getSimSlotState(mSlotIndex)
+                : SimSlotState.load(mContext, mSlotIndex);
+    }
+
+    private void setSimSlotState(SimSlotState simSlotState) {
+        mSimSlotState = simSlotState;
+        mSubscriptionInfo = simSlotState.subscriptionInfo;
+        mServiceState = simSlotState.serviceState;
+        mSignalStrength = simSlotState.signalStrength;
+        mDataNetworkType = simSlotState.dataNetworkType;
+        mVoiceNetworkType = simSlotState.voiceNetworkType;
+    }
+
+    private void onSimSlotStateChanged(SimSlotState simSlotState) {
+        if (!mIsRegisteredListener) {
+            return;
+        }
+        final int prevSubId = (mSubscriptionInfo != null)
+                ? mSubscriptionInfo.getSubscriptionId()
+                : SubscriptionManager.INVALID_SUBSCRIPTION_ID;
+        final int nextSubId = (simSlotState.subscriptionInfo != null)
+                ? simSlotState.subscriptionInfo.getSubscriptionId()
+                : SubscriptionManager.INVALID_SUBSCRIPTION_ID;
+
+        if (prevSubId != nextSubId && SubscriptionManager.isValidSubscriptionId(prevSubId)) {
+            unregisterImsRegistrationCallback(prevSubId);
+        }
+        setSimSlotState(simSlotState);
+        if (prevSubId != nextSubId && SubscriptionManager.isValidSubscriptionId(nextSubId)) {
+            mTelephonyManager = mTelephonyManager.createForSubscriptionId(nextSubId);
+            registerImsRegistrationCallback(nextSubId);
+        }
+        updateSubscriptionStatus();
+    }
+
     private void updateSubscriptionStatus() {
         updateNetworkProvider();
 
-        // getServiceState() may return null when the subscription is inactive
+        // The service state may be null when the subscription is inactive
         // or when there was an error communicating with the phone process.
-        final ServiceState serviceState = mTelephonyManager.getServiceState();
-        final SignalStrength signalStrength = mTelephonyManager.getSignalStrength();
+        final ServiceState serviceState = mServiceState;
 
         updatePhoneNumber();
         updateServiceState(serviceState);
-        updateSignalStrength(signalStrength);
+        updateSignalStrength(mSignalStrength);
         updateNetworkType();
         updateRoamingStatus(serviceState);
         updateIccidNumber();
@@ -320,6 +348,7 @@ public class SimStatusDialogController implements LifecycleObserver {
         if (mShowLatestAreaInfo) {
             mContext.unregisterReceiver(mAreaInfoReceiver);
         }
+        mIsRegisteredListener = false;
     }
 
     private void updateNetworkProvider() {
@@ -331,8 +360,7 @@ public class SimStatusDialogController implements LifecycleObserver {
     @VisibleForTesting
     protected void updatePhoneNumber() {
         // If formattedNumber is null or empty, it'll display as "Unknown".
-        mDialog.setText(PHONE_NUMBER_VALUE_ID,
-                DeviceInfoUtils.getBidiFormattedPhoneNumber(mContext, mSubscriptionInfo));
+        mDialog.setText(PHONE_NUMBER_VALUE_ID, mSimSlotState.phoneNumber);
     }
 
     private void updateDataState(int state) {
@@ -433,7 +461,7 @@ public class SimStatusDialogController implements LifecycleObserver {
     private void updateLatestAreaInfo() {
         mShowLatestAreaInfo = Resources.getSystem().getBoolean(
                 com.android.internal.R.bool.config_showAreaUpdateInfoSettings)
-                && mTelephonyManager.getPhoneType() != TelephonyManager.PHONE_TYPE_CDMA;
+                && mSimSlotState.phoneType != TelephonyManager.PHONE_TYPE_CDMA;
 
         if (mShowLatestAreaInfo) {
             // Bind cell broadcast service to get the area info. The info will be updated once
@@ -451,7 +479,7 @@ public class SimStatusDialogController implements LifecycleObserver {
             resetSignalStrength();
         } else if (!Utils.isInService(mPreviousServiceState)) {
             // If ServiceState changed from out of service -> in service, update signal strength.
-            updateSignalStrength(mTelephonyManager.getSignalStrength());
+            updateSignalStrength(mSignalStrength);
         }
 
         String serviceStateValue;
@@ -482,24 +510,15 @@ public class SimStatusDialogController implements LifecycleObserver {
             return;
         }
         // by default we show the signal strength
-        boolean showSignalStrength = true;
-        if (mSubscriptionInfo != null) {
-            final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subscriptionId);
-            if (carrierConfig != null) {
-                showSignalStrength = carrierConfig.getBoolean(
-                        CarrierConfigManager.KEY_SHOW_SIGNAL_STRENGTH_IN_SIM_STATUS_BOOL);
-            }
-        }
+        final boolean showSignalStrength = mSubscriptionInfo == null
+                || mSimSlotState.showSignalStrength;
         if (!showSignalStrength) {
             mDialog.removeSettingFromScreen(SIGNAL_STRENGTH_LABEL_ID);
             mDialog.removeSettingFromScreen(SIGNAL_STRENGTH_VALUE_ID);
             return;
         }
 
-        ServiceState serviceState = mTelephonyManager.getServiceState();
-        if (!Utils.isInService(serviceState)) {
+        if (!Utils.isInService(mServiceState)) {
             return;
         }
 
@@ -535,9 +554,8 @@ public class SimStatusDialogController implements LifecycleObserver {
         // Whether EDGE, UMTS, etc...
         String dataNetworkTypeName = null;
         String voiceNetworkTypeName = null;
-        final int subId = mSubscriptionInfo.getSubscriptionId();
-        final int actualDataNetworkType = mTelephonyManager.getDataNetworkType();
-        final int actualVoiceNetworkType = mTelephonyManager.getVoiceNetworkType();
+        final int actualDataNetworkType = mDataNetworkType;
+        final int actualVoiceNetworkType = mVoiceNetworkType;
         final int overrideNetworkType = mTelephonyDisplayInfo == null
                 ? TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NONE
                 : mTelephonyDisplayInfo.getOverrideNetworkType();
@@ -557,14 +575,7 @@ public class SimStatusDialogController implements LifecycleObserver {
             dataNetworkTypeName = "NR NSA";
         }
 
-        boolean show4GForLTE = false;
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
-        if (carrierConfig != null) {
-            show4GForLTE = carrierConfig.getBoolean(
-                    CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL);
-        }
-
-        if (show4GForLTE) {
+        if (mSimSlotState.show4GForLte) {
             if ("LTE".equals(dataNetworkTypeName)) {
                 dataNetworkTypeName = "4G";
             }
@@ -590,21 +601,11 @@ public class SimStatusDialogController implements LifecycleObserver {
 
     private void updateIccidNumber() {
         // do not show iccid by default
-        boolean showIccId = false;
-        if (mSubscriptionInfo != null) {
-            final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subscriptionId);
-            if (carrierConfig != null) {
-                showIccId = carrierConfig.getBoolean(
-                        CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL);
-            }
-        }
-        if (!showIccId) {
+        if (mSubscriptionInfo == null || !mSimSlotState.showIccid) {
             mDialog.removeSettingFromScreen(ICCID_INFO_LABEL_ID);
             mDialog.removeSettingFromScreen(ICCID_INFO_VALUE_ID);
         } else {
-            mDialog.setText(ICCID_INFO_VALUE_ID, mTelephonyManager.getSimSerialNumber());
+            mDialog.setText(ICCID_INFO_VALUE_ID, mSimSlotState.iccid);
         }
     }
 
@@ -665,15 +666,7 @@ public class SimStatusDialogController implements LifecycleObserver {
     }
 
     private boolean isImsRegistrationStateShowUp() {
-        if (mSubscriptionInfo == null) {
-            return false;
-        }
-        final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-        final PersistableBundle carrierConfig =
-                mCarrierConfigManager.getConfigForSubId(subscriptionId);
-        return carrierConfig == null ? false :
-                carrierConfig.getBoolean(
-                        CarrierConfigManager.KEY_SHOW_IMS_REGISTRATION_STATUS_BOOL);
+        return mSubscriptionInfo != null && mSimSlotState.showImsRegistrationState;
     }
 
     private void updateImsRegistrationState() {
@@ -731,10 +724,6 @@ public class SimStatusDialogController implements LifecycleObserver {
         imsMmTelMgr.unregisterImsRegistrationCallback(mImsRegStateCallback);
     }
 
-    private SubscriptionInfo getPhoneSubscriptionInfo(int slotId) {
-        return SubscriptionManager.from(mContext).getActiveSubscriptionInfoForSimSlotIndex(slotId);
-    }
-
     private int getDbm(SignalStrength signalStrength) {
         List<CellSignalStrength> cellSignalStrengthList = signalStrength.getCellSignalStrengths();
         int dbm = -1;
@@ -777,19 +766,24 @@ public class SimStatusDialogController implements LifecycleObserver {
             TelephonyCallback.DisplayInfoListener {
         @Override
         public void onDataConnectionStateChanged(int state, int networkType) {
+            mDataNetworkType = networkType;
             updateDataState(state);
             updateNetworkType();
         }
 
         @Override
         public void onSignalStrengthsChanged(SignalStrength signalStrength) {
+            mSignalStrength = signalStrength;
             updateSignalStrength(signalStrength);
         }
 
         @Override
         public void onServiceStateChanged(ServiceState serviceState) {
+            mServiceState = serviceState;
+            mVoiceNetworkType = serviceState.getVoiceNetworkType();
             updateNetworkProvider();
             updateServiceState(serviceState);
+            updateNetworkType();
             updateRoamingStatus(serviceState);
             mPreviousServiceState = serviceState;
         }
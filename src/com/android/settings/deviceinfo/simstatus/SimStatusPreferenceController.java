@@ -29,6 +29,8 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.core.PreferenceControllerMixin;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot.SimSlotState;
 import com.android.settingslib.deviceinfo.AbstractSimStatusImeiInfoPreferenceController;
 
 import java.util.ArrayList;
@@ -109,6 +111,15 @@ public class SimStatusPreferenceController extends
     }
 
     private CharSequence getCarrierName(int simSlot) {
+        final DeviceInfoSnapshot snapshot =
+                DeviceInfoSnapshot.getInstanceFor(mContext, mTelephonyManager);
+        final SimSlotState simSlotState =
+                snapshot != null ? snapshot.getCachedSimSlotState(simSlot) : null;
+        if (simSlotState != null) {
+            return simSlotState.subscriptionInfo != null
+                    ? simSlotState.subscriptionInfo.getCarrierName()
+                    : mContext.getText(R.string.device_info_not_available);
+        }
         final List<SubscriptionInfo> subscriptionInfoList =
                 mSubscriptionManager.getActiveSubscriptionInfoList();
         if (subscriptionInfoList != null) {
@@ -30,6 +30,7 @@ import android.content.pm.UserInfo;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.MediaStore;
@@ -39,6 +40,7 @@ import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
+import com.android.settings.core.instrumentation.PerformanceMetrics;
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
@@ -71,7 +73,11 @@ public class StorageAsyncLoader
 
     @Override
     public SparseArray<StorageResult> loadInBackground() {
-        return getStorageResultsForUsers();
+        final long startTime = SystemClock.elapsedRealtime();
+        final SparseArray<StorageResult> results = getStorageResultsForUsers();
+        PerformanceMetrics.getInstance().recordSince(PerformanceMetrics.CATEGORY_LOADER, TAG,
+                startTime);
+        return results;
     }
 
     private SparseArray<StorageResult> getStorageResultsForUsers() {
@@ -16,7 +16,9 @@
 package com.android.settings.fuelgauge;
 
 import android.content.Context;
+import android.os.SystemClock;
 
+import com.android.settings.core.instrumentation.PerformanceMetrics;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
@@ -42,6 +44,11 @@ public class BatteryHistoryLoader
     public Map<Long, Map<String, BatteryHistEntry>> loadInBackground() {
         final PowerUsageFeatureProvider powerUsageFeatureProvider =
             FeatureFactory.getFactory(mContext).getPowerUsageFeatureProvider(mContext);
-        return powerUsageFeatureProvider.getBatteryHistory(mContext);
+        final long startTime = SystemClock.elapsedRealtime();
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistory =
+                powerUsageFeatureProvider.getBatteryHistory(mContext);
+        PerformanceMetrics.getInstance().recordSince(PerformanceMetrics.CATEGORY_LOADER, TAG,
+                startTime);
+        return batteryHistory;
     }
 }
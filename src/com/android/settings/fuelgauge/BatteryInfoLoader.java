@@ -16,9 +16,11 @@
 package com.android.settings.fuelgauge;
 
 import android.content.Context;
+import android.os.SystemClock;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.core.instrumentation.PerformanceMetrics;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 /**
@@ -44,6 +46,10 @@ public class BatteryInfoLoader extends AsyncLoaderCompat<BatteryInfo>{
 
     @Override
     public BatteryInfo loadInBackground() {
-        return mBatteryUtils.getBatteryInfo(LOG_TAG);
+        final long startTime = SystemClock.elapsedRealtime();
+        final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(LOG_TAG);
+        PerformanceMetrics.getInstance().recordSince(PerformanceMetrics.CATEGORY_LOADER, LOG_TAG,
+                startTime);
+        return batteryInfo;
     }
 }
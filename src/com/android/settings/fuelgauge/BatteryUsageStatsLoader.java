@@ -20,8 +20,10 @@ import android.content.Context;
 import android.os.BatteryStatsManager;
 import android.os.BatteryUsageStats;
 import android.os.BatteryUsageStatsQuery;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.android.settings.core.instrumentation.PerformanceMetrics;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 /**
@@ -44,6 +46,7 @@ public class BatteryUsageStatsLoader extends AsyncLoaderCompat<BatteryUsageStats
         if (mIncludeBatteryHistory) {
             builder.includeBatteryHistory();
         }
+        final long startTime = SystemClock.elapsedRealtime();
         try {
             return mBatteryStatsManager.getBatteryUsageStats(builder.build());
         } catch (RuntimeException e) {
@@ -51,6 +54,9 @@ public class BatteryUsageStatsLoader extends AsyncLoaderCompat<BatteryUsageStats
             // Use default BatteryUsageStats.
             return new BatteryUsageStats.Builder(
                     new String[0], /* includePowerModels */ false).build();
+        } finally {
+            PerformanceMetrics.getInstance().recordSince(PerformanceMetrics.CATEGORY_LOADER, TAG,
+                    startTime);
         }
     }
 
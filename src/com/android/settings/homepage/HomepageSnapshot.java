@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.Utils;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The injected tiles of the homepage as they were last rendered, saved to a file so that a cold
+ * start can show them before the tiles are discovered again.
+ *
+ * <p>Only tiles are kept: the entries declared in xml are inflated without any discovery, and
+ * their controllers bind their summaries as usual. A snapshot is only valid for the locales it was
+ * saved with.
+ */
+class HomepageSnapshot {
+
+    private static final String TAG = "HomepageSnapshot";
+
+    @VisibleForTesting
+    static final String FILE_NAME = "homepage_snapshot";
+    /** Bumped whenever the file layout changes. */
+    private static final int FORMAT_VERSION = 1;
+    // Homepage icons are a few dozen pixels wide, don't keep anything much bigger.
+    private static final int MAX_ICON_SIZE_PX = 256;
+
+    private static HomepageSnapshot sInstance;
+
+    private final File mFile;
+    private boolean mLoaded;
+    private String mLocales;
+    private List<SnapshotTile> mTiles = Collections.emptyList();
+
+    static synchronized HomepageSnapshot getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new HomepageSnapshot(
+                    new File(context.getApplicationContext().getCacheDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    HomepageSnapshot(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Returns the tiles of the homepage as last rendered for {@code locales}, in the order they
+     * were shown, or an empty list if there is no such snapshot. This reads the saved file the
+     * first time.
+     */
+    synchronized List<SnapshotTile> getTiles(String locales) {
+        loadIfNeeded();
+        return locales.equals(mLocales) ? mTiles : Collections.emptyList();
+    }
+
+    /**
+     * Replaces the snapshot with {@code tiles}, shown for {@code locales}, and saves it unless
+     * nothing changed.
+     */
+    void save(String locales, List<SnapshotTile> tiles) {
+        synchronized (this) {
+            loadIfNeeded();
+            if (locales.equals(mLocales) && isSame(mTiles, tiles)) {
+                return;
+            }
+            mLocales = locales;
+            mTiles = Collections.unmodifiableList(new ArrayList<>(tiles));
+        }
+        ThreadUtils.postOnBackgroundThread(this::write);
+    }
+
+    private static boolean isSame(List<SnapshotTile> tiles, List<SnapshotTile> otherTiles) {
+        if (tiles.size() != otherTiles.size()) {
+            return false;
+        }
+        for (int i = 0; i < tiles.size(); i++) {
+            if (!tiles.get(i).isSameAs(otherTiles.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void loadIfNeeded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            final String locales = in.readUTF();
+            final int count = in.readInt();
+            final List<SnapshotTile> tiles = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final String key = in.readUTF();
+                final String title = in.readUTF();
+                final String summary = in.readUTF();
+                final int order = in.readInt();
+                final byte[] iconBytes = new byte[in.readInt()];
+                in.readFully(iconBytes);
+                final Bitmap icon = iconBytes.length > 0
+                        ? BitmapFactory.decodeByteArray(iconBytes, 0, iconBytes.length) : null;
+                tiles.add(new SnapshotTile(key, title, summary, order, icon));
+            }
+            mLocales = locales;
+            mTiles = Collections.unmodifiableList(tiles);
+        } catch (FileNotFoundException e) {
+            // Never rendered yet.
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read homepage snapshot", e);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void write() {
+        final File tmpFile = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(mLocales);
+            out.writeInt(mTiles.size());
+            for (SnapshotTile tile : mTiles) {
+                out.writeUTF(tile.key);
+                out.writeUTF(tile.title);
+                out.writeUTF(tile.summary);
+                out.writeInt(tile.order);
+                final byte[] iconBytes = encode(tile.icon);
+                out.writeInt(iconBytes.length);
+                out.write(iconBytes);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write homepage snapshot", e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(mFile)) {
+            Log.w(TAG, "Failed to replace homepage snapshot");
+            tmpFile.delete();
+        }
+    }
+
+    private static byte[] encode(@Nullable Bitmap icon) {
+        if (icon == null) {
+            return new byte[0];
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        icon.compress(Bitmap.CompressFormat.PNG, 100 /* quality */, out);
+        return out.toByteArray();
+    }
+
+    /** A tile of the homepage, as it was shown. */
+    static class SnapshotTile {
+        final String key;
+        final String title;
+        final String summary;
+        final int order;
+        @Nullable
+        final Bitmap icon;
+
+        SnapshotTile(String key, String title, String summary, int order, @Nullable Bitmap icon) {
+            this.key = key;
+            this.title = title;
+            this.summary = summary;
+            this.order = order;
+            this.icon = icon;
+        }
+
+        boolean isSameAs(SnapshotTile other) {
+            return key.equals(other.key) && title.equals(other.title)
+                    && summary.equals(other.summary) && order == other.order
+                    && (icon == null ? other.icon == null
+                            : other.icon != null && icon.sameAs(other.icon));
+        }
+
+        /**
+         * Renders {@code icon} to a bitmap for the snapshot. This draws the drawable, so it must
+         * be called on the main thread.
+         */
+        @Nullable
+        static Bitmap renderIcon(@Nullable Drawable icon) {
+            if (icon == null) {
+                return null;
+            }
+            final int width = Math.min(icon.getIntrinsicWidth(), MAX_ICON_SIZE_PX);
+            final int height = Math.min(icon.getIntrinsicHeight(), MAX_ICON_SIZE_PX);
+            if (width <= 0 || height <= 0) {
+                return null;
+            }
+            return Utils.createBitmap(icon.getConstantState() != null
+                    ? icon.getConstantState().newDrawable().mutate() : icon, width, height);
+        }
+    }
+}
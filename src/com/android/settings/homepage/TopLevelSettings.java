@@ -21,8 +21,12 @@ import static com.android.settingslib.search.SearchIndexable.MOBILE;
 
 import android.app.settings.SettingsEnums;
 import android.content.Context;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
 import androidx.fragment.app.Fragment;
 import androidx.preference.Preference;
@@ -32,17 +36,38 @@ import androidx.preference.PreferenceScreen;
 import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.core.SubSettingLauncher;
+import com.android.settings.dashboard.CategoryManager;
 import com.android.settings.dashboard.DashboardFragment;
+import com.android.settings.homepage.HomepageSnapshot.SnapshotTile;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.support.SupportPreferenceController;
 import com.android.settingslib.core.instrumentation.Instrumentable;
 import com.android.settingslib.search.SearchIndexable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
 @SearchIndexable(forTarget = MOBILE)
 public class TopLevelSettings extends DashboardFragment implements
         PreferenceFragmentCompat.OnPreferenceStartFragmentCallback {
 
     private static final String TAG = "TopLevelSettings";
+    // Keys of the tiles shown from the snapshot, so they never clash with the real tiles.
+    private static final String SNAPSHOT_KEY_PREFIX = "snapshot:";
+    private static final String METRIC_FIRST_FRAME = "homepage_first_frame";
+    private static final String METRIC_FIRST_FRAME_FROM_SNAPSHOT =
+            "homepage_first_frame_from_snapshot";
+    private static final String METRIC_TILES_LOADED = "homepage_tiles_loaded";
+
+    private HomepageSnapshot mSnapshot;
+    private List<SnapshotTile> mSnapshotTiles = Collections.emptyList();
+    // Whether the tiles are loaded in the background, with the snapshot shown meanwhile.
+    private boolean mShowSnapshot;
+    private final List<Preference> mSnapshotPreferences = new ArrayList<>();
+    private long mAttachTime;
 
     public TopLevelSettings() {
         final Bundle args = new Bundle();
@@ -68,8 +93,57 @@ public class TopLevelSettings extends DashboardFragment implements
 
     @Override
     public void onAttach(Context context) {
+        mAttachTime = SystemClock.elapsedRealtime();
         super.onAttach(context);
         use(SupportPreferenceController.class).setActivity(getActivity());
+        mSnapshot = HomepageSnapshot.getInstance(context);
+        // Only worth it when the tiles have to be discovered, that is on a cold start.
+        if (!CategoryManager.get(context).isLoaded()) {
+            mSnapshotTiles = mSnapshot.getTiles(getLocales(context));
+            mShowSnapshot = !mSnapshotTiles.isEmpty();
+        }
+    }
+
+    @Override
+    public void onViewCreated(View view, Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                reportStartupMetric(mShowSnapshot
+                        ? METRIC_FIRST_FRAME_FROM_SNAPSHOT : METRIC_FIRST_FRAME);
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        // Nothing new was rendered while the snapshot is still shown.
+        if (mSnapshotPreferences.isEmpty()) {
+            saveSnapshot();
+        }
+    }
+
+    @Override
+    protected boolean shouldLoadDashboardTilesInBackground() {
+        return mShowSnapshot;
+    }
+
+    @Override
+    protected void onDashboardTilesLoaded() {
+        removeSnapshotTiles();
+    }
+
+    @Override
+    public void onCategoriesChanged(Set<String> categories) {
+        super.onCategoriesChanged(categories);
+        // The tiles may have been loaded for another listener first.
+        if (!getDashboardTileKeys().isEmpty()) {
+            removeSnapshotTiles();
+        }
     }
 
     @Override
@@ -103,6 +177,13 @@ public class TopLevelSettings extends DashboardFragment implements
         if (screen == null) {
             return;
         }
+        if (mShowSnapshot) {
+            showSnapshotTiles(screen);
+        }
+        stylePreferences(screen);
+    }
+
+    private void stylePreferences(PreferenceScreen screen) {
         // Tint the homepage icons
         final int tintColor = Utils.getHomepageIconColor(getContext());
         final int count = screen.getPreferenceCount();
@@ -125,6 +206,72 @@ public class TopLevelSettings extends DashboardFragment implements
         }
     }
 
+    /** Shows the tiles of the snapshot until the real tiles are loaded. */
+    private void showSnapshotTiles(PreferenceScreen screen) {
+        final Context prefContext = getPrefContext();
+        for (SnapshotTile tile : mSnapshotTiles) {
+            final Preference preference = new Preference(prefContext);
+            preference.setKey(SNAPSHOT_KEY_PREFIX + tile.key);
+            preference.setTitle(tile.title);
+            preference.setSummary(tile.summary);
+            preference.setOrder(tile.order);
+            if (tile.icon != null) {
+                preference.setIcon(new BitmapDrawable(getResources(), tile.icon));
+            }
+            screen.addPreference(preference);
+            mSnapshotPreferences.add(preference);
+        }
+    }
+
+    /** Replaces the tiles of the snapshot with the real ones, once they are shown. */
+    private void removeSnapshotTiles() {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (mSnapshotPreferences.isEmpty() || screen == null) {
+            return;
+        }
+        for (Preference preference : mSnapshotPreferences) {
+            screen.removePreference(preference);
+        }
+        mSnapshotPreferences.clear();
+        stylePreferences(screen);
+        reportStartupMetric(METRIC_TILES_LOADED);
+    }
+
+    private void saveSnapshot() {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (screen == null) {
+            return;
+        }
+        final List<SnapshotTile> tiles = new ArrayList<>();
+        for (String key : getDashboardTileKeys()) {
+            final Preference preference = screen.findPreference(key);
+            if (preference == null || !preference.isVisible()) {
+                continue;
+            }
+            tiles.add(new SnapshotTile(key, toString(preference.getTitle()),
+                    toString(preference.getSummary()), preference.getOrder(),
+                    SnapshotTile.renderIcon(preference.getIcon())));
+        }
+        tiles.sort(Comparator.comparingInt(tile -> tile.order));
+        mSnapshot.save(getLocales(getContext()), tiles);
+    }
+
+    private void reportStartupMetric(String key) {
+        mMetricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
+                SettingsEnums.ACTION_DASHBOARD_VISIBLE_TIME,
+                getMetricsCategory(),
+                key,
+                (int) (SystemClock.elapsedRealtime() - mAttachTime));
+    }
+
+    private static String getLocales(Context context) {
+        return context.getResources().getConfiguration().getLocales().toLanguageTags();
+    }
+
+    private static String toString(CharSequence text) {
+        return text != null ? text.toString() : "";
+    }
+
     @Override
     protected boolean shouldForceRoundedIcon() {
         return getContext().getResources()
@@ -192,7 +192,8 @@ public class InternetPreferenceController extends AbstractPreferenceController i
         if (subscriptionManager == null) {
             return;
         }
-        SubscriptionInfo subInfo = subscriptionManager.getDefaultDataSubscriptionInfo();
+        SubscriptionInfo subInfo =
+                SubscriptionUtil.getDefaultDataSubscriptionInfo(mContext, subscriptionManager);
         if (subInfo == null) {
             return;
         }
@@ -87,6 +87,7 @@ public class NetworkProviderSimListController extends AbstractPreferenceControll
         public void onReceive(Context context, Intent intent) {
             final String action = intent.getAction();
             if (action.equals(TelephonyManager.ACTION_DEFAULT_DATA_SUBSCRIPTION_CHANGED)) {
+                SubscriptionSnapshotCache.invalidateInstance();
                 update();
             }
         }
@@ -211,6 +212,6 @@ public class NetworkProviderSimListController extends AbstractPreferenceControll
 
     @VisibleForTesting
     protected int getDefaultDataSubscriptionId() {
-        return SubscriptionManager.getDefaultDataSubscriptionId();
+        return SubscriptionUtil.getDefaultDataSubscriptionId(mContext);
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import android.content.Context;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable view of the subscriptions of the device, read once from
+ * {@link SubscriptionManager} and shared by every page and controller until
+ * {@link SubscriptionSnapshotCache} replaces it.
+ */
+public final class SubscriptionSnapshot {
+
+    private final List<SubscriptionInfo> mActiveSubscriptions;
+    @Nullable
+    private final List<SubscriptionInfo> mAvailableSubscriptions;
+    @Nullable
+    private final List<SubscriptionInfo> mSelectableSubscriptions;
+    private final int mDefaultDataSubId;
+
+    SubscriptionSnapshot(List<SubscriptionInfo> activeSubscriptions,
+            @Nullable List<SubscriptionInfo> availableSubscriptions,
+            @Nullable List<SubscriptionInfo> selectableSubscriptions, int defaultDataSubId) {
+        mActiveSubscriptions = Collections.unmodifiableList(new ArrayList<>(activeSubscriptions));
+        mAvailableSubscriptions = availableSubscriptions == null ? null
+                : Collections.unmodifiableList(new ArrayList<>(availableSubscriptions));
+        mSelectableSubscriptions = selectableSubscriptions == null ? null
+                : Collections.unmodifiableList(new ArrayList<>(selectableSubscriptions));
+        mDefaultDataSubId = defaultDataSubId;
+    }
+
+    /** Reads the subscriptions from {@code manager}. */
+    static SubscriptionSnapshot build(Context context, SubscriptionManager manager) {
+        List<SubscriptionInfo> active = manager.getActiveSubscriptionInfoList();
+        if (active == null) {
+            active = Collections.emptyList();
+        }
+        final List<SubscriptionInfo> available = manager.getAvailableSubscriptionInfoList();
+        final List<SubscriptionInfo> selectable = available == null ? null
+                : SubscriptionUtil.getSelectableSubscriptions(context, manager, available);
+        return new SubscriptionSnapshot(active, available, selectable,
+                SubscriptionManager.getDefaultDataSubscriptionId());
+    }
+
+    /** Returns the active subscriptions, as {@link SubscriptionManager} returned them. */
+    public List<SubscriptionInfo> getActiveSubscriptions() {
+        return mActiveSubscriptions;
+    }
+
+    /**
+     * Returns the available subscriptions, as {@link SubscriptionManager} returned them, or null
+     * if it returned none.
+     */
+    @Nullable
+    public List<SubscriptionInfo> getAvailableSubscriptions() {
+        return mAvailableSubscriptions;
+    }
+
+    /**
+     * Returns the available subscriptions visible to the user, with one subscription per group,
+     * or null if there are no available subscriptions.
+     */
+    @Nullable
+    public List<SubscriptionInfo> getSelectableSubscriptions() {
+        return mSelectableSubscriptions;
+    }
+
+    /** Returns the default data subscription id, which may not be valid. */
+    public int getDefaultDataSubscriptionId() {
+        return mDefaultDataSubId;
+    }
+
+    /** Returns the active subscription used for mobile data, or null if there is none. */
+    @Nullable
+    public SubscriptionInfo getActiveDataSubscription() {
+        return getActiveSubscription(mDefaultDataSubId);
+    }
+
+    /** Returns the active subscription with id {@code subId}, or null if it is not active. */
+    @Nullable
+    public SubscriptionInfo getActiveSubscription(int subId) {
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return null;
+        }
+        for (SubscriptionInfo info : mActiveSubscriptions) {
+            if (info.getSubscriptionId() == subId) {
+                return info;
+            }
+        }
+        return null;
+    }
+}
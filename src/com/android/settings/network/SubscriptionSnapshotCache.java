@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Process-wide holder of the current {@link SubscriptionSnapshot}.
+ *
+ * <p>The snapshot is read on first use and dropped whenever the subscriptions, the default data
+ * subscription, the carrier config or airplane mode change, so all the controllers of a page
+ * share one set of binder calls. {@link SubscriptionsChangeListener} and
+ * {@link ActiveSubscriptionsListener} also drop it before notifying their clients, so that a page
+ * reacting to a change never reads the snapshot from before it.
+ */
+public class SubscriptionSnapshotCache {
+
+    private static SubscriptionSnapshotCache sInstance;
+
+    private final Context mContext;
+    private final SubscriptionManager mSubscriptionManager;
+    private final Object mLock = new Object();
+
+    private int mVersion;
+    @Nullable
+    private volatile SubscriptionSnapshot mSnapshot;
+
+    private final SubscriptionManager.OnSubscriptionsChangedListener mSubscriptionsListener =
+            new SubscriptionManager.OnSubscriptionsChangedListener() {
+                @Override
+                public void onSubscriptionsChanged() {
+                    invalidate();
+                }
+            };
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (!isInitialStickyBroadcast()) {
+                invalidate();
+            }
+        }
+    };
+
+    /** Returns the cache for the subscription manager of {@code context}. */
+    public static synchronized SubscriptionSnapshotCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final SubscriptionManager manager = appContext.getSystemService(SubscriptionManager.class);
+        if (sInstance == null || sInstance.mSubscriptionManager != manager) {
+            sInstance = new SubscriptionSnapshotCache(appContext, manager);
+            sInstance.startMonitoring();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cache if it was created and {@code manager} is a plain
+     * {@link SubscriptionManager}, which returns the same subscriptions whichever context of
+     * Settings it was created for, or null otherwise, e.g. for a mocked manager.
+     */
+    @Nullable
+    static synchronized SubscriptionSnapshotCache getInstanceFor(SubscriptionManager manager) {
+        if (sInstance != null && manager != null
+                && manager.getClass() == SubscriptionManager.class) {
+            return sInstance;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the cache if {@code manager} is a plain {@link SubscriptionManager}, which returns
+     * the same subscriptions whichever context of Settings it was created for, or null for a
+     * missing or overridden manager.
+     */
+    @Nullable
+    static SubscriptionSnapshotCache getInstanceFor(Context context, SubscriptionManager manager) {
+        if (manager == null || manager.getClass() != SubscriptionManager.class) {
+            return null;
+        }
+        return getInstance(context);
+    }
+
+    @VisibleForTesting
+    SubscriptionSnapshotCache(Context context, SubscriptionManager subscriptionManager) {
+        mContext = context;
+        mSubscriptionManager = subscriptionManager;
+    }
+
+    /** Returns the current snapshot, reading the subscriptions if it was invalidated. */
+    public SubscriptionSnapshot getSnapshot() {
+        final SubscriptionSnapshot cachedSnapshot = mSnapshot;
+        if (cachedSnapshot != null) {
+            return cachedSnapshot;
+        }
+        final int version;
+        synchronized (mLock) {
+            version = mVersion;
+        }
+        // Read outside of the lock, so invalidation from the main thread never waits on binder.
+        final SubscriptionSnapshot snapshot =
+                SubscriptionSnapshot.build(mContext, mSubscriptionManager);
+        synchronized (mLock) {
+            // Don't keep a snapshot that was read while the subscriptions changed.
+            if (version == mVersion) {
+                mSnapshot = snapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the snapshot of the process-wide cache, if there is one. The listeners of pages call
+     * this before notifying them, as the own listener of the cache may be called after theirs.
+     */
+    static void invalidateInstance() {
+        final SubscriptionSnapshotCache cache;
+        synchronized (SubscriptionSnapshotCache.class) {
+            cache = sInstance;
+        }
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    /** Drops the current snapshot, so that the next caller reads the subscriptions again. */
+    public void invalidate() {
+        synchronized (mLock) {
+            mVersion++;
+            mSnapshot = null;
+        }
+    }
+
+    private void startMonitoring() {
+        if (mSubscriptionManager == null) {
+            return;
+        }
+        mSubscriptionManager.addOnSubscriptionsChangedListener(mContext.getMainExecutor(),
+                mSubscriptionsListener);
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(TelephonyManager.ACTION_DEFAULT_DATA_SUBSCRIPTION_CHANGED);
+        filter.addAction(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED);
+        filter.addAction(Intent.ACTION_AIRPLANE_MODE_CHANGED);
+        mContext.registerReceiver(mReceiver, filter);
+    }
+}
@@ -75,6 +75,10 @@ public class SubscriptionUtil {
         if (manager == null) {
             return Collections.emptyList();
         }
+        final SubscriptionSnapshotCache cache = SubscriptionSnapshotCache.getInstanceFor(manager);
+        if (cache != null) {
+            return new ArrayList<>(cache.getSnapshot().getActiveSubscriptions());
+        }
         final List<SubscriptionInfo> subscriptions = manager.getActiveSubscriptionInfoList();
         if (subscriptions == null) {
             return new ArrayList<>();
@@ -379,13 +383,42 @@ public class SubscriptionUtil {
         if (subManager == null) {
             return INVALID_SIM_SLOT_INDEX;
         }
-        final SubscriptionInfo info = subManager.getActiveSubscriptionInfo(subId);
+        final SubscriptionSnapshotCache cache =
+                SubscriptionSnapshotCache.getInstanceFor(context, subManager);
+        final SubscriptionInfo info = cache != null
+                ? cache.getSnapshot().getActiveSubscription(subId)
+                : subManager.getActiveSubscriptionInfo(subId);
         if (info == null) {
             return INVALID_SIM_SLOT_INDEX;
         }
         return info.getSimSlotIndex();
     }
 
+    /**
+     * Returns the active subscription used for mobile data, or null if there is none, like
+     * {@link SubscriptionManager#getDefaultDataSubscriptionInfo()}.
+     */
+    @Nullable
+    public static SubscriptionInfo getDefaultDataSubscriptionInfo(Context context,
+            SubscriptionManager subManager) {
+        final SubscriptionSnapshotCache cache =
+                SubscriptionSnapshotCache.getInstanceFor(context, subManager);
+        if (cache != null) {
+            return cache.getSnapshot().getActiveDataSubscription();
+        }
+        return subManager.getDefaultDataSubscriptionInfo();
+    }
+
+    /** Returns the default data subscription id, which may not be valid. */
+    public static int getDefaultDataSubscriptionId(Context context) {
+        final SubscriptionSnapshotCache cache = SubscriptionSnapshotCache.getInstanceFor(context,
+                context.getSystemService(SubscriptionManager.class));
+        if (cache != null) {
+            return cache.getSnapshot().getDefaultDataSubscriptionId();
+        }
+        return SubscriptionManager.getDefaultDataSubscriptionId();
+    }
+
     /**
      * Return a list of subscriptions that are available and visible to the user.
      *
@@ -393,38 +426,53 @@ public class SubscriptionUtil {
      */
     public static List<SubscriptionInfo> getSelectableSubscriptionInfoList(Context context) {
         SubscriptionManager subManager = context.getSystemService(SubscriptionManager.class);
+        final SubscriptionSnapshotCache cache =
+                SubscriptionSnapshotCache.getInstanceFor(context, subManager);
+        if (cache != null) {
+            final List<SubscriptionInfo> selectableList =
+                    cache.getSnapshot().getSelectableSubscriptions();
+            return selectableList == null ? null : new ArrayList<>(selectableList);
+        }
         List<SubscriptionInfo> availableList = subManager.getAvailableSubscriptionInfoList();
         if (availableList == null) {
             return null;
-        } else {
-            // Multiple subscriptions in a group should only have one representative.
-            // It should be the current active primary subscription if any, or any
-            // primary subscription.
-            List<SubscriptionInfo> selectableList = new ArrayList<>();
-            Map<ParcelUuid, SubscriptionInfo> groupMap = new HashMap<>();
-
-            for (SubscriptionInfo info : availableList) {
-                // Opportunistic subscriptions are considered invisible
-                // to users so they should never be returned.
-                if (!isSubscriptionVisible(subManager, context, info)) continue;
-
-                ParcelUuid groupUuid = info.getGroupUuid();
-                if (groupUuid == null) {
-                    // Doesn't belong to any group. Add in the list.
-                    selectableList.add(info);
-                } else if (!groupMap.containsKey(groupUuid)
-                        || (groupMap.get(groupUuid).getSimSlotIndex() == INVALID_SIM_SLOT_INDEX
-                        && info.getSimSlotIndex() != INVALID_SIM_SLOT_INDEX)) {
-                    // If it belongs to a group that has never been recorded or it's the current
-                    // active subscription, add it in the list.
-                    selectableList.remove(groupMap.get(groupUuid));
-                    selectableList.add(info);
-                    groupMap.put(groupUuid, info);
-                }
+        }
+        return getSelectableSubscriptions(context, subManager, availableList);
+    }
 
+    /**
+     * Returns the subscriptions of {@code availableList} that are visible to the user, with only
+     * one representative per group.
+     */
+    static List<SubscriptionInfo> getSelectableSubscriptions(Context context,
+            SubscriptionManager subManager, List<SubscriptionInfo> availableList) {
+        // Multiple subscriptions in a group should only have one representative.
+        // It should be the current active primary subscription if any, or any
+        // primary subscription.
+        List<SubscriptionInfo> selectableList = new ArrayList<>();
+        Map<ParcelUuid, SubscriptionInfo> groupMap = new HashMap<>();
+
+        for (SubscriptionInfo info : availableList) {
+            // Opportunistic subscriptions are considered invisible
+            // to users so they should never be returned.
+            if (!isSubscriptionVisible(subManager, context, info)) continue;
+
+            ParcelUuid groupUuid = info.getGroupUuid();
+            if (groupUuid == null) {
+                // Doesn't belong to any group. Add in the list.
+                selectableList.add(info);
+            } else if (!groupMap.containsKey(groupUuid)
+                    || (groupMap.get(groupUuid).getSimSlotIndex() == INVALID_SIM_SLOT_INDEX
+                    && info.getSimSlotIndex() != INVALID_SIM_SLOT_INDEX)) {
+                // If it belongs to a group that has never been recorded or it's the current
+                // active subscription, add it in the list.
+                selectableList.remove(groupMap.get(groupUuid));
+                selectableList.add(info);
+                groupMap.put(groupUuid, info);
             }
-            return selectableList;
+
         }
+        return selectableList;
     }
 
     /**
@@ -100,12 +100,14 @@ public class SubscriptionsChangeListener extends ContentObserver {
     }
 
     private void subscriptionsChangedCallback() {
+        SubscriptionSnapshotCache.invalidateInstance();
         mClient.onSubscriptionsChanged();
     }
 
     @Override
     public void onChange(boolean selfChange, Uri uri) {
         if (uri.equals(mAirplaneModeSettingUri)) {
+            SubscriptionSnapshotCache.invalidateInstance();
             mClient.onAirplaneModeChanged(isAirplaneModeOn());
         }
     }
@@ -108,6 +108,7 @@ public class SubscriptionsPreferenceController extends AbstractPreferenceControl
         public void onReceive(Context context, Intent intent) {
             final String action = intent.getAction();
             if (action.equals(TelephonyManager.ACTION_DEFAULT_DATA_SUBSCRIPTION_CHANGED)) {
+                SubscriptionSnapshotCache.invalidateInstance();
                 mConfig = mSubsPrefCtrlInjector.getConfig(mContext);
                 update();
             } else if (action.equals(WifiManager.SUPPLICANT_CONNECTION_CHANGE_ACTION)) {
@@ -236,7 +237,8 @@ public class SubscriptionsPreferenceController extends AbstractPreferenceControl
     }
 
     private void updateForProvider() {
-        SubscriptionInfo subInfo = mSubscriptionManager.getDefaultDataSubscriptionInfo();
+        SubscriptionInfo subInfo =
+                SubscriptionUtil.getDefaultDataSubscriptionInfo(mContext, mSubscriptionManager);
         if (subInfo == null) {
             mPreferenceGroup.removeAll();
             return;
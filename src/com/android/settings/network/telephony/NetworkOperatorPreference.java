@@ -105,6 +105,19 @@ public class NetworkOperatorPreference extends Preference {
         return mCellId.equals(CellInfoUtil.getCellIdentity(cellinfo));
     }
 
+    /**
+     * Return true when updating this preference with the cell would not change what it shows,
+     * that is the cell has the same identity, radio access technology and signal level.
+     */
+    public boolean isSameDisplay(CellInfo cellinfo) {
+        if (mCellInfo == null || cellinfo == null || mCellInfo.getClass() != cellinfo.getClass()
+                || !isSameCell(cellinfo)) {
+            return false;
+        }
+        final CellSignalStrength signalStrength = getCellSignalStrength(cellinfo);
+        return mLevel == (signalStrength != null ? signalStrength.getLevel() : LEVEL_NONE);
+    }
+
     /**
      * Return true when this preference is for forbidden network
      */
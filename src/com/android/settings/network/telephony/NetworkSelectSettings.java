@@ -34,6 +34,7 @@ import android.telephony.SignalStrength;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.util.Log;
+import android.util.Pair;
 import android.view.View;
 
 import androidx.annotation.VisibleForTesting;
@@ -49,7 +50,9 @@ import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -76,6 +79,8 @@ public class NetworkSelectSettings extends DashboardFragment {
     private Preference mStatusMessagePreference;
     @VisibleForTesting
     List<CellInfo> mCellInfoList;
+    // Cells found by the current scan, in the order they were first found.
+    private final Map<Object, CellInfo> mScannedCells = new LinkedHashMap<>();
     private int mSubId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
     @VisibleForTesting
     TelephonyManager mTelephonyManager;
@@ -250,7 +255,7 @@ public class NetworkSelectSettings extends DashboardFragment {
                         stopNetworkQuery();
                     }
 
-                    mCellInfoList = doAggregation(results);
+                    mCellInfoList = mergeScanResults(doAggregation(results));
                     Log.d(TAG, "CellInfoList: " + CellInfoUtil.cellInfoListToString(mCellInfoList));
                     if (mCellInfoList != null && mCellInfoList.size() != 0) {
                         final NetworkOperatorPreference connectedPref =
@@ -320,23 +325,34 @@ public class NetworkSelectSettings extends DashboardFragment {
             Log.d(TAG, "no aggregation");
             return new ArrayList<>(cellInfoListInput);
         }
-        ArrayList<CellInfo> aggregatedList = new ArrayList<>();
+        // Keep the first cell of each operator and radio access technology.
+        final Map<Object, CellInfo> aggregatedCells = new LinkedHashMap<>();
         for (CellInfo cellInfo : cellInfoListInput) {
-            String plmn = CellInfoUtil.getNetworkTitle(cellInfo.getCellIdentity(),
-                    CellInfoUtil.getCellIdentityMccMnc(cellInfo.getCellIdentity()));
-            Class className = cellInfo.getClass();
-
-            if (aggregatedList.stream().anyMatch(
-                    item -> {
-                        String itemPlmn = CellInfoUtil.getNetworkTitle(item.getCellIdentity(),
-                                CellInfoUtil.getCellIdentityMccMnc(item.getCellIdentity()));
-                        return itemPlmn.equals(plmn) && item.getClass().equals(className);
-                    })) {
-                continue;
-            }
-            aggregatedList.add(cellInfo);
+            aggregatedCells.putIfAbsent(getScanResultKey(cellInfo), cellInfo);
+        }
+        return new ArrayList<>(aggregatedCells.values());
+    }
+
+    /**
+     * Merge a batch of incremental scan results into the cells found since the scan started.
+     * Cells found again replace the previous ones in place, new cells are added at the end.
+     */
+    @VisibleForTesting
+    List<CellInfo> mergeScanResults(List<CellInfo> cellInfoList) {
+        for (CellInfo cellInfo : cellInfoList) {
+            mScannedCells.put(getScanResultKey(cellInfo), cellInfo);
+        }
+        return new ArrayList<>(mScannedCells.values());
+    }
+
+    private Object getScanResultKey(CellInfo cellInfo) {
+        final CellIdentity cellId = cellInfo.getCellIdentity();
+        if (!mIsAggregationEnabled) {
+            return cellId;
         }
-        return aggregatedList;
+        final String plmn = CellInfoUtil.getNetworkTitle(cellId,
+                CellInfoUtil.getCellIdentityMccMnc(cellId));
+        return Pair.create(plmn, cellInfo.getClass());
     }
 
     private final NetworkScanHelper.NetworkScanCallback mCallback =
@@ -375,6 +391,7 @@ public class NetworkSelectSettings extends DashboardFragment {
         }
 
         // update the content of preference
+        final NetworkOperatorPreference selectedPref = mSelectedPreference;
         NetworkOperatorPreference connectedPref = null;
         for (int index = 0; index < mCellInfoList.size(); index++) {
             final CellInfo cellInfo = mCellInfoList.get(index);
@@ -385,7 +402,9 @@ public class NetworkSelectSettings extends DashboardFragment {
                 if (rawPref instanceof NetworkOperatorPreference) {
                     // replace existing preference
                     pref = (NetworkOperatorPreference) rawPref;
-                    pref.updateCell(cellInfo);
+                    if (!pref.isSameDisplay(cellInfo)) {
+                        pref.updateCell(cellInfo);
+                    }
                 } else {
                     mPreferenceCategory.removePreference(rawPref);
                 }
@@ -399,21 +418,16 @@ public class NetworkSelectSettings extends DashboardFragment {
             }
             pref.setKey(pref.getOperatorName());
 
-            if (mCellInfoList.get(index).isRegistered()) {
+            if (cellInfo.isRegistered()) {
                 pref.setSummary(R.string.network_connected);
                 connectedPref = pref;
             } else {
                 pref.setSummary(null);
             }
-        }
-
-        // update selected preference instance by index
-        for (int index = 0; index < mCellInfoList.size(); index++) {
-            final CellInfo cellInfo = mCellInfoList.get(index);
 
-            if ((mSelectedPreference != null) && mSelectedPreference.isSameCell(cellInfo)) {
-                mSelectedPreference = (NetworkOperatorPreference)
-                        (mPreferenceCategory.getPreference(index));
+            // update selected preference instance
+            if ((selectedPref != null) && selectedPref.isSameCell(cellInfo)) {
+                mSelectedPreference = pref;
             }
         }
 
@@ -516,6 +530,7 @@ public class NetworkSelectSettings extends DashboardFragment {
         if (mNetworkScanHelper != null) {
             mRequestIdManualNetworkScan = getNewRequestId();
             mWaitingForNumberOfScanResults = MIN_NUMBER_OF_SCAN_REQUIRED;
+            mScannedCells.clear();
             mNetworkScanHelper.startNetworkScan(
                     mUseNewApi
                             ? NetworkScanHelper.NETWORK_SCAN_TYPE_INCREMENTAL_RESULTS
@@ -87,7 +87,9 @@ public class NfcPaymentPreferenceController extends BasePreferenceController imp
             return UNSUPPORTED_ON_DEVICE;
         }
         if (mPaymentBackend == null) {
-            mPaymentBackend = new PaymentBackend(mContext);
+            // Not hosted by PaymentSettings, which refreshes the shared backend when resumed.
+            mPaymentBackend = PaymentBackend.getInstance(mContext);
+            mPaymentBackend.refresh();
         }
         final List<PaymentAppInfo> appInfos = mPaymentBackend.getPaymentAppInfos();
         return (appInfos != null && !appInfos.isEmpty())
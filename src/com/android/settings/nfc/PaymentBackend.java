@@ -18,23 +18,31 @@ package com.android.settings.nfc;
 
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.content.res.Resources;
-import android.graphics.drawable.Drawable;
 import android.nfc.NfcAdapter;
 import android.nfc.cardemulation.ApduServiceInfo;
 import android.nfc.cardemulation.CardEmulation;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.LocaleList;
 import android.os.Message;
 import android.os.UserHandle;
 import android.provider.Settings;
 import android.provider.Settings.SettingNotFoundException;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.annotations.GuardedBy;
 import com.android.internal.content.PackageMonitor;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class PaymentBackend {
     public static final String TAG = "Settings.PaymentBackend";
@@ -51,34 +59,69 @@ public class PaymentBackend {
         public ComponentName settingsComponent;
     }
 
+    private static PaymentBackend sInstance;
+
     private final Context mContext;
-    private final NfcAdapter mAdapter;
     private final CardEmulation mCardEmuManager;
     private final PackageMonitor mSettingsPackageMonitor = new SettingsPackageMonitor();
     // Fields below only modified on UI thread
+    private ArrayList<Callback> mCallbacks = new ArrayList<>();
+    private int mResumedCount;
+
+    // The shared backend is also refreshed by search indexing, off the UI thread.
+    private final Object mAppInfoLock = new Object();
+    @GuardedBy("mAppInfoLock")
     private ArrayList<PaymentAppInfo> mAppInfos;
+    @GuardedBy("mAppInfoLock")
     private PaymentAppInfo mDefaultAppInfo;
-    private ArrayList<Callback> mCallbacks = new ArrayList<>();
+
+    // Labels of the payment services, kept until their package changes or the locale changes.
+    @GuardedBy("this")
+    private final Map<ComponentName, ServiceMetadata> mMetadataCache = new ArrayMap<>();
+    @GuardedBy("this")
+    private LocaleList mMetadataLocales;
+
+    /**
+     * Returns the backend shared by the payment settings, their preference controllers and the
+     * default payment app dialog. It is only kept up to date while a payment page is resumed,
+     * other callers should {@link #refresh()} it first.
+     */
+    public static synchronized PaymentBackend getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PaymentBackend(context.getApplicationContext());
+        }
+        return sInstance;
+    }
 
     public PaymentBackend(Context context) {
         mContext = context;
+        mCardEmuManager = CardEmulation.getInstance(NfcAdapter.getDefaultAdapter(context));
+        refresh();
+    }
 
-        mAdapter = NfcAdapter.getDefaultAdapter(context);
-        mCardEmuManager = CardEmulation.getInstance(mAdapter);
+    @VisibleForTesting
+    PaymentBackend(Context context, CardEmulation cardEmulation) {
+        mContext = context;
+        mCardEmuManager = cardEmulation;
         refresh();
     }
 
     public void onPause() {
-        mSettingsPackageMonitor.unregister();
+        // The backend is shared, only stop monitoring packages when no page is resumed.
+        if (mResumedCount > 0 && --mResumedCount == 0) {
+            mSettingsPackageMonitor.unregister();
+        }
     }
 
     public void onResume() {
-        mSettingsPackageMonitor.register(mContext, mContext.getMainLooper(), false);
+        if (mResumedCount++ == 0) {
+            mSettingsPackageMonitor.register(mContext, mContext.getMainLooper(), false);
+        }
         refresh();
     }
 
-    public void refresh() {
-        PackageManager pm = mContext.getPackageManager();
+    /** Reloads the payment apps. Concurrent refreshes run one after the other. */
+    public synchronized void refresh() {
         List<ApduServiceInfo> serviceInfos =
                 mCardEmuManager.getServices(CardEmulation.CATEGORY_PAYMENT);
         ArrayList<PaymentAppInfo> appInfos = new ArrayList<PaymentAppInfo>();
@@ -90,12 +133,11 @@ public class PaymentBackend {
 
         ComponentName defaultAppName = getDefaultPaymentApp();
         PaymentAppInfo foundDefaultApp = null;
-        for (ApduServiceInfo service : serviceInfos) {
+        final List<CharSequence> labels = loadLabels(serviceInfos);
+        for (int i = 0; i < serviceInfos.size(); i++) {
+            final ApduServiceInfo service = serviceInfos.get(i);
             PaymentAppInfo appInfo = new PaymentAppInfo();
-            appInfo.label = service.loadLabel(pm);
-            if (appInfo.label == null) {
-                appInfo.label = service.loadAppLabel(pm);
-            }
+            appInfo.label = labels.get(i);
             appInfo.isDefault = service.getComponent().equals(defaultAppName);
             if (appInfo.isDefault) {
                 foundDefaultApp = appInfo;
@@ -112,11 +154,74 @@ public class PaymentBackend {
             appInfo.description = service.getDescription();
             appInfos.add(appInfo);
         }
-        mAppInfos = appInfos;
-        mDefaultAppInfo = foundDefaultApp;
+        synchronized (mAppInfoLock) {
+            mAppInfos = appInfos;
+            mDefaultAppInfo = foundDefaultApp;
+        }
         makeCallbacks();
     }
 
+    /**
+     * Returns the labels of {@code services}, only loading those that are not cached or whose
+     * package was updated since they were cached.
+     */
+    @GuardedBy("this")
+    private List<CharSequence> loadLabels(List<ApduServiceInfo> services) {
+        final PackageManager pm = mContext.getPackageManager();
+        final LocaleList locales = mContext.getResources().getConfiguration().getLocales();
+        if (!locales.equals(mMetadataLocales)) {
+            mMetadataCache.clear();
+            mMetadataLocales = locales;
+        }
+
+        final List<CharSequence> labels = new ArrayList<>(services.size());
+        final Map<String, PackageInfo> packageInfos = new ArrayMap<>();
+        final Set<ComponentName> components = new ArraySet<>();
+        for (ApduServiceInfo service : services) {
+            final ComponentName component = service.getComponent();
+            final String packageName = component.getPackageName();
+            if (!packageInfos.containsKey(packageName)) {
+                packageInfos.put(packageName, getPackageInfo(pm, packageName));
+            }
+            final PackageInfo packageInfo = packageInfos.get(packageName);
+            components.add(component);
+
+            final ServiceMetadata metadata = mMetadataCache.get(component);
+            if (metadata != null && metadata.isUpToDate(packageInfo)) {
+                labels.add(metadata.label);
+                continue;
+            }
+            CharSequence label = service.loadLabel(pm);
+            if (label == null) {
+                label = service.loadAppLabel(pm);
+            }
+            labels.add(label);
+            if (packageInfo != null) {
+                mMetadataCache.put(component, new ServiceMetadata(packageInfo, label));
+            } else {
+                mMetadataCache.remove(component);
+            }
+        }
+        // Forget the services that are gone.
+        mMetadataCache.keySet().retainAll(components);
+        return labels;
+    }
+
+    private static PackageInfo getPackageInfo(PackageManager pm, String packageName) {
+        try {
+            return pm.getPackageInfo(packageName, 0 /* flags */);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    /** Drops the cached labels of a package, so that they are loaded again on next refresh. */
+    @VisibleForTesting
+    synchronized void invalidatePackage(String packageName) {
+        mMetadataCache.keySet().removeIf(
+                component -> component.getPackageName().equals(packageName));
+    }
+
     public void registerCallback(Callback callback) {
         mCallbacks.add(callback);
     }
@@ -126,14 +231,23 @@ public class PaymentBackend {
     }
 
     public List<PaymentAppInfo> getPaymentAppInfos() {
-        return mAppInfos;
+        synchronized (mAppInfoLock) {
+            return mAppInfos;
+        }
     }
 
     public PaymentAppInfo getDefaultApp() {
-        return mDefaultAppInfo;
+        synchronized (mAppInfoLock) {
+            return mDefaultAppInfo;
+        }
     }
 
     void makeCallbacks() {
+        if (!ThreadUtils.isMainThread()) {
+            // The shared backend may be refreshed by search indexing, callbacks update the UI.
+            ThreadUtils.postOnMainThread(this::makeCallbacks);
+            return;
+        }
         for (Callback callback : mCallbacks) {
             callback.onPaymentAppsChanged();
         }
@@ -170,6 +284,23 @@ public class PaymentBackend {
         refresh();
     }
 
+    private static class ServiceMetadata {
+        final long versionCode;
+        final long lastUpdateTime;
+        final CharSequence label;
+
+        ServiceMetadata(PackageInfo packageInfo, CharSequence label) {
+            versionCode = packageInfo.getLongVersionCode();
+            lastUpdateTime = packageInfo.lastUpdateTime;
+            this.label = label;
+        }
+
+        boolean isUpToDate(PackageInfo packageInfo) {
+            return packageInfo != null && packageInfo.getLongVersionCode() == versionCode
+                    && packageInfo.lastUpdateTime == lastUpdateTime;
+        }
+    }
+
     private class SettingsPackageMonitor extends PackageMonitor {
         private Handler mHandler;
 
@@ -180,6 +311,7 @@ public class PaymentBackend {
                 mHandler = new Handler(thread) {
                     @Override
                     public void dispatchMessage(Message msg) {
+                        invalidatePackage((String) msg.obj);
                         refresh();
                     }
                 };
@@ -189,22 +321,22 @@ public class PaymentBackend {
 
         @Override
         public void onPackageAdded(String packageName, int uid) {
-            mHandler.obtainMessage().sendToTarget();
+            mHandler.obtainMessage(0 /* what */, packageName).sendToTarget();
         }
 
         @Override
         public void onPackageAppeared(String packageName, int reason) {
-            mHandler.obtainMessage().sendToTarget();
+            mHandler.obtainMessage(0 /* what */, packageName).sendToTarget();
         }
 
         @Override
         public void onPackageDisappeared(String packageName, int reason) {
-            mHandler.obtainMessage().sendToTarget();
+            mHandler.obtainMessage(0 /* what */, packageName).sendToTarget();
         }
 
         @Override
         public void onPackageRemoved(String packageName, int uid) {
-            mHandler.obtainMessage().sendToTarget();
+            mHandler.obtainMessage(0 /* what */, packageName).sendToTarget();
         }
     }
 }
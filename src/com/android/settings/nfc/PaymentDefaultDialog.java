@@ -48,7 +48,9 @@ public final class PaymentDefaultDialog extends AlertActivity implements
         getWindow().addPrivateFlags(SYSTEM_FLAG_HIDE_NON_SYSTEM_OVERLAY_WINDOWS);
 
         try {
-            mBackend = new PaymentBackend(this);
+            mBackend = PaymentBackend.getInstance(this);
+            // The shared backend is stale unless a payment page is resumed.
+            mBackend.refresh();
         } catch (NullPointerException e) {
             finish();
         }
@@ -64,7 +64,7 @@ public class PaymentSettings extends DashboardFragment {
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
-        mPaymentBackend = new PaymentBackend(getActivity());
+        mPaymentBackend = PaymentBackend.getInstance(getActivity());
         setHasOptionsMenu(true);
 
         use(NfcPaymentPreferenceController.class).setPaymentBackend(mPaymentBackend);
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.notification.NotificationBackend.AppRow;
+
+/**
+ * Keeps the fully loaded {@link AppRow}s of the apps whose notification settings were opened
+ * recently, so that moving between the pages of an app doesn't load its row again.
+ *
+ * <p>Rows are dropped when {@link NotificationBackend} changes a setting of their app, and are
+ * not reused after {@link #MAX_AGE_MS}, since apps can change their channels at any time.
+ */
+public class AppRowCache {
+
+    @VisibleForTesting
+    static final long MAX_AGE_MS = 10 * DateUtils.SECOND_IN_MILLIS;
+    private static final int MAX_ROWS = 8;
+
+    private static final AppRowCache sInstance = new AppRowCache();
+
+    private final LruCache<String, Entry> mRows = new LruCache<>(MAX_ROWS);
+    private int mGeneration;
+
+    /** Returns the cache shared by all notification settings pages. */
+    public static AppRowCache getInstance() {
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppRowCache() {
+    }
+
+    /** Returns the cached row of the app, or null if it has to be loaded again. */
+    @Nullable
+    public synchronized AppRow get(String pkg, int uid) {
+        final Entry entry = mRows.get(getKey(pkg, uid));
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - entry.mLoadTime >= MAX_AGE_MS) {
+            mRows.remove(getKey(pkg, uid));
+            return null;
+        }
+        return entry.mRow;
+    }
+
+    /**
+     * Returns a number that changes every time a row is invalidated, to be passed to
+     * {@link #put} once the row is loaded.
+     */
+    public synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Caches a fully loaded row, unless a row was invalidated since {@code generation} was read,
+     * in which case the row may already be out of date.
+     */
+    public synchronized void put(AppRow row, int generation) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mRows.put(getKey(row.pkg, row.uid), new Entry(row, SystemClock.elapsedRealtime()));
+    }
+
+    /** Drops the cached row of the app, after one of its settings changed. */
+    public synchronized void invalidate(String pkg, int uid) {
+        mGeneration++;
+        mRows.remove(getKey(pkg, uid));
+    }
+
+    private static String getKey(String pkg, int uid) {
+        return pkg + "|" + uid;
+    }
+
+    private static class Entry {
+        private final AppRow mRow;
+        private final long mLoadTime;
+
+        Entry(AppRow row, long loadTime) {
+            mRow = row;
+            mLoadTime = loadTime;
+        }
+    }
+}
@@ -66,6 +66,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class NotificationBackend {
     private static final String TAG = "NotificationBackend";
@@ -75,11 +79,54 @@ public class NotificationBackend {
     private static final int DAYS_TO_CHECK = 7;
     static INotificationManager sINM = INotificationManager.Stub.asInterface(
             ServiceManager.getService(Context.NOTIFICATION_SERVICE));
+    // Runs the lookups of an app row that can be made concurrently with the others.
+    private static final ExecutorService sAppRowExecutor = Executors.newCachedThreadPool();
 
     public AppRow loadAppRow(Context context, PackageManager pm, ApplicationInfo app) {
         final AppRow row = new AppRow();
         row.pkg = app.packageName;
         row.uid = app.uid;
+        row.userId = UserHandle.getUserId(row.uid);
+        // Aggregating a week of usage events is the slowest lookup, run it while the rest of the
+        // row loads.
+        final Future<AppRow> usageEvents = startRecordingAggregatedUsageEvents(context, row);
+        loadAppRowInfo(context, pm, app, row);
+        row.blockedChannelCount = getBlockedChannelCount(row.pkg, row.uid);
+        row.channelCount = getChannelCount(row.pkg, row.uid);
+        waitForAggregatedUsageEvents(usageEvents, row);
+        return row;
+    }
+
+    /**
+     * Loads the row of an app without its channel counts and sent notifications, which can be
+     * loaded later with {@link #loadAppRowStats}.
+     */
+    public AppRow loadAppRowWithoutStats(Context context, PackageManager pm,
+            RoleManager roleManager, PackageInfo app) {
+        final AppRow row = new AppRow();
+        row.pkg = app.applicationInfo.packageName;
+        row.uid = app.applicationInfo.uid;
+        row.userId = UserHandle.getUserId(row.uid);
+        loadAppRowInfo(context, pm, app.applicationInfo, row);
+        row.sentByChannel = new HashMap<>();
+        row.sentByApp = new NotificationsSentState();
+        recordCanBeBlocked(context, pm, roleManager, app, row);
+        return row;
+    }
+
+    /**
+     * Loads the channel counts and the notifications sent in the last days into {@code row},
+     * looking them up concurrently.
+     */
+    public void loadAppRowStats(Context context, AppRow row) {
+        final Future<AppRow> usageEvents = startRecordingAggregatedUsageEvents(context, row);
+        row.blockedChannelCount = getBlockedChannelCount(row.pkg, row.uid);
+        row.channelCount = getChannelCount(row.pkg, row.uid);
+        waitForAggregatedUsageEvents(usageEvents, row);
+    }
+
+    private void loadAppRowInfo(Context context, PackageManager pm, ApplicationInfo app,
+            AppRow row) {
         try {
             row.label = app.loadLabel(pm);
         } catch (Throwable t) {
@@ -90,11 +137,34 @@ public class NotificationBackend {
         row.banned = getNotificationsBanned(row.pkg, row.uid);
         row.showBadge = canShowBadge(row.pkg, row.uid);
         row.bubblePreference = getBubblePreference(row.pkg, row.uid);
-        row.userId = UserHandle.getUserId(row.uid);
-        row.blockedChannelCount = getBlockedChannelCount(row.pkg, row.uid);
-        row.channelCount = getChannelCount(row.pkg, row.uid);
-        recordAggregatedUsageEvents(context, row);
-        return row;
+    }
+
+    private Future<AppRow> startRecordingAggregatedUsageEvents(Context context, AppRow row) {
+        final AppRow usageRow = new AppRow();
+        usageRow.pkg = row.pkg;
+        usageRow.uid = row.uid;
+        usageRow.userId = row.userId;
+        return sAppRowExecutor.submit(() -> {
+            recordAggregatedUsageEvents(context, usageRow);
+            return usageRow;
+        });
+    }
+
+    private void waitForAggregatedUsageEvents(Future<AppRow> usageEvents, AppRow row) {
+        try {
+            final AppRow usageRow = usageEvents.get();
+            row.sentByChannel = usageRow.sentByChannel;
+            row.sentByApp = usageRow.sentByApp;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while loading usage events for " + row.pkg, e);
+            Thread.currentThread().interrupt();
+            recordAggregatedUsageEvents((UsageEvents) null, row);
+        }
     }
 
     public boolean isBlockable(Context context, ApplicationInfo info) {
@@ -195,6 +265,7 @@ public class NotificationBackend {
     }
 
     public boolean setNotificationsEnabledForPackage(String pkg, int uid, boolean enabled) {
+        AppRowCache.getInstance().invalidate(pkg, uid);
         try {
             if (onlyHasDefaultChannel(pkg, uid)) {
                 NotificationChannel defaultChannel =
@@ -220,6 +291,7 @@ public class NotificationBackend {
     }
 
     public boolean setShowBadge(String pkg, int uid, boolean showBadge) {
+        AppRowCache.getInstance().invalidate(pkg, uid);
         try {
             sINM.setShowBadge(pkg, uid, showBadge);
             return true;
@@ -239,6 +311,7 @@ public class NotificationBackend {
     }
 
     public boolean setAllowBubbles(String pkg, int uid, int preference) {
+        AppRowCache.getInstance().invalidate(pkg, uid);
         try {
             sINM.setBubblesAllowed(pkg, uid, preference);
             return true;
@@ -353,6 +426,7 @@ public class NotificationBackend {
     }
 
     public void updateChannel(String pkg, int uid, NotificationChannel channel) {
+        AppRowCache.getInstance().invalidate(pkg, uid);
         try {
             sINM.updateNotificationChannelForPackage(pkg, uid, channel);
         } catch (Exception e) {
@@ -361,6 +435,7 @@ public class NotificationBackend {
     }
 
     public void updateChannelGroup(String pkg, int uid, NotificationChannelGroup group) {
+        AppRowCache.getInstance().invalidate(pkg, uid);
         try {
             sINM.updateNotificationChannelGroupForPackage(pkg, uid, group);
         } catch (Exception e) {
@@ -594,6 +669,7 @@ public class NotificationBackend {
 
     public void createConversationNotificationChannel(String pkg, int uid,
             NotificationChannel parent, String conversationId) {
+        AppRowCache.getInstance().invalidate(pkg, uid);
         try {
             sINM.createConversationNotificationChannelForPackage(pkg, uid, parent, conversationId);
         } catch (Exception e) {
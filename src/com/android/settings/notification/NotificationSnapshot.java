@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import android.app.NotificationChannelGroup;
+import android.service.notification.ConversationChannelWrapper;
+import android.util.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversations and channel groups read once for all the controllers of a notification settings
+ * page.
+ *
+ * <p>The page owns the snapshot and invalidates it whenever it resumes, so the controllers of one
+ * page load share a single binder call per list. Every getter returns a new list, which callers
+ * are free to sort or filter.
+ */
+public class NotificationSnapshot {
+
+    private final NotificationBackend mBackend;
+    private final Object mLock = new Object();
+
+    // Bumped by every invalidation, so that a list read meanwhile is not kept.
+    private int mGeneration;
+    private List<ConversationChannelWrapper> mConversations;
+    private final Map<String, List<ConversationChannelWrapper>> mAppConversations =
+            new ArrayMap<>();
+    private final Map<String, List<NotificationChannelGroup>> mGroups = new ArrayMap<>();
+
+    public NotificationSnapshot(NotificationBackend backend) {
+        mBackend = backend;
+    }
+
+    /** Returns the conversations of all apps, or only the priority ones. */
+    public List<ConversationChannelWrapper> getConversations(boolean onlyImportant) {
+        List<ConversationChannelWrapper> conversations;
+        final int generation;
+        synchronized (mLock) {
+            conversations = mConversations;
+            generation = mGeneration;
+        }
+        if (conversations == null) {
+            // Read outside of the lock, so invalidating from the main thread never waits on binder.
+            conversations = mBackend.getConversations(false).getList();
+            synchronized (mLock) {
+                if (generation == mGeneration) {
+                    mConversations = conversations;
+                }
+            }
+        }
+        if (!onlyImportant) {
+            return new ArrayList<>(conversations);
+        }
+        final List<ConversationChannelWrapper> importantConversations = new ArrayList<>();
+        for (ConversationChannelWrapper conversation : conversations) {
+            if (conversation.getNotificationChannel().isImportantConversation()) {
+                importantConversations.add(conversation);
+            }
+        }
+        return importantConversations;
+    }
+
+    /** Returns the conversations of an app. */
+    public List<ConversationChannelWrapper> getConversations(String pkg, int uid) {
+        final String key = getKey(pkg, uid);
+        List<ConversationChannelWrapper> conversations;
+        final int generation;
+        synchronized (mLock) {
+            conversations = mAppConversations.get(key);
+            generation = mGeneration;
+        }
+        if (conversations == null) {
+            conversations = mBackend.getConversations(pkg, uid).getList();
+            synchronized (mLock) {
+                if (generation == mGeneration) {
+                    mAppConversations.put(key, conversations);
+                }
+            }
+        }
+        return new ArrayList<>(conversations);
+    }
+
+    /** Returns the channel groups of an app, including the channels of each group. */
+    public List<NotificationChannelGroup> getGroups(String pkg, int uid) {
+        final String key = getKey(pkg, uid);
+        List<NotificationChannelGroup> groups;
+        final int generation;
+        synchronized (mLock) {
+            groups = mGroups.get(key);
+            generation = mGeneration;
+        }
+        if (groups == null) {
+            groups = mBackend.getGroups(pkg, uid).getList();
+            synchronized (mLock) {
+                if (generation == mGeneration) {
+                    mGroups.put(key, groups);
+                }
+            }
+        }
+        return new ArrayList<>(groups);
+    }
+
+    /** Drops all the lists, so that they are read again when next needed. */
+    public void invalidate() {
+        synchronized (mLock) {
+            mGeneration++;
+            mConversations = null;
+            mAppConversations.clear();
+            mGroups.clear();
+        }
+    }
+
+    private static String getKey(String pkg, int uid) {
+        return pkg + "|" + uid;
+    }
+}
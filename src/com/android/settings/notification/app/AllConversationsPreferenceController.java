@@ -69,7 +69,7 @@ public class AllConversationsPreferenceController extends ConversationListPrefer
         PreferenceCategory pref = (PreferenceCategory) preference;
         // Load conversations
 
-        mConversations = mBackend.getConversations(false).getList();
+        mConversations = getConversations(false);
         Collections.sort(mConversations, mConversationComparator);
 
         populateList(mConversations, pref);
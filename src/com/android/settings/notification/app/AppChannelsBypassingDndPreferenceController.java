@@ -132,8 +132,7 @@ public class AppChannelsBypassingDndPreferenceController extends NotificationPre
             @Override
             protected Void doInBackground(Void... unused) {
                 List<NotificationChannel> newChannelList = new ArrayList<>();
-                List<NotificationChannelGroup> mChannelGroupList = mBackend.getGroups(mAppRow.pkg,
-                        mAppRow.uid).getList();
+                List<NotificationChannelGroup> mChannelGroupList = getAppChannelGroups();
                 for (NotificationChannelGroup channelGroup : mChannelGroupList) {
                     for (NotificationChannel channel : channelGroup.getChannels()) {
                         if (!isConversation(channel)) {
@@ -19,7 +19,6 @@ package com.android.settings.notification.app;
 import android.app.NotificationChannel;
 import android.app.settings.SettingsEnums;
 import android.content.Context;
-import android.content.pm.ParceledListSlice;
 import android.content.pm.ShortcutInfo;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -94,11 +93,7 @@ public class AppConversationListPreferenceController extends NotificationPrefere
         new AsyncTask<Void, Void, Void>() {
             @Override
             protected Void doInBackground(Void... unused) {
-                ParceledListSlice<ConversationChannelWrapper> list =
-                        mBackend.getConversations(mAppRow.pkg, mAppRow.uid);
-                if (list != null) {
-                    mConversations = filterAndSortConversations(list.getList());
-                }
+                mConversations = filterAndSortConversations(getAppConversations());
                 return null;
             }
 
@@ -94,8 +94,7 @@ public class BubblePreferenceController extends NotificationPreferenceController
     public void updateState(Preference preference) {
         if (mIsAppPage && mAppRow != null) {
             mHasSentInvalidMsg = mBackend.isInInvalidMsgState(mAppRow.pkg, mAppRow.uid);
-            mNumConversations = mBackend.getConversations(
-                    mAppRow.pkg, mAppRow.uid).getList().size();
+            mNumConversations = getAppConversations().size();
             // We're on the app specific bubble page which displays a tri-state
             int backEndPref = mAppRow.bubblePreference;
             BubblePreference pref = (BubblePreference) preference;
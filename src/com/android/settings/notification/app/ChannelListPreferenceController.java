@@ -96,7 +96,7 @@ public class ChannelListPreferenceController extends NotificationPreferenceContr
         new AsyncTask<Void, Void, Void>() {
             @Override
             protected Void doInBackground(Void... unused) {
-                mChannelGroupList = mBackend.getGroups(mAppRow.pkg, mAppRow.uid).getList();
+                mChannelGroupList = getAppChannelGroups();
                 Collections.sort(mChannelGroupList, CHANNEL_GROUP_COMPARATOR);
                 return null;
             }
@@ -32,6 +32,7 @@ import com.android.settings.R;
 import com.android.settings.applications.AppInfoBase;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.notification.NotificationBackend;
+import com.android.settings.notification.NotificationSnapshot;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.widget.AppPreference;
 
@@ -44,6 +45,7 @@ public abstract class ConversationListPreferenceController extends AbstractPrefe
     private static final String KEY = "all_conversations";
 
     protected final NotificationBackend mBackend;
+    private NotificationSnapshot mSnapshot;
 
     public ConversationListPreferenceController(Context context,
             NotificationBackend backend) {
@@ -51,6 +53,19 @@ public abstract class ConversationListPreferenceController extends AbstractPrefe
         mBackend = backend;
     }
 
+    /** Shares the conversations read for the whole page. */
+    void setSnapshot(NotificationSnapshot snapshot) {
+        mSnapshot = snapshot;
+    }
+
+    /** Returns the conversations of all apps, from the page snapshot if there is one. */
+    protected List<ConversationChannelWrapper> getConversations(boolean onlyImportant) {
+        if (mSnapshot != null) {
+            return mSnapshot.getConversations(onlyImportant);
+        }
+        return mBackend.getConversations(onlyImportant).getList();
+    }
+
     @Override
     public String getPreferenceKey() {
         return KEY;
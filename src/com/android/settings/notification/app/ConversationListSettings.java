@@ -25,6 +25,7 @@ import android.util.Log;
 import com.android.settings.R;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.notification.NotificationBackend;
+import com.android.settings.notification.NotificationSnapshot;
 import com.android.settingslib.core.AbstractPreferenceController;
 
 import java.util.ArrayList;
@@ -35,6 +36,7 @@ public class ConversationListSettings extends DashboardFragment {
     private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
 
     NotificationBackend mBackend = new NotificationBackend();
+    NotificationSnapshot mSnapshot = new NotificationSnapshot(mBackend);
     IPeopleManager mPs;
 
     protected List<AbstractPreferenceController> mControllers = new ArrayList<>();
@@ -66,6 +68,18 @@ public class ConversationListSettings extends DashboardFragment {
         mControllers.add(new PriorityConversationsPreferenceController(context, mBackend));
         mControllers.add(new AllConversationsPreferenceController(context, mBackend));
         mControllers.add(new RecentConversationsPreferenceController(context, mBackend, mPs));
+        for (AbstractPreferenceController controller : mControllers) {
+            if (controller instanceof ConversationListPreferenceController) {
+                ((ConversationListPreferenceController) controller).setSnapshot(mSnapshot);
+            }
+        }
         return new ArrayList<>(mControllers);
     }
+
+    @Override
+    public void onResume() {
+        // Read the conversations again for the controllers updated while resuming.
+        mSnapshot.invalidate();
+        super.onResume();
+    }
 }
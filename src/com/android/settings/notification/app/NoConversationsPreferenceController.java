@@ -71,7 +71,7 @@ public class NoConversationsPreferenceController extends ConversationListPrefere
         new AsyncTask<Void, Void, Void>() {
             @Override
             protected Void doInBackground(Void... unused) {
-                mConversationCount = mBackend.getConversations(false).getList().size();
+                mConversationCount = getConversations(false).size();
                 try {
                     mConversationCount += mPs.getRecentConversations().getList().size();
                 } catch (RemoteException e) {
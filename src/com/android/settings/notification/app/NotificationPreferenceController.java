@@ -24,17 +24,21 @@ import android.app.NotificationChannelGroup;
 import android.app.NotificationManager;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.content.pm.ParceledListSlice;
 import android.content.pm.ShortcutInfo;
 import android.graphics.drawable.Drawable;
 import android.os.UserManager;
+import android.service.notification.ConversationChannelWrapper;
 import android.util.Log;
 
 import androidx.preference.Preference;
 
 import com.android.settings.notification.NotificationBackend;
+import com.android.settings.notification.NotificationSnapshot;
 import com.android.settingslib.RestrictedLockUtils;
 import com.android.settingslib.core.AbstractPreferenceController;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
@@ -62,6 +66,8 @@ public abstract class NotificationPreferenceController extends AbstractPreferenc
     @Nullable
     protected ShortcutInfo mConversationInfo;
     protected List<String> mPreferenceFilter;
+    @Nullable
+    protected NotificationSnapshot mSnapshot;
 
     public NotificationPreferenceController(Context context, NotificationBackend backend) {
         super(context);
@@ -112,6 +118,29 @@ public abstract class NotificationPreferenceController extends AbstractPreferenc
         mPreferenceFilter = preferenceFilter;
     }
 
+    /** Shares the conversations and channel groups read for the whole page. */
+    void setSnapshot(@Nullable NotificationSnapshot snapshot) {
+        mSnapshot = snapshot;
+    }
+
+    /** Returns the conversations of the app, from the page snapshot if there is one. */
+    protected List<ConversationChannelWrapper> getAppConversations() {
+        if (mSnapshot != null) {
+            return mSnapshot.getConversations(mAppRow.pkg, mAppRow.uid);
+        }
+        final ParceledListSlice<ConversationChannelWrapper> conversations =
+                mBackend.getConversations(mAppRow.pkg, mAppRow.uid);
+        return conversations != null ? conversations.getList() : new ArrayList<>();
+    }
+
+    /** Returns the channel groups of the app, from the page snapshot if there is one. */
+    protected List<NotificationChannelGroup> getAppChannelGroups() {
+        if (mSnapshot != null) {
+            return mSnapshot.getGroups(mAppRow.pkg, mAppRow.uid);
+        }
+        return mBackend.getGroups(mAppRow.pkg, mAppRow.uid).getList();
+    }
+
     abstract boolean isIncludedInFilter();
 
     protected boolean checkCanBeVisible(int minImportanceVisible) {
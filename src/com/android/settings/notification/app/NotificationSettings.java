@@ -55,9 +55,12 @@ import com.android.settings.R;
 import com.android.settings.SettingsActivity;
 import com.android.settings.applications.AppInfoBase;
 import com.android.settings.dashboard.DashboardFragment;
+import com.android.settings.notification.AppRowCache;
 import com.android.settings.notification.NotificationBackend;
+import com.android.settings.notification.NotificationSnapshot;
 import com.android.settingslib.RestrictedLockUtilsInternal;
 import com.android.settingslib.notification.ConversationIconFactory;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -68,6 +71,7 @@ abstract public class NotificationSettings extends DashboardFragment {
 
     protected PackageManager mPm;
     protected NotificationBackend mBackend = new NotificationBackend();
+    protected NotificationSnapshot mSnapshot = new NotificationSnapshot(mBackend);
     protected NotificationManager mNm;
     protected RoleManager mRm;
     protected Context mContext;
@@ -80,6 +84,8 @@ abstract public class NotificationSettings extends DashboardFragment {
     protected NotificationChannelGroup mChannelGroup;
     protected NotificationChannel mChannel;
     protected NotificationBackend.AppRow mAppRow;
+    // Row whose channel counts and sent notifications are still being loaded.
+    private NotificationBackend.AppRow mLoadingAppRow;
     protected Drawable mConversationDrawable;
     protected ShortcutInfo mConversationInfo;
     protected List<String> mPreferenceFilter;
@@ -154,6 +160,7 @@ abstract public class NotificationSettings extends DashboardFragment {
             }
 
             for (NotificationPreferenceController controller : mControllers) {
+                controller.setSnapshot(mSnapshot);
                 controller.onResume(mAppRow, mChannel, mChannelGroup, null, null,
                         mSuspendedAppsAdmin, mPreferenceFilter);
             }
@@ -187,6 +194,9 @@ abstract public class NotificationSettings extends DashboardFragment {
 
     @Override
     public void onResume() {
+        // Read the conversations and channel groups again for the controllers updated while
+        // resuming.
+        mSnapshot.invalidate();
         super.onResume();
         if (mUid < 0 || TextUtils.isEmpty(mPkg) || mPkgInfo == null || mAppRow == null) {
             Log.w(TAG, "Missing package or uid or packageinfo");
@@ -287,7 +297,53 @@ abstract public class NotificationSettings extends DashboardFragment {
     }
 
     private void loadAppRow() {
-        mAppRow = mBackend.loadAppRow(mContext, mPm, mRm, mPkgInfo);
+        if (mAppRow != null && mAppRow == mLoadingAppRow) {
+            // Loaded moments ago in onAttach, its stats are still being loaded.
+            return;
+        }
+        final AppRowCache cache = AppRowCache.getInstance();
+        final NotificationBackend.AppRow cachedRow = cache.get(mPkg, mUid);
+        if (cachedRow != null) {
+            mAppRow = cachedRow;
+            return;
+        }
+
+        // Show the settings of the app right away, the channel counts and the notifications sent
+        // in the last days are filled in once they are loaded.
+        final int generation = cache.getGeneration();
+        final NotificationBackend.AppRow row =
+                mBackend.loadAppRowWithoutStats(mContext, mPm, mRm, mPkgInfo);
+        mAppRow = row;
+        if (row == null) {
+            return;
+        }
+        mLoadingAppRow = row;
+        final Context context = mContext;
+        final NotificationBackend backend = mBackend;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final NotificationBackend.AppRow stats = new NotificationBackend.AppRow();
+            stats.pkg = row.pkg;
+            stats.uid = row.uid;
+            stats.userId = row.userId;
+            backend.loadAppRowStats(context, stats);
+            ThreadUtils.postOnMainThread(() -> onAppRowStatsLoaded(row, stats, generation));
+        });
+    }
+
+    private void onAppRowStatsLoaded(NotificationBackend.AppRow row,
+            NotificationBackend.AppRow stats, int generation) {
+        row.blockedChannelCount = stats.blockedChannelCount;
+        row.channelCount = stats.channelCount;
+        row.sentByChannel = stats.sentByChannel;
+        row.sentByApp = stats.sentByApp;
+        AppRowCache.getInstance().put(row, generation);
+        if (row != mLoadingAppRow) {
+            return;
+        }
+        mLoadingAppRow = null;
+        if (isAdded() && row == mAppRow) {
+            updatePreferenceStates();
+        }
     }
 
     private void loadChannelGroup() {
@@ -68,7 +68,7 @@ public class PriorityConversationsPreferenceController extends
     public void updateState(Preference preference) {
         PreferenceCategory pref = (PreferenceCategory) preference;
         // Load conversations
-        mConversations = mBackend.getConversations(true).getList();
+        mConversations = getConversations(true);
         Collections.sort(mConversations, mConversationComparator);
 
         populateList(mConversations, pref);
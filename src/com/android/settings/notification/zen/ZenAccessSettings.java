@@ -16,33 +16,35 @@
 
 package com.android.settings.notification.zen;
 
-import android.annotation.Nullable;
 import android.app.ActivityManager;
 import android.app.NotificationManager;
 import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageItemInfo;
-import android.content.pm.PackageManager;
+import android.content.pm.PackageInfo;
 import android.os.Bundle;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.ArraySet;
-import android.view.View;
 import android.util.Log;
 
+import androidx.annotation.WorkerThread;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.applications.AppInfoBase;
+import com.android.settings.applications.specialaccess.SpecialAccessAppsSnapshot;
+import com.android.settings.applications.specialaccess.SpecialAccessAppsSnapshot.AppEntry;
 import com.android.settings.applications.specialaccess.zenaccess.ZenAccessController;
 import com.android.settings.applications.specialaccess.zenaccess.ZenAccessDetails;
 import com.android.settings.applications.specialaccess.zenaccess.ZenAccessSettingObserverMixin;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.widget.EmptyTextSettings;
 import com.android.settingslib.search.SearchIndexable;
+import com.android.settingslib.utils.ThreadUtils;
 import com.android.settingslib.widget.AppPreference;
 
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -54,8 +56,10 @@ public class ZenAccessSettings extends EmptyTextSettings implements
     private final String TAG = "ZenAccessSettings";
 
     private Context mContext;
-    private PackageManager mPkgMan;
     private NotificationManager mNoMan;
+    private SpecialAccessAppsSnapshot mAppsSnapshot;
+    // Bumped on every load, so that only the latest one is shown.
+    private int mLoadGeneration;
 
     @Override
     public int getMetricsCategory() {
@@ -67,18 +71,12 @@ public class ZenAccessSettings extends EmptyTextSettings implements
         super.onCreate(icicle);
 
         mContext = getActivity();
-        mPkgMan = mContext.getPackageManager();
         mNoMan = mContext.getSystemService(NotificationManager.class);
+        mAppsSnapshot = SpecialAccessAppsSnapshot.getInstance(mContext);
         getSettingsLifecycle().addObserver(
                 new ZenAccessSettingObserverMixin(getContext(), this /* listener */));
     }
 
-    @Override
-    public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
-        super.onViewCreated(view, savedInstanceState);
-        setEmptyText(R.string.zen_access_empty_text);
-    }
-
     @Override
     protected int getPreferenceScreenResId() {
         return R.xml.zen_access_settings;
@@ -95,52 +93,79 @@ public class ZenAccessSettings extends EmptyTextSettings implements
         reloadList();
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Drop a load that is still running.
+        mLoadGeneration++;
+    }
+
     private void reloadList() {
         if (mContext.getSystemService(UserManager.class)
                 .isManagedProfile(UserHandle.myUserId())) {
             Log.w(TAG, "DND access cannot be enabled in a work profile");
             return;
         }
-        final PreferenceScreen screen = getPreferenceScreen();
-        screen.removeAll();
-        final ArrayList<ApplicationInfo> apps = new ArrayList<>();
+        final int generation = ++mLoadGeneration;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final List<ZenAccessApp> apps = collectApps(UserHandle.myUserId());
+            ThreadUtils.postOnMainThread(() -> {
+                if (generation == mLoadGeneration) {
+                    showApps(apps);
+                }
+            });
+        });
+    }
+
+    @WorkerThread
+    private List<ZenAccessApp> collectApps(int userId) {
+        final List<ZenAccessApp> apps = new ArrayList<>();
         final Set<String> requesting =
                 ZenAccessController.getPackagesRequestingNotificationPolicyAccess();
-        if (!requesting.isEmpty()) {
-            final List<ApplicationInfo> installed = mPkgMan.getInstalledApplications(0);
-            if (installed != null) {
-                for (ApplicationInfo app : installed) {
-                    if (requesting.contains(app.packageName)) {
-                        apps.add(app);
-                    }
-                }
-            }
+        if (requesting.isEmpty()) {
+            return apps;
         }
-        ArraySet<String> autoApproved = new ArraySet<>();
+        final ArraySet<String> autoApproved = new ArraySet<>();
         autoApproved.addAll(mNoMan.getEnabledNotificationListenerPackages());
         autoApproved.addAll(ZenAccessController.getPackagesWithManageNotifications());
-        Collections.sort(apps, new PackageItemInfo.DisplayNameComparator(mPkgMan));
-        for (ApplicationInfo app : apps) {
-            final String pkg = app.packageName;
-            final CharSequence label = app.loadLabel(mPkgMan);
+        for (PackageInfo packageInfo : mAppsSnapshot.getInstalledPackages(userId)) {
+            final ApplicationInfo info = packageInfo.applicationInfo;
+            if (info == null || !requesting.contains(info.packageName)) {
+                continue;
+            }
+            final boolean approved = autoApproved.contains(info.packageName);
+            apps.add(new ZenAccessApp(mAppsSnapshot.getAppEntry(info, userId), approved,
+                    approved ? 0 : getPreferenceSummary(info.packageName)));
+        }
+        final Collator collator = Collator.getInstance();
+        Collections.sort(apps, (a, b) -> collator.compare(
+                a.entry.label.toString(), b.entry.label.toString()));
+        return apps;
+    }
+
+    private void showApps(List<ZenAccessApp> apps) {
+        final PreferenceScreen screen = getPreferenceScreen();
+        screen.removeAll();
+        for (ZenAccessApp app : apps) {
+            final String pkg = app.entry.info.packageName;
             final AppPreference pref = new AppPreference(getPrefContext());
             pref.setKey(pkg);
-            pref.setIcon(app.loadIcon(mPkgMan));
-            pref.setTitle(label);
-            if (autoApproved.contains(pkg)) {
+            pref.setIcon(app.entry.icon);
+            pref.setTitle(app.entry.label);
+            if (app.autoApproved) {
                 //Auto approved, user cannot do anything. Hard code summary and disable preference.
                 pref.setEnabled(false);
                 pref.setSummary(getString(R.string.zen_access_disabled_package_warning));
             } else {
                 // Not auto approved, update summary according to notification backend.
-                pref.setSummary(getPreferenceSummary(pkg));
+                pref.setSummary(app.summary);
             }
             pref.setOnPreferenceClickListener(preference -> {
                 AppInfoBase.startAppInfoFragment(
                         ZenAccessDetails.class  /* fragment */,
                         R.string.manage_zen_access_title /* titleRes */,
                         pkg,
-                        app.uid,
+                        app.entry.info.uid,
                         this /* source */,
                         -1 /* requestCode */,
                         getMetricsCategory() /* sourceMetricsCategory */);
@@ -149,6 +174,7 @@ public class ZenAccessSettings extends EmptyTextSettings implements
 
             screen.addPreference(pref);
         }
+        setEmptyText(R.string.zen_access_empty_text);
     }
 
     /**
@@ -156,11 +182,24 @@ public class ZenAccessSettings extends EmptyTextSettings implements
      * {@param packageName} is allowed to enter picture-in-picture.
      */
     private int getPreferenceSummary(String packageName) {
-        final boolean enabled = ZenAccessController.hasAccess(getContext(), packageName);
+        final boolean enabled = ZenAccessController.hasAccess(mContext, packageName);
         return enabled ? R.string.app_permission_summary_allowed
                 : R.string.app_permission_summary_not_allowed;
     }
 
+    /** An app requesting DND access, with what its preference shows. */
+    private static class ZenAccessApp {
+        final AppEntry entry;
+        final boolean autoApproved;
+        final int summary;
+
+        ZenAccessApp(AppEntry entry, boolean autoApproved, int summary) {
+            this.entry = entry;
+            this.autoApproved = autoApproved;
+            this.summary = summary;
+        }
+    }
+
     public static final BaseSearchIndexProvider SEARCH_INDEX_DATA_PROVIDER =
             new BaseSearchIndexProvider(R.xml.zen_access_settings);
 }
@@ -31,6 +31,7 @@ import com.android.settings.SubSettings;
 import com.android.settings.slices.CustomSliceRegistry;
 import com.android.settings.slices.SliceBuilderUtils;
 import com.android.settings.network.NetworkDashboardFragment;
+import com.android.settings.network.SubscriptionUtil;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -86,7 +87,7 @@ public class MobileDataPanel implements PanelContent {
 
     private CharSequence getSummary() {
         final SubscriptionInfo defaultSubscription =
-                mSubscriptionManager.getDefaultDataSubscriptionInfo();
+                SubscriptionUtil.getDefaultDataSubscriptionInfo(mContext, mSubscriptionManager);
         if (defaultSubscription == null) {
             return mContext.getText(R.string.mobile_data_settings_title).toString();
         }
@@ -84,6 +84,7 @@ import com.android.settings.SetupWizardUtils;
 import com.android.settings.Utils;
 import com.android.settings.core.InstrumentedFragment;
 import com.android.settings.notification.RedactionInterstitial;
+import com.android.settingslib.utils.ThreadUtils;
 
 import com.google.android.setupcompat.template.FooterBarMixin;
 import com.google.android.setupcompat.template.FooterButton;
@@ -227,6 +228,11 @@ public class ChooseLockPassword extends SettingsActivity {
         @PasswordComplexity private int mMinComplexity = PASSWORD_COMPLEXITY_NONE;
         protected int mUserId;
         private byte[] mPasswordHistoryHashFactor;
+        // Incremented on every edit so that stale password history checks can be discarded.
+        private int mTextGeneration;
+        private int mPendingHistoryCheckGeneration = -1;
+        private int mHistoryCheckedGeneration = -1;
+        private boolean mPasswordRecentlyUsed;
         private int mUnificationProfileId = UserHandle.USER_NULL;
 
         private LockPatternUtils mLockPatternUtils;
@@ -616,6 +622,8 @@ public class ChooseLockPassword extends SettingsActivity {
         @Override
         public void onResume() {
             super.onResume();
+            // Fetch the history hash factor ahead of the first history check, which needs it.
+            ThreadUtils.postOnBackgroundThread(this::getPasswordHistoryHashFactor);
             updateStage(mUiStage);
             if (mSaveAndFinishWorker != null) {
                 mSaveAndFinishWorker.setListener(this);
@@ -655,6 +663,10 @@ public class ChooseLockPassword extends SettingsActivity {
                     } else {
                         mCurrentCredential = data.getParcelableExtra(
                                 ChooseLockSettingsHelper.EXTRA_KEY_PASSWORD);
+                        // The hash factor depends on the current credential.
+                        synchronized (this) {
+                            mPasswordHistoryHashFactor = null;
+                        }
                     }
                     break;
             }
@@ -685,22 +697,72 @@ public class ChooseLockPassword extends SettingsActivity {
          */
         @VisibleForTesting
         boolean validatePassword(LockscreenCredential credential) {
-            final byte[] password = credential.getCredential();
-            mValidationErrors = PasswordMetrics.validatePassword(
-                    mMinMetrics, mMinComplexity, !mIsAlphaMode, password);
-            if (mValidationErrors.isEmpty() &&  mLockPatternUtils.checkPasswordHistory(
-                        password, getPasswordHistoryHashFactor(), mUserId)) {
+            if (validatePasswordComplexity(credential) && mLockPatternUtils.checkPasswordHistory(
+                        credential.getCredential(), getPasswordHistoryHashFactor(), mUserId)) {
                 mValidationErrors =
                         Collections.singletonList(new PasswordValidationError(RECENTLY_USED));
             }
             return mValidationErrors.isEmpty();
         }
 
+        /**
+         * Validates PIN/Password against the complexity requirements only, updating
+         * mValidationErrors. Unlike the password history check, this is cheap enough to run on
+         * every keystroke.
+         */
+        private boolean validatePasswordComplexity(LockscreenCredential credential) {
+            mValidationErrors = PasswordMetrics.validatePassword(
+                    mMinMetrics, mMinComplexity, !mIsAlphaMode, credential.getCredential());
+            return mValidationErrors.isEmpty();
+        }
+
+        /**
+         * Returns whether the current text passes the password history check. If the check has
+         * not completed for the current text yet, it is started in the background and this returns
+         * false until {@link #onPasswordHistoryChecked} updates the UI again.
+         */
+        private boolean checkPasswordHistoryAsync(LockscreenCredential credential) {
+            if (mHistoryCheckedGeneration != mTextGeneration
+                    && mPendingHistoryCheckGeneration != mTextGeneration) {
+                mPendingHistoryCheckGeneration = mTextGeneration;
+                final int generation = mTextGeneration;
+                final LockscreenCredential candidate = credential.duplicate();
+                ThreadUtils.postOnBackgroundThread(() -> {
+                    final boolean recentlyUsed;
+                    try (LockscreenCredential password = candidate) {
+                        recentlyUsed = mLockPatternUtils.checkPasswordHistory(
+                                password.getCredential(), getPasswordHistoryHashFactor(), mUserId);
+                    }
+                    ThreadUtils.postOnMainThread(
+                            () -> onPasswordHistoryChecked(generation, recentlyUsed));
+                });
+            }
+            if (mHistoryCheckedGeneration != mTextGeneration) {
+                // Still checking, keep the password rejected until the result comes back.
+                return false;
+            }
+            if (mPasswordRecentlyUsed) {
+                mValidationErrors =
+                        Collections.singletonList(new PasswordValidationError(RECENTLY_USED));
+            }
+            return !mPasswordRecentlyUsed;
+        }
+
+        private void onPasswordHistoryChecked(int generation, boolean recentlyUsed) {
+            if (getActivity() == null || generation != mTextGeneration) {
+                // The text changed while checking, a newer check is on its way.
+                return;
+            }
+            mHistoryCheckedGeneration = generation;
+            mPasswordRecentlyUsed = recentlyUsed;
+            updateUi();
+        }
+
         /**
          * Lazily compute and return the history hash factor of the current user (mUserId), used for
          * password history check.
          */
-        private byte[] getPasswordHistoryHashFactor() {
+        private synchronized byte[] getPasswordHistoryHashFactor() {
             if (mPasswordHistoryHashFactor == null) {
                 mPasswordHistoryHashFactor = mLockPatternUtils.getPasswordHistoryHashFactor(
                         mCurrentCredential != null ? mCurrentCredential
@@ -856,7 +918,8 @@ public class ChooseLockPassword extends SettingsActivity {
             final int length = password.size();
             if (mUiStage == Stage.Introduction) {
                 mPasswordRestrictionView.setVisibility(View.VISIBLE);
-                final boolean passwordCompliant = validatePassword(password);
+                final boolean passwordCompliant = validatePasswordComplexity(password)
+                        && checkPasswordHistoryAsync(password);
                 String[] messages = convertErrorCodeToMessages();
                 // Update the fulfillment of requirements.
                 mPasswordRequirementAdapter.setRequirements(messages);
@@ -901,6 +964,7 @@ public class ChooseLockPassword extends SettingsActivity {
             if (mUiStage == Stage.ConfirmWrong) {
                 mUiStage = Stage.NeedToConfirm;
             }
+            mTextGeneration++;
             // Schedule the UI update.
             mTextChangedHandler.notifyAfterTextChanged();
         }
@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.UserManager;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.instrumentation.PerformanceMetrics;
+import com.android.settingslib.search.Indexable;
+import com.android.settingslib.search.SearchIndexableData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates the non-indexable keys of every search index provider on a small pool of background
+ * threads.
+ *
+ * <p>Each provider gets {@link #PROVIDER_TIMEOUT_MS} from the moment it starts running. A provider
+ * that doesn't answer in time is cancelled and its last known keys are used instead, unless it
+ * never answered yet: then it is waited for, as the keys would otherwise be missing from the
+ * index. The combined result is reused until a SIM, user restriction, package or locale change
+ * is broadcast, or until it is older than {@link #MAX_AGE_MS}.
+ */
+class NonIndexableKeysEvaluator {
+
+    private static final String TAG = "NonIndexableKeys";
+
+    /** Time budget of each provider, from the moment it starts running. */
+    @VisibleForTesting
+    static final long PROVIDER_TIMEOUT_MS = 500;
+    /**
+     * Time budget of all providers together, so that providers stuck in uninterruptible calls
+     * can't hold back the providers queued behind them forever.
+     */
+    private static final long TOTAL_TIMEOUT_MS = 10000;
+    /** Keys depend on settings that are not broadcast, so never reuse them for long. */
+    @VisibleForTesting
+    static final long MAX_AGE_MS = 60000;
+    /** Providers slower than this are logged so they can be fixed. */
+    private static final long SLOW_PROVIDER_MS = 100;
+    private static final int MAX_THREADS = 4;
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private final Context mContext;
+    private final ExecutorService mExecutor;
+    private final long mProviderTimeoutMs;
+    // Last keys returned by each provider, keyed by the class the provider indexes.
+    private final Map<String, List<String>> mLastKnownKeys = new ArrayMap<>();
+
+    // Bumped by every invalidation, so that a result evaluated meanwhile is not cached.
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private volatile List<String> mCachedKeys;
+    private long mCachedTime;
+    private boolean mReceiverRegistered;
+
+    private final BroadcastReceiver mInvalidateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (!isInitialStickyBroadcast()) {
+                invalidate();
+            }
+        }
+    };
+
+    NonIndexableKeysEvaluator(Context context) {
+        this(context, PROVIDER_TIMEOUT_MS);
+    }
+
+    @VisibleForTesting
+    NonIndexableKeysEvaluator(Context context, long providerTimeoutMs) {
+        mContext = context;
+        mProviderTimeoutMs = providerTimeoutMs;
+        final int threads =
+                Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    // Indexing runs right after boot, don't compete with the launcher.
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, TAG));
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+    }
+
+    /** Returns the non-indexable keys of all {@code bundles}, evaluating them if needed. */
+    synchronized List<String> getNonIndexableKeys(Collection<SearchIndexableData> bundles) {
+        registerReceiverIfNeeded();
+        final long now = SystemClock.elapsedRealtime();
+        if (mCachedKeys != null && now - mCachedTime < MAX_AGE_MS) {
+            return new ArrayList<>(mCachedKeys);
+        }
+        final int generation = mGeneration.get();
+
+        final List<ProviderTask> tasks = new ArrayList<>(bundles.size());
+        final List<Future<List<String>>> futures = new ArrayList<>(bundles.size());
+        for (SearchIndexableData bundle : bundles) {
+            final ProviderTask task = new ProviderTask(bundle);
+            tasks.add(task);
+            futures.add(mExecutor.submit(task));
+        }
+
+        final long deadlineNanos =
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TOTAL_TIMEOUT_MS);
+        final List<String> keys = new ArrayList<>();
+        boolean complete = true;
+        for (int i = 0; i < tasks.size(); i++) {
+            final String className = tasks.get(i).mBundle.getTargetClass().getName();
+            final List<String> lastKnownKeys = mLastKnownKeys.get(className);
+            final List<String> providerKeys =
+                    await(tasks.get(i), futures.get(i), lastKnownKeys != null, deadlineNanos);
+            if (providerKeys == null) {
+                Log.w(TAG, "Timeout getting non-indexable keys from: " + className);
+                complete = false;
+                if (lastKnownKeys != null) {
+                    keys.addAll(lastKnownKeys);
+                }
+                continue;
+            }
+            mLastKnownKeys.put(className, providerKeys);
+            keys.addAll(providerKeys);
+        }
+
+        // Only reuse results in which every provider answered in time.
+        mCachedKeys = complete && generation == mGeneration.get() ? keys : null;
+        mCachedTime = now;
+        return keys;
+    }
+
+    /** Drops the cached keys, so that the next query evaluates every provider again. */
+    void invalidate() {
+        mGeneration.incrementAndGet();
+        mCachedKeys = null;
+    }
+
+    /**
+     * Waits for the keys of {@code task}, or returns null if they are not available in time. Only
+     * a provider with a {@code fallback} is given up on, after its own budget or the total one.
+     */
+    private List<String> await(ProviderTask task, Future<List<String>> future, boolean fallback,
+            long deadlineNanos) {
+        try {
+            if (!fallback) {
+                return future.get();
+            }
+            final long providerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(mProviderTimeoutMs);
+            while (true) {
+                final long now = System.nanoTime();
+                final long timeout = Math.min(deadlineNanos - now, task.mStarted
+                        ? task.mStartTimeNanos + providerTimeoutNanos - now : providerTimeoutNanos);
+                if (timeout <= 0) {
+                    future.cancel(true /* mayInterruptIfRunning */);
+                    return null;
+                }
+                try {
+                    return future.get(timeout, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    // Not started yet, or out of budget: checked above.
+                }
+            }
+        } catch (ExecutionException e) {
+            // Thrown again only when the crash on error system property is set.
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while getting non-indexable keys", e);
+            Thread.currentThread().interrupt();
+            future.cancel(true /* mayInterruptIfRunning */);
+            return null;
+        }
+    }
+
+    private List<String> evaluate(SearchIndexableData bundle) {
+        final long startTime = SystemClock.elapsedRealtime();
+        final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        final String className = bundle.getTargetClass().getName();
+        List<String> providerKeys;
+        try {
+            providerKeys = provider.getNonIndexableKeys(mContext);
+        } catch (Exception e) {
+            // Catch a generic crash, so that a crash in a specific controller doesn't lose all
+            // non-indexable keys. We crash when the system property exists so that we can test if
+            // crashes need to be fixed.
+            if (System.getProperty(SettingsSearchIndexablesProvider.SYSPROP_CRASH_ON_ERROR)
+                    != null) {
+                throw new RuntimeException(e);
+            }
+            Log.e(TAG, "Error trying to get non-indexable keys from: " + className, e);
+            providerKeys = null;
+        }
+        if (providerKeys == null) {
+            providerKeys = new ArrayList<>();
+        } else if (providerKeys.removeAll(SettingsSearchIndexablesProvider.INVALID_KEYS)) {
+            Log.v(TAG, provider + " tried to add an empty non-indexable key");
+        }
+
+        final long totalTime = SystemClock.elapsedRealtime() - startTime;
+        PerformanceMetrics.getInstance().recordLatency(
+                PerformanceMetrics.CATEGORY_NON_INDEXABLE_KEYS, className, totalTime);
+        if (totalTime > SLOW_PROVIDER_MS) {
+            Log.w(TAG, "Slow non-indexable keys provider " + className + ", total time "
+                    + totalTime);
+        } else if (SettingsSearchIndexablesProvider.DEBUG) {
+            Log.d(TAG, "Non-indexables " + providerKeys.size() + " from " + className
+                    + ", total time " + totalTime);
+        }
+        return providerKeys;
+    }
+
+    private class ProviderTask implements Callable<List<String>> {
+        private final SearchIndexableData mBundle;
+        // When the provider started running, on the clock of System.nanoTime().
+        private volatile long mStartTimeNanos;
+        private volatile boolean mStarted;
+
+        ProviderTask(SearchIndexableData bundle) {
+            mBundle = bundle;
+        }
+
+        @Override
+        public List<String> call() {
+            mStartTimeNanos = System.nanoTime();
+            mStarted = true;
+            return evaluate(mBundle);
+        }
+    }
+
+    private void registerReceiverIfNeeded() {
+        if (mReceiverRegistered) {
+            return;
+        }
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SIM_STATE_CHANGED);
+        filter.addAction(UserManager.ACTION_USER_RESTRICTIONS_CHANGED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        filter.addAction(Intent.ACTION_AIRPLANE_MODE_CHANGED);
+        final Context appContext = mContext.getApplicationContext();
+        appContext.registerReceiver(mInvalidateReceiver, filter);
+
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addDataScheme("package");
+        appContext.registerReceiver(mInvalidateReceiver, packageFilter);
+        mReceiverRegistered = true;
+    }
+}
@@ -95,11 +95,14 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
     private static final String TAG = "SettingsSearchProvider";
 
-    private static final Collection<String> INVALID_KEYS;
+    static final Collection<String> INVALID_KEYS;
 
     // Search enabled states for injection (key: category key, value: search enabled)
     private Map<String, Boolean> mSearchEnabledByCategoryKeyMap;
 
+    // Evaluates and caches the non-indexable keys of all providers in parallel.
+    private NonIndexableKeysEvaluator mNonIndexableKeysEvaluator;
+
     static {
         INVALID_KEYS = new ArraySet<>();
         INVALID_KEYS.add(null);
@@ -273,52 +276,20 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     private List<String> getNonIndexableKeysFromProvider(Context context) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
+        return getNonIndexableKeysEvaluator(context).getNonIndexableKeys(bundles);
+    }
 
-        final List<String> nonIndexableKeys = new ArrayList<>();
-
-        for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
-            try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
-                continue;
-            }
-
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
-            }
-
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
-                Log.v(TAG, provider + " tried to add an empty non-indexable key");
-            }
-
-            if (DEBUG) {
-                final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
-            }
+    /** Drops the cached non-indexable keys, so that the next query runs the providers again. */
+    @VisibleForTesting
+    synchronized void clearCaches(Context context) {
+        getNonIndexableKeysEvaluator(context).invalidate();
+    }
 
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
+    private synchronized NonIndexableKeysEvaluator getNonIndexableKeysEvaluator(Context context) {
+        if (mNonIndexableKeysEvaluator == null) {
+            mNonIndexableKeysEvaluator = new NonIndexableKeysEvaluator(context);
         }
-
-        return nonIndexableKeys;
+        return mNonIndexableKeysEvaluator;
     }
 
     private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
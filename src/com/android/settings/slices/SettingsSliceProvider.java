@@ -28,6 +28,7 @@ import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.StrictMode;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
@@ -47,6 +48,7 @@ import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.bluetooth.BluetoothSliceBuilder;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.instrumentation.PerformanceMetrics;
 import com.android.settings.notification.VolumeSeekBarPreferenceController;
 import com.android.settings.notification.zen.ZenModeSliceBuilder;
 import com.android.settings.overlay.FeatureFactory;
@@ -205,6 +207,7 @@ public class SettingsSliceProvider extends SliceProvider {
         if (!mFirstSliceBound) {
             Log.d(TAG, "onBindSlice start: " + sliceUri);
         }
+        final long startTime = SystemClock.elapsedRealtime();
         final StrictMode.ThreadPolicy oldPolicy = StrictMode.getThreadPolicy();
         try {
             if (!ThreadUtils.isMainThread()) {
@@ -272,6 +275,8 @@ public class SettingsSliceProvider extends SliceProvider {
             return SliceBuilderUtils.buildSlice(getContext(), cachedSliceData);
         } finally {
             StrictMode.setThreadPolicy(oldPolicy);
+            PerformanceMetrics.getInstance().recordSince(PerformanceMetrics.CATEGORY_SLICE_BIND,
+                    sliceUri.getAuthority() + sliceUri.getPath(), startTime);
             if (!mFirstSliceBound) {
                 Log.v(TAG, "onBindSlice end");
                 mFirstSliceBound = true;
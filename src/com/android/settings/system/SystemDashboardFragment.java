@@ -78,6 +78,11 @@ public class SystemDashboardFragment extends DashboardFragment {
         return R.xml.system_dashboard_fragment;
     }
 
+    @Override
+    protected boolean shouldCreateCollapsedControllersLazily() {
+        return true;
+    }
+
     @Override
     public int getHelpResource() {
         return R.string.help_url_system_dashboard;
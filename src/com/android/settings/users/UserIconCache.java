@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.LruCache;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.settingslib.drawable.CircleFramedDrawable;
+
+import java.util.Map;
+
+/**
+ * Process-wide cache of user avatars. Icons are downsampled and circled once per user id and
+ * target size, and entries are dropped when the user's info changes or the user is removed.
+ */
+public class UserIconCache {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static UserIconCache sInstance;
+
+    private final Context mContext;
+    private final UserManager mUserManager;
+    private final int mDefaultIconSize;
+    private final LruCache<Long, Bitmap> mCircledIcons = new LruCache<>(MAX_ENTRIES);
+    // Bumped for a user whenever its icons are dropped, so that a load that raced with it is not
+    // cached.
+    @GuardedBy("this")
+    private final SparseIntArray mGenerations = new SparseIntArray();
+
+    private final BroadcastReceiver mUserInfoReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final int userId = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL);
+            if (userId != UserHandle.USER_NULL) {
+                invalidate(userId);
+            }
+        }
+    };
+
+    /** Returns the shared cache, registering for user change broadcasts on first use. */
+    public static synchronized UserIconCache getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new UserIconCache(appContext,
+                    appContext.getSystemService(UserManager.class));
+            final IntentFilter filter = new IntentFilter(Intent.ACTION_USER_INFO_CHANGED);
+            filter.addAction(Intent.ACTION_USER_REMOVED);
+            appContext.registerReceiver(sInstance.mUserInfoReceiver, filter);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    UserIconCache(Context context, UserManager userManager) {
+        mContext = context;
+        mUserManager = userManager;
+        mDefaultIconSize = context.getResources().getDimensionPixelSize(
+                com.android.internal.R.dimen.user_icon_size);
+    }
+
+    /** Returns the cached icon for {@code userId} at the default size, or null if not loaded. */
+    @Nullable
+    public Drawable getCachedIcon(int userId) {
+        return getCachedIcon(userId, mDefaultIconSize);
+    }
+
+    /** Returns the cached icon for {@code userId} at {@code size} pixels, or null. */
+    @Nullable
+    public Drawable getCachedIcon(int userId, int size) {
+        final Bitmap circled = mCircledIcons.get(getKey(userId, size));
+        return circled == null ? null : new BitmapDrawable(mContext.getResources(), circled);
+    }
+
+    /** Loads, caches and returns the icon for {@code userId} at the default size. */
+    @WorkerThread
+    @NonNull
+    public Drawable loadIcon(int userId) {
+        return loadIcon(userId, mDefaultIconSize);
+    }
+
+    /**
+     * Loads, caches and returns the icon for {@code userId} at {@code size} pixels, falling back
+     * to the default avatar when the user has no icon set.
+     */
+    @WorkerThread
+    @NonNull
+    public Drawable loadIcon(int userId, int size) {
+        final Drawable cached = getCachedIcon(userId, size);
+        if (cached != null) {
+            return cached;
+        }
+        final int generation = getGeneration(userId);
+        Bitmap icon = mUserManager.getUserIcon(userId);
+        if (icon == null) {
+            icon = UserSettings.getDefaultUserIconAsBitmap(mContext.getResources(), userId);
+        }
+        return putIcon(userId, icon, size, generation);
+    }
+
+    /** Replaces every cached size for {@code userId} with {@code icon} at the default size. */
+    @NonNull
+    public Drawable putIcon(int userId, @NonNull Bitmap icon) {
+        invalidate(userId);
+        return putIcon(userId, icon, mDefaultIconSize, getGeneration(userId));
+    }
+
+    /**
+     * Drops every cached size for {@code userId}. Loads that are still running keep returning
+     * what they read, but don't cache it.
+     */
+    public synchronized void invalidate(int userId) {
+        mGenerations.put(userId, mGenerations.get(userId) + 1);
+        for (Map.Entry<Long, Bitmap> entry : mCircledIcons.snapshot().entrySet()) {
+            if (getUserId(entry.getKey()) == userId) {
+                mCircledIcons.remove(entry.getKey());
+            }
+        }
+    }
+
+    private synchronized int getGeneration(int userId) {
+        return mGenerations.get(userId);
+    }
+
+    private Drawable putIcon(int userId, Bitmap icon, int size, int generation) {
+        final Bitmap circled = encircle(downsample(icon, size), size);
+        synchronized (this) {
+            if (generation == mGenerations.get(userId)) {
+                mCircledIcons.put(getKey(userId, size), circled);
+            }
+        }
+        return new BitmapDrawable(mContext.getResources(), circled);
+    }
+
+    /** Center-crops {@code icon} to a square and scales it down to at most {@code size}. */
+    @VisibleForTesting
+    static Bitmap downsample(Bitmap icon, int size) {
+        final int width = icon.getWidth();
+        final int height = icon.getHeight();
+        final int square = Math.min(width, height);
+        if (square <= size && width == height) {
+            return icon;
+        }
+        final Matrix matrix = new Matrix();
+        if (square > size) {
+            final float scale = (float) size / square;
+            matrix.setScale(scale, scale);
+        }
+        return Bitmap.createBitmap(icon, (width - square) / 2, (height - square) / 2, square,
+                square, matrix, true /* filter */);
+    }
+
+    private static Bitmap encircle(Bitmap icon, int size) {
+        final CircleFramedDrawable drawable = new CircleFramedDrawable(icon, size);
+        final Bitmap circled = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(circled);
+        drawable.setBounds(0, 0, size, size);
+        drawable.draw(canvas);
+        return circled;
+    }
+
+    private static long getKey(int userId, int size) {
+        return ((long) userId << 32) | (size & 0xffffffffL);
+    }
+
+    private static int getUserId(long key) {
+        return (int) (key >>> 32);
+    }
+}
@@ -34,7 +34,6 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -164,7 +163,7 @@ public class UserSettings extends SettingsPreferenceFragment
     @VisibleForTesting
     RestrictedPreference mAddUser;
     @VisibleForTesting
-    SparseArray<Bitmap> mUserIcons = new SparseArray<>();
+    UserIconCache mUserIconCache;
     private int mRemovingUserId = -1;
     private boolean mAddingUser;
     private boolean mGuestUserAutoCreated;
@@ -214,7 +213,7 @@ public class UserSettings extends SettingsPreferenceFragment
             } else if (intent.getAction().equals(Intent.ACTION_USER_INFO_CHANGED)) {
                 int userHandle = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, -1);
                 if (userHandle != -1) {
-                    mUserIcons.remove(userHandle);
+                    mUserIconCache.invalidate(userHandle);
                 }
             }
             mHandler.sendEmptyMessage(MESSAGE_UPDATE_LIST);
@@ -250,6 +249,7 @@ public class UserSettings extends SettingsPreferenceFragment
             return;
         }
 
+        mUserIconCache = UserIconCache.getInstance(activity);
         mGuestUserAutoCreated = getPrefContext().getResources().getBoolean(
                         com.android.internal.R.bool.config_guestUserAutoCreated);
 
@@ -412,35 +412,24 @@ public class UserSettings extends SettingsPreferenceFragment
             return;
         }
 
-        new AsyncTask<Void, Void, String>() {
-            @Override
-            protected void onPostExecute(String result) {
-                finishLoadProfile(result);
-            }
-
-            @Override
-            protected String doInBackground(Void... values) {
-                UserInfo user = mUserManager.getUserInfo(UserHandle.myUserId());
-                if (user.iconPath == null || user.iconPath.equals("")) {
-                    // Assign profile photo.
-                    copyMeProfilePhoto(getActivity(), user);
-                }
-                return user.name;
+        final Context context = getActivity();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final UserInfo user = mUserManager.getUserInfo(UserHandle.myUserId());
+            if (user.iconPath == null || user.iconPath.equals("")) {
+                // Assign profile photo.
+                copyMeProfilePhoto(context, user);
             }
-        }.execute();
+            final Drawable icon = mUserIconCache.loadIcon(user.id);
+            ThreadUtils.postOnMainThread(() -> finishLoadProfile(user.name, icon));
+        });
     }
 
-    private void finishLoadProfile(String profileName) {
+    private void finishLoadProfile(String profileName, Drawable icon) {
         if (getActivity() == null) {
             return;
         }
         mMePreference.setTitle(getString(R.string.user_you, profileName));
-        int myUserId = UserHandle.myUserId();
-        Bitmap b = mUserManager.getUserIcon(myUserId);
-        if (b != null) {
-            mMePreference.setIcon(encircle(b));
-            mUserIcons.put(myUserId, b);
-        }
+        mMePreference.setIcon(icon);
     }
 
     private boolean hasLockscreenSecurity() {
@@ -701,9 +690,11 @@ public class UserSettings extends SettingsPreferenceFragment
                 getString(com.android.settingslib.R.string.profile_info_settings_title),
                 (newUserName, newUserIcon) -> {
                     if (newUserIcon != userIcon) {
-                        ThreadUtils.postOnBackgroundThread(() ->
-                                mUserManager.setUserIcon(user.id,
-                                        UserIcons.convertToBitmap(newUserIcon)));
+                        ThreadUtils.postOnBackgroundThread(() -> {
+                            final Bitmap bitmap = UserIcons.convertToBitmap(newUserIcon);
+                            mUserManager.setUserIcon(user.id, bitmap);
+                            mUserIconCache.putIcon(user.id, bitmap);
+                        });
                         mMePreference.setIcon(newUserIcon);
                     }
 
@@ -984,12 +975,13 @@ public class UserSettings extends SettingsPreferenceFragment
                 pref.setSummary(R.string.user_summary_restricted_profile);
             }
             if (user.iconPath != null) {
-                if (mUserIcons.get(user.id) == null) {
+                final Drawable icon = mUserIconCache.getCachedIcon(user.id);
+                if (icon == null) {
                     // Icon not loaded yet, print a placeholder
                     missingIcons.add(user.id);
                     pref.setIcon(getEncircledDefaultIcon());
                 } else {
-                    setPhotoId(pref, user);
+                    pref.setIcon(icon);
                 }
             } else {
                 // Icon not available yet, print a placeholder
@@ -1115,24 +1107,12 @@ public class UserSettings extends SettingsPreferenceFragment
     }
 
     private void loadIconsAsync(List<Integer> missingIcons) {
-        new AsyncTask<List<Integer>, Void, Void>() {
-            @Override
-            protected void onPostExecute(Void result) {
-                updateUserList();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            for (int userId : missingIcons) {
+                mUserIconCache.loadIcon(userId);
             }
-
-            @Override
-            protected Void doInBackground(List<Integer>... values) {
-                for (int userId : values[0]) {
-                    Bitmap bitmap = mUserManager.getUserIcon(userId);
-                    if (bitmap == null) {
-                        bitmap = getDefaultUserIconAsBitmap(getContext().getResources(), userId);
-                    }
-                    mUserIcons.append(userId, bitmap);
-                }
-                return null;
-            }
-        }.execute(missingIcons);
+            ThreadUtils.postOnMainThread(this::updateUserList);
+        });
     }
 
     private Drawable getEncircledDefaultIcon() {
@@ -1143,13 +1123,6 @@ public class UserSettings extends SettingsPreferenceFragment
         return mDefaultIconDrawable;
     }
 
-    private void setPhotoId(Preference pref, UserInfo user) {
-        Bitmap bitmap = mUserIcons.get(user.id);
-        if (bitmap != null) {
-            pref.setIcon(encircle(bitmap));
-        }
-    }
-
     /** Returns the user's name, or the appropriate string in the case of a Guest. */
     public static String getUserName(Context context, @NonNull UserInfo userInfo) {
         if (userInfo.isGuest()) {
@@ -1227,7 +1200,7 @@ public class UserSettings extends SettingsPreferenceFragment
      * @param resources resources object to fetch the user icon.
      * @param userId    the user id or {@code UserHandle.USER_NULL} for a non-user specific icon
      */
-    private static Bitmap getDefaultUserIconAsBitmap(Resources resources, int userId) {
+    static Bitmap getDefaultUserIconAsBitmap(Resources resources, int userId) {
         Bitmap bitmap = null;
         // Try finding the corresponding bitmap in the dark bitmap cache
         bitmap = sDarkDefaultUserBitmapCache.get(userId);
@@ -53,7 +53,11 @@ public class UsageGraph extends View {
     private final Drawable mTintedDivider;
     private final int mDividerSize;
 
-    private final Path mPath = new Path();
+    // Paths built from the local paths, kept across redraws until the local paths change.
+    private final Path mLinePath = new Path();
+    private final Path mFillPath = new Path();
+    private final Path mProjectedLinePath = new Path();
+    private boolean mPathsDirty = true;
 
     // Paths in coordinates they are passed in.
     private final SparseIntArray mPaths = new SparseIntArray();
@@ -111,6 +115,7 @@ public class UsageGraph extends View {
         mLocalPaths.clear();
         mProjectedPaths.clear();
         mLocalProjectedPaths.clear();
+        mPathsDirty = true;
     }
 
     void setMax(int maxX, int maxY) {
@@ -142,12 +147,20 @@ public class UsageGraph extends View {
     private void addPathAndUpdate(
             SparseIntArray points, SparseIntArray paths, SparseIntArray localPaths) {
         final long startTime = System.currentTimeMillis();
+        final int oldSize = paths.size();
+        // New points that all come after the existing ones, such as a new bucket, only need
+        // their own local points to be calculated.
+        final boolean isAppend = oldSize == 0 || points.keyAt(0) > paths.keyAt(oldSize - 1);
         for (int i = 0, size = points.size(); i < size; i++) {
             paths.put(points.keyAt(i), points.valueAt(i));
         }
         // Add a delimiting value immediately after the last point.
         paths.put(points.keyAt(points.size() - 1) + 1, PATH_DELIM);
-        calculateLocalPaths(paths, localPaths);
+        if (isAppend) {
+            calculateLocalPaths(paths, localPaths, oldSize);
+        } else {
+            calculateLocalPaths(paths, localPaths);
+        }
         postInvalidate();
         BatteryUtils.logRuntime(LOG_TAG, "addPathAndUpdate", startTime);
     }
@@ -175,32 +188,42 @@ public class UsageGraph extends View {
 
     @VisibleForTesting
     void calculateLocalPaths(SparseIntArray paths, SparseIntArray localPaths) {
+        calculateLocalPaths(paths, localPaths, 0 /* fromIndex */);
+    }
+
+    /**
+     * Calculates the local points of {@code paths} starting at the path that begins at
+     * {@code fromIndex}, keeping the local points already calculated for the paths before it.
+     */
+    @VisibleForTesting
+    void calculateLocalPaths(SparseIntArray paths, SparseIntArray localPaths, int fromIndex) {
         final long startTime = System.currentTimeMillis();
         if (getWidth() == 0) {
             return;
         }
-        localPaths.clear();
+        if (fromIndex == 0) {
+            localPaths.clear();
+        }
+        mPathsDirty = true;
         // Store the local coordinates of the most recent point.
         int lx = 0;
         int ly = PATH_DELIM;
         boolean skippedLastPoint = false;
-        for (int i = 0; i < paths.size(); i++) {
-            int x = paths.keyAt(i);
-            int y = paths.valueAt(i);
-            if (y == PATH_DELIM) {
-                if (i == 1) {
-                    localPaths.put(getX(x+1) - 1, getY(0));
-                    continue;
-                }
-                if (i == paths.size() - 1 && skippedLastPoint) {
-                    // Add back skipped point to complete the path.
-                    localPaths.put(lx, ly);
-                }
-                skippedLastPoint = false;
-                localPaths.put(lx + 1, PATH_DELIM);
-            } else {
-                lx = getX(x);
-                ly = getY(y);
+        int start = fromIndex;
+        while (start < paths.size()) {
+            int end = start;
+            while (end < paths.size() && paths.valueAt(end) != PATH_DELIM) {
+                end++;
+            }
+            // Paths with more points than pixels are reduced to about one point per pixel.
+            final int[] indices = end - start > getWidth()
+                    ? downsample(paths, start, end, getWidth())
+                    : null;
+            final int count = indices != null ? indices.length : end - start;
+            for (int j = 0; j < count; j++) {
+                final int i = indices != null ? indices[j] : start + j;
+                lx = getX(paths.keyAt(i));
+                ly = getY(paths.valueAt(i));
                 // Skip this point if it is not far enough from the last one added.
                 if (localPaths.size() > 0) {
                     int lastX = localPaths.keyAt(localPaths.size() - 1);
@@ -213,10 +236,87 @@ public class UsageGraph extends View {
                 skippedLastPoint = false;
                 localPaths.put(lx, ly);
             }
+            if (end < paths.size()) {
+                if (end == 1) {
+                    localPaths.put(getX(paths.keyAt(end) + 1) - 1, getY(0));
+                } else {
+                    if (end == paths.size() - 1 && skippedLastPoint) {
+                        // Add back skipped point to complete the path.
+                        localPaths.put(lx, ly);
+                    }
+                    skippedLastPoint = false;
+                    localPaths.put(lx + 1, PATH_DELIM);
+                }
+            }
+            start = end + 1;
         }
         BatteryUtils.logRuntime(LOG_TAG, "calculateLocalPaths", startTime);
     }
 
+    /**
+     * Picks {@code threshold} of the points in {@code [start, end)} that best keep the shape of
+     * the path, using the largest-triangle-three-buckets algorithm. The first and last points are
+     * always kept.
+     *
+     * @return the indices of the picked points, in increasing order
+     */
+    @VisibleForTesting
+    static int[] downsample(SparseIntArray points, int start, int end, int threshold) {
+        final int count = end - start;
+        if (threshold >= count) {
+            final int[] indices = new int[count];
+            for (int i = 0; i < count; i++) {
+                indices[i] = start + i;
+            }
+            return indices;
+        }
+        if (threshold < 3) {
+            return new int[] {start, end - 1};
+        }
+        final int[] indices = new int[threshold];
+        indices[0] = start;
+        // Every point but the first and last one falls in one of threshold - 2 buckets.
+        final int buckets = threshold - 2;
+        int previous = start;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            final int bucketStart = start + 1 + (int) ((long) bucket * (count - 2) / buckets);
+            final int bucketEnd = start + 1 + (int) ((long) (bucket + 1) * (count - 2) / buckets);
+            // Average of the next bucket, which is the last point for the last bucket.
+            final int nextStart = bucketEnd;
+            final int nextEnd = bucket + 1 < buckets
+                    ? start + 1 + (int) ((long) (bucket + 2) * (count - 2) / buckets)
+                    : end;
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += points.keyAt(i);
+                averageY += points.valueAt(i);
+            }
+            final int nextCount = nextEnd - nextStart;
+            averageX /= nextCount;
+            averageY /= nextCount;
+
+            final double previousX = points.keyAt(previous);
+            final double previousY = points.valueAt(previous);
+            double maxArea = -1;
+            int picked = bucketStart;
+            for (int i = bucketStart; i < bucketEnd; i++) {
+                // Twice the area of the triangle, which is enough to compare them.
+                final double area = Math.abs((previousX - averageX)
+                        * (points.valueAt(i) - previousY)
+                        - (previousX - points.keyAt(i)) * (averageY - previousY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    picked = i;
+                }
+            }
+            indices[bucket + 1] = picked;
+            previous = picked;
+        }
+        indices[threshold - 1] = end - 1;
+        return indices;
+    }
+
     private boolean hasDiff(int x1, int x2) {
         return Math.abs(x2 - x1) >= mCornerRadius;
     }
@@ -256,62 +356,67 @@ public class UsageGraph extends View {
             return;
         }
 
+        if (mPathsDirty) {
+            buildLinePath(mProjectedLinePath, mLocalProjectedPaths);
+            buildFilledPath(mFillPath, mLocalPaths);
+            buildLinePath(mLinePath, mLocalPaths);
+            mPathsDirty = false;
+        }
+
         canvas.save();
         if (getLayoutDirection() == LAYOUT_DIRECTION_RTL) {
             // Flip the canvas along the y-axis of the center of itself before drawing paths.
             canvas.scale(-1, 1, canvas.getWidth() * 0.5f, 0);
         }
-        drawLinePath(canvas, mLocalProjectedPaths, mDottedPaint);
-        drawFilledPath(canvas, mLocalPaths, mFillPaint);
-        drawLinePath(canvas, mLocalPaths, mLinePaint);
+        canvas.drawPath(mProjectedLinePath, mDottedPaint);
+        canvas.drawPath(mFillPath, mFillPaint);
+        canvas.drawPath(mLinePath, mLinePaint);
         canvas.restore();
         BatteryUtils.logRuntime(LOG_TAG, "onDraw", startTime);
     }
 
-    private void drawLinePath(Canvas canvas, SparseIntArray localPaths, Paint paint) {
+    private void buildLinePath(Path path, SparseIntArray localPaths) {
+        path.reset();
         if (localPaths.size() == 0) {
             return;
         }
-        mPath.reset();
-        mPath.moveTo(localPaths.keyAt(0), localPaths.valueAt(0));
+        path.moveTo(localPaths.keyAt(0), localPaths.valueAt(0));
         for (int i = 1; i < localPaths.size(); i++) {
             int x = localPaths.keyAt(i);
             int y = localPaths.valueAt(i);
             if (y == PATH_DELIM) {
                 if (++i < localPaths.size()) {
-                    mPath.moveTo(localPaths.keyAt(i), localPaths.valueAt(i));
+                    path.moveTo(localPaths.keyAt(i), localPaths.valueAt(i));
                 }
             } else {
-                mPath.lineTo(x, y);
+                path.lineTo(x, y);
             }
         }
-        canvas.drawPath(mPath, paint);
     }
 
     @VisibleForTesting
-    void drawFilledPath(Canvas canvas, SparseIntArray localPaths, Paint paint) {
+    void buildFilledPath(Path path, SparseIntArray localPaths) {
+        path.reset();
         if (localPaths.size() == 0) {
             return;
         }
-        mPath.reset();
         float lastStartX = localPaths.keyAt(0);
-        mPath.moveTo(localPaths.keyAt(0), localPaths.valueAt(0));
+        path.moveTo(localPaths.keyAt(0), localPaths.valueAt(0));
         for (int i = 1; i < localPaths.size(); i++) {
             int x = localPaths.keyAt(i);
             int y = localPaths.valueAt(i);
             if (y == PATH_DELIM) {
-                mPath.lineTo(localPaths.keyAt(i - 1), getHeight());
-                mPath.lineTo(lastStartX, getHeight());
-                mPath.close();
+                path.lineTo(localPaths.keyAt(i - 1), getHeight());
+                path.lineTo(lastStartX, getHeight());
+                path.close();
                 if (++i < localPaths.size()) {
                     lastStartX = localPaths.keyAt(i);
-                    mPath.moveTo(localPaths.keyAt(i), localPaths.valueAt(i));
+                    path.moveTo(localPaths.keyAt(i), localPaths.valueAt(i));
                 }
             } else {
-                mPath.lineTo(x, y);
+                path.lineTo(x, y);
             }
         }
-        canvas.drawPath(mPath, paint);
     }
 
     private void drawDivider(int y, Canvas canvas, int tintColor) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi;
+
+import com.android.wifitrackerlib.WifiEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes to apply to the Wi-Fi entry list of {@link WifiSettings}, worked out from the entries
+ * shown and the entries reported by the tracker.
+ *
+ * <p>Entries are matched by {@link WifiEntry#getKey()}, so a new scan only touches the rows that
+ * were added, removed or replaced. A scan that only changes the order of the same networks may be
+ * held back, which keeps the rows in place while signal levels flicker; the plan then reports the
+ * deferred reorder so the page can apply it later.
+ *
+ * <p>Plans only compare keys and instances, so they can be created off the main thread.
+ */
+class WifiEntryListPlan {
+
+    private final List<WifiEntry> mEntries;
+    private final boolean mChanged;
+    private final boolean mReordered;
+    private final boolean mReorderDeferred;
+
+    private WifiEntryListPlan(List<WifiEntry> entries, boolean changed, boolean reordered,
+            boolean reorderDeferred) {
+        mEntries = entries;
+        mChanged = changed;
+        mReordered = reordered;
+        mReorderDeferred = reorderDeferred;
+    }
+
+    /**
+     * Creates the plan to go from {@code shownEntries}, keyed by {@link WifiEntry#getKey()} in
+     * the order they are shown, to {@code entries}.
+     *
+     * @param canReorder whether the shown entries may move when no entry is added or removed
+     */
+    static WifiEntryListPlan create(List<WifiEntry> entries, Map<String, WifiEntry> shownEntries,
+            boolean canReorder) {
+        final Map<String, WifiEntry> newEntries = new LinkedHashMap<>();
+        for (WifiEntry entry : entries) {
+            newEntries.putIfAbsent(entry.getKey(), entry);
+        }
+
+        boolean sameKeys = newEntries.size() == shownEntries.size();
+        boolean sameOrder = sameKeys;
+        boolean replaced = false;
+        final Iterator<String> shownKeys = shownEntries.keySet().iterator();
+        for (Map.Entry<String, WifiEntry> newEntry : newEntries.entrySet()) {
+            final String key = newEntry.getKey();
+            final WifiEntry shownEntry = shownEntries.get(key);
+            if (shownEntry == null) {
+                sameKeys = false;
+                sameOrder = false;
+                continue;
+            }
+            replaced |= shownEntry != newEntry.getValue();
+            if (sameOrder && !key.equals(shownKeys.next())) {
+                sameOrder = false;
+            }
+        }
+
+        if (sameKeys && !sameOrder && !canReorder) {
+            // Same networks in a new order: keep the shown order for now.
+            final List<WifiEntry> shownOrderEntries = new ArrayList<>(newEntries.size());
+            for (String key : shownEntries.keySet()) {
+                shownOrderEntries.add(newEntries.get(key));
+            }
+            return new WifiEntryListPlan(Collections.unmodifiableList(shownOrderEntries),
+                    replaced, false /* reordered */, true /* reorderDeferred */);
+        }
+        return new WifiEntryListPlan(
+                Collections.unmodifiableList(new ArrayList<>(newEntries.values())),
+                !sameOrder || replaced, !sameOrder, false /* reorderDeferred */);
+    }
+
+    /** Returns the entries to show, in the order to show them. */
+    List<WifiEntry> getEntries() {
+        return mEntries;
+    }
+
+    /** Returns whether any row has to be added, removed, replaced or moved. */
+    boolean hasChanges() {
+        return mChanged;
+    }
+
+    /** Returns whether the rows are shown in a new order. */
+    boolean isReordered() {
+        return mReordered;
+    }
+
+    /** Returns whether the entries were kept in the shown order instead of the tracker's. */
+    boolean isReorderDeferred() {
+        return mReorderDeferred;
+    }
+}
@@ -49,6 +49,7 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceCategory;
@@ -74,6 +75,7 @@ import com.android.settingslib.RestrictedLockUtils;
 import com.android.settingslib.RestrictedLockUtilsInternal;
 import com.android.settingslib.search.Indexable;
 import com.android.settingslib.search.SearchIndexable;
+import com.android.settingslib.utils.ThreadUtils;
 import com.android.settingslib.wifi.LongPressWifiEntryPreference;
 import com.android.settingslib.wifi.WifiSavedConfigUtils;
 import com.android.wifitrackerlib.WifiEntry;
@@ -82,7 +84,11 @@ import com.android.wifitrackerlib.WifiPickerTracker;
 
 import java.time.Clock;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -111,6 +117,8 @@ public class WifiSettings extends RestrictedSettingsFragment
     private static final long MAX_SCAN_AGE_MILLIS = 15_000;
     // Interval between initiating WifiPickerTracker scans
     private static final long SCAN_INTERVAL_MILLIS = 10_000;
+    // Minimum time between two moves of the shown Wi-Fi entries when none is added or removed
+    private static final long MIN_WIFI_ENTRY_REORDER_INTERVAL_MILLIS = 5_000;
 
     @VisibleForTesting
     static final int ADD_NETWORK_REQUEST = 2;
@@ -161,9 +169,17 @@ public class WifiSettings extends RestrictedSettingsFragment
     }
 
     private boolean mIsWifiEntryListStale = true;
+    // Bumped by every update of the Wi-Fi entry list, so that only the latest plan is applied.
+    private int mWifiEntryPlanGeneration;
+    private long mLastWifiEntryReorderMillis;
     private final Runnable mUpdateWifiEntryPreferencesRunnable = () -> {
         updateWifiEntryPreferences();
     };
+    // Posted apart from the runnable above, so that a deferred reorder never holds back the
+    // update of added or removed networks.
+    private final Runnable mReorderWifiEntryPreferencesRunnable = () -> {
+        updateWifiEntryPreferences();
+    };
     private final Runnable mHideProgressBarRunnable = () -> {
         setProgressBarVisible(false);
     };
@@ -424,8 +440,11 @@ public class WifiSettings extends RestrictedSettingsFragment
     @Override
     public void onStop() {
         getView().removeCallbacks(mUpdateWifiEntryPreferencesRunnable);
+        getView().removeCallbacks(mReorderWifiEntryPreferencesRunnable);
         getView().removeCallbacks(mHideProgressBarRunnable);
         mIsWifiEntryListStale = true;
+        // Drop the plan being worked out, the list is rebuilt when the page starts again.
+        mWifiEntryPlanGeneration++;
         super.onStop();
     }
 
@@ -747,11 +766,85 @@ public class WifiSettings extends RestrictedSettingsFragment
             return;
         }
 
-        boolean hasAvailableWifiEntries = false;
+        final View view = getView();
+        if (view != null) {
+            // The plan worked out below decides again whether rows may move.
+            view.removeCallbacks(mReorderWifiEntryPreferencesRunnable);
+        }
+
+        // Work out the changes off the main thread, then apply them, along with the connected
+        // entry read at the same time, in one pass.
+        final WifiEntry connectedEntry = mWifiPickerTracker.getConnectedWifiEntry();
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        final Map<String, WifiEntry> shownEntries = getShownWifiEntries();
+        final boolean canReorder = SystemClock.elapsedRealtime() - mLastWifiEntryReorderMillis
+                >= MIN_WIFI_ENTRY_REORDER_INTERVAL_MILLIS;
+        final int generation = ++mWifiEntryPlanGeneration;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final WifiEntryListPlan plan =
+                    WifiEntryListPlan.create(wifiEntries, shownEntries, canReorder);
+            ThreadUtils.postOnMainThread(() -> {
+                if (generation == mWifiEntryPlanGeneration) {
+                    applyWifiEntryListPlan(connectedEntry, plan);
+                }
+            });
+        });
+    }
+
+    /** Returns the entries of the shown rows, keyed by {@link WifiEntry#getKey()}, in order. */
+    private Map<String, WifiEntry> getShownWifiEntries() {
+        final List<LongPressWifiEntryPreference> prefs = new ArrayList<>();
+        for (int i = 0; i < mWifiEntryPreferenceCategory.getPreferenceCount(); i++) {
+            final Preference pref = mWifiEntryPreferenceCategory.getPreference(i);
+            if (pref instanceof LongPressWifiEntryPreference) {
+                prefs.add((LongPressWifiEntryPreference) pref);
+            }
+        }
+        prefs.sort(Comparator.comparingInt(Preference::getOrder));
+        final Map<String, WifiEntry> shownEntries = new LinkedHashMap<>();
+        for (LongPressWifiEntryPreference pref : prefs) {
+            shownEntries.put(pref.getKey(), pref.getWifiEntry());
+        }
+        return shownEntries;
+    }
+
+    private void applyWifiEntryListPlan(@Nullable WifiEntry connectedEntry,
+            WifiEntryListPlan plan) {
+        final View view = getView();
+        // in case state has changed while the plan was worked out
+        if (view == null || mWifiPickerTracker.getWifiState() != WifiManager.WIFI_STATE_ENABLED) {
+            return;
+        }
+
+        updateConnectedWifiEntryPreference(connectedEntry);
+
+        final List<WifiEntry> wifiEntries = plan.getEntries();
+        if (plan.hasChanges() || wifiEntries.isEmpty()) {
+            updateWifiEntryPreferences(wifiEntries);
+        }
+        if (plan.isReordered()) {
+            mLastWifiEntryReorderMillis = SystemClock.elapsedRealtime();
+        }
+        if (plan.isReorderDeferred()) {
+            // Catch up with the order of the tracker once rows may move again.
+            final long delayMillis = MIN_WIFI_ENTRY_REORDER_INTERVAL_MILLIS
+                    - (SystemClock.elapsedRealtime() - mLastWifiEntryReorderMillis);
+            view.postDelayed(mReorderWifiEntryPreferencesRunnable, delayMillis);
+        }
+
+        if (wifiEntries.isEmpty()) {
+            setProgressBarVisible(true);
+        } else {
+            // Continuing showing progress bar for an additional delay to overlap with animation
+            view.postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
+        }
+    }
+
+    /** Shows the Wi-Fi entry lists, with {@code connectedEntry} in the connected section. */
+    private void updateConnectedWifiEntryPreference(@Nullable WifiEntry connectedEntry) {
         mStatusMessagePreference.setVisible(false);
         mWifiEntryPreferenceCategory.setVisible(true);
 
-        final WifiEntry connectedEntry = mWifiPickerTracker.getConnectedWifiEntry();
         mConnectedWifiEntryPreferenceCategory.setVisible(connectedEntry != null);
         if (connectedEntry != null) {
             final LongPressWifiEntryPreference connectedPref =
@@ -784,12 +877,13 @@ public class WifiSettings extends RestrictedSettingsFragment
             mConnectedWifiEntryPreferenceCategory.removeAll();
         }
 
+        setAdditionalSettingsSummaries();
+    }
+
+    private void updateWifiEntryPreferences(List<WifiEntry> wifiEntries) {
         int index = 0;
         cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
         for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
-
             String key = wifiEntry.getKey();
             LongPressWifiEntryPreference pref =
                     (LongPressWifiEntryPreference) getCachedPreference(key);
@@ -817,22 +911,17 @@ public class WifiSettings extends RestrictedSettingsFragment
         }
         removeCachedPrefs(mWifiEntryPreferenceCategory);
 
-        if (!hasAvailableWifiEntries) {
-            setProgressBarVisible(true);
+        if (wifiEntries.isEmpty()) {
             Preference pref = new Preference(getPrefContext());
             pref.setSelectable(false);
             pref.setSummary(R.string.wifi_empty_list_wifi_on);
             pref.setOrder(index++);
             pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
             mWifiEntryPreferenceCategory.addPreference(pref);
-        } else {
-            // Continuing showing progress bar for an additional delay to overlap with animation
-            getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
         }
 
         mAddWifiNetworkPreference.setOrder(index++);
         mWifiEntryPreferenceCategory.addPreference(mAddWifiNetworkPreference);
-        setAdditionalSettingsSummaries();
     }
 
     private void launchNetworkDetailsFragment(LongPressWifiEntryPreference pref) {
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.android.settings.applications.manageapplications.AppFilterRegistry.FILTER_APPS_ALL;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+import com.android.settingslib.applications.ApplicationsState.AppFilter;
+import com.android.settingslib.applications.ApplicationsState.CompoundFilter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filters and sorts a large app list the way {@link ManageApplications.ApplicationsAdapter}
+ * builds the filter for a session rebuild.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ManageApplicationsFilterBenchmark {
+
+    private static final int APP_COUNT = 1000;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+    private List<AppEntry> mEntries;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mEntries = new ArrayList<>();
+        for (int i = 0; i < APP_COUNT; i++) {
+            final ApplicationInfo info = new ApplicationInfo();
+            info.packageName = "com.example.app" + i;
+            info.uid = 10000 + i;
+            info.sourceDir = "/data/app/" + info.packageName;
+            info.enabled = true;
+            // One app in four is a system app, half of which have a launcher entry.
+            if (i % 4 == 0) {
+                info.flags |= ApplicationInfo.FLAG_SYSTEM;
+            }
+            if (i % 10 == 0) {
+                info.category = ApplicationInfo.CATEGORY_GAME;
+            }
+            final AppEntry entry = new AppEntry(mContext, info, i);
+            entry.label = "App " + ((i * 7919) % APP_COUNT);
+            entry.hasLauncherEntry = i % 8 != 0;
+            mEntries.add(entry);
+        }
+    }
+
+    @Test
+    public void filterAndSort_allApps() throws Exception {
+        final AppFilter filter = new CompoundFilter(new CompoundFilter(
+                AppFilterRegistry.getInstance().get(FILTER_APPS_ALL).getFilter(),
+                ApplicationsState.FILTER_DOWNLOADED_AND_LAUNCHER),
+                ApplicationsState.FILTER_NOT_HIDE);
+        filter.init(mContext);
+        mBenchmarkRule.measure(() -> filterAndSort(filter));
+    }
+
+    @Test
+    public void filterAndSort_storageApps() throws Exception {
+        final AppFilter filter = new CompoundFilter(new CompoundFilter(
+                AppFilterRegistry.getInstance().get(FILTER_APPS_ALL).getFilter(),
+                ManageApplications.getCompositeFilter(ManageApplications.LIST_TYPE_STORAGE,
+                        ManageApplications.STORAGE_TYPE_DEFAULT, null /* volumeUuid */)),
+                ApplicationsState.FILTER_NOT_HIDE);
+        filter.init(mContext);
+        mBenchmarkRule.measure(() -> filterAndSort(filter));
+    }
+
+    private List<AppEntry> filterAndSort(AppFilter filter) {
+        final List<AppEntry> filtered = new ArrayList<>();
+        for (AppEntry entry : mEntries) {
+            if (filter.filterApp(entry)) {
+                filtered.add(entry);
+            }
+        }
+        Collections.sort(filtered, ApplicationsState.ALPHA_COMPARATOR);
+        return filtered;
+    }
+}
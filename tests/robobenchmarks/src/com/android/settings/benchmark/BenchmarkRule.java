@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.benchmark;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the average time of an operation with warmup and measured iterations, and writes the
+ * results of each test class as JSON.
+ *
+ * <p>The result of each run is kept in a volatile field, so that the JIT can't drop work whose
+ * result is unused. Operations that hit a cache should either return what they computed or pass
+ * a reset that drops the cache; the reset is not timed.
+ *
+ * <p>Usage:
+ * <pre>
+ * &#64;Rule
+ * public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+ *
+ * &#64;Test
+ * public void parseXml() throws Exception {
+ *     mBenchmarkRule.measure(() -> PreferenceXmlParserUtils.extractMetadata(...));
+ * }
+ *
+ * &#64;Test
+ * public void createControllers_cold() throws Exception {
+ *     mBenchmarkRule.measure(() -> PreferenceControllerListHelper
+ *             .getPreferenceControllersFromXml(...),
+ *             PreferenceControllerListHelper::clearMetadataCache);
+ * }
+ * </pre>
+ */
+public class BenchmarkRule implements TestRule {
+
+    private static final String TAG = "BenchmarkRule";
+    private static final String PROPERTY_PREFIX = "settings.benchmark.";
+
+    // Consumes the results of the operations, see the class comment.
+    private static volatile Object sBlackhole;
+
+    // Class name -> results of the benchmarks run so far in that class.
+    private static final Map<String, JSONArray> sResults = new HashMap<>();
+
+    private final int mWarmupIterations;
+    private final int mIterations;
+    private final long mIterationTimeNs;
+
+    private Description mDescription;
+    private boolean mMeasured;
+
+    /** A benchmarked operation. */
+    public interface Operation {
+        /** Runs the operation once and returns what it computed, or null if it has no result. */
+        Object run() throws Exception;
+    }
+
+    public BenchmarkRule() {
+        mWarmupIterations = Integer.getInteger(PROPERTY_PREFIX + "warmup", 5);
+        mIterations = Integer.getInteger(PROPERTY_PREFIX + "iterations", 10);
+        mIterationTimeNs = TimeUnit.MILLISECONDS.toNanos(
+                Long.getLong(PROPERTY_PREFIX + "iterationMs", 100));
+    }
+
+    @Override
+    public Statement apply(Statement base, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                mDescription = description;
+                mMeasured = false;
+                base.evaluate();
+                if (!mMeasured) {
+                    throw new IllegalStateException(
+                            description.getMethodName() + " did not call measure()");
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs {@code operation} for the warmup and measured iterations and records the time per
+     * operation of each measured iteration. Must be called once per test.
+     */
+    public void measure(Operation operation) throws Exception {
+        measure(operation, null /* reset */);
+    }
+
+    /**
+     * Like {@link #measure(Operation)}, but runs {@code reset} before each run of
+     * {@code operation}, for example to drop the caches it fills. Only the operation is timed.
+     */
+    public void measure(Operation operation, @Nullable Runnable reset) throws Exception {
+        if (mMeasured) {
+            throw new IllegalStateException("measure() can only be called once per test");
+        }
+        mMeasured = true;
+        for (int i = 0; i < mWarmupIterations; i++) {
+            runIteration(operation, reset);
+        }
+        final double[] nsPerOp = new double[mIterations];
+        long totalOps = 0;
+        for (int i = 0; i < mIterations; i++) {
+            final long[] iteration = runIteration(operation, reset);
+            nsPerOp[i] = (double) iteration[1] / iteration[0];
+            totalOps += iteration[0];
+        }
+        report(nsPerOp, totalOps);
+    }
+
+    // Returns the number of operations run and the time they took in nanoseconds.
+    private long[] runIteration(Operation operation, @Nullable Runnable reset) throws Exception {
+        long ops = 0;
+        long elapsed = 0;
+        do {
+            if (reset != null) {
+                reset.run();
+            }
+            final long start = System.nanoTime();
+            sBlackhole = operation.run();
+            elapsed += System.nanoTime() - start;
+            ops++;
+        } while (elapsed < mIterationTimeNs);
+        return new long[] {ops, elapsed};
+    }
+
+    private void report(double[] nsPerOp, long totalOps) throws JSONException, IOException {
+        final double[] sorted = nsPerOp.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (double value : sorted) {
+            sum += value;
+        }
+        final double mean = sum / sorted.length;
+        double variance = 0;
+        for (double value : sorted) {
+            variance += (value - mean) * (value - mean);
+        }
+        final double median = sorted.length % 2 == 1
+                ? sorted[sorted.length / 2]
+                : (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+
+        final JSONObject result = new JSONObject()
+                .put("name", mDescription.getMethodName())
+                .put("warmupIterations", mWarmupIterations)
+                .put("iterations", mIterations)
+                .put("operations", totalOps)
+                .put("nsPerOp", new JSONObject()
+                        .put("min", sorted[0])
+                        .put("median", median)
+                        .put("mean", mean)
+                        .put("max", sorted[sorted.length - 1])
+                        .put("stddev", Math.sqrt(variance / sorted.length)))
+                .put("iterationNsPerOp", new JSONArray(nsPerOp));
+        Log.i(TAG, mDescription.getDisplayName() + ": median " + (long) median + " ns/op");
+        write(mDescription.getClassName(), result);
+    }
+
+    private static synchronized void write(String className, JSONObject result)
+            throws JSONException, IOException {
+        JSONArray results = sResults.get(className);
+        if (results == null) {
+            results = new JSONArray();
+            sResults.put(className, results);
+        }
+        results.put(result);
+
+        final File outputDir = new File(System.getProperty(PROPERTY_PREFIX + "outputDir",
+                new File(System.getProperty("java.io.tmpdir"), "settings-benchmarks").getPath()));
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create " + outputDir);
+        }
+        final JSONObject report = new JSONObject()
+                .put("class", className)
+                .put("revision", System.getProperty(PROPERTY_PREFIX + "revision", ""))
+                .put("benchmarks", results);
+        // Rewritten after every benchmark so an aborted run still leaves the finished results.
+        try (Writer writer = new FileWriter(new File(outputDir, className + ".json"))) {
+            writer.write(report.toString(2));
+        }
+    }
+}
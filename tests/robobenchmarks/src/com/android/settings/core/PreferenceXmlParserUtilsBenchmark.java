@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_INCLUDE_PREF_SCREEN;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_KEYWORDS;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_ICON;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_SUMMARY;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_TITLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_TYPE;
+
+import android.content.Context;
+
+import com.android.settings.R;
+import com.android.settings.benchmark.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlParserUtilsBenchmark {
+
+    // The flags the search indexer asks for.
+    private static final int SEARCH_FLAGS = FLAG_INCLUDE_PREF_SCREEN | FLAG_NEED_KEY
+            | FLAG_NEED_PREF_TYPE | FLAG_NEED_PREF_TITLE | FLAG_NEED_PREF_SUMMARY
+            | FLAG_NEED_PREF_ICON | FLAG_NEED_KEYWORDS;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void extractMetadata_controllers_topLevelSettings() throws Exception {
+        mBenchmarkRule.measure(() -> PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, FLAG_NEED_KEY | FLAG_NEED_PREF_CONTROLLER));
+    }
+
+    @Test
+    public void extractMetadata_search_displaySettings() throws Exception {
+        mBenchmarkRule.measure(() -> PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, SEARCH_FLAGS));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.content.Context;
+
+import com.android.settings.R;
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.PreferenceControllerListHelper;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Creates the controllers declared in page XML, as {@link DashboardFragment#onAttach} does. The
+ * cold benchmark drops the cached xml metadata and controller constructors before each run.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DashboardControllerCreationBenchmark {
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void getPreferenceControllersFromXml_topLevelSettings() throws Exception {
+        mBenchmarkRule.measure(() -> PreferenceControllerListHelper
+                .getPreferenceControllersFromXml(mContext, R.xml.top_level_settings));
+    }
+
+    @Test
+    public void getPreferenceControllersFromXml_topLevelSettings_cold() throws Exception {
+        mBenchmarkRule.measure(() -> PreferenceControllerListHelper
+                .getPreferenceControllersFromXml(mContext, R.xml.top_level_settings), () -> {
+                    PreferenceControllerListHelper.clearMetadataCache();
+                    BasePreferenceController.clearConstructorCache();
+                });
+    }
+
+    @Test
+    public void getPreferenceControllersFromXml_displaySettings() throws Exception {
+        mBenchmarkRule.measure(() -> PreferenceControllerListHelper
+                .getPreferenceControllersFromXml(mContext, R.xml.display_settings));
+    }
+
+    @Test
+    public void getPreferenceControllersFromXml_apps() throws Exception {
+        mBenchmarkRule.measure(() -> PreferenceControllerListHelper
+                .getPreferenceControllersFromXml(mContext, R.xml.apps));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class ConvertUtilsBenchmark {
+
+    // A day of hourly snapshots, aggregated into two-hour slots.
+    private static final int TIMESTAMP_COUNT = 25;
+    private static final int TIME_SLOT_SIZE = 12;
+    private static final int PACKAGE_COUNT = 200;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+    private long[] mBatteryHistoryKeys;
+    private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        FakeFeatureFactory.setupForTest();
+        mBatteryHistoryKeys = new long[TIMESTAMP_COUNT];
+        mBatteryHistoryMap = new HashMap<>();
+        for (int i = 0; i < TIMESTAMP_COUNT; i++) {
+            mBatteryHistoryKeys[i] = 1000L + i;
+            final Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+            for (int uid = 0; uid < PACKAGE_COUNT; uid++) {
+                // Usage only grows over the day, as it does for cumulative battery stats.
+                final BatteryHistEntry entry = createBatteryHistEntry("package" + uid, uid,
+                        /* consumePower= */ i * (uid % 7 + 1),
+                        /* foregroundUsageTimeInMs= */ i * (uid % 11) * 1000L,
+                        /* backgroundUsageTimeInMs= */ i * (uid % 13) * 1000L);
+                entryMap.put(entry.getKey(), entry);
+            }
+            mBatteryHistoryMap.put(mBatteryHistoryKeys[i], entryMap);
+        }
+    }
+
+    @Test
+    public void getIndexedUsageMap() throws Exception {
+        mBenchmarkRule.measure(() -> ConvertUtils.getIndexedUsageMap(mContext, TIME_SLOT_SIZE,
+                mBatteryHistoryKeys, mBatteryHistoryMap,
+                /* purgeLowPercentageAndFakeData= */ false));
+    }
+
+    @Test
+    public void getIndexedUsageMap_purgeLowPercentage() throws Exception {
+        mBenchmarkRule.measure(() -> ConvertUtils.getIndexedUsageMap(mContext, TIME_SLOT_SIZE,
+                mBatteryHistoryKeys, mBatteryHistoryMap,
+                /* purgeLowPercentageAndFakeData= */ true));
+    }
+
+    private static BatteryHistEntry createBatteryHistEntry(String packageName, long uid,
+            double consumePower, long foregroundUsageTimeInMs, long backgroundUsageTimeInMs) {
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, packageName);
+        values.put(BatteryHistEntry.KEY_APP_LABEL, packageName);
+        values.put(BatteryHistEntry.KEY_UID, Long.valueOf(uid));
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE,
+                Integer.valueOf(ConvertUtils.CONSUMER_TYPE_UID_BATTERY));
+        values.put(BatteryHistEntry.KEY_CONSUME_POWER, consumePower);
+        values.put(BatteryHistEntry.KEY_FOREGROUND_USAGE_TIME,
+                Long.valueOf(foregroundUsageTimeInMs));
+        values.put(BatteryHistEntry.KEY_BACKGROUND_USAGE_TIME,
+                Long.valueOf(backgroundUsageTimeInMs));
+        return new BatteryHistEntry(values);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.Manifest;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+
+import com.android.settings.benchmark.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/** Runs the queries Settings Intelligence makes when it rebuilds the search index. */
+@RunWith(RobolectricTestRunner.class)
+public class SettingsSearchIndexablesProviderBenchmark {
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private SettingsSearchIndexablesProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mProvider = new SettingsSearchIndexablesProvider();
+        final ProviderInfo info = new ProviderInfo();
+        info.exported = true;
+        info.grantUriPermissions = true;
+        info.authority = RuntimeEnvironment.application.getPackageName();
+        info.readPermission = Manifest.permission.READ_SEARCH_INDEXABLES;
+        mProvider.attachInfo(RuntimeEnvironment.application, info);
+    }
+
+    @Test
+    public void queryXmlResources() throws Exception {
+        mBenchmarkRule.measure(() -> close(mProvider.queryXmlResources(null /* projection */)));
+    }
+
+    @Test
+    public void queryXmlResources_noSnapshot() throws Exception {
+        mBenchmarkRule.measure(() -> close(mProvider.queryXmlResources(null /* projection */)),
+                this::clearCaches);
+    }
+
+    @Test
+    public void queryRawData() throws Exception {
+        mBenchmarkRule.measure(() -> close(mProvider.queryRawData(null /* projection */)));
+    }
+
+    @Test
+    public void queryNonIndexableKeys() throws Exception {
+        mBenchmarkRule.measure(
+                () -> close(mProvider.queryNonIndexableKeys(null /* projection */)),
+                this::clearCaches);
+    }
+
+    @Test
+    public void queryDynamicRawData() throws Exception {
+        mBenchmarkRule.measure(
+                () -> close(mProvider.queryDynamicRawData(null /* projection */)));
+    }
+
+    private void clearCaches() {
+        mProvider.clearCaches(RuntimeEnvironment.application);
+    }
+
+    // Returns the row count, which reads the whole cursor, for the benchmark to consume.
+    private static int close(Cursor cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.os.RemoteException;
+import android.security.IKeyChainService;
+import android.util.Base64;
+
+import com.android.settings.TrustedCredentialsSettings.CertMetadata;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@RunWith(RobolectricTestRunner.class)
+public class TrustedCredentialsSettingsTest {
+
+    private static final int USER_ID = 0;
+    private static final int OTHER_USER_ID = 10;
+    private static final String ALIAS_A = "system:a";
+    private static final String ALIAS_B = "system:b";
+    // Self-signed certificates with subjects "O=Test A, CN=Test CA A" and "O=Test B, CN=Test CA B".
+    private static final byte[] CERT_A = Base64.decode(
+            "MIIBoDCCAUegAwIBAgIUNkQ6rRTuucUu2FegoJRuSRcI5YkwCgYIKoZIzj0EAwIwJTEPMA0GA1UECgwG"
+            + "VGVzdCBBMRIwEAYDVQQDDAlUZXN0IENBIEEwIBcNMjYxMDE5MTQyOTUwWhgPMjEyNjA5MjUxNDI5"
+            + "NTBaMCUxDzANBgNVBAoMBlRlc3QgQTESMBAGA1UEAwwJVGVzdCBDQSBBMFkwEwYHKoZIzj0CAQYI"
+            + "KoZIzj0DAQcDQgAEri+DCL4WKoQ2xhOZ34UEJI5wUuL24cdhVj6X5woj2BizlRCM0n+gy5gn5gb2"
+            + "HpFS7+NEnQ0p9ceeueEw8IbpnKNTMFEwHQYDVR0OBBYEFIDWvPwbDBIu/mRULVESHQzxUdqdMB8G"
+            + "A1UdIwQYMBaAFIDWvPwbDBIu/mRULVESHQzxUdqdMA8GA1UdEwEB/wQFMAMBAf8wCgYIKoZIzj0E"
+            + "AwIDRwAwRAIgdqSvdjm1cE9ZuDR6iK+5mPQJfofAnxBFcJO07XpVOx4CIC70oP/LFBCie10AYE/u"
+            + "x9mGKEX9JCq7Gf3W5uNhoETx", Base64.DEFAULT);
+    private static final byte[] CERT_B = Base64.decode(
+            "MIIBoDCCAUegAwIBAgIUPwbEwJUhnPVNt669IVvWhXANu3AwCgYIKoZIzj0EAwIwJTEPMA0GA1UECgwG"
+            + "VGVzdCBCMRIwEAYDVQQDDAlUZXN0IENBIEIwIBcNMjYxMDE5MTQyOTUwWhgPMjEyNjA5MjUxNDI5"
+            + "NTBaMCUxDzANBgNVBAoMBlRlc3QgQjESMBAGA1UEAwwJVGVzdCBDQSBCMFkwEwYHKoZIzj0CAQYI"
+            + "KoZIzj0DAQcDQgAEjpDQG7oE7b02EB6jNoUC0VUXmg22KwiN3YzfwKkeFdbVEP6nLbuUz+FfohWA"
+            + "hJVELP6aWFXjRRsdTkPQtlQpK6NTMFEwHQYDVR0OBBYEFJdG4hfQbbczkVActKjDFdTNDa3jMB8G"
+            + "A1UdIwQYMBaAFJdG4hfQbbczkVActKjDFdTNDa3jMA8GA1UdEwEB/wQFMAMBAf8wCgYIKoZIzj0E"
+            + "AwIDRwAwRAIgaQLtWwdotVEpvFv3+XKmXbJWERWhwmn6cSOCpmdykbECIGGIc3MHFjyLDKMpis/k"
+            + "BDdpSm23sHDYBOnDrIBFIUWS", Base64.DEFAULT);
+
+    @Mock
+    private IKeyChainService mService;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        TrustedCredentialsSettings.clearCertMetadataCache();
+        mExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        TrustedCredentialsSettings.clearCertMetadataCache();
+    }
+
+    @Test
+    public void getCertMetadata_sameCertificate_shouldReuseParsedCertificate() {
+        final CertMetadata metadata =
+                TrustedCredentialsSettings.getCertMetadata(USER_ID, ALIAS_A, CERT_A);
+
+        assertThat(TrustedCredentialsSettings.getCertMetadata(USER_ID, ALIAS_A, CERT_A.clone()))
+                .isSameInstanceAs(metadata);
+    }
+
+    @Test
+    public void getCertMetadata_changedCertificate_shouldParseAgain() {
+        final CertMetadata metadata =
+                TrustedCredentialsSettings.getCertMetadata(USER_ID, ALIAS_A, CERT_A);
+
+        final CertMetadata changed =
+                TrustedCredentialsSettings.getCertMetadata(USER_ID, ALIAS_A, CERT_B);
+
+        assertThat(changed).isNotSameInstanceAs(metadata);
+        assertThat(changed.mX509Cert.getEncoded()).isEqualTo(CERT_B);
+    }
+
+    @Test
+    public void getCertMetadata_otherUser_shouldNotShareEntry() {
+        TrustedCredentialsSettings.getCertMetadata(USER_ID, ALIAS_A, CERT_A);
+        final CertMetadata otherUser =
+                TrustedCredentialsSettings.getCertMetadata(OTHER_USER_ID, ALIAS_A, CERT_B);
+
+        assertThat(TrustedCredentialsSettings.getCertMetadata(USER_ID, ALIAS_A, CERT_A))
+                .isNotSameInstanceAs(otherUser);
+        assertThat(TrustedCredentialsSettings.getCertMetadata(OTHER_USER_ID, ALIAS_A, CERT_B))
+                .isSameInstanceAs(otherUser);
+    }
+
+    @Test
+    public void clearCertMetadataCache_shouldParseAgain() {
+        final CertMetadata metadata =
+                TrustedCredentialsSettings.getCertMetadata(USER_ID, ALIAS_A, CERT_A);
+
+        TrustedCredentialsSettings.clearCertMetadataCache();
+
+        assertThat(TrustedCredentialsSettings.getCertMetadata(USER_ID, ALIAS_A, CERT_A))
+                .isNotSameInstanceAs(metadata);
+    }
+
+    @Test
+    public void getCertMetadata_overCapacity_shouldEvictLeastRecentlyUsed() {
+        final CertMetadata first =
+                TrustedCredentialsSettings.getCertMetadata(USER_ID, "alias0", CERT_A);
+        for (int i = 1; i <= TrustedCredentialsSettings.MAX_CACHED_CERTS; i++) {
+            TrustedCredentialsSettings.getCertMetadata(USER_ID, "alias" + i, CERT_A);
+        }
+
+        assertThat(TrustedCredentialsSettings.getCertMetadata(USER_ID, "alias0", CERT_A))
+                .isNotSameInstanceAs(first);
+    }
+
+    @Test
+    public void loadCertMetadata_shouldKeepAliasOrder() throws Exception {
+        when(mService.getEncodedCaCertificate(eq(ALIAS_A), anyBoolean())).thenReturn(CERT_A);
+        when(mService.getEncodedCaCertificate(eq(ALIAS_B), anyBoolean())).thenReturn(CERT_B);
+
+        final List<CertMetadata> metadata = TrustedCredentialsSettings.loadCertMetadata(
+                mService, USER_ID, Arrays.asList(ALIAS_B, ALIAS_A), mExecutor);
+
+        assertThat(metadata).hasSize(2);
+        assertThat(metadata.get(0).mX509Cert.getEncoded()).isEqualTo(CERT_B);
+        assertThat(metadata.get(1).mX509Cert.getEncoded()).isEqualTo(CERT_A);
+    }
+
+    @Test
+    public void loadCertMetadata_secondPage_shouldReuseParsedCertificates() throws Exception {
+        when(mService.getEncodedCaCertificate(eq(ALIAS_A), anyBoolean())).thenReturn(CERT_A);
+        final List<CertMetadata> firstPage = TrustedCredentialsSettings.loadCertMetadata(
+                mService, USER_ID, Arrays.asList(ALIAS_A), mExecutor);
+
+        final List<CertMetadata> secondPage = TrustedCredentialsSettings.loadCertMetadata(
+                mService, USER_ID, Arrays.asList(ALIAS_A), mExecutor);
+
+        assertThat(secondPage.get(0)).isSameInstanceAs(firstPage.get(0));
+        verify(mService, times(2)).getEncodedCaCertificate(eq(ALIAS_A), anyBoolean());
+    }
+
+    @Test(expected = RemoteException.class)
+    public void loadCertMetadata_remoteException_shouldThrow() throws Exception {
+        when(mService.getEncodedCaCertificate(eq(ALIAS_A), anyBoolean())).thenReturn(CERT_A);
+        when(mService.getEncodedCaCertificate(eq(ALIAS_B), anyBoolean()))
+                .thenThrow(new RemoteException());
+
+        TrustedCredentialsSettings.loadCertMetadata(
+                mService, USER_ID, Arrays.asList(ALIAS_A, ALIAS_B), mExecutor);
+    }
+}
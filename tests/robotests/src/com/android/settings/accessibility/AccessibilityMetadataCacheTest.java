@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accessibility;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.accessibilityservice.AccessibilityShortcutInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Configuration;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.robolectric.RobolectricTestRunner;
+
+/** Tests for {@link AccessibilityMetadataCache}. */
+@RunWith(RobolectricTestRunner.class)
+public class AccessibilityMetadataCacheTest {
+    private static final String PACKAGE_NAME = "com.android.test";
+    private static final ComponentName COMPONENT_NAME =
+            new ComponentName(PACKAGE_NAME, PACKAGE_NAME + ".test_a11y_activity");
+    private static final String DEFAULT_LABEL = "default label";
+    private static final String DEFAULT_SUMMARY = "default summary";
+
+    @Rule
+    public final MockitoRule mocks = MockitoJUnit.rule();
+    @Mock
+    private AccessibilityShortcutInfo mShortcutInfo;
+    @Mock
+    private ActivityInfo mActivityInfo;
+    private final Context mContext = ApplicationProvider.getApplicationContext();
+    private AccessibilityMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new AccessibilityMetadataCache();
+        mActivityInfo.applicationInfo = new ApplicationInfo();
+        when(mShortcutInfo.getActivityInfo()).thenReturn(mActivityInfo);
+        when(mShortcutInfo.getComponentName()).thenReturn(COMPONENT_NAME);
+        when(mShortcutInfo.loadSummary(any())).thenReturn(DEFAULT_SUMMARY);
+        when(mActivityInfo.loadLabel(any())).thenReturn(DEFAULT_LABEL);
+    }
+
+    @Test
+    public void getShortcutEntry_calledTwice_loadsMetadataOnce() {
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+        final AccessibilityMetadataCache.Entry entry =
+                mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        assertThat(entry.mTitle.toString()).isEqualTo(DEFAULT_LABEL);
+        assertThat(entry.mSummary).isEqualTo(DEFAULT_SUMMARY);
+        verify(mActivityInfo).loadLabel(any());
+    }
+
+    @Test
+    public void getShortcutEntry_packageVersionChanged_reloadsMetadata() {
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        mActivityInfo.applicationInfo.longVersionCode++;
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        verify(mActivityInfo, times(2)).loadLabel(any());
+    }
+
+    @Test
+    public void invalidatePackage_reloadsMetadata() {
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        mCache.invalidatePackage(PACKAGE_NAME);
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        verify(mActivityInfo, times(2)).loadLabel(any());
+    }
+
+    @Test
+    public void invalidatePackage_otherPackage_keepsMetadata() {
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        mCache.invalidatePackage("com.android.other");
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        verify(mActivityInfo).loadLabel(any());
+    }
+
+    @Test
+    public void getShortcutEntry_densityChanged_reloadsMetadata() {
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        final Configuration config = new Configuration(mContext.getResources().getConfiguration());
+        config.densityDpi = config.densityDpi * 2;
+        mContext.getResources().updateConfiguration(config, null /* metrics */);
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        verify(mActivityInfo, times(2)).loadLabel(any());
+    }
+
+    @Test
+    public void getShortcutEntry_uiModeChanged_reloadsMetadata() {
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        final Configuration config = new Configuration(mContext.getResources().getConfiguration());
+        config.uiMode ^= Configuration.UI_MODE_NIGHT_YES;
+        mContext.getResources().updateConfiguration(config, null /* metrics */);
+        mCache.getShortcutEntry(mContext, mShortcutInfo);
+
+        verify(mActivityInfo, times(2)).loadLabel(any());
+    }
+
+    @Test
+    public void getShortcutEntry_noIconResource_returnsNullIcon() {
+        assertThat(mCache.getShortcutEntry(mContext, mShortcutInfo).newIcon(mContext)).isNull();
+    }
+}
@@ -357,6 +357,37 @@ public class AccessibilitySettingsTest {
 
     }
 
+    @Test
+    @Config(shadows = {ShadowFragment.class, ShadowUserManager.class})
+    public void onContentChanged_serviceStillInstalled_keepsPreference() {
+        setupFragment();
+        mShadowAccessibilityManager.setInstalledAccessibilityServiceList(
+                singletonList(mServiceInfo));
+        mFragment.onContentChanged();
+        final RestrictedPreference preference = mFragment.getPreferenceScreen().findPreference(
+                COMPONENT_NAME.flattenToString());
+
+        mFragment.onContentChanged();
+
+        assertThat(mFragment.getPreferenceScreen().<RestrictedPreference>findPreference(
+                COMPONENT_NAME.flattenToString())).isSameInstanceAs(preference);
+    }
+
+    @Test
+    @Config(shadows = {ShadowFragment.class, ShadowUserManager.class})
+    public void onContentChanged_serviceUninstalled_removesPreference() {
+        setupFragment();
+        mShadowAccessibilityManager.setInstalledAccessibilityServiceList(
+                singletonList(mServiceInfo));
+        mFragment.onContentChanged();
+
+        mShadowAccessibilityManager.setInstalledAccessibilityServiceList(new ArrayList<>());
+        mFragment.onContentChanged();
+
+        assertThat(mFragment.getPreferenceScreen().<RestrictedPreference>findPreference(
+                COMPONENT_NAME.flattenToString())).isNull();
+    }
+
     private AccessibilityServiceInfo getMockAccessibilityServiceInfo(String packageName,
             String className) {
         final ApplicationInfo applicationInfo = new ApplicationInfo();
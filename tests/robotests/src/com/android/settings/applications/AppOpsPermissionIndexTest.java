@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.Manifest;
+import android.app.AppOpsManager;
+import android.content.pm.IPackageManager;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ParceledListSlice;
+import android.os.RemoteException;
+import android.os.UserHandle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppOpsPermissionIndexTest {
+
+    private static final String PACKAGE_NAME = "com.example.app";
+    private static final String OTHER_PACKAGE_NAME = "com.example.other";
+    private static final int USER_ID = 0;
+    private static final int UID = UserHandle.getUid(USER_ID, 10001);
+    private static final String[] PERMISSIONS = {Manifest.permission.SYSTEM_ALERT_WINDOW};
+    private static final int[] OPS = {AppOpsManager.OP_SYSTEM_ALERT_WINDOW};
+    private static final int[] OTHER_OPS = {AppOpsManager.OP_WRITE_SETTINGS};
+
+    @Mock
+    private IPackageManager mPackageManager;
+    @Mock
+    private AppOpsManager mAppOpsManager;
+
+    private AppOpsPermissionIndex mIndex;
+
+    @Before
+    public void setUp() throws RemoteException {
+        MockitoAnnotations.initMocks(this);
+        mIndex = new AppOpsPermissionIndex(mPackageManager, mAppOpsManager);
+        when(mPackageManager.getAppOpPermissionPackages(Manifest.permission.SYSTEM_ALERT_WINDOW))
+                .thenReturn(new String[] {PACKAGE_NAME});
+        when(mPackageManager.isPackageAvailable(PACKAGE_NAME, USER_ID)).thenReturn(true);
+        when(mAppOpsManager.getPackagesForOps(OPS)).thenReturn(Collections.emptyList());
+        when(mAppOpsManager.getPackagesForOps(OTHER_OPS)).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void getAppOpPermissionPackages_calledTwice_shouldQueryOnce() throws RemoteException {
+        mIndex.getAppOpPermissionPackages(Manifest.permission.SYSTEM_ALERT_WINDOW);
+
+        assertThat(mIndex.getAppOpPermissionPackages(Manifest.permission.SYSTEM_ALERT_WINDOW))
+                .containsExactly(PACKAGE_NAME);
+        verify(mPackageManager).getAppOpPermissionPackages(
+                Manifest.permission.SYSTEM_ALERT_WINDOW);
+    }
+
+    @Test
+    public void getAppOpPermissionPackages_nullResult_shouldReturnEmptySet()
+            throws RemoteException {
+        assertThat(mIndex.getAppOpPermissionPackages(Manifest.permission.WRITE_SETTINGS))
+                .isEmpty();
+    }
+
+    @Test
+    public void invalidatePackage_shouldOnlyReloadAvailabilityOfThatPackage()
+            throws RemoteException {
+        mIndex.isPackageAvailable(PACKAGE_NAME, USER_ID);
+        mIndex.isPackageAvailable(OTHER_PACKAGE_NAME, USER_ID);
+
+        mIndex.invalidatePackage(PACKAGE_NAME);
+        assertThat(mIndex.isPackageAvailable(PACKAGE_NAME, USER_ID)).isTrue();
+        assertThat(mIndex.isPackageAvailable(OTHER_PACKAGE_NAME, USER_ID)).isFalse();
+
+        verify(mPackageManager, times(2)).isPackageAvailable(PACKAGE_NAME, USER_ID);
+        verify(mPackageManager).isPackageAvailable(OTHER_PACKAGE_NAME, USER_ID);
+    }
+
+    @Test
+    public void invalidatePackage_requestingPermission_shouldPatchRequestingPackages()
+            throws RemoteException {
+        mIndex.getAppOpPermissionPackages(Manifest.permission.SYSTEM_ALERT_WINDOW);
+        final PackageInfo packageInfo = createPackage(OTHER_PACKAGE_NAME);
+        packageInfo.requestedPermissions = PERMISSIONS;
+        when(mPackageManager.getPackageInfo(eq(OTHER_PACKAGE_NAME), anyInt(), anyInt()))
+                .thenReturn(packageInfo);
+
+        mIndex.invalidatePackage(OTHER_PACKAGE_NAME, USER_ID);
+
+        assertThat(mIndex.getAppOpPermissionPackages(Manifest.permission.SYSTEM_ALERT_WINDOW))
+                .containsExactly(PACKAGE_NAME, OTHER_PACKAGE_NAME);
+        verify(mPackageManager).getAppOpPermissionPackages(
+                Manifest.permission.SYSTEM_ALERT_WINDOW);
+    }
+
+    @Test
+    public void invalidatePackage_removed_shouldDropFromRequestingPackages()
+            throws RemoteException {
+        mIndex.getAppOpPermissionPackages(Manifest.permission.SYSTEM_ALERT_WINDOW);
+
+        mIndex.invalidatePackage(PACKAGE_NAME);
+
+        assertThat(mIndex.getAppOpPermissionPackages(Manifest.permission.SYSTEM_ALERT_WINDOW))
+                .isEmpty();
+    }
+
+    @Test
+    public void invalidateUid_permissionGranted_shouldPatchHoldingPackages()
+            throws RemoteException {
+        when(mPackageManager.getPackagesHoldingPermissions(PERMISSIONS, 0, USER_ID))
+                .thenReturn(new ParceledListSlice<>(new ArrayList<>()));
+        assertThat(mIndex.getPackagesHoldingPermissions(PERMISSIONS, USER_ID)).isEmpty();
+        when(mPackageManager.getPackagesForUid(UID)).thenReturn(new String[] {PACKAGE_NAME});
+        when(mPackageManager.getPackageInfo(PACKAGE_NAME, 0, USER_ID))
+                .thenReturn(createPackage(PACKAGE_NAME));
+        when(mPackageManager.checkPermission(Manifest.permission.SYSTEM_ALERT_WINDOW,
+                PACKAGE_NAME, USER_ID)).thenReturn(PackageManager.PERMISSION_GRANTED);
+
+        mIndex.invalidateUid(UID);
+        final List<PackageInfo> holding =
+                mIndex.getPackagesHoldingPermissions(PERMISSIONS, USER_ID);
+
+        assertThat(holding).hasSize(1);
+        assertThat(holding.get(0).packageName).isEqualTo(PACKAGE_NAME);
+        verify(mPackageManager).getPackagesHoldingPermissions(PERMISSIONS, 0, USER_ID);
+    }
+
+    @Test
+    public void invalidateUid_permissionRevoked_shouldPatchHoldingPackages()
+            throws RemoteException {
+        final List<PackageInfo> packageInfos = new ArrayList<>();
+        packageInfos.add(createPackage(PACKAGE_NAME));
+        when(mPackageManager.getPackagesHoldingPermissions(PERMISSIONS, 0, USER_ID))
+                .thenReturn(new ParceledListSlice<>(packageInfos));
+        assertThat(mIndex.getPackagesHoldingPermissions(PERMISSIONS, USER_ID)).hasSize(1);
+        when(mPackageManager.getPackagesForUid(UID)).thenReturn(new String[] {PACKAGE_NAME});
+        when(mPackageManager.getPackageInfo(PACKAGE_NAME, 0, USER_ID))
+                .thenReturn(createPackage(PACKAGE_NAME));
+        when(mPackageManager.checkPermission(Manifest.permission.SYSTEM_ALERT_WINDOW,
+                PACKAGE_NAME, USER_ID)).thenReturn(PackageManager.PERMISSION_DENIED);
+
+        mIndex.invalidateUid(UID);
+
+        assertThat(mIndex.getPackagesHoldingPermissions(PERMISSIONS, USER_ID)).isEmpty();
+    }
+
+    @Test
+    public void invalidatePackage_shouldOnlyReadModesOfThatPackage() throws RemoteException {
+        mIndex.getPackagesForOps(OPS);
+        final AppOpsManager.PackageOps packageOps =
+                new AppOpsManager.PackageOps(PACKAGE_NAME, UID, Collections.emptyList());
+        when(mPackageManager.getPackageUid(PACKAGE_NAME, 0, USER_ID)).thenReturn(UID);
+        when(mAppOpsManager.getOpsForPackage(UID, PACKAGE_NAME, OPS))
+                .thenReturn(Collections.singletonList(packageOps));
+
+        mIndex.invalidatePackage(PACKAGE_NAME, USER_ID);
+
+        assertThat(mIndex.getPackagesForOps(OPS)).containsExactly(packageOps);
+        verify(mAppOpsManager).getPackagesForOps(OPS);
+    }
+
+    @Test
+    public void invalidateAppOps_shouldOnlyReloadOpSetsContainingOp() {
+        mIndex.getPackagesForOps(OPS);
+        mIndex.getPackagesForOps(OTHER_OPS);
+
+        mIndex.invalidateAppOps(OPS);
+        mIndex.getPackagesForOps(OPS);
+        mIndex.getPackagesForOps(OTHER_OPS);
+
+        verify(mAppOpsManager, times(2)).getPackagesForOps(OPS);
+        verify(mAppOpsManager).getPackagesForOps(OTHER_OPS);
+    }
+
+    private static PackageInfo createPackage(String packageName) {
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        return packageInfo;
+    }
+}
@@ -16,14 +16,20 @@
 
 package com.android.settings.applications;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.Manifest;
 import android.app.AppOpsManager;
 import android.content.Context;
 import android.content.pm.IPackageManager;
+import android.content.pm.PackageInfo;
+import android.content.pm.ParceledListSlice;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -39,6 +45,8 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 
+import java.util.Collections;
+
 @RunWith(RobolectricTestRunner.class)
 public final class AppStateAppOpsBridgeTest {
 
@@ -63,6 +71,39 @@ public final class AppStateAppOpsBridgeTest {
         // should not crash
     }
 
+    @Test
+    public void getPermissionInfo_shouldOnlyReloadModesOfThatPackage() throws RemoteException {
+        final String packageName = "pkg1";
+        final int uid = UserHandle.getUid(0 /* userId */, 10001);
+        when(mUserManager.getUserProfiles()).thenReturn(
+                Collections.singletonList(UserHandle.of(0)));
+        when(mUserManager.getUserHandle()).thenReturn(0);
+        when(mPackageManagerService.getAppOpPermissionPackages(anyString()))
+                .thenReturn(new String[] {packageName});
+        when(mPackageManagerService.isPackageAvailable(packageName, 0)).thenReturn(true);
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.requestedPermissions = new String[] {Manifest.permission.SYSTEM_ALERT_WINDOW};
+        packageInfo.requestedPermissionsFlags = new int[] {0};
+        when(mPackageManagerService.getPackageInfo(eq(packageName), anyInt(), anyInt()))
+                .thenReturn(packageInfo);
+        when(mPackageManagerService.getPackagesHoldingPermissions(any(), anyInt(), anyInt()))
+                .thenReturn(new ParceledListSlice<>(Collections.emptyList()));
+        when(mPackageManagerService.getPackageUid(eq(packageName), anyInt(), eq(0)))
+                .thenReturn(uid);
+        when(mAppOpsManager.getPackagesForOps(any(int[].class)))
+                .thenReturn(Collections.emptyList());
+        final TestAppStateAppOpsBridge bridge = new TestAppStateAppOpsBridge();
+        bridge.getNumPackagesAllowedByAppOps();
+
+        bridge.getPermissionInfo(packageName, uid);
+        bridge.getNumPackagesAllowedByAppOps();
+
+        verify(mAppOpsManager, times(1)).getPackagesForOps(any(int[].class));
+        verify(mAppOpsManager, times(2)).getOpsForPackage(eq(uid), eq(packageName),
+                any(int[].class));
+    }
+
     @Test
     public void permissionState_modeDefault_IsPermissible() {
         AppStateAppOpsBridge.PermissionState permissionState =
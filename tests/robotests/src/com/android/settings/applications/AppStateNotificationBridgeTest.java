@@ -70,9 +70,9 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 public class AppStateNotificationBridgeTest {
@@ -91,6 +91,8 @@ public class AppStateNotificationBridgeTest {
     @Mock
     private NotificationBackend mBackend;
     private Context mContext;
+    private NotificationStatsIndex mStatsIndex;
+    private long mEventTime;
     private AppStateNotificationBridge mBridge;
 
     @Before
@@ -103,9 +105,15 @@ public class AppStateNotificationBridgeTest {
         // most tests assume no work profile
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
         mContext = RuntimeEnvironment.application.getApplicationContext();
+        final File indexFile = new File(mContext.getCacheDir(), NotificationStatsIndex.FILE_NAME);
+        indexFile.delete();
+        mStatsIndex = new NotificationStatsIndex(indexFile);
+        // Notifications logged a day ago, which are part of the stats of the last week.
+        mEventTime = System.currentTimeMillis() - DAY_IN_MILLIS;
 
         mBridge = new AppStateNotificationBridge(mContext, mState,
-                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend);
+                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend,
+                mStatsIndex);
     }
 
     private AppEntry getMockAppEntry(String pkg) {
@@ -124,85 +132,6 @@ public class AppStateNotificationBridgeTest {
         return UsageEvents.CREATOR.createFromParcel(parcel);
     }
 
-    @Test
-    public void testGetAggregatedUsageEvents_noEvents() throws Exception {
-        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
-                .thenReturn(mock(UsageEvents.class));
-
-        assertThat(mBridge.getAggregatedUsageEvents()).isEmpty();
-    }
-
-    @Test
-    public void testGetAggregatedUsageEvents_onlyNotificationEvents() throws Exception {
-        List<Event> events = new ArrayList<>();
-        Event good = new Event();
-        good.mEventType = Event.NOTIFICATION_INTERRUPTION;
-        good.mPackage = PKG1;
-        good.mTimeStamp = 1;
-        events.add(good);
-        Event bad = new Event();
-        bad.mEventType = Event.CHOOSER_ACTION;
-        bad.mPackage = PKG1;
-        bad.mTimeStamp = 2;
-        events.add(bad);
-
-        UsageEvents usageEvents = getUsageEvents(events);
-        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
-                .thenReturn(usageEvents);
-
-        Map<String, NotificationsSentState> map = mBridge.getAggregatedUsageEvents();
-        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).sentCount).isEqualTo(1);
-    }
-
-    @Test
-    public void testGetAggregatedUsageEvents_multipleEventsAgg() throws Exception {
-        List<Event> events = new ArrayList<>();
-        Event good = new Event();
-        good.mEventType = Event.NOTIFICATION_INTERRUPTION;
-        good.mPackage = PKG1;
-        good.mTimeStamp = 6;
-        events.add(good);
-        Event good1 = new Event();
-        good1.mEventType = Event.NOTIFICATION_INTERRUPTION;
-        good1.mPackage = PKG1;
-        good1.mTimeStamp = 1;
-        events.add(good1);
-
-        UsageEvents usageEvents = getUsageEvents(events);
-        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
-                .thenReturn(usageEvents);
-
-        Map<String, NotificationsSentState> map  = mBridge.getAggregatedUsageEvents();
-        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).sentCount).isEqualTo(2);
-        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).lastSent).isEqualTo(6);
-    }
-
-    @Test
-    public void testGetAggregatedUsageEvents_multiplePkgs() throws Exception {
-        List<Event> events = new ArrayList<>();
-        Event good = new Event();
-        good.mEventType = Event.NOTIFICATION_INTERRUPTION;
-        good.mPackage = PKG1;
-        good.mTimeStamp = 6;
-        events.add(good);
-        Event good1 = new Event();
-        good1.mEventType = Event.NOTIFICATION_INTERRUPTION;
-        good1.mPackage = PKG2;
-        good1.mTimeStamp = 1;
-        events.add(good1);
-
-        UsageEvents usageEvents = getUsageEvents(events);
-        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
-                .thenReturn(usageEvents);
-
-        Map<String, NotificationsSentState> map
-                = mBridge.getAggregatedUsageEvents();
-        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).sentCount).isEqualTo(1);
-        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG2)).sentCount).isEqualTo(1);
-        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).lastSent).isEqualTo(6);
-        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG2)).lastSent).isEqualTo(1);
-    }
-
     @Test
     public void testLoadAllExtraInfo_noEvents() throws RemoteException {
         when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
@@ -227,7 +156,7 @@ public class AppStateNotificationBridgeTest {
             Event good = new Event();
             good.mEventType = Event.NOTIFICATION_INTERRUPTION;
             good.mPackage = PKG1;
-            good.mTimeStamp = i;
+            good.mTimeStamp = mEventTime + i;
             events.add(good);
         }
 
@@ -241,7 +170,8 @@ public class AppStateNotificationBridgeTest {
 
         mBridge.loadAllExtraInfo();
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).sentCount).isEqualTo(7);
-        assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent).isEqualTo(6);
+        assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent)
+                .isEqualTo(mEventTime + 6);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentDaily).isEqualTo(1);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentWeekly).isEqualTo(0);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).blocked).isTrue();
@@ -256,13 +186,13 @@ public class AppStateNotificationBridgeTest {
             Event good = new Event();
             good.mEventType = Event.NOTIFICATION_INTERRUPTION;
             good.mPackage = PKG1;
-            good.mTimeStamp = i;
+            good.mTimeStamp = mEventTime + i;
             events.add(good);
         }
         Event good1 = new Event();
         good1.mEventType = Event.NOTIFICATION_INTERRUPTION;
         good1.mPackage = PKG2;
-        good1.mTimeStamp = 1;
+        good1.mTimeStamp = mEventTime + 1;
         events.add(good1);
 
         UsageEvents usageEvents = getUsageEvents(events);
@@ -276,12 +206,14 @@ public class AppStateNotificationBridgeTest {
 
         mBridge.loadAllExtraInfo();
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).sentCount).isEqualTo(8);
-        assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent).isEqualTo(7);
+        assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent)
+                .isEqualTo(mEventTime + 7);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentWeekly).isEqualTo(0);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentDaily).isEqualTo(1);
 
         assertThat(((NotificationsSentState) apps.get(1).extraInfo).sentCount).isEqualTo(1);
-        assertThat(((NotificationsSentState) apps.get(1).extraInfo).lastSent).isEqualTo(1);
+        assertThat(((NotificationsSentState) apps.get(1).extraInfo).lastSent)
+                .isEqualTo(mEventTime + 1);
         assertThat(((NotificationsSentState) apps.get(1).extraInfo).avgSentWeekly).isEqualTo(1);
         assertThat(((NotificationsSentState) apps.get(1).extraInfo).avgSentDaily).isEqualTo(0);
     }
@@ -291,14 +223,15 @@ public class AppStateNotificationBridgeTest {
         // has work profile
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{1});
         mBridge = new AppStateNotificationBridge(mContext, mState,
-                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend);
+                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend,
+                mStatsIndex);
 
         List<Event> eventsProfileOwner = new ArrayList<>();
         for (int i = 0; i < 8; i++) {
             Event good = new Event();
             good.mEventType = Event.NOTIFICATION_INTERRUPTION;
             good.mPackage = PKG1;
-            good.mTimeStamp = i;
+            good.mTimeStamp = mEventTime + i;
             eventsProfileOwner.add(good);
         }
 
@@ -307,7 +240,7 @@ public class AppStateNotificationBridgeTest {
             Event good = new Event();
             good.mEventType = Event.NOTIFICATION_INTERRUPTION;
             good.mPackage = PKG1;
-            good.mTimeStamp = i;
+            good.mTimeStamp = mEventTime + i;
             eventsProfile.add(good);
         }
 
@@ -332,20 +265,21 @@ public class AppStateNotificationBridgeTest {
         mBridge.loadAllExtraInfo();
 
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).sentCount).isEqualTo(8);
-        assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent).isEqualTo(7);
+        assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent)
+                .isEqualTo(mEventTime + 7);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentWeekly).isEqualTo(0);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentDaily).isEqualTo(1);
 
         assertThat(((NotificationsSentState) apps.get(1).extraInfo).sentCount).isEqualTo(4);
-        assertThat(((NotificationsSentState) apps.get(1).extraInfo).lastSent).isEqualTo(3);
+        assertThat(((NotificationsSentState) apps.get(1).extraInfo).lastSent)
+                .isEqualTo(mEventTime + 3);
         assertThat(((NotificationsSentState) apps.get(1).extraInfo).avgSentWeekly).isEqualTo(4);
         assertThat(((NotificationsSentState) apps.get(1).extraInfo).avgSentDaily).isEqualTo(1);
     }
 
     @Test
     public void testUpdateExtraInfo_noEvents() throws RemoteException {
-        when(mUsageStats.queryEventsForPackageForUser(
-                anyLong(), anyLong(), anyInt(), anyString(), anyString()))
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
                 .thenReturn(mock(UsageEvents.class));
         AppEntry entry = getMockAppEntry(PKG1);
 
@@ -360,19 +294,20 @@ public class AppStateNotificationBridgeTest {
             Event good = new Event();
             good.mEventType = Event.NOTIFICATION_INTERRUPTION;
             good.mPackage = PKG1;
-            good.mTimeStamp = i;
+            good.mTimeStamp = mEventTime + i;
             events.add(good);
         }
 
         UsageEvents usageEvents = getUsageEvents(events);
-        when(mUsageStats.queryEventsForPackageForUser(
-                anyLong(), anyLong(), anyInt(), anyString(), anyString())).thenReturn(usageEvents);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(usageEvents);
 
         AppEntry entry = getMockAppEntry(PKG1);
         mBridge.updateExtraInfo(entry, "", 0);
 
         assertThat(((NotificationsSentState) entry.extraInfo).sentCount).isEqualTo(13);
-        assertThat(((NotificationsSentState) entry.extraInfo).lastSent).isEqualTo(12);
+        assertThat(((NotificationsSentState) entry.extraInfo).lastSent)
+                .isEqualTo(mEventTime + 12);
         assertThat(((NotificationsSentState) entry.extraInfo).avgSentDaily).isEqualTo(2);
         assertThat(((NotificationsSentState) entry.extraInfo).avgSentWeekly).isEqualTo(0);
         assertThat(((NotificationsSentState) entry.extraInfo).blocked).isTrue();
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.android.settings.testutils.ApplicationTestUtils.buildInfo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.ArrayMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+@RunWith(RobolectricTestRunner.class)
+public class InstalledAppsSnapshotTest {
+
+    private static final int MAIN_USER_ID = 0;
+    private static final int MANAGED_PROFILE_ID = 10;
+    private static final int PER_USER_UID_RANGE = 100000;
+    private static final int MAIN_USER_APP_COUNT = 100;
+
+    @Mock
+    private PackageManager mPackageManager;
+    @Mock
+    private UserManager mUserManager;
+
+    private InstalledAppsSnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mSnapshot = new InstalledAppsSnapshot(mPackageManager);
+
+        when(mUserManager.getProfiles(UserHandle.myUserId())).thenReturn(Arrays.asList(
+                new UserInfo(MAIN_USER_ID, "main", UserInfo.FLAG_ADMIN),
+                new UserInfo(MANAGED_PROFILE_ID, "managed profile", 0)));
+        final List<ApplicationInfo> mainUserApps = new ArrayList<>();
+        for (int i = 0; i < MAIN_USER_APP_COUNT; i++) {
+            mainUserApps.add(buildInfo(MAIN_USER_ID * PER_USER_UID_RANGE, "app" + i,
+                    0 /* flags */, 0 /* targetSdkVersion */));
+        }
+        when(mPackageManager.getInstalledApplicationsAsUser(anyInt(), eq(MAIN_USER_ID)))
+                .thenReturn(mainUserApps);
+        when(mPackageManager.getInstalledApplicationsAsUser(anyInt(), eq(MANAGED_PROFILE_ID)))
+                .thenReturn(Arrays.asList(buildInfo(MANAGED_PROFILE_ID * PER_USER_UID_RANGE,
+                        "work_app", 0 /* flags */, 0 /* targetSdkVersion */)));
+    }
+
+    @Test
+    public void filter_calledTwice_shouldQueryEachProfileOnce() {
+        mSnapshot.filter(mUserManager, info -> true);
+        mSnapshot.filter(mUserManager, info -> false);
+
+        verify(mPackageManager).getInstalledApplicationsAsUser(anyInt(), eq(MAIN_USER_ID));
+        verify(mPackageManager).getInstalledApplicationsAsUser(anyInt(), eq(MANAGED_PROFILE_ID));
+    }
+
+    @Test
+    public void filter_shouldKeepProfileAndInstallOrder() {
+        final List<UserAppInfo> result =
+                mSnapshot.filter(mUserManager, info -> !info.packageName.endsWith("0"));
+
+        assertThat(result).hasSize(MAIN_USER_APP_COUNT - MAIN_USER_APP_COUNT / 10 + 1);
+        assertThat(result.get(0).appInfo.packageName).isEqualTo("app1");
+        assertThat(result.get(9).appInfo.packageName).isEqualTo("app11");
+        final UserAppInfo last = result.get(result.size() - 1);
+        assertThat(last.appInfo.packageName).isEqualTo("work_app");
+        assertThat(last.userInfo.id).isEqualTo(MANAGED_PROFILE_ID);
+    }
+
+    @Test
+    public void invalidate_shouldReloadInstalledApps() {
+        mSnapshot.filter(mUserManager, info -> true);
+
+        mSnapshot.invalidate();
+        mSnapshot.filter(mUserManager, info -> true);
+
+        verify(mPackageManager, times(2))
+                .getInstalledApplicationsAsUser(anyInt(), eq(MAIN_USER_ID));
+    }
+
+    @Test
+    public void filter_keyedFilters_shouldReturnOneResultPerFilter() {
+        final Map<String, Predicate<ApplicationInfo>> filters = new ArrayMap<>();
+        filters.put("all", info -> true);
+        filters.put("work", info -> UserHandle.getUserId(info.uid) == MANAGED_PROFILE_ID);
+
+        final Map<String, List<UserAppInfo>> results = mSnapshot.filter(mUserManager, filters);
+
+        assertThat(results.get("all")).hasSize(MAIN_USER_APP_COUNT + 1);
+        assertThat(results.get("work")).hasSize(1);
+        assertThat(results.get("work").get(0).appInfo.packageName).isEqualTo("work_app");
+    }
+
+    @Test
+    public void filter_keyedFiltersCalledTwice_shouldKeepResultsUntilInvalidate() {
+        final AtomicInteger evaluations = new AtomicInteger();
+        final Map<String, Predicate<ApplicationInfo>> filters = new ArrayMap<>();
+        filters.put("all", info -> {
+            evaluations.incrementAndGet();
+            return true;
+        });
+
+        mSnapshot.filter(mUserManager, filters);
+        final List<UserAppInfo> result = mSnapshot.filter(mUserManager, filters).get("all");
+
+        assertThat(result).hasSize(MAIN_USER_APP_COUNT + 1);
+        assertThat(evaluations.get()).isEqualTo(MAIN_USER_APP_COUNT + 1);
+
+        mSnapshot.invalidate();
+        mSnapshot.filter(mUserManager, filters);
+
+        assertThat(evaluations.get()).isEqualTo(2 * (MAIN_USER_APP_COUNT + 1));
+    }
+
+    @Test
+    public void filter_newKeyedFilter_shouldOnlyEvaluateMissingFilter() {
+        final AtomicInteger evaluations = new AtomicInteger();
+        final Map<String, Predicate<ApplicationInfo>> filters = new ArrayMap<>();
+        filters.put("all", info -> {
+            evaluations.incrementAndGet();
+            return true;
+        });
+        mSnapshot.filter(mUserManager, filters);
+
+        filters.put("none", info -> false);
+        final Map<String, List<UserAppInfo>> results = mSnapshot.filter(mUserManager, filters);
+
+        assertThat(results.get("all")).hasSize(MAIN_USER_APP_COUNT + 1);
+        assertThat(results.get("none")).isEmpty();
+        assertThat(evaluations.get()).isEqualTo(MAIN_USER_APP_COUNT + 1);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static android.text.format.DateUtils.DAY_IN_MILLIS;
+import static android.text.format.DateUtils.HOUR_IN_MILLIS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.usage.IUsageStatsManager;
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageEvents.Event;
+import android.content.Context;
+import android.os.Parcel;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationStatsIndexTest {
+
+    private static final String PKG1 = "pkg1";
+    private static final String PKG2 = "pkg2";
+    private static final String CALLING_PKG = "com.android.settings";
+    private static final int USER_ID = 0;
+
+    @Mock
+    private IUsageStatsManager mUsageStats;
+
+    private File mFile;
+    private NotificationStatsIndex mIndex;
+    private long mNow;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        final Context context = RuntimeEnvironment.application;
+        mFile = new File(context.getCacheDir(), NotificationStatsIndex.FILE_NAME);
+        mFile.delete();
+        mIndex = new NotificationStatsIndex(mFile);
+        mNow = 100 * DAY_IN_MILLIS;
+    }
+
+    @Test
+    public void getSentState_onlyNotificationEvents() throws Exception {
+        final Event bad = createEvent(PKG1, mNow - 2);
+        bad.mEventType = Event.CHOOSER_ACTION;
+        returnEvents(createEvent(PKG1, mNow - 1), bad);
+
+        mIndex.update(mUsageStats, USER_ID, CALLING_PKG, mNow);
+
+        assertThat(mIndex.getSentState(USER_ID, PKG1, mNow).sentCount).isEqualTo(1);
+    }
+
+    @Test
+    public void getSentState_multipleEventsAgg() throws Exception {
+        returnEvents(createEvent(PKG1, mNow - 1), createEvent(PKG1, mNow - DAY_IN_MILLIS));
+
+        mIndex.update(mUsageStats, USER_ID, CALLING_PKG, mNow);
+
+        final NotificationsSentState state = mIndex.getSentState(USER_ID, PKG1, mNow);
+        assertThat(state.sentCount).isEqualTo(2);
+        assertThat(state.lastSent).isEqualTo(mNow - 1);
+    }
+
+    @Test
+    public void getSentState_multiplePkgs() throws Exception {
+        returnEvents(createEvent(PKG1, mNow - 1), createEvent(PKG2, mNow - 5));
+
+        mIndex.update(mUsageStats, USER_ID, CALLING_PKG, mNow);
+
+        assertThat(mIndex.getSentState(USER_ID, PKG1, mNow).lastSent).isEqualTo(mNow - 1);
+        assertThat(mIndex.getSentState(USER_ID, PKG2, mNow).lastSent).isEqualTo(mNow - 5);
+        assertThat(mIndex.getSentState(USER_ID + 1, PKG1, mNow)).isNull();
+    }
+
+    @Test
+    public void update_secondUpdate_shouldOnlyQueryNewEvents() throws Exception {
+        returnEvents(createEvent(PKG1, mNow - 1));
+        mIndex.update(mUsageStats, USER_ID, CALLING_PKG, mNow);
+        final long later = mNow + DAY_IN_MILLIS;
+        returnEvents(createEvent(PKG1, later - 1));
+
+        mIndex.update(mUsageStats, USER_ID, CALLING_PKG, later);
+
+        verify(mUsageStats).queryEventsForUser(eq(mNow - 7 * DAY_IN_MILLIS), eq(mNow),
+                eq(USER_ID), eq(CALLING_PKG));
+        verify(mUsageStats).queryEventsForUser(eq(mNow), eq(later), eq(USER_ID),
+                eq(CALLING_PKG));
+        assertThat(mIndex.getSentState(USER_ID, PKG1, later).sentCount).isEqualTo(2);
+    }
+
+    @Test
+    public void getSentState_notificationsOlderThanAWeek_shouldReturnNull() throws Exception {
+        returnEvents(createEvent(PKG1, mNow - 1));
+        mIndex.update(mUsageStats, USER_ID, CALLING_PKG, mNow);
+
+        assertThat(mIndex.getSentState(USER_ID, PKG1, mNow + 9 * DAY_IN_MILLIS)).isNull();
+    }
+
+    @Test
+    public void getSentState_notificationJustOverAWeekAgo_shouldNotCountIt() throws Exception {
+        final long sentTime = mNow + HOUR_IN_MILLIS;
+        returnEvents(createEvent(PKG1, sentTime));
+        mIndex.update(mUsageStats, USER_ID, CALLING_PKG, sentTime + HOUR_IN_MILLIS);
+
+        assertThat(mIndex.getSentState(USER_ID, PKG1, sentTime + 7 * DAY_IN_MILLIS)).isNotNull();
+        assertThat(mIndex.getSentState(USER_ID, PKG1,
+                sentTime + 7 * DAY_IN_MILLIS + 2 * HOUR_IN_MILLIS)).isNull();
+    }
+
+    @Test
+    public void getSentState_fromSavedIndex_shouldRestoreCounts() throws Exception {
+        returnEvents(createEvent(PKG1, mNow - 1), createEvent(PKG1, mNow - 2));
+        mIndex.update(mUsageStats, USER_ID, CALLING_PKG, mNow);
+
+        final NotificationsSentState state =
+                new NotificationStatsIndex(mFile).getSentState(USER_ID, PKG1, mNow);
+
+        assertThat(state.sentCount).isEqualTo(2);
+        assertThat(state.lastSent).isEqualTo(mNow - 1);
+    }
+
+    private static Event createEvent(String pkg, long time) {
+        final Event event = new Event();
+        event.mEventType = Event.NOTIFICATION_INTERRUPTION;
+        event.mPackage = pkg;
+        event.mTimeStamp = time;
+        return event;
+    }
+
+    private void returnEvents(Event... events) throws Exception {
+        final List<Event> eventList = new ArrayList<>(Arrays.asList(events));
+        final UsageEvents usageEvents = new UsageEvents(eventList, new String[] {PKG1, PKG2});
+        final Parcel parcel = Parcel.obtain();
+        parcel.setDataPosition(0);
+        usageEvents.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(UsageEvents.CREATOR.createFromParcel(parcel));
+    }
+}
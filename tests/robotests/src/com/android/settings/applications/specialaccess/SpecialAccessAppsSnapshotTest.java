@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.specialaccess;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ComponentName;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SpecialAccessAppsSnapshotTest {
+
+    private static final int USER_ID = 0;
+    private static final int OTHER_USER_ID = 10;
+    private static final String PKG1 = "pkg1";
+    private static final String PKG2 = "pkg2";
+    private static final String PKG3 = "pkg3";
+    private static final String LABEL = "Admin";
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private SpecialAccessAppsSnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mPackageManager.getInstalledPackagesAsUser(anyInt(), eq(USER_ID)))
+                .thenReturn(new ArrayList<>(
+                        Arrays.asList(createPackage(PKG1), createPackage(PKG2))));
+        mSnapshot = new SpecialAccessAppsSnapshot(RuntimeEnvironment.application,
+                mPackageManager);
+    }
+
+    @Test
+    public void getInstalledPackages_shouldScanOnce() {
+        mSnapshot.getInstalledPackages(USER_ID);
+
+        assertThat(getPackageNames(mSnapshot.getInstalledPackages(USER_ID)))
+                .containsExactly(PKG1, PKG2).inOrder();
+        verify(mPackageManager, times(1)).getInstalledPackagesAsUser(anyInt(), eq(USER_ID));
+    }
+
+    @Test
+    public void getInstalledPackages_afterPackageAdded_shouldOnlyReadThatPackage()
+            throws Exception {
+        mSnapshot.getInstalledPackages(USER_ID);
+        when(mPackageManager.getPackageInfoAsUser(eq(PKG3), anyInt(), eq(USER_ID)))
+                .thenReturn(createPackage(PKG3));
+
+        mSnapshot.onPackageChanged(PKG3, USER_ID);
+
+        assertThat(getPackageNames(mSnapshot.getInstalledPackages(USER_ID)))
+                .containsExactly(PKG1, PKG2, PKG3);
+        verify(mPackageManager, times(1)).getInstalledPackagesAsUser(anyInt(), eq(USER_ID));
+    }
+
+    @Test
+    public void getInstalledPackages_afterPackageRemoved_shouldDropIt() throws Exception {
+        mSnapshot.getInstalledPackages(USER_ID);
+        when(mPackageManager.getPackageInfoAsUser(eq(PKG1), anyInt(), eq(USER_ID)))
+                .thenThrow(new PackageManager.NameNotFoundException());
+
+        mSnapshot.onPackageChanged(PKG1, USER_ID);
+
+        assertThat(getPackageNames(mSnapshot.getInstalledPackages(USER_ID)))
+                .containsExactly(PKG2);
+    }
+
+    @Test
+    public void getInstalledPackages_packageChangedForOtherUser_shouldNotReadIt()
+            throws Exception {
+        mSnapshot.getInstalledPackages(USER_ID);
+
+        mSnapshot.onPackageChanged(PKG1, OTHER_USER_ID);
+        mSnapshot.getInstalledPackages(USER_ID);
+
+        verify(mPackageManager, never()).getPackageInfoAsUser(eq(PKG1), anyInt(), anyInt());
+    }
+
+    @Test
+    public void getInstalledPackages_afterInvalidate_shouldScanAgain() {
+        mSnapshot.getInstalledPackages(USER_ID);
+
+        mSnapshot.invalidate();
+        mSnapshot.getInstalledPackages(USER_ID);
+
+        verify(mPackageManager, times(2)).getInstalledPackagesAsUser(anyInt(), eq(USER_ID));
+    }
+
+    @Test
+    public void getComponentEntry_shouldLoadLabelOnce() {
+        final ActivityInfo receiver = createReceiver(PKG1);
+
+        getComponentEntry(receiver);
+        final SpecialAccessAppsSnapshot.ComponentEntry entry = getComponentEntry(receiver);
+
+        assertThat(entry.label.toString()).isEqualTo(LABEL);
+        verify(receiver, times(1)).loadLabel(mPackageManager);
+    }
+
+    @Test
+    public void getComponentEntry_afterPackageChanged_shouldOnlyReloadThatPackage() {
+        final ActivityInfo receiver1 = createReceiver(PKG1);
+        final ActivityInfo receiver2 = createReceiver(PKG2);
+        getComponentEntry(receiver1);
+        getComponentEntry(receiver2);
+
+        mSnapshot.onPackageChanged(PKG1, USER_ID);
+        getComponentEntry(receiver1);
+        getComponentEntry(receiver2);
+
+        verify(receiver1, times(2)).loadLabel(mPackageManager);
+        verify(receiver2, times(1)).loadLabel(mPackageManager);
+    }
+
+    private SpecialAccessAppsSnapshot.ComponentEntry getComponentEntry(ActivityInfo receiver) {
+        return mSnapshot.getComponentEntry(
+                new ComponentName(receiver.packageName, receiver.name), USER_ID,
+                receiver::loadLabel, receiver::loadIcon);
+    }
+
+    private ActivityInfo createReceiver(String packageName) {
+        final ActivityInfo receiver = mock(ActivityInfo.class);
+        receiver.packageName = packageName;
+        receiver.name = packageName + ".AdminReceiver";
+        when(receiver.loadLabel(mPackageManager)).thenReturn(LABEL);
+        return receiver;
+    }
+
+    private static PackageInfo createPackage(String packageName) {
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        return packageInfo;
+    }
+
+    private static List<String> getPackageNames(List<PackageInfo> packages) {
+        final List<String> packageNames = new ArrayList<>();
+        for (PackageInfo packageInfo : packages) {
+            packageNames.add(packageInfo.packageName);
+        }
+        return packageNames;
+    }
+}
@@ -16,13 +16,18 @@
 
 package com.android.settings.core;
 
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+
 import static com.google.common.truth.Truth.assertThat;
 
 import android.content.Context;
+import android.os.Bundle;
 
 import com.android.settings.R;
 import com.android.settings.slices.FakePreferenceController;
 import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.core.lifecycle.LifecycleObserver;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -68,6 +73,71 @@ public class PreferenceControllerListHelperTest {
         assertThat(controllers.get(0)).isInstanceOf(FakePreferenceController.class);
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getControllers_calledTwice_shouldCreateNewControllers() {
+        final List<BasePreferenceController> controllers =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.location_settings);
+
+        final List<BasePreferenceController> controllersAgain =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.location_settings);
+
+        assertThat(controllersAgain).hasSize(controllers.size());
+        assertThat(controllersAgain.get(0)).isNotSameInstanceAs(controllers.get(0));
+        assertThat(controllersAgain.get(0).getPreferenceKey())
+                .isEqualTo(controllers.get(0).getPreferenceKey());
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getControllers_withDeferredMetadata_shouldNotCreateDeferredControllers() {
+        final List<Bundle> deferredMetadata = new ArrayList<>();
+
+        final List<BasePreferenceController> controllers =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.location_settings, deferredMetadata);
+
+        assertThat(controllers).isEmpty();
+        assertThat(deferredMetadata).hasSize(1);
+        final BasePreferenceController controller =
+                PreferenceControllerListHelper.createController(mContext, deferredMetadata.get(0));
+        assertThat(controller).isInstanceOf(FakePreferenceController.class);
+        assertThat(controller.getPreferenceKey()).isEqualTo("key");
+    }
+
+    @Test
+    public void createController_contextConstructorThrows_shouldUseKeyedConstructor() {
+        final BasePreferenceController controller = PreferenceControllerListHelper
+                .createController(mContext, createMetadata(ThrowingController.class, "key"));
+
+        assertThat(controller).isInstanceOf(ThrowingController.class);
+        assertThat(controller.getPreferenceKey()).isEqualTo("key");
+    }
+
+    @Test
+    public void canCreateLater_shouldOnlyAcceptKeyedControllersWithoutLifecycle() {
+        assertThat(PreferenceControllerListHelper.canCreateLater(
+                createMetadata(FakePreferenceController.class, "key"))).isTrue();
+        assertThat(PreferenceControllerListHelper.canCreateLater(
+                createMetadata(FakePreferenceController.class, null))).isFalse();
+        assertThat(PreferenceControllerListHelper.canCreateLater(
+                createMetadata(LifecycleController.class, "key"))).isFalse();
+    }
+
+    @Test
+    public void hasConstructor_shouldMatchControllerConstructors() {
+        final String controllerName = FakePreferenceController.class.getName();
+
+        assertThat(BasePreferenceController.hasConstructor(controllerName, true /* withKey */))
+                .isTrue();
+        assertThat(BasePreferenceController.hasConstructor(controllerName, false /* withKey */))
+                .isFalse();
+        assertThat(BasePreferenceController.hasConstructor("not.a.Controller", true /* withKey */))
+                .isFalse();
+    }
+
     @Test
     public void filterControllers_noFilter_shouldReturnSameList() {
         final List<BasePreferenceController> controllers = new ArrayList<>();
@@ -123,4 +193,40 @@ public class PreferenceControllerListHelperTest {
                 .filterControllers(controllers, filter);
         assertThat(result).isEmpty();
     }
+
+    private static Bundle createMetadata(Class<?> controllerClass, String key) {
+        final Bundle metadata = new Bundle();
+        metadata.putString(METADATA_CONTROLLER, controllerClass.getName());
+        metadata.putString(METADATA_KEY, key);
+        return metadata;
+    }
+
+    public static class ThrowingController extends BasePreferenceController {
+
+        public ThrowingController(Context context) {
+            this(context, null /* preferenceKey */);
+        }
+
+        public ThrowingController(Context context, String preferenceKey) {
+            super(context, preferenceKey);
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            return AVAILABLE;
+        }
+    }
+
+    public static class LifecycleController extends BasePreferenceController
+            implements LifecycleObserver {
+
+        public LifecycleController(Context context, String preferenceKey) {
+            super(context, preferenceKey);
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            return AVAILABLE;
+        }
+    }
 }
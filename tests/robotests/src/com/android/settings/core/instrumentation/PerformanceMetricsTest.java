@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import static com.android.settings.core.instrumentation.PerformanceMetrics.CATEGORY_LOADER;
+import static com.android.settings.core.instrumentation.PerformanceMetrics.CATEGORY_SLICE_BIND;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PerformanceMetricsTest {
+
+    private static final String LOADER_NAME = "TestLoader";
+
+    private PerformanceMetrics mPerformanceMetrics;
+
+    @Before
+    public void setUp() {
+        mPerformanceMetrics = new PerformanceMetrics();
+    }
+
+    @Test
+    public void getBucket_shouldUseUpperBoundInclusive() {
+        assertThat(PerformanceMetrics.Histogram.getBucket(0)).isEqualTo(0);
+        assertThat(PerformanceMetrics.Histogram.getBucket(1)).isEqualTo(0);
+        assertThat(PerformanceMetrics.Histogram.getBucket(2)).isEqualTo(1);
+        assertThat(PerformanceMetrics.Histogram.getBucket(3)).isEqualTo(2);
+        assertThat(PerformanceMetrics.Histogram.getBucket(1024))
+                .isEqualTo(PerformanceMetrics.BUCKET_UPPER_BOUNDS_MS.length - 1);
+        assertThat(PerformanceMetrics.Histogram.getBucket(5000))
+                .isEqualTo(PerformanceMetrics.BUCKET_UPPER_BOUNDS_MS.length);
+    }
+
+    @Test
+    public void recordLatency_shouldAggregateByCategoryAndName() throws JSONException {
+        mPerformanceMetrics.recordLatency(CATEGORY_LOADER, LOADER_NAME, 10);
+        mPerformanceMetrics.recordLatency(CATEGORY_LOADER, LOADER_NAME, 30);
+        mPerformanceMetrics.recordLatency(CATEGORY_LOADER, LOADER_NAME, 5000);
+
+        final JSONObject histogram =
+                mPerformanceMetrics.toJson().getJSONObject(CATEGORY_LOADER)
+                        .getJSONObject(LOADER_NAME);
+        assertThat(histogram.getLong("count")).isEqualTo(3);
+        assertThat(histogram.getLong("mean_ms")).isEqualTo(1680);
+        assertThat(histogram.getLong("max_ms")).isEqualTo(5000);
+        final JSONArray buckets = histogram.getJSONArray("buckets");
+        assertThat(buckets.length())
+                .isEqualTo(PerformanceMetrics.BUCKET_UPPER_BOUNDS_MS.length + 1);
+        assertThat(buckets.getLong(4)).isEqualTo(1);
+        assertThat(buckets.getLong(5)).isEqualTo(1);
+        assertThat(buckets.getLong(buckets.length() - 1)).isEqualTo(1);
+    }
+
+    @Test
+    public void recordLatency_negativeLatency_shouldCountAsZero() throws JSONException {
+        mPerformanceMetrics.recordLatency(CATEGORY_LOADER, LOADER_NAME, -5);
+
+        final JSONObject histogram =
+                mPerformanceMetrics.toJson().getJSONObject(CATEGORY_LOADER)
+                        .getJSONObject(LOADER_NAME);
+        assertThat(histogram.getLong("max_ms")).isEqualTo(0);
+        assertThat(histogram.getJSONArray("buckets").getLong(0)).isEqualTo(1);
+    }
+
+    @Test
+    public void recordLatency_tooManyNames_shouldUseOverflowHistogram() throws JSONException {
+        for (int i = 0; i < PerformanceMetrics.MAX_HISTOGRAMS_PER_CATEGORY; i++) {
+            mPerformanceMetrics.recordLatency(CATEGORY_LOADER, LOADER_NAME + i, 1);
+        }
+
+        mPerformanceMetrics.recordLatency(CATEGORY_LOADER, LOADER_NAME, 1);
+
+        final JSONObject loaders = mPerformanceMetrics.toJson().getJSONObject(CATEGORY_LOADER);
+        assertThat(loaders.has(LOADER_NAME)).isFalse();
+        assertThat(loaders.getJSONObject(PerformanceMetrics.OVERFLOW_NAME).getLong("count"))
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void recordLatency_otherCategoryFull_shouldKeepName() throws JSONException {
+        for (int i = 0; i < PerformanceMetrics.MAX_HISTOGRAMS_PER_CATEGORY; i++) {
+            mPerformanceMetrics.recordLatency(CATEGORY_LOADER, LOADER_NAME + i, 1);
+        }
+
+        mPerformanceMetrics.recordLatency(CATEGORY_SLICE_BIND, "slice", 1);
+
+        final JSONObject slices = mPerformanceMetrics.toJson().getJSONObject(CATEGORY_SLICE_BIND);
+        assertThat(slices.getJSONObject("slice").getLong("count")).isEqualTo(1);
+        assertThat(slices.has(PerformanceMetrics.OVERFLOW_NAME)).isFalse();
+    }
+
+    @Test
+    public void incrementCounter_shouldCountEveryCall() throws JSONException {
+        mPerformanceMetrics.incrementCounter(PerformanceMetrics.COUNTER_SLOW_CONTROLLER_UPDATES);
+        mPerformanceMetrics.incrementCounter(PerformanceMetrics.COUNTER_SLOW_CONTROLLER_UPDATES);
+
+        assertThat(mPerformanceMetrics.toJson().getJSONObject("counters")
+                .getLong(PerformanceMetrics.COUNTER_SLOW_CONTROLLER_UPDATES)).isEqualTo(2);
+    }
+
+    @Test
+    public void reset_shouldDropRecordedValues() throws JSONException {
+        mPerformanceMetrics.recordLatency(CATEGORY_LOADER, LOADER_NAME, 10);
+        mPerformanceMetrics.incrementCounter(PerformanceMetrics.COUNTER_SLOW_CONTROLLER_UPDATES);
+
+        mPerformanceMetrics.reset();
+
+        final JSONObject json = mPerformanceMetrics.toJson();
+        assertThat(json.has(CATEGORY_LOADER)).isFalse();
+        assertThat(json.getJSONObject("counters").length()).isEqualTo(0);
+    }
+}
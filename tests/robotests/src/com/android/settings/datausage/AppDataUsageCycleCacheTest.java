@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.content.ComponentCallbacks2;
+import android.net.NetworkTemplate;
+
+import com.android.settingslib.net.NetworkCycleDataForUid;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppDataUsageCycleCacheTest {
+
+    private final NetworkTemplate mTemplate = mock(NetworkTemplate.class);
+    private final List<NetworkCycleDataForUid> mUsageData = Collections.singletonList(
+            new NetworkCycleDataForUid.Builder().setForegroundUsage(10L).build());
+
+    private AppDataUsageCycleCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new AppDataUsageCycleCache();
+    }
+
+    @Test
+    public void get_sameUidsInOtherOrder_shouldReturnCachedData() {
+        mCache.put(new AppDataUsageCycleCache.Key(mTemplate, new int[] {1, 2}, null), mUsageData);
+
+        assertThat(mCache.get(new AppDataUsageCycleCache.Key(mTemplate, new int[] {2, 1}, null)))
+                .isEqualTo(mUsageData);
+    }
+
+    @Test
+    public void get_otherCycles_shouldReturnNull() {
+        mCache.put(new AppDataUsageCycleCache.Key(mTemplate, new int[] {1},
+                Arrays.asList(300L, 200L)), mUsageData);
+
+        assertThat(mCache.get(new AppDataUsageCycleCache.Key(mTemplate, new int[] {1},
+                Arrays.asList(300L, 100L)))).isNull();
+    }
+
+    @Test
+    public void onTrimMemory_moderate_shouldDropEverything() {
+        final AppDataUsageCycleCache.Key key =
+                new AppDataUsageCycleCache.Key(mTemplate, new int[] {1}, null);
+        mCache.put(key, mUsageData);
+
+        mCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+
+        assertThat(mCache.get(key)).isNull();
+    }
+
+    @Test
+    public void onTrimMemory_uiHidden_shouldKeepRecentEntries() {
+        for (int i = 0; i < AppDataUsageCycleCache.MAX_ENTRIES; i++) {
+            mCache.put(new AppDataUsageCycleCache.Key(mTemplate, new int[] {i}, null),
+                    mUsageData);
+        }
+
+        mCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        assertThat(mCache.get(new AppDataUsageCycleCache.Key(mTemplate, new int[] {0}, null)))
+                .isNull();
+        assertThat(mCache.get(new AppDataUsageCycleCache.Key(mTemplate,
+                new int[] {AppDataUsageCycleCache.MAX_ENTRIES - 1}, null))).isNotNull();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.usage.NetworkStatsManager;
+import android.content.Context;
+import android.content.pm.UserInfo;
+import android.net.NetworkPolicyManager;
+import android.net.NetworkTemplate;
+import android.net.TrafficStats;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppDataUsageListLoaderTest {
+
+    private static final int MANAGED_USER_ID = 10;
+    private static final int OTHER_USER_ID = 11;
+    private static final int REMOVED_USER_ID = 12;
+
+    @Mock
+    private NetworkStatsManager mNetworkStatsManager;
+    @Mock
+    private NetworkPolicyManager mPolicyManager;
+    @Mock
+    private UserManager mUserManager;
+    @Mock
+    private NetworkTemplate mTemplate;
+
+    private AppDataUsageListLoader mLoader;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        final Context context = RuntimeEnvironment.application;
+        when(mUserManager.getUserProfiles()).thenReturn(Arrays.asList(
+                UserHandle.of(UserHandle.USER_SYSTEM), UserHandle.of(MANAGED_USER_ID)));
+        when(mUserManager.getUserInfo(OTHER_USER_ID))
+                .thenReturn(new UserInfo(OTHER_USER_ID, "other", 0 /* flags */));
+        mLoader = new AppDataUsageListLoader(context, mNetworkStatsManager, mPolicyManager,
+                mUserManager, mTemplate, 0 /* start */, 1000 /* end */);
+    }
+
+    @Test
+    public void buildAppItems_shouldCollapseUidsAndSortByUsage() {
+        final SparseLongArray usage = new SparseLongArray();
+        usage.put(uid(UserHandle.USER_SYSTEM, 10001), 100);
+        usage.put(uid(UserHandle.USER_SYSTEM, 10002), 300);
+        usage.put(Process.SYSTEM_UID, 50);
+        usage.put(Process.ROOT_UID, 25);
+
+        final List<AppItem> items = mLoader.buildAppItems(usage, new int[0]);
+
+        assertThat(items).hasSize(3);
+        assertThat(items.get(0).key).isEqualTo(uid(UserHandle.USER_SYSTEM, 10002));
+        assertThat(items.get(1).key).isEqualTo(uid(UserHandle.USER_SYSTEM, 10001));
+        // Other system uids are collapsed into the system uid.
+        assertThat(items.get(2).key).isEqualTo(Process.SYSTEM_UID);
+        assertThat(items.get(2).total).isEqualTo(75);
+        assertThat(items.get(2).uids.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void buildAppItems_managedProfileApp_shouldAlsoCountForProfile() {
+        final SparseLongArray usage = new SparseLongArray();
+        usage.put(uid(MANAGED_USER_ID, 10001), 100);
+        usage.put(uid(MANAGED_USER_ID, 10002), 200);
+
+        final List<AppItem> items = mLoader.buildAppItems(usage, new int[0]);
+
+        final AppItem profileItem = findItem(items,
+                UidDetailProvider.buildKeyForUser(MANAGED_USER_ID));
+        assertThat(profileItem.category).isEqualTo(AppItem.CATEGORY_USER);
+        assertThat(profileItem.total).isEqualTo(300);
+        assertThat(findItem(items, uid(MANAGED_USER_ID, 10001)).total).isEqualTo(100);
+    }
+
+    @Test
+    public void buildAppItems_otherUsers_shouldCollapseByUserAndQueryEachUserOnce() {
+        final SparseLongArray usage = new SparseLongArray();
+        usage.put(uid(OTHER_USER_ID, 10001), 100);
+        usage.put(uid(OTHER_USER_ID, 10002), 200);
+        usage.put(uid(REMOVED_USER_ID, 10001), 10);
+        usage.put(uid(REMOVED_USER_ID, 10002), 20);
+
+        final List<AppItem> items = mLoader.buildAppItems(usage, new int[0]);
+
+        assertThat(items).hasSize(2);
+        assertThat(findItem(items, UidDetailProvider.buildKeyForUser(OTHER_USER_ID)).total)
+                .isEqualTo(300);
+        assertThat(findItem(items, TrafficStats.UID_REMOVED).total).isEqualTo(30);
+        verify(mUserManager, times(1)).getUserInfo(OTHER_USER_ID);
+        verify(mUserManager, times(1)).getUserInfo(REMOVED_USER_ID);
+    }
+
+    @Test
+    public void buildAppItems_restrictedUids_shouldMarkProfileAppsOnly() {
+        final SparseLongArray usage = new SparseLongArray();
+        usage.put(uid(UserHandle.USER_SYSTEM, 10001), 100);
+        final int[] restrictedUids = {
+                uid(UserHandle.USER_SYSTEM, 10001),
+                uid(UserHandle.USER_SYSTEM, 10002),
+                uid(OTHER_USER_ID, 10003)};
+
+        final List<AppItem> items = mLoader.buildAppItems(usage, restrictedUids);
+
+        assertThat(items).hasSize(2);
+        assertThat(findItem(items, uid(UserHandle.USER_SYSTEM, 10001)).restricted).isTrue();
+        final AppItem unusedApp = findItem(items, uid(UserHandle.USER_SYSTEM, 10002));
+        assertThat(unusedApp.restricted).isTrue();
+        assertThat(unusedApp.total).isEqualTo(-1);
+        verify(mUserManager, never()).getUserInfo(anyInt());
+    }
+
+    private static int uid(int userId, int appId) {
+        return UserHandle.getUid(userId, appId);
+    }
+
+    private static AppItem findItem(List<AppItem> items, int key) {
+        for (AppItem item : items) {
+            if (item.key == key) {
+                return item;
+            }
+        }
+        throw new AssertionError("No item with key " + key);
+    }
+}
@@ -70,6 +70,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.Robolectric;
@@ -415,6 +416,54 @@ public class AppDataUsageTest {
         verify(cycle).setSelection(1);
     }
 
+    @Test
+    public void bindCachedData_noCachedData_shouldShowTotalFromAppList() {
+        final Context context = RuntimeEnvironment.application;
+        mFragment = new AppDataUsage();
+        ReflectionHelpers.setField(mFragment, "mContext", context);
+        ReflectionHelpers.setField(mFragment, "mUsageCacheKey", new AppDataUsageCycleCache.Key(
+                mock(NetworkTemplate.class), new int[] {123}, null /* cycles */));
+        ReflectionHelpers.setField(mFragment, "mSelectedCycleUsage", 1234L);
+        final Preference totalPref = mock(Preference.class);
+        ReflectionHelpers.setField(mFragment, "mTotalUsage", totalPref);
+
+        mFragment.bindCachedData();
+
+        final ArgumentCaptor<CharSequence> summary = ArgumentCaptor.forClass(CharSequence.class);
+        verify(totalPref).setSummary(summary.capture());
+        assertThat(summary.getValue().toString())
+                .isEqualTo(DataUsageUtils.formatDataUsage(context, 1234L).toString());
+    }
+
+    @Test
+    public void bindCachedData_cachedData_shouldBindCachedCycles() {
+        final Context context = RuntimeEnvironment.application;
+        final AppDataUsageCycleCache.Key key = new AppDataUsageCycleCache.Key(
+                mock(NetworkTemplate.class), new int[] {123}, null /* cycles */);
+        final List<NetworkCycleDataForUid> data = new ArrayList<>();
+        data.add(new NetworkCycleDataForUid.Builder()
+                .setBackgroundUsage(10L).setForegroundUsage(20L).build());
+        AppDataUsageCycleCache.getInstance(context).put(key, data);
+        mFragment = new AppDataUsage();
+        ReflectionHelpers.setField(mFragment, "mContext", context);
+        ReflectionHelpers.setField(mFragment, "mUsageCacheKey", key);
+        final CycleAdapter cycleAdapter = mock(CycleAdapter.class);
+        ReflectionHelpers.setField(mFragment, "mCycleAdapter", cycleAdapter);
+        ReflectionHelpers.setField(mFragment, "mCycle", mock(SpinnerPreference.class));
+        ReflectionHelpers.setField(mFragment, "mBackgroundUsage", mock(Preference.class));
+        ReflectionHelpers.setField(mFragment, "mForegroundUsage", mock(Preference.class));
+        final Preference totalPref = mock(Preference.class);
+        ReflectionHelpers.setField(mFragment, "mTotalUsage", totalPref);
+
+        mFragment.bindCachedData();
+
+        verify(cycleAdapter).updateCycleList(data);
+        final ArgumentCaptor<CharSequence> summary = ArgumentCaptor.forClass(CharSequence.class);
+        verify(totalPref).setSummary(summary.capture());
+        assertThat(summary.getValue().toString())
+                .isEqualTo(DataUsageUtils.formatDataUsage(context, 30L).toString());
+    }
+
     @Test
     @Config(shadows = {ShadowDataUsageUtils.class, ShadowSubscriptionManager.class,
             ShadowFragment.class})
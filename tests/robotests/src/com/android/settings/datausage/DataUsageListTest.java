@@ -39,7 +39,9 @@ import android.widget.Spinner;
 
 import androidx.fragment.app.FragmentActivity;
 import androidx.loader.app.LoaderManager;
+import androidx.preference.PreferenceCategory;
 import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.SettingsActivity;
@@ -50,6 +52,7 @@ import com.android.settingslib.AppItem;
 import com.android.settingslib.NetworkPolicyEditor;
 import com.android.settingslib.core.instrumentation.VisibilityLoggerMixin;
 import com.android.settingslib.net.NetworkCycleChartData;
+import com.android.settingslib.net.UidDetailProvider;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -63,6 +66,8 @@ import org.robolectric.android.controller.ActivityController;
 import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -228,6 +233,70 @@ public class DataUsageListTest {
         verify(mLoaderManager).destroyLoader(DataUsageList.LOADER_SUMMARY);
     }
 
+    @Test
+    public void bindStats_shouldKeepPreferencesOfListedApps() {
+        final PreferenceCategory apps = setUpAppsGroup();
+        mDataUsageList.bindStats(Arrays.asList(buildAppItem(10001, 200), buildAppItem(10002, 100)));
+        final AppDataUsagePreference firstApp = findAppPreference(apps, 10001);
+
+        mDataUsageList.bindStats(Arrays.asList(buildAppItem(10002, 400), buildAppItem(10001, 300)));
+
+        assertThat(apps.getPreferenceCount()).isEqualTo(2);
+        assertThat(findAppPreference(apps, 10001)).isSameInstanceAs(firstApp);
+        assertThat(firstApp.getItem().total).isEqualTo(300);
+        assertThat(firstApp.getOrder()).isEqualTo(1);
+    }
+
+    @Test
+    public void bindStats_shouldRemovePreferencesOfUnlistedApps() {
+        final PreferenceCategory apps = setUpAppsGroup();
+        mDataUsageList.bindStats(Arrays.asList(buildAppItem(10001, 200), buildAppItem(10002, 100)));
+
+        mDataUsageList.bindStats(Collections.singletonList(buildAppItem(10002, 100)));
+
+        assertThat(apps.getPreferenceCount()).isEqualTo(1);
+        assertThat(findAppPreference(apps, 10002)).isNotNull();
+    }
+
+    @Test
+    public void bindStats_null_shouldClearList() {
+        final PreferenceCategory apps = setUpAppsGroup();
+        mDataUsageList.bindStats(Collections.singletonList(buildAppItem(10001, 200)));
+
+        mDataUsageList.bindStats(null);
+
+        assertThat(apps.getPreferenceCount()).isEqualTo(0);
+    }
+
+    private PreferenceCategory setUpAppsGroup() {
+        final PreferenceScreen screen =
+                new PreferenceManager(mActivity).createPreferenceScreen(mActivity);
+        final PreferenceCategory apps = new PreferenceCategory(mActivity);
+        screen.addPreference(apps);
+        ReflectionHelpers.setField(mDataUsageList, "mApps", apps);
+        ReflectionHelpers.setField(mDataUsageList, "mUidDetailProvider",
+                mock(UidDetailProvider.class));
+        return apps;
+    }
+
+    private static AppDataUsagePreference findAppPreference(PreferenceCategory apps, int key) {
+        for (int i = 0; i < apps.getPreferenceCount(); i++) {
+            final AppDataUsagePreference preference =
+                    (AppDataUsagePreference) apps.getPreference(i);
+            if (preference.getItem().key == key) {
+                return preference;
+            }
+        }
+        return null;
+    }
+
+    private static AppItem buildAppItem(int uid, long total) {
+        final AppItem item = new AppItem(uid);
+        item.addUid(uid);
+        item.total = total;
+        return item;
+    }
+
     private View getHeader() {
         final View rootView = LayoutInflater.from(mActivity)
                 .inflate(R.layout.preference_list_fragment, null, false);
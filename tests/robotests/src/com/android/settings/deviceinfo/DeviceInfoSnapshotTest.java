@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.os.PersistableBundle;
+import android.telephony.CarrierConfigManager;
+import android.telephony.ServiceState;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+
+import com.android.settings.deviceinfo.DeviceInfoSnapshot.ImeiState;
+import com.android.settings.deviceinfo.DeviceInfoSnapshot.SimSlotState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+public class DeviceInfoSnapshotTest {
+
+    private static final int SUB_ID = 1;
+    private static final String ICCID = "iccid";
+    private static final String IMEI = "2341982751254";
+    private static final String MEID = "12871234124";
+    private static final String CDMA_MIN = "123417851315";
+
+    @Mock
+    private TelephonyManager mTelephonyManager;
+    @Mock
+    private SubscriptionManager mSubscriptionManager;
+    @Mock
+    private CarrierConfigManager mCarrierConfigManager;
+    @Mock
+    private SubscriptionInfo mSubscriptionInfo;
+
+    private PersistableBundle mCarrierConfig;
+    private DeviceInfoSnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        final Context context = spy(RuntimeEnvironment.application);
+        doReturn(mSubscriptionManager).when(context)
+                .getSystemService(Context.TELEPHONY_SUBSCRIPTION_SERVICE);
+        doReturn(mSubscriptionManager).when(context).getSystemService(SubscriptionManager.class);
+        doReturn(mTelephonyManager).when(context).getSystemService(TelephonyManager.class);
+        doReturn(mCarrierConfigManager).when(context)
+                .getSystemService(CarrierConfigManager.class);
+        when(mSubscriptionManager.getActiveSubscriptionInfoForSimSlotIndex(0))
+                .thenReturn(mSubscriptionInfo);
+        when(mSubscriptionInfo.getSubscriptionId()).thenReturn(SUB_ID);
+        when(mTelephonyManager.createForSubscriptionId(anyInt())).thenReturn(mTelephonyManager);
+        when(mTelephonyManager.getSimSerialNumber()).thenReturn(ICCID);
+        mCarrierConfig = new PersistableBundle();
+        when(mCarrierConfigManager.getConfigForSubId(SUB_ID)).thenReturn(mCarrierConfig);
+
+        mSnapshot = new DeviceInfoSnapshot(context, mTelephonyManager);
+    }
+
+    @Test
+    public void getSimSlotState_shouldReadSlotOnce() {
+        final SimSlotState state = mSnapshot.getSimSlotState(0);
+
+        assertThat(mSnapshot.getSimSlotState(0)).isSameInstanceAs(state);
+        assertThat(mSnapshot.getCachedSimSlotState(0)).isSameInstanceAs(state);
+        assertThat(state.subscriptionInfo).isSameInstanceAs(mSubscriptionInfo);
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void getSimSlotState_noSubscription_shouldNotReadCarrierConfig() {
+        final SimSlotState state = mSnapshot.getSimSlotState(1);
+
+        assertThat(state.subscriptionInfo).isNull();
+        verify(mCarrierConfigManager, times(0)).getConfigForSubId(anyInt());
+    }
+
+    @Test
+    public void getSimSlotState_showIccid_shouldReadIccid() {
+        mCarrierConfig.putBoolean(CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL, true);
+
+        final SimSlotState state = mSnapshot.getSimSlotState(0);
+
+        assertThat(state.showIccid).isTrue();
+        assertThat(state.showSignalStrength).isFalse();
+        assertThat(state.iccid).isEqualTo(ICCID);
+    }
+
+    @Test
+    public void getSimSlotState_noCarrierConfig_shouldOnlyShowSignalStrength() {
+        when(mCarrierConfigManager.getConfigForSubId(SUB_ID)).thenReturn(null);
+
+        final SimSlotState state = mSnapshot.getSimSlotState(0);
+
+        assertThat(state.showSignalStrength).isTrue();
+        assertThat(state.showIccid).isFalse();
+        assertThat(state.iccid).isNull();
+        verify(mTelephonyManager, times(0)).getSimSerialNumber();
+    }
+
+    @Test
+    public void getCachedSimSlotState_afterInvalidate_shouldReturnNull() {
+        mSnapshot.getSimSlotState(0);
+
+        mSnapshot.invalidate();
+
+        assertThat(mSnapshot.getCachedSimSlotState(0)).isNull();
+    }
+
+    @Test
+    public void getCachedSimSlotState_beforeMaxVolatileStateAge_shouldKeepVolatileState() {
+        final ServiceState serviceState = new ServiceState();
+        when(mTelephonyManager.getServiceState()).thenReturn(serviceState);
+        when(mTelephonyManager.getDataNetworkType())
+                .thenReturn(TelephonyManager.NETWORK_TYPE_LTE);
+        final SimSlotState state = mSnapshot.getSimSlotState(0);
+
+        ShadowSystemClock.advanceBy(
+                Duration.ofMillis(DeviceInfoSnapshot.MAX_VOLATILE_STATE_AGE_MS - 1));
+
+        assertThat(mSnapshot.getCachedSimSlotState(0)).isSameInstanceAs(state);
+        assertThat(state.hasVolatileState).isTrue();
+        assertThat(state.serviceState).isSameInstanceAs(serviceState);
+        assertThat(state.dataNetworkType).isEqualTo(TelephonyManager.NETWORK_TYPE_LTE);
+    }
+
+    @Test
+    public void getSimSlotState_afterMaxVolatileStateAge_shouldOnlyKeepStableState() {
+        mCarrierConfig.putBoolean(CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL, true);
+        when(mTelephonyManager.getServiceState()).thenReturn(new ServiceState());
+        when(mTelephonyManager.getDataNetworkType())
+                .thenReturn(TelephonyManager.NETWORK_TYPE_LTE);
+        mSnapshot.getSimSlotState(0);
+
+        ShadowSystemClock.advanceBy(
+                Duration.ofMillis(DeviceInfoSnapshot.MAX_VOLATILE_STATE_AGE_MS));
+        final SimSlotState state = mSnapshot.getSimSlotState(0);
+
+        assertThat(state.hasVolatileState).isFalse();
+        assertThat(state.serviceState).isNull();
+        assertThat(state.signalStrength).isNull();
+        assertThat(state.dataNetworkType).isEqualTo(TelephonyManager.NETWORK_TYPE_UNKNOWN);
+        assertThat(state.subscriptionInfo).isSameInstanceAs(mSubscriptionInfo);
+        assertThat(state.showIccid).isTrue();
+        assertThat(state.iccid).isEqualTo(ICCID);
+        assertThat(mSnapshot.getCachedSimSlotState(0)).isSameInstanceAs(state);
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void getImeiState_gsmPhone_shouldReadImeiOnce() {
+        when(mTelephonyManager.getPhoneType()).thenReturn(TelephonyManager.PHONE_TYPE_GSM);
+        when(mTelephonyManager.getImei(0)).thenReturn(IMEI);
+
+        final ImeiState state = mSnapshot.getImeiState(0);
+
+        assertThat(mSnapshot.getImeiState(0)).isSameInstanceAs(state);
+        assertThat(mSnapshot.getCachedImeiState(0)).isSameInstanceAs(state);
+        assertThat(state.subscriptionInfo).isSameInstanceAs(mSubscriptionInfo);
+        assertThat(state.imei).isEqualTo(IMEI);
+        assertThat(state.meid).isNull();
+        verify(mTelephonyManager, times(1)).getImei(0);
+        verify(mTelephonyManager, times(0)).getMeid(anyInt());
+    }
+
+    @Test
+    public void getImeiState_cdmaPhone_shouldReadCdmaInfo() {
+        when(mTelephonyManager.getPhoneType()).thenReturn(TelephonyManager.PHONE_TYPE_CDMA);
+        when(mTelephonyManager.getMeid(0)).thenReturn(MEID);
+        when(mTelephonyManager.getCdmaMin(SUB_ID)).thenReturn(CDMA_MIN);
+        when(mTelephonyManager.isLteCdmaEvdoGsmWcdmaEnabled()).thenReturn(true);
+
+        final ImeiState state = mSnapshot.getImeiState(0);
+
+        assertThat(state.meid).isEqualTo(MEID);
+        assertThat(state.cdmaMin).isEqualTo(CDMA_MIN);
+        assertThat(state.cdmaLteEnabled).isTrue();
+        assertThat(state.simPresent).isTrue();
+    }
+
+    @Test
+    public void getImeiState_cdmaPhoneNoSubscription_shouldNotReadSim() {
+        when(mTelephonyManager.getPhoneType()).thenReturn(TelephonyManager.PHONE_TYPE_CDMA);
+        when(mTelephonyManager.getSimState(1)).thenReturn(TelephonyManager.SIM_STATE_ABSENT);
+
+        final ImeiState state = mSnapshot.getImeiState(1);
+
+        assertThat(state.subscriptionInfo).isNull();
+        assertThat(state.cdmaMin).isEmpty();
+        assertThat(state.cdmaPrlVersion).isEmpty();
+        assertThat(state.simPresent).isFalse();
+        verify(mTelephonyManager, times(0)).getCdmaMin(anyInt());
+    }
+
+    @Test
+    public void getCachedImeiState_afterInvalidate_shouldReturnNull() {
+        mSnapshot.getImeiState(0);
+
+        mSnapshot.invalidate();
+
+        assertThat(mSnapshot.getCachedImeiState(0)).isNull();
+    }
+}
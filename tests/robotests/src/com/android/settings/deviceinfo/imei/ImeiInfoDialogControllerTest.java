@@ -26,11 +26,13 @@ import static com.android.settings.deviceinfo.imei.ImeiInfoDialogController.ID_P
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -38,6 +40,8 @@ import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 
+import com.android.settings.deviceinfo.DeviceInfoSnapshot;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -209,4 +213,19 @@ public class ImeiInfoDialogControllerTest {
         verify(mDialog).setText(eq(ID_IMEI_VALUE), eq(""));
         verify(mDialog).setText(eq(ID_IMEI_SV_VALUE), any());
     }
+
+    @Test
+    public void populateImeiInfo_prefetched_shouldNotQueryTelephony() {
+        when(mTelephonyManager.getPhoneType()).thenReturn(TelephonyManager.PHONE_TYPE_GSM);
+        DeviceInfoSnapshot.getInstance(mContext).getImeiState(SLOT_ID);
+        clearInvocations(mTelephonyManager);
+
+        mController = new ImeiInfoDialogController(mDialog, SLOT_ID);
+        mController.populateImeiInfo();
+
+        verify(mDialog).setText(eq(ID_IMEI_VALUE), any());
+        verify(mDialog).setText(eq(ID_IMEI_SV_VALUE), any());
+        verify(mDialog).removeViewFromScreen(ID_CDMA_SETTINGS);
+        verifyNoMoreInteractions(mTelephonyManager);
+    }
 }
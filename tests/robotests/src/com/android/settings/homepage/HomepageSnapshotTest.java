@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.android.settings.homepage.HomepageSnapshot.SnapshotTile;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class HomepageSnapshotTest {
+
+    private static final String LOCALES = "en-US";
+
+    private File mFile;
+    private HomepageSnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        mFile = new File(context.getCacheDir(), HomepageSnapshot.FILE_NAME);
+        mFile.delete();
+        mSnapshot = new HomepageSnapshot(mFile);
+    }
+
+    @Test
+    public void getTiles_nothingSaved_shouldReturnEmpty() {
+        assertThat(mSnapshot.getTiles(LOCALES)).isEmpty();
+    }
+
+    @Test
+    public void getTiles_fromSavedFile_shouldRestoreTiles() {
+        final Bitmap icon = Bitmap.createBitmap(2, 2, Bitmap.Config.ARGB_8888);
+        icon.eraseColor(Color.RED);
+        mSnapshot.save(LOCALES, Arrays.asList(
+                new SnapshotTile("key1", "Title 1", "Summary 1", 10, icon),
+                new SnapshotTile("key2", "Title 2", "", 20, null /* icon */)));
+        mSnapshot.write();
+
+        final List<SnapshotTile> tiles = new HomepageSnapshot(mFile).getTiles(LOCALES);
+
+        assertThat(tiles).hasSize(2);
+        assertThat(tiles.get(0).key).isEqualTo("key1");
+        assertThat(tiles.get(0).title).isEqualTo("Title 1");
+        assertThat(tiles.get(0).summary).isEqualTo("Summary 1");
+        assertThat(tiles.get(0).order).isEqualTo(10);
+        assertThat(tiles.get(0).icon).isNotNull();
+        assertThat(tiles.get(1).key).isEqualTo("key2");
+        assertThat(tiles.get(1).icon).isNull();
+    }
+
+    @Test
+    public void getTiles_otherLocales_shouldReturnEmpty() {
+        mSnapshot.save(LOCALES, Arrays.asList(
+                new SnapshotTile("key1", "Title 1", "Summary 1", 10, null /* icon */)));
+
+        assertThat(mSnapshot.getTiles("fr-FR")).isEmpty();
+    }
+}
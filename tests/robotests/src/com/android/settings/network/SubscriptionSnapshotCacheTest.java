@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.ParcelUuid;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowSubscriptionManager;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class SubscriptionSnapshotCacheTest {
+
+    private static final int SUB_ID_1 = 1;
+    private static final int SUB_ID_2 = 2;
+    private static final ParcelUuid GROUP_UUID =
+            ParcelUuid.fromString("00000000-0000-0000-0000-000000000001");
+
+    @Mock
+    private SubscriptionManager mSubscriptionManager;
+    @Mock
+    private SubscriptionInfo mInfo1;
+    @Mock
+    private SubscriptionInfo mInfo2;
+
+    private Context mContext;
+    private SubscriptionSnapshotCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        when(mInfo1.getSubscriptionId()).thenReturn(SUB_ID_1);
+        when(mInfo2.getSubscriptionId()).thenReturn(SUB_ID_2);
+        when(mSubscriptionManager.getActiveSubscriptionInfoList())
+                .thenReturn(Arrays.asList(mInfo1));
+        when(mSubscriptionManager.getAvailableSubscriptionInfoList())
+                .thenReturn(Arrays.asList(mInfo1, mInfo2));
+        mCache = new SubscriptionSnapshotCache(mContext, mSubscriptionManager);
+    }
+
+    @Test
+    public void getSnapshot_calledTwice_shouldReadSubscriptionsOnce() {
+        final SubscriptionSnapshot snapshot = mCache.getSnapshot();
+
+        assertThat(mCache.getSnapshot()).isSameInstanceAs(snapshot);
+        verify(mSubscriptionManager, times(1)).getActiveSubscriptionInfoList();
+        verify(mSubscriptionManager, times(1)).getAvailableSubscriptionInfoList();
+    }
+
+    @Test
+    public void getSnapshot_afterInvalidate_shouldReadSubscriptionsAgain() {
+        final SubscriptionSnapshot snapshot = mCache.getSnapshot();
+        when(mSubscriptionManager.getActiveSubscriptionInfoList())
+                .thenReturn(Arrays.asList(mInfo1, mInfo2));
+
+        mCache.invalidate();
+        final SubscriptionSnapshot newSnapshot = mCache.getSnapshot();
+
+        assertThat(newSnapshot).isNotSameInstanceAs(snapshot);
+        assertThat(newSnapshot.getActiveSubscriptions()).containsExactly(mInfo1, mInfo2);
+    }
+
+    @Test
+    public void getSnapshot_invalidatedWhileReading_shouldNotKeepSnapshot() {
+        when(mSubscriptionManager.getAvailableSubscriptionInfoList()).thenAnswer(invocation -> {
+            mCache.invalidate();
+            return Arrays.asList(mInfo1);
+        });
+
+        final SubscriptionSnapshot snapshot = mCache.getSnapshot();
+
+        assertThat(mCache.getSnapshot()).isNotSameInstanceAs(snapshot);
+    }
+
+    @Test
+    public void getSnapshot_shouldComputeDerivedViews() {
+        when(mInfo2.getGroupUuid()).thenReturn(GROUP_UUID);
+
+        final SubscriptionSnapshot snapshot = mCache.getSnapshot();
+
+        assertThat(snapshot.getActiveSubscription(SUB_ID_1)).isSameInstanceAs(mInfo1);
+        assertThat(snapshot.getActiveSubscription(SUB_ID_2)).isNull();
+        assertThat(snapshot.getSelectableSubscriptions()).containsExactly(mInfo1, mInfo2);
+    }
+
+    @Test
+    public void getActiveDataSubscription_shouldReturnActiveDefaultDataSubscription() {
+        ShadowSubscriptionManager.setDefaultDataSubscriptionId(SUB_ID_1);
+
+        final SubscriptionSnapshot snapshot = mCache.getSnapshot();
+
+        assertThat(snapshot.getDefaultDataSubscriptionId()).isEqualTo(SUB_ID_1);
+        assertThat(snapshot.getActiveDataSubscription()).isSameInstanceAs(mInfo1);
+    }
+
+    @Test
+    public void getActiveDataSubscription_inactiveDefaultDataSubscription_shouldReturnNull() {
+        ShadowSubscriptionManager.setDefaultDataSubscriptionId(SUB_ID_2);
+
+        assertThat(mCache.getSnapshot().getActiveDataSubscription()).isNull();
+    }
+
+    @Test
+    public void getInstanceFor_mockedManager_shouldReturnNull() {
+        assertThat(SubscriptionSnapshotCache.getInstanceFor(mContext,
+                mock(SubscriptionManager.class))).isNull();
+        assertThat(SubscriptionSnapshotCache.getInstanceFor(mSubscriptionManager)).isNull();
+    }
+
+    @Test
+    public void getInstanceFor_activityContextManager_shouldReturnCache() {
+        final SubscriptionSnapshotCache cache = SubscriptionSnapshotCache.getInstance(mContext);
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        final SubscriptionManager manager = activity.getSystemService(SubscriptionManager.class);
+
+        assertThat(SubscriptionSnapshotCache.getInstanceFor(manager)).isSameInstanceAs(cache);
+        assertThat(SubscriptionUtil.getActiveSubscriptions(manager))
+                .isEqualTo(cache.getSnapshot().getActiveSubscriptions());
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.nfc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.nfc.cardemulation.ApduServiceInfo;
+import android.nfc.cardemulation.CardEmulation;
+
+import com.android.internal.content.PackageMonitor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowApplication;
+import org.robolectric.shadows.ShadowApplication.Wrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class PaymentBackendTest {
+
+    private static final String PACKAGE_A = "com.example.a";
+    private static final String PACKAGE_B = "com.example.b";
+    private static final String LABEL_A = "Payment A";
+    private static final String LABEL_B = "Payment B";
+
+    @Mock
+    private PackageManager mPackageManager;
+    @Mock
+    private CardEmulation mCardEmulation;
+    @Mock
+    private ApduServiceInfo mServiceA;
+    @Mock
+    private ApduServiceInfo mServiceB;
+
+    private Context mContext;
+    private PackageInfo mPackageInfoA;
+    private PackageInfo mPackageInfoB;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mContext = spy(RuntimeEnvironment.application);
+        when(mContext.getPackageManager()).thenReturn(mPackageManager);
+        mPackageInfoA = createPackageInfo(PACKAGE_A);
+        mPackageInfoB = createPackageInfo(PACKAGE_B);
+        when(mPackageManager.getPackageInfo(PACKAGE_A, 0)).thenReturn(mPackageInfoA);
+        when(mPackageManager.getPackageInfo(PACKAGE_B, 0)).thenReturn(mPackageInfoB);
+        when(mServiceA.getComponent()).thenReturn(new ComponentName(PACKAGE_A, "Service"));
+        when(mServiceA.loadLabel(mPackageManager)).thenReturn(LABEL_A);
+        when(mServiceB.getComponent()).thenReturn(new ComponentName(PACKAGE_B, "Service"));
+        when(mServiceB.loadLabel(mPackageManager)).thenReturn(LABEL_B);
+        when(mCardEmulation.getServices(CardEmulation.CATEGORY_PAYMENT))
+                .thenReturn(new ArrayList<>(Arrays.asList(mServiceA, mServiceB)));
+    }
+
+    @Test
+    public void refresh_packagesUnchanged_shouldReuseLabels() {
+        final PaymentBackend backend = new PaymentBackend(mContext, mCardEmulation);
+
+        backend.refresh();
+
+        assertThat(backend.getPaymentAppInfos()).hasSize(2);
+        assertThat(backend.getPaymentAppInfos().get(0).label.toString()).isEqualTo(LABEL_A);
+        assertThat(backend.getPaymentAppInfos().get(1).label.toString()).isEqualTo(LABEL_B);
+        verify(mServiceA, times(1)).loadLabel(mPackageManager);
+        verify(mServiceB, times(1)).loadLabel(mPackageManager);
+    }
+
+    @Test
+    public void refresh_packageUpdated_shouldReloadItsLabels() {
+        final PaymentBackend backend = new PaymentBackend(mContext, mCardEmulation);
+
+        mPackageInfoA.lastUpdateTime++;
+        backend.refresh();
+
+        verify(mServiceA, times(2)).loadLabel(mPackageManager);
+        verify(mServiceB, times(1)).loadLabel(mPackageManager);
+    }
+
+    @Test
+    public void refresh_packageNotFound_shouldNotCacheItsLabels() throws Exception {
+        when(mPackageManager.getPackageInfo(PACKAGE_A, 0))
+                .thenThrow(new PackageManager.NameNotFoundException());
+        final PaymentBackend backend = new PaymentBackend(mContext, mCardEmulation);
+
+        backend.refresh();
+
+        verify(mServiceA, times(2)).loadLabel(mPackageManager);
+    }
+
+    @Test
+    public void invalidatePackage_shouldOnlyReloadThatPackage() {
+        final PaymentBackend backend = new PaymentBackend(mContext, mCardEmulation);
+
+        backend.invalidatePackage(PACKAGE_A);
+        backend.refresh();
+
+        verify(mServiceA, times(2)).loadLabel(mPackageManager);
+        verify(mServiceB, times(1)).loadLabel(mPackageManager);
+    }
+
+    @Test
+    public void onPause_otherPageResumed_shouldKeepMonitoringPackages() {
+        final PaymentBackend backend = new PaymentBackend(mContext, mCardEmulation);
+
+        backend.onResume();
+        backend.onResume();
+        backend.onPause();
+
+        assertThat(isMonitoringPackages()).isTrue();
+    }
+
+    @Test
+    public void onPause_lastPagePaused_shouldStopMonitoringPackages() {
+        final PaymentBackend backend = new PaymentBackend(mContext, mCardEmulation);
+
+        backend.onResume();
+        backend.onResume();
+        backend.onPause();
+        backend.onPause();
+        backend.onPause();
+
+        assertThat(isMonitoringPackages()).isFalse();
+
+        backend.onResume();
+
+        assertThat(isMonitoringPackages()).isTrue();
+    }
+
+    private static PackageInfo createPackageInfo(String packageName) {
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.setLongVersionCode(1);
+        packageInfo.lastUpdateTime = 1;
+        return packageInfo;
+    }
+
+    private static boolean isMonitoringPackages() {
+        for (Wrapper wrapper : ShadowApplication.getInstance().getRegisteredReceivers()) {
+            if (wrapper.getBroadcastReceiver() instanceof PackageMonitor) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.settings.notification.NotificationBackend.AppRow;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppRowCacheTest {
+
+    private static final String PKG = "pkg";
+    private static final int UID = 1001;
+
+    private AppRowCache mCache;
+    private AppRow mRow;
+
+    @Before
+    public void setUp() {
+        mCache = new AppRowCache();
+        mRow = new AppRow();
+        mRow.pkg = PKG;
+        mRow.uid = UID;
+    }
+
+    @Test
+    public void get_afterPut_shouldReturnRow() {
+        mCache.put(mRow, mCache.getGeneration());
+
+        assertThat(mCache.get(PKG, UID)).isSameInstanceAs(mRow);
+        assertThat(mCache.get(PKG, UID + 1)).isNull();
+    }
+
+    @Test
+    public void get_afterInvalidate_shouldReturnNull() {
+        mCache.put(mRow, mCache.getGeneration());
+
+        mCache.invalidate(PKG, UID);
+
+        assertThat(mCache.get(PKG, UID)).isNull();
+    }
+
+    @Test
+    public void put_invalidatedWhileLoading_shouldNotCache() {
+        final int generation = mCache.getGeneration();
+
+        mCache.invalidate(PKG, UID);
+        mCache.put(mRow, generation);
+
+        assertThat(mCache.get(PKG, UID)).isNull();
+    }
+
+    @Test
+    public void get_rowTooOld_shouldReturnNull() {
+        mCache.put(mRow, mCache.getGeneration());
+
+        ShadowSystemClock.advanceBy(Duration.ofMillis(AppRowCache.MAX_AGE_MS));
+
+        assertThat(mCache.get(PKG, UID)).isNull();
+    }
+}
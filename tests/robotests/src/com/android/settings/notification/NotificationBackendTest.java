@@ -118,6 +118,36 @@ public class NotificationBackendTest {
         assertFalse(appRow.systemApp);
     }
 
+    @Test
+    public void loadAppRowWithoutStats_shouldHaveEmptySentState() {
+        PackageInfo pi = new PackageInfo();
+        pi.packageName = "test";
+        pi.applicationInfo = new ApplicationInfo();
+        pi.applicationInfo.packageName = "test";
+        RoleManager rm = mock(RoleManager.class);
+        when(rm.getHeldRolesFromController(anyString())).thenReturn(new ArrayList<>());
+
+        AppRow appRow = new NotificationBackend().loadAppRowWithoutStats(
+                RuntimeEnvironment.application, mock(PackageManager.class), rm, pi);
+
+        assertThat(appRow.pkg).isEqualTo("test");
+        assertThat(appRow.sentByChannel).isEmpty();
+        assertThat(appRow.sentByApp.sentCount).isEqualTo(0);
+    }
+
+    @Test
+    public void setShowBadge_shouldInvalidateCachedAppRow() {
+        AppRow appRow = new AppRow();
+        appRow.pkg = "pkg";
+        appRow.uid = 1001;
+        AppRowCache cache = AppRowCache.getInstance();
+        cache.put(appRow, cache.getGeneration());
+
+        new NotificationBackend().setShowBadge("pkg", 1001, true);
+
+        assertThat(cache.get("pkg", 1001)).isNull();
+    }
+
     @Test
     public void testGetAggregatedUsageEvents_multipleEventsAgg() {
         List<UsageEvents.Event> events = new ArrayList<>();
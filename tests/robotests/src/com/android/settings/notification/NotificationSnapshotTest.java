@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import static android.app.NotificationManager.IMPORTANCE_DEFAULT;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.NotificationChannel;
+import android.app.NotificationChannelGroup;
+import android.content.pm.ParceledListSlice;
+import android.service.notification.ConversationChannelWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationSnapshotTest {
+
+    private static final String PKG = "pkg";
+    private static final int UID = 1001;
+
+    @Mock
+    private NotificationBackend mBackend;
+
+    private NotificationSnapshot mSnapshot;
+    private ConversationChannelWrapper mImportantConversation;
+    private ConversationChannelWrapper mOtherConversation;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mImportantConversation = createConversation("important", true);
+        mOtherConversation = createConversation("other", false);
+        when(mBackend.getConversations(false)).thenReturn(new ParceledListSlice<>(
+                Arrays.asList(mImportantConversation, mOtherConversation)));
+        when(mBackend.getGroups(PKG, UID)).thenReturn(new ParceledListSlice<>(
+                Collections.singletonList(new NotificationChannelGroup("group", "Group"))));
+        mSnapshot = new NotificationSnapshot(mBackend);
+    }
+
+    @Test
+    public void getConversations_shouldReadAllConversationsOnce() {
+        assertThat(mSnapshot.getConversations(false))
+                .containsExactly(mImportantConversation, mOtherConversation).inOrder();
+        assertThat(mSnapshot.getConversations(true)).containsExactly(mImportantConversation);
+
+        verify(mBackend, times(1)).getConversations(anyBoolean());
+    }
+
+    @Test
+    public void getConversations_afterInvalidate_shouldReadAgain() {
+        mSnapshot.getConversations(false);
+
+        mSnapshot.invalidate();
+        mSnapshot.getConversations(true);
+
+        verify(mBackend, times(2)).getConversations(false);
+    }
+
+    @Test
+    public void getGroups_shouldReturnCopies() {
+        mSnapshot.getGroups(PKG, UID).clear();
+
+        assertThat(mSnapshot.getGroups(PKG, UID)).hasSize(1);
+        verify(mBackend, times(1)).getGroups(PKG, UID);
+    }
+
+    private static ConversationChannelWrapper createConversation(String id, boolean important) {
+        final NotificationChannel channel = new NotificationChannel(id, id, IMPORTANCE_DEFAULT);
+        channel.setImportantConversation(important);
+        final ConversationChannelWrapper conversation = new ConversationChannelWrapper();
+        conversation.setNotificationChannel(channel);
+        return conversation;
+    }
+}
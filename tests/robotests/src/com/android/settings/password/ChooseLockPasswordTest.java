@@ -42,6 +42,7 @@ import android.app.admin.PasswordMetrics;
 import android.app.admin.PasswordPolicy;
 import android.content.Intent;
 import android.os.UserHandle;
+import android.widget.ImeAwareEditText;
 
 import com.android.internal.widget.LockscreenCredential;
 import com.android.settings.R;
@@ -50,6 +51,7 @@ import com.android.settings.password.ChooseLockPassword.IntentBuilder;
 import com.android.settings.testutils.shadow.SettingsShadowResources;
 import com.android.settings.testutils.shadow.ShadowDevicePolicyManager;
 import com.android.settings.testutils.shadow.ShadowLockPatternUtils;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
 import com.android.settings.testutils.shadow.ShadowUtils;
 
 import com.google.android.setupdesign.GlifLayout;
@@ -416,6 +418,25 @@ public class ChooseLockPasswordTest {
                 "PIN must be at least 8 digits");
     }
 
+    @Test
+    @Config(shadows = ShadowThreadUtils.class)
+    public void updateUi_recentlyUsedPassword_shouldShowRecentlyUsedError() {
+        ShadowLockPatternUtils.setPasswordRecentlyUsed(true);
+        final ChooseLockPassword activity = buildChooseLockPasswordActivity(
+                createIntentForPasswordValidation(
+                        /* minMetrics */ null,
+                        /* minComplexity= */ PASSWORD_COMPLEXITY_NONE,
+                        /* passwordType= */ PASSWORD_QUALITY_ALPHABETIC));
+        final ChooseLockPasswordFragment fragment = getChooseLockPasswordFragment(activity);
+        final ImeAwareEditText passwordEntry = activity.findViewById(R.id.password_entry);
+
+        passwordEntry.setText("abcd1234");
+        fragment.updateUi();
+
+        assertThat(fragment.convertErrorCodeToMessages()).asList().containsExactly(
+                application.getString(R.string.lockpassword_password_recently_used));
+    }
+
     private ChooseLockPassword buildChooseLockPasswordActivity(Intent intent) {
         return Robolectric.buildActivity(ChooseLockPassword.class, intent).setup().get();
     }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import com.android.settings.testutils.FakeIndexProvider;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class NonIndexableKeysEvaluatorTest {
+
+    private static final String KEY_1 = "key_1";
+    private static final String KEY_2 = "key_2";
+    private static final long TEST_TIMEOUT_MS = 50;
+
+    private Context mContext;
+    private NonIndexableKeysEvaluator mEvaluator;
+    private AtomicInteger mCallCount;
+    private List<SearchIndexableData> mBundles;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mEvaluator = new NonIndexableKeysEvaluator(mContext);
+        mCallCount = new AtomicInteger();
+        mBundles = new ArrayList<>();
+        mBundles.add(new SearchIndexableData(FakeSettingsFragment.class,
+                new BaseSearchIndexProvider() {
+                    @Override
+                    public List<String> getNonIndexableKeys(Context context) {
+                        mCallCount.incrementAndGet();
+                        return new ArrayList<>(Arrays.asList(KEY_1, "", null));
+                    }
+                }));
+        mBundles.add(new SearchIndexableData(FakeIndexProvider.class,
+                new BaseSearchIndexProvider() {
+                    @Override
+                    public List<String> getNonIndexableKeys(Context context) {
+                        return Collections.singletonList(KEY_2);
+                    }
+                }));
+    }
+
+    @Test
+    public void getNonIndexableKeys_shouldCombineProvidersInOrderWithoutInvalidKeys() {
+        assertThat(mEvaluator.getNonIndexableKeys(mBundles))
+                .containsExactly(KEY_1, KEY_2).inOrder();
+    }
+
+    @Test
+    public void getNonIndexableKeys_crashingProvider_shouldKeepOtherKeys() {
+        mBundles.add(new SearchIndexableData(NonIndexableKeysEvaluatorTest.class,
+                new BaseSearchIndexProvider() {
+                    @Override
+                    public List<String> getNonIndexableKeys(Context context) {
+                        throw new IllegalStateException();
+                    }
+                }));
+
+        assertThat(mEvaluator.getNonIndexableKeys(mBundles)).containsExactly(KEY_1, KEY_2);
+    }
+
+    @Test
+    public void getNonIndexableKeys_calledTwice_shouldEvaluateOnce() {
+        mEvaluator.getNonIndexableKeys(mBundles);
+        mEvaluator.getNonIndexableKeys(mBundles);
+
+        assertThat(mCallCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void getNonIndexableKeys_afterInvalidate_shouldEvaluateAgain() {
+        mEvaluator.getNonIndexableKeys(mBundles);
+
+        mEvaluator.invalidate();
+        mEvaluator.getNonIndexableKeys(mBundles);
+
+        assertThat(mCallCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getNonIndexableKeys_packageChanged_shouldEvaluateAgain() {
+        mEvaluator.getNonIndexableKeys(mBundles);
+
+        final Intent intent = new Intent(Intent.ACTION_PACKAGE_CHANGED)
+                .setData(Uri.parse("package:com.example"));
+        mContext.sendBroadcast(intent);
+        ShadowLooper.idleMainLooper();
+        mEvaluator.getNonIndexableKeys(mBundles);
+
+        assertThat(mCallCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getNonIndexableKeys_providerTimesOut_shouldUseLastKnownKeys() throws Exception {
+        final NonIndexableKeysEvaluator evaluator =
+                new NonIndexableKeysEvaluator(mContext, TEST_TIMEOUT_MS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<SearchIndexableData> bundles = Collections.singletonList(
+                new SearchIndexableData(FakeSettingsFragment.class,
+                        new BaseSearchIndexProvider() {
+                            @Override
+                            public List<String> getNonIndexableKeys(Context context) {
+                                if (mCallCount.incrementAndGet() > 1) {
+                                    awaitUninterruptibly(latch);
+                                    return Collections.singletonList(KEY_2);
+                                }
+                                return Collections.singletonList(KEY_1);
+                            }
+                        }));
+        evaluator.getNonIndexableKeys(bundles);
+        evaluator.invalidate();
+
+        final List<String> keys = evaluator.getNonIndexableKeys(bundles);
+        latch.countDown();
+
+        assertThat(keys).containsExactly(KEY_1);
+    }
+
+    @Test
+    public void getNonIndexableKeys_providerTimesOut_shouldNotCacheKeys() throws Exception {
+        final NonIndexableKeysEvaluator evaluator =
+                new NonIndexableKeysEvaluator(mContext, TEST_TIMEOUT_MS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<SearchIndexableData> bundles = Collections.singletonList(
+                new SearchIndexableData(FakeSettingsFragment.class,
+                        new BaseSearchIndexProvider() {
+                            @Override
+                            public List<String> getNonIndexableKeys(Context context) {
+                                if (mCallCount.incrementAndGet() == 2) {
+                                    awaitUninterruptibly(latch);
+                                }
+                                return Collections.singletonList(KEY_1);
+                            }
+                        }));
+        evaluator.getNonIndexableKeys(bundles);
+        evaluator.invalidate();
+        evaluator.getNonIndexableKeys(bundles);
+        latch.countDown();
+
+        evaluator.getNonIndexableKeys(bundles);
+
+        assertThat(mCallCount.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void getNonIndexableKeys_slowProviderNeverAnswered_shouldWaitForIt() throws Exception {
+        final NonIndexableKeysEvaluator evaluator =
+                new NonIndexableKeysEvaluator(mContext, TEST_TIMEOUT_MS);
+        final List<SearchIndexableData> bundles = Collections.singletonList(
+                new SearchIndexableData(FakeSettingsFragment.class,
+                        new BaseSearchIndexProvider() {
+                            @Override
+                            public List<String> getNonIndexableKeys(Context context) {
+                                try {
+                                    Thread.sleep(TEST_TIMEOUT_MS * 4);
+                                } catch (InterruptedException e) {
+                                    throw new IllegalStateException(e);
+                                }
+                                return Collections.singletonList(KEY_1);
+                            }
+                        }));
+
+        assertThat(evaluator.getNonIndexableKeys(bundles)).containsExactly(KEY_1);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // Like a provider stuck in a binder call, ignore the cancellation.
+            }
+        }
+    }
+}
@@ -130,6 +130,20 @@ public class SettingsSearchIndexablesProviderTest {
         assertThat(cursor.getString(6)).isNull();
     }
 
+    @Test
+    public void queryRawData_shouldRunProvidersEveryTime() {
+        final Uri rawUri = Uri.parse(BASE_AUTHORITY + SearchIndexablesContract.INDEXABLES_RAW_PATH);
+        mProvider.query(rawUri, SearchIndexablesContract.INDEXABLES_RAW_COLUMNS, null, null, null)
+                .close();
+        mFakeFeatureFactory.searchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .clear();
+
+        final Cursor cursor = mProvider.query(rawUri,
+                SearchIndexablesContract.INDEXABLES_RAW_COLUMNS, null, null, null);
+
+        assertThat(cursor.getCount()).isEqualTo(0);
+    }
+
     @Test
     @Config(qualifiers = "mcc999")
     public void testNonIndexablesColumnFetched() {
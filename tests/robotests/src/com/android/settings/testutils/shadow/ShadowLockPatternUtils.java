@@ -36,6 +36,7 @@ import java.util.Map;
 public class ShadowLockPatternUtils {
 
     private static boolean sDeviceEncryptionEnabled;
+    private static boolean sPasswordRecentlyUsed;
     private static Map<Integer, Integer> sUserToComplexityMap = new HashMap<>();
     private static Map<Integer, Integer> sUserToProfileComplexityMap = new HashMap<>();
     private static Map<Integer, PasswordMetrics> sUserToMetricsMap = new HashMap<>();
@@ -49,6 +50,7 @@ public class ShadowLockPatternUtils {
         sUserToMetricsMap.clear();
         sUserToProfileMetricsMap.clear();
         sDeviceEncryptionEnabled = false;
+        sPasswordRecentlyUsed = false;
     }
 
     @Implementation
@@ -93,7 +95,11 @@ public class ShadowLockPatternUtils {
 
     @Implementation
     protected boolean checkPasswordHistory(byte[] passwordToCheck, byte[] hashFactor, int userId) {
-        return false;
+        return sPasswordRecentlyUsed;
+    }
+
+    public static void setPasswordRecentlyUsed(boolean passwordRecentlyUsed) {
+        sPasswordRecentlyUsed = passwordRecentlyUsed;
     }
 
     @Implementation
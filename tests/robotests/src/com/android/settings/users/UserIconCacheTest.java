@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.UserManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class UserIconCacheTest {
+
+    private static final int USER_ID = 10;
+    private static final int ICON_SIZE = 48;
+
+    @Mock
+    private UserManager mUserManager;
+    private Context mContext;
+    private UserIconCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mCache = new UserIconCache(mContext, mUserManager);
+        doReturn(Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888))
+                .when(mUserManager).getUserIcon(USER_ID);
+    }
+
+    @Test
+    public void loadIcon_calledTwice_shouldQueryUserManagerOnce() {
+        mCache.loadIcon(USER_ID, ICON_SIZE);
+        mCache.loadIcon(USER_ID, ICON_SIZE);
+
+        verify(mUserManager).getUserIcon(USER_ID);
+        assertThat(mCache.getCachedIcon(USER_ID, ICON_SIZE)).isNotNull();
+    }
+
+    @Test
+    public void loadIcon_differentSizes_shouldCacheEachSize() {
+        mCache.loadIcon(USER_ID, ICON_SIZE);
+
+        assertThat(mCache.getCachedIcon(USER_ID, ICON_SIZE * 2)).isNull();
+
+        mCache.loadIcon(USER_ID, ICON_SIZE * 2);
+
+        verify(mUserManager, times(2)).getUserIcon(USER_ID);
+        assertThat(mCache.getCachedIcon(USER_ID, ICON_SIZE * 2)).isNotNull();
+    }
+
+    @Test
+    public void invalidate_shouldDropAllSizesForUser() {
+        mCache.loadIcon(USER_ID, ICON_SIZE);
+        mCache.loadIcon(USER_ID, ICON_SIZE * 2);
+
+        mCache.invalidate(USER_ID);
+
+        assertThat(mCache.getCachedIcon(USER_ID, ICON_SIZE)).isNull();
+        assertThat(mCache.getCachedIcon(USER_ID, ICON_SIZE * 2)).isNull();
+    }
+
+    @Test
+    public void loadIcon_invalidatedWhileLoading_shouldNotCacheStaleIcon() {
+        doAnswer(invocation -> {
+            mCache.invalidate(USER_ID);
+            return Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888);
+        }).when(mUserManager).getUserIcon(USER_ID);
+
+        assertThat(mCache.loadIcon(USER_ID, ICON_SIZE)).isNotNull();
+        assertThat(mCache.getCachedIcon(USER_ID, ICON_SIZE)).isNull();
+    }
+
+    @Test
+    public void putIcon_afterInvalidate_shouldCacheIcon() {
+        mCache.invalidate(USER_ID);
+
+        mCache.putIcon(USER_ID, Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888));
+
+        assertThat(mCache.getCachedIcon(USER_ID)).isNotNull();
+    }
+
+    @Test
+    public void downsample_largeRectangularIcon_shouldReturnSquareOfTargetSize() {
+        final Bitmap icon = Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888);
+
+        final Bitmap result = UserIconCache.downsample(icon, ICON_SIZE);
+
+        assertThat(result.getWidth()).isEqualTo(ICON_SIZE);
+        assertThat(result.getHeight()).isEqualTo(ICON_SIZE);
+    }
+
+    @Test
+    public void downsample_smallSquareIcon_shouldReturnSameBitmap() {
+        final Bitmap icon = Bitmap.createBitmap(ICON_SIZE / 2, ICON_SIZE / 2,
+                Bitmap.Config.ARGB_8888);
+
+        assertThat(UserIconCache.downsample(icon, ICON_SIZE)).isSameInstanceAs(icon);
+    }
+}
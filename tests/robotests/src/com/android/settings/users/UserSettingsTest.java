@@ -59,6 +59,7 @@ import androidx.preference.PreferenceScreen;
 import com.android.settings.SettingsActivity;
 import com.android.settings.SubSettings;
 import com.android.settings.testutils.shadow.ShadowDevicePolicyManager;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
 import com.android.settings.testutils.shadow.ShadowUserManager;
 import com.android.settingslib.RestrictedLockUtils;
 import com.android.settingslib.RestrictedPreference;
@@ -84,7 +85,8 @@ import java.util.Collections;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
-@Config(shadows = {ShadowUserManager.class, ShadowDevicePolicyManager.class})
+@Config(shadows = {ShadowUserManager.class, ShadowDevicePolicyManager.class,
+        ShadowThreadUtils.class})
 public class UserSettingsTest {
 
     private static final String KEY_USER_GUEST = "user_guest";
@@ -139,6 +141,7 @@ public class UserSettingsTest {
         ReflectionHelpers.setField(mFragment, "mDefaultIconDrawable", mDefaultIconDrawable);
         ReflectionHelpers.setField(mFragment, "mAddingUser", false);
         ReflectionHelpers.setField(mFragment, "mMetricsFeatureProvider", mMetricsFeatureProvider);
+        mFragment.mUserIconCache = new UserIconCache(mContext, mUserManager);
 
         doReturn(mUserManager).when(mActivity).getSystemService(UserManager.class);
 
@@ -588,7 +591,7 @@ public class UserSettingsTest {
         UserInfo currentUser = getAdminUser(true);
         currentUser.iconPath = "/data/system/users/0/photo.png";
         givenUsers(currentUser);
-        mFragment.mUserIcons.put(ACTIVE_USER_ID,
+        mFragment.mUserIconCache.putIcon(ACTIVE_USER_ID,
                 Bitmap.createBitmap(100, 200, Bitmap.Config.ARGB_8888));
 
         mFragment.updateUserList();
@@ -604,7 +607,7 @@ public class UserSettingsTest {
         currentUser.iconPath = "/data/system/users/0/photo.png";
         givenUsers(currentUser);
         // create a non-empty sparsearray
-        mFragment.mUserIcons.put(5, Bitmap.createBitmap(100, 200, Bitmap.Config.ARGB_8888));
+        mFragment.mUserIconCache.putIcon(5, Bitmap.createBitmap(100, 200, Bitmap.Config.ARGB_8888));
         Bitmap userIcon = Bitmap.createBitmap(100, 200, Bitmap.Config.ARGB_8888);
         doReturn(userIcon).when(mUserManager).getUserIcon(ACTIVE_USER_ID);
 
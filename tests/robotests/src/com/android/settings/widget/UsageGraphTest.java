@@ -24,8 +24,7 @@ import static org.mockito.Mockito.when;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.graphics.Canvas;
-import android.graphics.Paint;
+import android.graphics.Path;
 import android.util.SparseIntArray;
 
 import com.android.settingslib.R;
@@ -181,12 +180,78 @@ public class UsageGraphTest {
     }
 
     @Test
-    public void drawFilledPath_emptyPath_shouldNotCrash() {
-        final Canvas canvas = new Canvas();
-        final SparseIntArray localPaths = new SparseIntArray();
-        final Paint paint = new Paint();
+    public void calculateLocalPaths_fromIndex_shouldKeepEarlierPaths() {
+        SparseIntArray paths = new SparseIntArray();
+        paths.append(0, 100);
+        paths.append(200, 75);
+        paths.append(201, -1);
+        SparseIntArray localPaths = new SparseIntArray();
+        mGraph.calculateLocalPaths(paths, localPaths);
+
+        paths.append(300, 50);
+        paths.append(500, 25);
+        paths.append(501, -1);
+        mGraph.calculateLocalPaths(paths, localPaths, 3 /* fromIndex */);
+
+        SparseIntArray expected = new SparseIntArray();
+        mGraph.calculateLocalPaths(paths, expected);
+        assertThat(localPaths.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void calculateLocalPaths_morePointsThanPixels_shouldDownsample() {
+        when(mGraph.getWidth()).thenReturn(100);
+        SparseIntArray paths = new SparseIntArray();
+        for (int i = 0; i < 500; i++) {
+            paths.append(i, i % 2 == 0 ? 0 : 100);
+        }
+        paths.append(500, -1);
+
+        SparseIntArray localPaths = new SparseIntArray();
+        mGraph.calculateLocalPaths(paths, localPaths);
+
+        // At most one point per pixel, plus the delimiter.
+        assertThat(localPaths.size()).isAtMost(101);
+        assertThat(localPaths.keyAt(0)).isEqualTo(0);
+        assertThat(localPaths.valueAt(localPaths.size() - 1)).isEqualTo(-1);
+    }
+
+    @Test
+    public void downsample_shouldKeepEndsAndPeak() {
+        SparseIntArray points = new SparseIntArray();
+        for (int i = 0; i < 100; i++) {
+            points.append(i, i == 42 ? 1000 : 10);
+        }
+
+        final int[] indices = UsageGraph.downsample(points, 0, 100, 10);
+
+        assertThat(indices).hasLength(10);
+        assertThat(indices[0]).isEqualTo(0);
+        assertThat(indices[9]).isEqualTo(99);
+        assertThat(indices).asList().contains(42);
+        for (int i = 1; i < indices.length; i++) {
+            assertThat(indices[i]).isGreaterThan(indices[i - 1]);
+        }
+    }
+
+    @Test
+    public void downsample_fewerPointsThanThreshold_shouldKeepAllPoints() {
+        SparseIntArray points = new SparseIntArray();
+        points.append(0, 10);
+        points.append(1, 20);
+        points.append(2, 30);
+
+        assertThat(UsageGraph.downsample(points, 0, 3, 10)).asList()
+                .containsExactly(0, 1, 2).inOrder();
+    }
+
+    @Test
+    public void buildFilledPath_emptyPath_shouldResetPath() {
+        final Path path = new Path();
+        path.lineTo(10, 10);
+
+        mGraph.buildFilledPath(path, new SparseIntArray());
 
-        // Should not crash
-        mGraph.drawFilledPath(canvas, localPaths, paint);
+        assertThat(path.isEmpty()).isTrue();
     }
 }
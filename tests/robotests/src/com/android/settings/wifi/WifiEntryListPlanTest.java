@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.android.wifitrackerlib.WifiEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class WifiEntryListPlanTest {
+
+    private WifiEntry mEntry1;
+    private WifiEntry mEntry2;
+    private WifiEntry mEntry3;
+    private Map<String, WifiEntry> mShownEntries;
+
+    @Before
+    public void setUp() {
+        mEntry1 = createWifiEntry("key1");
+        mEntry2 = createWifiEntry("key2");
+        mEntry3 = createWifiEntry("key3");
+        mShownEntries = new LinkedHashMap<>();
+        mShownEntries.put("key1", mEntry1);
+        mShownEntries.put("key2", mEntry2);
+    }
+
+    @Test
+    public void create_sameEntries_shouldHaveNoChanges() {
+        final WifiEntryListPlan plan = WifiEntryListPlan.create(
+                Arrays.asList(mEntry1, mEntry2), mShownEntries, true /* canReorder */);
+
+        assertThat(plan.hasChanges()).isFalse();
+        assertThat(plan.isReordered()).isFalse();
+        assertThat(plan.getEntries()).containsExactly(mEntry1, mEntry2).inOrder();
+    }
+
+    @Test
+    public void create_entryReplacedWithSameKey_shouldKeepOrder() {
+        final WifiEntry newEntry1 = createWifiEntry("key1");
+
+        final WifiEntryListPlan plan = WifiEntryListPlan.create(
+                Arrays.asList(newEntry1, mEntry2), mShownEntries, true /* canReorder */);
+
+        assertThat(plan.hasChanges()).isTrue();
+        assertThat(plan.isReordered()).isFalse();
+        assertThat(plan.getEntries()).containsExactly(newEntry1, mEntry2).inOrder();
+    }
+
+    @Test
+    public void create_entryAdded_shouldReorderEvenIfReorderNotAllowed() {
+        final WifiEntryListPlan plan = WifiEntryListPlan.create(
+                Arrays.asList(mEntry3, mEntry2, mEntry1), mShownEntries, false /* canReorder */);
+
+        assertThat(plan.hasChanges()).isTrue();
+        assertThat(plan.isReordered()).isTrue();
+        assertThat(plan.isReorderDeferred()).isFalse();
+        assertThat(plan.getEntries()).containsExactly(mEntry3, mEntry2, mEntry1).inOrder();
+    }
+
+    @Test
+    public void create_onlyOrderChanged_canReorder_shouldFollowNewOrder() {
+        final WifiEntryListPlan plan = WifiEntryListPlan.create(
+                Arrays.asList(mEntry2, mEntry1), mShownEntries, true /* canReorder */);
+
+        assertThat(plan.hasChanges()).isTrue();
+        assertThat(plan.isReordered()).isTrue();
+        assertThat(plan.getEntries()).containsExactly(mEntry2, mEntry1).inOrder();
+    }
+
+    @Test
+    public void create_onlyOrderChanged_cannotReorder_shouldKeepShownOrder() {
+        final WifiEntry newEntry2 = createWifiEntry("key2");
+
+        final WifiEntryListPlan plan = WifiEntryListPlan.create(
+                Arrays.asList(newEntry2, mEntry1), mShownEntries, false /* canReorder */);
+
+        assertThat(plan.hasChanges()).isTrue();
+        assertThat(plan.isReordered()).isFalse();
+        assertThat(plan.isReorderDeferred()).isTrue();
+        assertThat(plan.getEntries()).containsExactly(mEntry1, newEntry2).inOrder();
+    }
+
+    private static WifiEntry createWifiEntry(String key) {
+        final WifiEntry wifiEntry = mock(WifiEntry.class);
+        when(wifiEntry.getKey()).thenReturn(key);
+        return wifiEntry;
+    }
+}
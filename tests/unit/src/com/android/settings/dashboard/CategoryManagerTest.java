@@ -19,9 +19,11 @@ package com.android.settings.dashboard;
 import static com.android.settingslib.drawer.CategoryKey.CATEGORY_HOMEPAGE;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_KEY_ORDER;
 import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_KEYHINT;
+import static com.android.settingslib.drawer.TileUtils.META_DATA_PREFERENCE_TITLE;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.content.pm.ApplicationInfo;
@@ -42,8 +44,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 @RunWith(AndroidJUnit4.class)
 public class CategoryManagerTest {
@@ -315,6 +319,126 @@ public class CategoryManagerTest {
         assertThat(category.getTilesCount()).isEqualTo(1);
     }
 
+    @Test
+    public void reloadChangedCategories_noPackageChanged_shouldNotReportChanges() {
+        mCategoryManager.getCategories(mContext);
+
+        assertThat(mCategoryManager.reloadChangedCategories(mContext)).isEmpty();
+    }
+
+    @Test
+    public void reloadChangedCategories_packageWithoutTilesChanged_shouldNotReportChanges() {
+        mCategoryManager.getCategories(mContext);
+        mCategoryManager.reloadChangedCategories(mContext);
+
+        mCategoryManager.markPackageChanged("com.android.settings.no.such.package");
+
+        assertThat(mCategoryManager.reloadChangedCategories(mContext)).isEmpty();
+    }
+
+    @Test
+    public void reloadChangedCategories_usersChanged_shouldReloadAll() {
+        mCategoryManager.getCategories(mContext);
+        mCategoryManager.reloadChangedCategories(mContext);
+
+        mCategoryManager.markUsersChanged();
+
+        assertThat(mCategoryManager.reloadChangedCategories(mContext)).isNull();
+        assertThat(mCategoryManager.reloadChangedCategories(mContext)).isEmpty();
+    }
+
+    @Test
+    public void markPackageChanged_whileLoading_shouldNotWaitForLoad() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final Thread loader = new Thread(() -> {
+            synchronized (mCategoryManager) {
+                loading.countDown();
+                try {
+                    loaded.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        loader.start();
+        loading.await();
+
+        try {
+            mCategoryManager.markPackageChanged("com.android.settings.no.such.package");
+            mCategoryManager.markUsersChanged();
+        } finally {
+            loaded.countDown();
+            loader.join();
+        }
+
+        assertThat(mCategoryManager.reloadChangedCategories(mContext)).isNull();
+    }
+
+    @Test
+    public void getChangedCategories_tileAdded_shouldReportItsCategory() {
+        final Tile tile = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 100, "title");
+
+        assertThat(CategoryManager.getChangedCategories(mContext, Collections.emptyMap(),
+                toMap(tile))).containsExactly(CATEGORY_HOMEPAGE);
+    }
+
+    @Test
+    public void getChangedCategories_tileRemoved_shouldReportItsCategory() {
+        final Tile tile = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 100, "title");
+
+        assertThat(CategoryManager.getChangedCategories(mContext, toMap(tile),
+                Collections.emptyMap())).containsExactly(CATEGORY_HOMEPAGE);
+    }
+
+    @Test
+    public void getChangedCategories_titleChanged_shouldReportItsCategory() {
+        final Tile previous = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 100, "old");
+        final Tile current = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 100, "new");
+
+        assertThat(CategoryManager.getChangedCategories(mContext, toMap(previous),
+                toMap(current))).containsExactly(CATEGORY_HOMEPAGE);
+    }
+
+    @Test
+    public void getChangedCategories_orderChanged_shouldReportItsCategory() {
+        final Tile previous = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 100, "title");
+        final Tile current = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 50, "title");
+
+        assertThat(CategoryManager.getChangedCategories(mContext, toMap(previous),
+                toMap(current))).containsExactly(CATEGORY_HOMEPAGE);
+    }
+
+    @Test
+    public void getChangedCategories_categoryChanged_shouldReportBothCategories() {
+        final Tile previous = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 100, "title");
+        final Tile current = createActivityTile(CategoryKey.CATEGORY_ACCOUNT, "pkg", "class", 100,
+                "title");
+
+        assertThat(CategoryManager.getChangedCategories(mContext, toMap(previous),
+                toMap(current))).containsExactly(CATEGORY_HOMEPAGE, CategoryKey.CATEGORY_ACCOUNT);
+    }
+
+    @Test
+    public void getChangedCategories_sameTile_shouldNotReportChanges() {
+        final Tile previous = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 100, "title");
+        final Tile current = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class", 100, "title");
+
+        assertThat(CategoryManager.getChangedCategories(mContext, toMap(previous),
+                toMap(current))).isEmpty();
+    }
+
+    private static Map<ComponentName, Tile> toMap(Tile tile) {
+        return Collections.singletonMap(tile.getIntent().getComponent(), tile);
+    }
+
+    private Tile createActivityTile(String categoryKey, String packageName, String className,
+            int order, String title) {
+        final Tile tile = createActivityTile(categoryKey, packageName, className, order);
+        tile.getMetaData().putString(META_DATA_PREFERENCE_TITLE, title);
+        return tile;
+    }
+
     private Tile createActivityTile(String categoryKey, String packageName, String className,
             int order) {
         final ActivityInfo activityInfo = new ActivityInfo();
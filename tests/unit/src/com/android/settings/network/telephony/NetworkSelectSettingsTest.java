@@ -166,6 +166,39 @@ public class NetworkSelectSettingsTest {
         assertThat(mNetworkSelectSettings.doAggregation(testList)).isEqualTo(expected);
     }
 
+    @Test
+    public void mergeScanResults_incrementalBatches_keepFirstFoundOrderAndLatestCell() {
+        mNetworkSelectSettings.mergeScanResults(Arrays.asList(
+                createLteCellInfo(false, 123, "123", "232", "CarrierA"),
+                createGsmCellInfo(false, 123, "123", "232", "CarrierB")));
+        final CellInfo latestCell = createLteCellInfo(true, 1234, "123", "232", "CarrierA");
+
+        final List<CellInfo> merged = mNetworkSelectSettings.mergeScanResults(Arrays.asList(
+                createLteCellInfo(false, 123, "123", "232", "CarrierC"),
+                latestCell));
+
+        assertThat(merged).containsExactly(latestCell,
+                createGsmCellInfo(false, 123, "123", "232", "CarrierB"),
+                createLteCellInfo(false, 123, "123", "232", "CarrierC")).inOrder();
+    }
+
+    @Test
+    @UiThreadTest
+    public void updateAllPreferenceCategory_sameOperators_reusePreferences() {
+        mNetworkSelectSettings.updateAllPreferenceCategory();
+        final NetworkOperatorPreference preference =
+                (NetworkOperatorPreference) mPreferenceCategory.getPreference(1);
+
+        mNetworkSelectSettings.mCellInfoList =
+                Arrays.asList(createLteCellInfo(false, 123, "123", "232", "CarrierA"),
+                        createGsmCellInfo(false, 123, "123", "232", "CarrierB"));
+        mNetworkSelectSettings.updateAllPreferenceCategory();
+
+        assertThat(mPreferenceCategory.getPreferenceCount()).isEqualTo(2);
+        assertThat(mPreferenceCategory.getPreference(1)).isSameInstanceAs(preference);
+        assertThat(mPreferenceCategory.getPreference(0).getSummary()).isNull();
+    }
+
     private CellInfoLte createLteCellInfo(boolean registered, int cellId, String mcc, String mnc,
             String plmnName) {
         CellIdentityLte cil = new CellIdentityLte(